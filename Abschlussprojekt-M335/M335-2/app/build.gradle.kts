@@ -16,6 +16,13 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        javaCompileOptions {
+            annotationProcessorOptions {
+                // Room exportiert das Schema jeder Datenbankversion nach app/schemas
+                arguments += mapOf("room.schemaLocation" to "$projectDir/schemas")
+            }
+        }
     }
 
     buildTypes {
@@ -27,6 +34,10 @@ android {
             )
         }
     }
+    sourceSets {
+        // Die exportierten Schemas dienen den Migrationstests als Assets
+        getByName("test").assets.srcDir("$projectDir/schemas")
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -37,6 +48,22 @@ android {
     buildFeatures {
         compose = true
     }
+    testOptions {
+        unitTests {
+            // Robolectric needs the merged resources for Room and view tests
+            isIncludeAndroidResources = true
+            all {
+                // Größe des Stresstests, z.B. ./gradlew test -Pm335.stress.rows=1000000
+                it.systemProperty("m335.stress.rows", project.findProperty("m335.stress.rows") ?: "10000")
+                it.systemProperty("m335.stress.threads", project.findProperty("m335.stress.threads") ?: "8")
+            }
+        }
+    }
+}
+
+composeCompiler {
+    // Java-Klassen gelten für Compose als instabil, die Datei markiert die unveränderlichen Modelle
+    stabilityConfigurationFiles.add(project.layout.projectDirectory.file("compose_stability.conf"))
 }
 
 dependencies {
@@ -49,6 +76,8 @@ dependencies {
     implementation(libs.androidx.ui.graphics)
     implementation(libs.androidx.ui.tooling.preview)
     implementation(libs.androidx.material3)
+    // LiveData des ViewModels als Compose-State für die Compose-Liste
+    implementation(libs.androidx.runtime.livedata)
 
     // Traditionelle View-Abhängigkeiten für Java-Code
     implementation("androidx.appcompat:appcompat:1.6.1")
@@ -61,6 +90,9 @@ dependencies {
     implementation("androidx.room:room-runtime:2.5.0")
     annotationProcessor("androidx.room:room-compiler:2.5.0")
 
+    // Paging für die Modulliste
+    implementation("androidx.paging:paging-runtime:2.1.2")
+
     // Lifecycle-Komponenten für LiveData und ViewModel
     implementation("androidx.lifecycle:lifecycle-viewmodel:2.5.1")
     implementation("androidx.lifecycle:lifecycle-livedata:2.5.1")
@@ -68,6 +100,15 @@ dependencies {
 
     // Test-Abhängigkeiten
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.androidx.test.core)
+    // MigrationTestHelper prüft jede Migration gegen das exportierte Schema
+    testImplementation("androidx.room:room-testing:2.5.0")
+    // Lokaler HTTP-Server für die Tests der Synchronisation
+    testImplementation(libs.okhttp.mockwebserver)
+    // Compose-UI-Tests laufen mit Robolectric auf der JVM
+    testImplementation(platform(libs.androidx.compose.bom))
+    testImplementation(libs.androidx.ui.test.junit4)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
     androidTestImplementation(platform(libs.androidx.compose.bom))
@@ -0,0 +1,55 @@
+package com.example.m335;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.example.m335.data.ModuleWarmUp;
+import com.example.m335.viewmodel.ModuleViewModel;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Application class of the app.
+ * Starts the startup timeline and opens the database in the background,
+ * so the first screen finds it open and its first page already read.
+ * Schedules the database maintenance for when the device is idle.
+ */
+public class M335Application extends Application {
+    private static final String TAG = "M335Startup";
+
+    private CompletableFuture<Void> warmUp;
+
+    /**
+     * Starts the timeline and the database warm-up and schedules the maintenance
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        final StartupTimeline timeline = StartupTimeline.getInstance();
+        timeline.setListener(new StartupTimeline.Listener() {
+            @Override
+            public void onPhase(StartupTimeline.Phase phase, long millis) {
+                Log.i(TAG, phase + " after " + millis + " ms");
+            }
+        });
+        timeline.start();
+
+        warmUp = ModuleWarmUp.start(this, ModuleViewModel.createPagedListConfig().initialLoadSizeHint,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        timeline.mark(StartupTimeline.Phase.DATABASE_OPEN);
+                    }
+                });
+        ModuleMaintenanceJobService.schedule(this);
+    }
+
+    /**
+     * Gets the database warm-up started in onCreate
+     *
+     * @return Completes once the database is open and the first page is read
+     */
+    public CompletableFuture<Void> getWarmUp() {
+        return warmUp;
+    }
+}
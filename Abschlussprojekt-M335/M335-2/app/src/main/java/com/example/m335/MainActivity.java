@@ -1,32 +1,73 @@
 package com.example.m335;
 
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.compose.ui.platform.ComposeView;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.m335.adapter.ModuleAdapter;
+import com.example.m335.data.ModuleFileFormat;
+import com.example.m335.data.ModuleMigrationRunner;
+import com.example.m335.data.ModuleSortOrder;
+import com.example.m335.data.SingleEvent;
 import com.example.m335.model.Module;
+import com.example.m335.model.ModuleFamilyStats;
+import com.example.m335.model.ModuleRow;
+import com.example.m335.model.ModuleSummary;
+import com.example.m335.model.ModuleSummaryFormatter;
+import com.example.m335.model.ModuleValidator;
+import com.example.m335.ui.ModuleListCompose;
+import com.example.m335.ui.ModuleListController;
 import com.example.m335.viewmodel.ModuleViewModel;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.textfield.TextInputLayout;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Main activity displaying the list of modules.
  * Serves as the entry point of the application.
  */
 public class MainActivity extends AppCompatActivity {
-    public static final int ADD_MODULE_REQUEST = 1;
-    public static final int EDIT_MODULE_REQUEST = 2;
+    public static final int IMPORT_REQUEST = 3;
+    public static final int EXPORT_CSV_REQUEST = 4;
+    public static final int EXPORT_JSON_REQUEST = 5;
+
+    // Delay after the last keystroke before a search is started
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
+    // Settings: the module list is drawn with Compose instead of the RecyclerView
+    private static final String PREFERENCES_NAME = "m335_settings";
+    private static final String KEY_COMPOSE_LIST = "compose_list";
 
     private ModuleViewModel moduleViewModel;
+    // Exactly one of both is set, depending on the selected list
+    private ModuleAdapter adapter;
+    private ModuleListController composeList;
+    private ActionMode selectionActionMode;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private String pendingSearchText = "";
 
     /**
-     * Initializes the activity, sets up the RecyclerView and ViewModel
+     * Initializes the activity, sets up the module list and ViewModel
      *
      * @param savedInstanceState Saved state bundle
      */
@@ -35,22 +76,71 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        // Set up RecyclerView
-        RecyclerView recyclerView = findViewById(R.id.recycler_view);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        recyclerView.setHasFixedSize(true);
-
-        // Set up adapter
-        final ModuleAdapter adapter = new ModuleAdapter();
-        recyclerView.setAdapter(adapter);
-
         // Set up ViewModel
         moduleViewModel = new ViewModelProvider(this).get(ModuleViewModel.class);
-        moduleViewModel.getAllModules().observe(this, new Observer<List<Module>>() {
+
+        // Set up the module list selected in the menu
+        if (isComposeListSelected()) {
+            setUpComposeList();
+        } else {
+            setUpRecyclerView();
+        }
+
+        moduleViewModel.getFailedEdit().observe(this, new Observer<SingleEvent<String>>() {
+            @Override
+            public void onChanged(SingleEvent<String> event) {
+                String moduleNumber = event.take();
+                if (moduleNumber == null) {
+                    return;
+                }
+                Toast.makeText(MainActivity.this,
+                        "Änderungen an " + moduleNumber + " konnten nicht gespeichert werden",
+                        Toast.LENGTH_LONG).show();
+            }
+        });
+
+        // Set up search box, queries run on the paging executor after typing pauses
+        EditText editTextSearch = findViewById(R.id.edit_text_search);
+        editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                pendingSearchText = s.toString();
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
+
+        // Show the progress of a migration after an app update, the list fills once it is done
+        final TextView textViewMigration = findViewById(R.id.text_view_migration_progress);
+        moduleViewModel.getMigrationProgress().observe(this, new Observer<ModuleMigrationRunner.Progress>() {
             @Override
-            public void onChanged(List<Module> modules) {
-                // Update RecyclerView
-                adapter.setModules(modules);
+            public void onChanged(ModuleMigrationRunner.Progress progress) {
+                // No progress means no migration is running
+                if (progress == null) {
+                    textViewMigration.setVisibility(View.GONE);
+                } else {
+                    textViewMigration.setText("Daten werden aktualisiert … " + progress.getPercent() + " %");
+                    textViewMigration.setVisibility(View.VISIBLE);
+                }
+            }
+        });
+
+        // Report the outcome of imports and exports, once and not again after a rotation
+        moduleViewModel.getTransferMessage().observe(this, new Observer<SingleEvent<String>>() {
+            @Override
+            public void onChanged(SingleEvent<String> event) {
+                String message = event.take();
+                if (message != null) {
+                    Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
+                }
             }
         });
 
@@ -60,33 +150,347 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 Intent intent = new Intent(MainActivity.this, ModuleEditActivity.class);
-                startActivityForResult(intent, ADD_MODULE_REQUEST);
+                startActivity(intent);
             }
         });
+    }
 
-        // Set up click listener for editing modules
-        adapter.setOnItemClickListener(new ModuleAdapter.OnItemClickListener() {
+    /**
+     * Sets up the RecyclerView with the paged adapter and the summary header views
+     */
+    private void setUpRecyclerView() {
+        RecyclerView recyclerView = findViewById(R.id.recycler_view);
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        recyclerView.setHasFixedSize(true);
+
+        // Set up adapter
+        adapter = new ModuleAdapter();
+        adapter.setOnItemClickListener(itemClickListener);
+        adapter.setOnSelectionChangedListener(selectionChangedListener);
+        recyclerView.setAdapter(adapter);
+
+        moduleViewModel.getDisplayedModules().observe(this, new Observer<PagedList<ModuleRow>>() {
             @Override
-            public void onItemClick(Module module) {
-                Intent intent = new Intent(MainActivity.this, ModuleEditActivity.class);
-                intent.putExtra(ModuleEditActivity.EXTRA_MODULE_NUMBER, module.getModuleNumber());
-                intent.putExtra(ModuleEditActivity.EXTRA_MODULE_TITLE, module.getModuleTitle());
+            public void onChanged(final PagedList<ModuleRow> modules) {
+                StartupTimeline.getInstance().mark(StartupTimeline.Phase.FIRST_DATA);
+                // Update RecyclerView, new pages are diffed on a background thread.
+                // Once the new list is shown, the edits whose written row it has are dropped
+                adapter.submitList(modules, new Runnable() {
+                    @Override
+                    public void run() {
+                        moduleViewModel.reconcileEdits(modules);
+                    }
+                });
+            }
+        });
 
-                if (module.getZpNote() != null) {
-                    intent.putExtra(ModuleEditActivity.EXTRA_ZP_NOTE, module.getZpNote().toString());
-                }
+        // Show saved edits at once, before the database write and the list reload
+        moduleViewModel.getPendingEdits().observe(this, new Observer<Map<String, Module>>() {
+            @Override
+            public void onChanged(Map<String, Module> edits) {
+                adapter.setPendingEdits(edits);
+            }
+        });
 
-                if (module.getLbNote() != null) {
-                    intent.putExtra(ModuleEditActivity.EXTRA_LB_NOTE, module.getLbNote().toString());
+        // Set up summary header, filled by aggregate queries instead of the module list
+        final TextView textViewSummary = findViewById(R.id.text_view_summary);
+        final TextView textViewFamilyStats = findViewById(R.id.text_view_family_stats);
+        moduleViewModel.getSummary().observe(this, new Observer<ModuleSummary>() {
+            @Override
+            public void onChanged(ModuleSummary summary) {
+                textViewSummary.setText(ModuleSummaryFormatter.formatSummary(summary));
+            }
+        });
+        moduleViewModel.getFamilyStats().observe(this, new Observer<List<ModuleFamilyStats>>() {
+            @Override
+            public void onChanged(List<ModuleFamilyStats> familyStats) {
+                textViewFamilyStats.setText(ModuleSummaryFormatter.formatFamilyStats(familyStats));
+            }
+        });
+    }
+
+    /**
+     * Sets up the Compose list, which observes the list, the pending edits and the summary itself
+     */
+    private void setUpComposeList() {
+        findViewById(R.id.recycler_view).setVisibility(View.GONE);
+        findViewById(R.id.text_view_summary).setVisibility(View.GONE);
+        findViewById(R.id.text_view_family_stats).setVisibility(View.GONE);
+
+        composeList = new ModuleListController();
+        composeList.setOnItemClickListener(itemClickListener);
+        composeList.setOnSelectionChangedListener(selectionChangedListener);
+        ComposeView composeView = findViewById(R.id.compose_view);
+        composeView.setVisibility(View.VISIBLE);
+        ModuleListCompose.showModuleList(composeView, moduleViewModel, composeList);
+    }
+
+    /**
+     * Checks which list was selected in the menu
+     *
+     * @return true if the Compose list is used
+     */
+    private boolean isComposeListSelected() {
+        return getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE).getBoolean(KEY_COMPOSE_LIST, false);
+    }
+
+    /**
+     * Opens the edit screen for a clicked module
+     */
+    private final ModuleAdapter.OnItemClickListener itemClickListener = new ModuleAdapter.OnItemClickListener() {
+        @Override
+        public void onItemClick(Module module) {
+            // Only the number is passed, the edit screen reads the module from the cache
+            Intent intent = new Intent(MainActivity.this, ModuleEditActivity.class);
+            intent.putExtra(ModuleEditActivity.EXTRA_MODULE_NUMBER, module.getModuleNumber());
+            startActivity(intent);
+        }
+    };
+
+    /**
+     * Follows the multi-select mode, started by a long click on a module
+     */
+    private final ModuleAdapter.OnSelectionChangedListener selectionChangedListener =
+            new ModuleAdapter.OnSelectionChangedListener() {
+                @Override
+                public void onSelectionChanged(int selectedCount) {
+                    if (selectedCount == 0) {
+                        if (selectionActionMode != null) {
+                            selectionActionMode.finish();
+                        }
+                        return;
+                    }
+
+                    if (selectionActionMode == null) {
+                        selectionActionMode = startSupportActionMode(selectionCallback);
+                    }
+                    selectionActionMode.setTitle(getResources().getQuantityString(
+                            R.plurals.selection_title, selectedCount, selectedCount));
                 }
+            };
+
+    /**
+     * Starts the search for the text typed last
+     */
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            moduleViewModel.setSearchText(pendingSearchText);
+        }
+    };
+
+    /**
+     * Removes a pending search when the activity is destroyed
+     */
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        super.onDestroy();
+    }
 
-                startActivityForResult(intent, EDIT_MODULE_REQUEST);
+    /**
+     * Action mode shown while modules are selected, sends its actions as one batch
+     */
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_module_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == R.id.action_delete_selected) {
+                // One batch, so the list refreshes once and not once per module
+                moduleViewModel.deleteByNumbers(getSelectedModuleNumbers());
+                mode.finish();
+                return true;
+            } else if (item.getItemId() == R.id.action_regrade_selected) {
+                showRegradeDialog(getSelectedModuleNumbers(), mode);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionActionMode = null;
+            if (adapter != null) {
+                adapter.clearSelection();
+            } else {
+                composeList.clearSelection();
+            }
+        }
+    };
+
+    /**
+     * Asks for the grades to set on the selected modules and writes them as one batch.
+     * The dialog stays open while an entered grade is invalid.
+     *
+     * @param moduleNumbers The numbers of the selected modules
+     * @param mode The selection mode, finished once the grades are set
+     */
+    private void showRegradeDialog(final List<String> moduleNumbers, final ActionMode mode) {
+        View view = getLayoutInflater().inflate(R.layout.dialog_regrade, null);
+        final TextInputLayout layoutZp = view.findViewById(R.id.text_input_layout_regrade_zp_note);
+        final TextInputLayout layoutLb = view.findViewById(R.id.text_input_layout_regrade_lb_note);
+        final EditText editTextZp = view.findViewById(R.id.edit_text_regrade_zp_note);
+        final EditText editTextLb = view.findViewById(R.id.edit_text_regrade_lb_note);
+
+        final AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(getResources().getQuantityString(
+                        R.plurals.regrade_title, moduleNumbers.size(), moduleNumbers.size()))
+                .setMessage(R.string.regrade_hint)
+                .setView(view)
+                .setPositiveButton(R.string.regrade_apply, null)
+                .setNegativeButton(R.string.regrade_cancel, null)
+                .create();
+        dialog.setOnShowListener(new DialogInterface.OnShowListener() {
+            @Override
+            public void onShow(DialogInterface dialogInterface) {
+                dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        boolean zpValid = showGradeError(layoutZp, ModuleValidator.Field.ZP_NOTE,
+                                editTextZp.getText());
+                        boolean lbValid = showGradeError(layoutLb, ModuleValidator.Field.LB_NOTE,
+                                editTextLb.getText());
+                        if (!zpValid || !lbValid) {
+                            return;
+                        }
+                        moduleViewModel.regradeByNumbers(moduleNumbers,
+                                moduleViewModel.parseGrade(editTextZp.getText()),
+                                moduleViewModel.parseGrade(editTextLb.getText()));
+                        dialog.dismiss();
+                        mode.finish();
+                    }
+                });
             }
         });
+        dialog.show();
+    }
+
+    /**
+     * Validates a grade of the regrade dialog and shows its error
+     *
+     * @param layout The input layout of the grade
+     * @param field The validated field
+     * @param grade The entered grade
+     * @return true if the grade is valid or empty
+     */
+    private boolean showGradeError(TextInputLayout layout, ModuleValidator.Field field, CharSequence grade) {
+        ModuleValidator.Code code = moduleViewModel.validateGrade(grade);
+        boolean valid = code == ModuleValidator.Code.VALID;
+        layout.setError(valid ? null : moduleViewModel.getValidationMessage(field, code));
+        return valid;
     }
 
     /**
-     * Handles the result from the ModuleEditActivity
+     * Gets the numbers of the modules selected in the shown list
+     *
+     * @return The selected module numbers
+     */
+    private List<String> getSelectedModuleNumbers() {
+        return adapter != null ? adapter.getSelectedModuleNumbers() : composeList.getSelectedModuleNumbers();
+    }
+
+    /**
+     * Creates the options menu with import, export, the sort order and the choice of the list
+     *
+     * @param menu The options menu
+     * @return true to show the menu
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(getSortMenuItemId(moduleViewModel.getSortOrder())).setChecked(true);
+        menu.findItem(R.id.action_compose_list).setChecked(isComposeListSelected());
+        return true;
+    }
+
+    /**
+     * Gets the menu item of a sort order
+     *
+     * @param order The sort order
+     * @return The ID of its menu item
+     */
+    private static int getSortMenuItemId(ModuleSortOrder order) {
+        switch (order) {
+            case BEST_FIRST:
+                return R.id.action_sort_best;
+            case WORST_FIRST:
+                return R.id.action_sort_worst;
+            default:
+                return R.id.action_sort_number;
+        }
+    }
+
+    /**
+     * Opens the document picker for an import or export, changes the order or switches the list
+     *
+     * @param item The selected menu item
+     * @return true if the item was handled
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_import) {
+            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("*/*");
+            intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{
+                    ModuleFileFormat.CSV.getMimeType(), "text/comma-separated-values",
+                    ModuleFileFormat.JSON.getMimeType()});
+            startActivityForResult(intent, IMPORT_REQUEST);
+            return true;
+        } else if (id == R.id.action_export_csv) {
+            startActivityForResult(createExportIntent(ModuleFileFormat.CSV, "module.csv"),
+                    EXPORT_CSV_REQUEST);
+            return true;
+        } else if (id == R.id.action_export_json) {
+            startActivityForResult(createExportIntent(ModuleFileFormat.JSON, "module.json"),
+                    EXPORT_JSON_REQUEST);
+            return true;
+        } else if (id == R.id.action_sort_number || id == R.id.action_sort_best
+                || id == R.id.action_sort_worst) {
+            // Sorted by average in SQL, along the index of the stored grade sum
+            moduleViewModel.setSortOrder(id == R.id.action_sort_best ? ModuleSortOrder.BEST_FIRST
+                    : id == R.id.action_sort_worst ? ModuleSortOrder.WORST_FIRST : ModuleSortOrder.NUMBER);
+            item.setChecked(true);
+            return true;
+        } else if (id == R.id.action_compose_list) {
+            // The other list is set up by a new activity, the ViewModel keeps the loaded data
+            getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE).edit()
+                    .putBoolean(KEY_COMPOSE_LIST, !item.isChecked())
+                    .apply();
+            recreate();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Creates the intent asking the user where to save an export
+     *
+     * @param format The file format
+     * @param fileName The suggested file name
+     * @return The intent for the document picker
+     */
+    private Intent createExportIntent(ModuleFileFormat format, String fileName) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(format.getMimeType());
+        intent.putExtra(Intent.EXTRA_TITLE, fileName);
+        return intent;
+    }
+
+    /**
+     * Handles the result from the document picker
      *
      * @param requestCode The request code
      * @param resultCode The result code
@@ -96,28 +500,14 @@ public class MainActivity extends AppCompatActivity {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
-        if (resultCode == RESULT_OK && data != null) {
-            String moduleNumber = data.getStringExtra(ModuleEditActivity.EXTRA_MODULE_NUMBER);
-            String moduleTitle = data.getStringExtra(ModuleEditActivity.EXTRA_MODULE_TITLE);
-            String zpNoteStr = data.getStringExtra(ModuleEditActivity.EXTRA_ZP_NOTE);
-            String lbNoteStr = data.getStringExtra(ModuleEditActivity.EXTRA_LB_NOTE);
-
-            // Create module object
-            Module module = new Module(moduleNumber, moduleTitle);
-
-            // Set optional grades if provided
-            if (zpNoteStr != null && !zpNoteStr.isEmpty()) {
-                module.setZpNote(Float.parseFloat(zpNoteStr));
-            }
-
-            if (lbNoteStr != null && !lbNoteStr.isEmpty()) {
-                module.setLbNote(Float.parseFloat(lbNoteStr));
-            }
-
-            if (requestCode == ADD_MODULE_REQUEST) {
-                moduleViewModel.insert(module);
-            } else if (requestCode == EDIT_MODULE_REQUEST) {
-                moduleViewModel.update(module);
+        // Files for import and export, streamed on a background thread
+        if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+            if (requestCode == IMPORT_REQUEST) {
+                moduleViewModel.importModules(data.getData());
+            } else if (requestCode == EXPORT_CSV_REQUEST) {
+                moduleViewModel.exportModules(data.getData(), ModuleFileFormat.CSV);
+            } else if (requestCode == EXPORT_JSON_REQUEST) {
+                moduleViewModel.exportModules(data.getData(), ModuleFileFormat.JSON);
             }
         }
     }
@@ -8,21 +8,23 @@ import android.widget.Button;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleValidator;
 import com.example.m335.viewmodel.ModuleViewModel;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
+import java.util.function.Consumer;
+
 /**
  * Activity for adding or editing a module.
  * Handles user input validation and saving to the database.
  */
 public class ModuleEditActivity extends AppCompatActivity {
     public static final String EXTRA_MODULE_NUMBER = "com.example.m335.EXTRA_MODULE_NUMBER";
-    public static final String EXTRA_MODULE_TITLE = "com.example.m335.EXTRA_MODULE_TITLE";
-    public static final String EXTRA_ZP_NOTE = "com.example.m335.EXTRA_ZP_NOTE";
-    public static final String EXTRA_LB_NOTE = "com.example.m335.EXTRA_LB_NOTE";
 
     private TextInputLayout textInputLayoutModuleNumber;
     private TextInputLayout textInputLayoutModuleTitle;
@@ -36,6 +38,8 @@ public class ModuleEditActivity extends AppCompatActivity {
 
     private ModuleViewModel moduleViewModel;
     private boolean editMode = false;
+    // The module as it was loaded, the base for merging concurrent changes
+    private Module loadedModule;
 
     /**
      * Initializes the activity, sets up the form fields and handles editing mode
@@ -60,7 +64,7 @@ public class ModuleEditActivity extends AppCompatActivity {
         editTextZpNote = findViewById(R.id.edit_text_zp_note);
         editTextLbNote = findViewById(R.id.edit_text_lb_note);
 
-        Button buttonSave = findViewById(R.id.button_save);
+        final Button buttonSave = findViewById(R.id.button_save);
 
         // Set up action bar
         getSupportActionBar().setHomeAsUpIndicator(android.R.drawable.ic_menu_close_clear_cancel);
@@ -71,17 +75,23 @@ public class ModuleEditActivity extends AppCompatActivity {
             setTitle("Modul bearbeiten");
             editMode = true;
 
-            // Fill form with existing module data
-            editTextModuleNumber.setText(intent.getStringExtra(EXTRA_MODULE_NUMBER));
-            editTextModuleTitle.setText(intent.getStringExtra(EXTRA_MODULE_TITLE));
-
-            if (intent.hasExtra(EXTRA_ZP_NOTE)) {
-                editTextZpNote.setText(intent.getStringExtra(EXTRA_ZP_NOTE));
-            }
-
-            if (intent.hasExtra(EXTRA_LB_NOTE)) {
-                editTextLbNote.setText(intent.getStringExtra(EXTRA_LB_NOTE));
-            }
+            // Fill form with the stored module, usually answered from the cache without a query.
+            // After a recreation the fields keep what the user typed
+            String moduleNumber = intent.getStringExtra(EXTRA_MODULE_NUMBER);
+            editTextModuleNumber.setText(moduleNumber);
+            // Saving needs the loaded version as base of the conditional write
+            final boolean restored = savedInstanceState != null;
+            buttonSave.setEnabled(false);
+            moduleViewModel.findModule(moduleNumber).thenAcceptAsync(new Consumer<Module>() {
+                @Override
+                public void accept(Module module) {
+                    loadedModule = module;
+                    if (module == null || !restored) {
+                        showModule(module);
+                    }
+                    buttonSave.setEnabled(module != null);
+                }
+            }, ContextCompat.getMainExecutor(this));
 
             // In edit mode, module number shouldn't be changed
             editTextModuleNumber.setEnabled(false);
@@ -99,59 +109,87 @@ public class ModuleEditActivity extends AppCompatActivity {
     }
 
     /**
-     * Saves the module after validating input
+     * Fills the form with a loaded module
+     *
+     * @param module The module, or null if it was deleted in the meantime
      */
-    private void saveModule() {
-        // Get input values
-        String moduleNumber = editTextModuleNumber.getText().toString().trim();
-        String moduleTitle = editTextModuleTitle.getText().toString().trim();
-        String zpNoteStr = editTextZpNote.getText().toString().trim();
-        String lbNoteStr = editTextLbNote.getText().toString().trim();
-
-        // Validate input
-        String validationError = moduleViewModel.validateModule(
-                moduleNumber, moduleTitle, zpNoteStr, lbNoteStr);
-
-        if (validationError != null) {
-            Toast.makeText(this, validationError, Toast.LENGTH_SHORT).show();
-
-            // Set error on appropriate field
-            if (validationError.contains("Modulnummer")) {
-                textInputLayoutModuleNumber.setError(validationError);
-            } else if (validationError.contains("Modultitel")) {
-                textInputLayoutModuleTitle.setError(validationError);
-            } else if (validationError.contains("ZP-Note")) {
-                textInputLayoutZpNote.setError(validationError);
-            } else if (validationError.contains("LB-Note")) {
-                textInputLayoutLbNote.setError(validationError);
-            }
-
+    private void showModule(Module module) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        if (module == null) {
+            Toast.makeText(this, "Modul wurde gelöscht", Toast.LENGTH_SHORT).show();
+            finish();
             return;
         }
 
+        editTextModuleTitle.setText(module.getModuleTitle());
+        if (module.getZpNote() != null) {
+            editTextZpNote.setText(String.valueOf(module.getZpNote()));
+        }
+        if (module.getLbNote() != null) {
+            editTextLbNote.setText(String.valueOf(module.getLbNote()));
+        }
+    }
+
+    /**
+     * Saves the module after validating input.
+     * Edits are shown in the list at once and written in the background.
+     * If someone else changed the module since it was loaded, only the fields edited here
+     * overwrite their changes.
+     */
+    private void saveModule() {
+        // Validate the input in place, the texts are only copied once they are valid
+        ModuleValidator.Result validation = moduleViewModel.validateModule(
+                editTextModuleNumber.getText(), editTextModuleTitle.getText(),
+                editTextZpNote.getText(), editTextLbNote.getText());
+
         // Clear any previous errors
         textInputLayoutModuleNumber.setError(null);
         textInputLayoutModuleTitle.setError(null);
         textInputLayoutZpNote.setError(null);
         textInputLayoutLbNote.setError(null);
 
-        // Set result
-        Intent data = new Intent();
-        data.putExtra(EXTRA_MODULE_NUMBER, moduleNumber);
-        data.putExtra(EXTRA_MODULE_TITLE, moduleTitle);
-
-        if (!zpNoteStr.isEmpty()) {
-            data.putExtra(EXTRA_ZP_NOTE, zpNoteStr);
+        ModuleValidator.Field field = validation.getFirstError();
+        if (field != null) {
+            String message = moduleViewModel.getValidationMessage(field, validation.getCode(field));
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+            layoutOf(field).setError(message);
+            return;
         }
 
-        if (!lbNoteStr.isEmpty()) {
-            data.putExtra(EXTRA_LB_NOTE, lbNoteStr);
-        }
+        Module module = new Module(editTextModuleNumber.getText().toString().trim(),
+                editTextModuleTitle.getText().toString().trim());
+        module.setZpHundredths(validation.getZpHundredths());
+        module.setLbHundredths(validation.getLbHundredths());
 
-        setResult(RESULT_OK, data);
+        if (editMode) {
+            moduleViewModel.updateOptimistic(loadedModule, module);
+        } else {
+            moduleViewModel.insert(module);
+        }
         finish();
     }
 
+    /**
+     * Gets the input layout showing the errors of a field
+     *
+     * @param field The validated field
+     * @return The input layout of the field
+     */
+    private TextInputLayout layoutOf(ModuleValidator.Field field) {
+        switch (field) {
+            case MODULE_NUMBER:
+                return textInputLayoutModuleNumber;
+            case MODULE_TITLE:
+                return textInputLayoutModuleTitle;
+            case ZP_NOTE:
+                return textInputLayoutZpNote;
+            default:
+                return textInputLayoutLbNote;
+        }
+    }
+
     /**
      * Handles action bar item clicks (back button)
      *
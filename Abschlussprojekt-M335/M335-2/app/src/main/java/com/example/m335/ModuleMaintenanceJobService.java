@@ -0,0 +1,86 @@
+package com.example.m335;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import com.example.m335.data.ModuleDatabase;
+import com.example.m335.data.ModuleMaintenance;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the database maintenance once a day while the device is idle and charging.
+ * The pass runs on its own thread and is stopped between two steps when the system
+ * ends the job, e.g. because the device is used again.
+ */
+public class ModuleMaintenanceJobService extends JobService {
+    private static final String TAG = "M335Maintenance";
+    private static final int JOB_ID = 335;
+    private static final long INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private volatile ModuleMaintenance maintenance;
+
+    /**
+     * Schedules the daily maintenance, a job that is already scheduled is kept
+     *
+     * @param context The application context
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) {
+            return;
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, ModuleMaintenanceJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(INTERVAL_MILLIS)
+                .build());
+    }
+
+    /**
+     * Starts the maintenance pass on its own thread
+     *
+     * @param params The parameters of the job
+     * @return true, the job finishes on the maintenance thread
+     */
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final ModuleMaintenance pass = new ModuleMaintenance(ModuleDatabase.getDatabase(this));
+        maintenance = pass;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ModuleMaintenance.Report report = pass.run();
+                    Log.i(TAG, "Maintenance " + report);
+                    jobFinished(params, false);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Maintenance failed", e);
+                    jobFinished(params, true);
+                }
+            }
+        }, "module-maintenance").start();
+        return true;
+    }
+
+    /**
+     * Stops the running pass after its current step
+     *
+     * @param params The parameters of the job
+     * @return true, so that the stopped pass is retried
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        ModuleMaintenance pass = maintenance;
+        if (pass != null) {
+            pass.stop();
+        }
+        return true;
+    }
+}
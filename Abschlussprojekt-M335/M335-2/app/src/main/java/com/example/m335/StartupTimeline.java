@@ -0,0 +1,137 @@
+package com.example.m335;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how long the phases of a cold start take, measured from Application.onCreate.
+ * Every phase is recorded once, the first mark wins; marking is cheap enough for bind paths.
+ */
+public final class StartupTimeline {
+
+    /**
+     * Startup phases, in the order they are expected
+     */
+    public enum Phase {
+        DATABASE_OPEN,
+        FIRST_DATA,
+        FIRST_BIND
+    }
+
+    /**
+     * Receives every recorded phase, called on the thread that marked it
+     */
+    public interface Listener {
+        /**
+         * Called once per phase
+         *
+         * @param phase The reached phase
+         * @param millis Time since the start of the timeline in milliseconds
+         */
+        void onPhase(Phase phase, long millis);
+    }
+
+    private static final StartupTimeline INSTANCE = new StartupTimeline();
+    private static final Phase[] PHASES = Phase.values();
+    private static final long UNMARKED = -1;
+
+    private final AtomicLongArray markNanos = new AtomicLongArray(PHASES.length);
+    private volatile long startNanos;
+    private volatile Listener listener;
+
+    /**
+     * Constructor creates a timeline starting now
+     */
+    public StartupTimeline() {
+        start();
+    }
+
+    /**
+     * Gets the timeline of the app process
+     *
+     * @return The StartupTimeline instance
+     */
+    public static StartupTimeline getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the listener informed about every recorded phase
+     *
+     * @param listener The listener or null to remove it
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the timeline again, dropping all recorded phases
+     */
+    public void start() {
+        for (int i = 0; i < PHASES.length; i++) {
+            markNanos.set(i, UNMARKED);
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a phase unless it was recorded before
+     *
+     * @param phase The reached phase
+     */
+    public void mark(Phase phase) {
+        int index = phase.ordinal();
+        if (markNanos.get(index) != UNMARKED) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        if (markNanos.compareAndSet(index, UNMARKED, nanos)) {
+            Listener current = listener;
+            if (current != null) {
+                current.onPhase(phase, nanos / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * Checks if a phase was recorded
+     *
+     * @param phase The phase
+     * @return true if the phase was reached
+     */
+    public boolean isMarked(Phase phase) {
+        return markNanos.get(phase.ordinal()) != UNMARKED;
+    }
+
+    /**
+     * Gets the time from the start of the timeline to a phase
+     *
+     * @param phase The phase
+     * @return The time in milliseconds, -1 if the phase was not reached
+     */
+    public long getMillis(Phase phase) {
+        long nanos = markNanos.get(phase.ordinal());
+        return nanos == UNMARKED ? UNMARKED : nanos / 1_000_000;
+    }
+
+    /**
+     * Formats all phases in one line for the log
+     *
+     * @return The recorded phases, e.g. "DATABASE_OPEN 120 ms, FIRST_DATA 180 ms, FIRST_BIND -"
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Phase phase : PHASES) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(phase).append(' ');
+            if (isMarked(phase)) {
+                text.append(getMillis(phase)).append(" ms");
+            } else {
+                text.append('-');
+            }
+        }
+        return text.toString();
+    }
+}
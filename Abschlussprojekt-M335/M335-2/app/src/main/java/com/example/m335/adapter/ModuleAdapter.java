@@ -6,20 +6,98 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
+import androidx.paging.PagedList;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.m335.R;
+import com.example.m335.StartupTimeline;
 import com.example.m335.model.Module;
+import com.example.m335.model.ModuleRow;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
- * Adapter for the RecyclerView to display modules
+ * Adapter for the RecyclerView to display the paged module list.
+ * The list holds precomputed rows, binding a row only assigns its fields.
+ * Rows that are not loaded yet are shown as empty placeholders; rows are matched by
+ * module number through DiffUtil, not by stable IDs, which placeholders cannot have.
+ * New lists are diffed on a background thread; a change of the grades only
+ * rebinds the grade view of the row.
+ * Pending edits are shown in place of the loaded rows until the list contains them.
  */
-public class ModuleAdapter extends RecyclerView.Adapter<ModuleAdapter.ModuleViewHolder> {
-    private List<Module> modules = new ArrayList<>();
+public class ModuleAdapter extends PagedListAdapter<ModuleRow, ModuleAdapter.ModuleViewHolder> {
     private OnItemClickListener listener;
+    private OnSelectionChangedListener selectionListener;
+
+    // Module numbers of the selected rows, kept by number so that list updates don't shift them
+    private final Set<String> selectedModuleNumbers = new LinkedHashSet<>();
+    private boolean selectionMode = false;
+
+    // Edited modules by number, shown before the paged list is reloaded
+    private Map<String, Module> pendingEdits = Collections.emptyMap();
+    private Map<String, ModuleRow> pendingRows = Collections.emptyMap();
+
+    /**
+     * Change payload for a row whose grades changed but number and title did not
+     */
+    static final Object PAYLOAD_GRADE = new Object();
+
+    /**
+     * Compares rows by module number and content, used for diffing new pages.
+     * Rows of unchanged modules are reused by the mapper and match by identity.
+     */
+    static final DiffUtil.ItemCallback<ModuleRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<ModuleRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ModuleRow oldItem, @NonNull ModuleRow newItem) {
+            return oldItem.getModuleNumber().equals(newItem.getModuleNumber());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ModuleRow oldItem, @NonNull ModuleRow newItem) {
+            return oldItem == newItem
+                    || (oldItem.getModuleTitle().equals(newItem.getModuleTitle())
+                    && !oldItem.gradesDiffer(newItem));
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull ModuleRow oldItem, @NonNull ModuleRow newItem) {
+            if (oldItem.getModuleTitle().equals(newItem.getModuleTitle())) {
+                return PAYLOAD_GRADE;
+            }
+            return null;
+        }
+    };
+
+    /**
+     * Constructor sets up the diffing of new pages on the default background executor
+     */
+    public ModuleAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    /**
+     * Constructor with an explicit executor for diffing new lists
+     *
+     * @param diffExecutor The background executor for list diffing
+     */
+    ModuleAdapter(Executor diffExecutor) {
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                .setBackgroundThreadExecutor(diffExecutor)
+                .build());
+    }
 
     /**
      * ViewHolder class for module items
@@ -45,9 +123,37 @@ public class ModuleAdapter extends RecyclerView.Adapter<ModuleAdapter.ModuleView
                 @Override
                 public void onClick(View v) {
                     int position = getAdapterPosition();
-                    if (listener != null && position != RecyclerView.NO_POSITION) {
-                        listener.onItemClick(modules.get(position));
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
+
+                    ModuleRow row = getDisplayedItem(position);
+                    if (row == null) {
+                        // Placeholder, the row is not loaded yet
+                        return;
+                    }
+
+                    if (selectionMode) {
+                        toggleSelection(position, row);
+                    } else if (listener != null) {
+                        listener.onItemClick(row.getModule());
+                    }
+                }
+            });
+
+            // Long click starts the multi-select mode
+            itemView.setOnLongClickListener(new View.OnLongClickListener() {
+                @Override
+                public boolean onLongClick(View v) {
+                    int position = getAdapterPosition();
+                    ModuleRow row = position != RecyclerView.NO_POSITION ? getDisplayedItem(position) : null;
+                    if (row == null) {
+                        return false;
                     }
+
+                    selectionMode = true;
+                    toggleSelection(position, row);
+                    return true;
                 }
             });
         }
@@ -76,13 +182,104 @@ public class ModuleAdapter extends RecyclerView.Adapter<ModuleAdapter.ModuleView
      */
     @Override
     public void onBindViewHolder(@NonNull ModuleViewHolder holder, int position) {
-        Module currentModule = modules.get(position);
-        holder.textViewModuleNumber.setText(currentModule.getModuleNumber());
-        holder.textViewModuleTitle.setText(currentModule.getModuleTitle());
+        ModuleRow currentRow = getDisplayedItem(position);
+        if (currentRow == null) {
+            bindPlaceholder(holder);
+            return;
+        }
+        StartupTimeline.getInstance().mark(StartupTimeline.Phase.FIRST_BIND);
+
+        holder.textViewModuleNumber.setText(currentRow.getModuleNumber());
+        holder.textViewModuleTitle.setText(currentRow.getModuleTitle());
+        bindGrade(holder, currentRow);
+        bindSelection(holder, selectedModuleNumbers.contains(currentRow.getModuleNumber()));
+    }
+
+    /**
+     * Binds only the grade view if the update carries a grade payload
+     *
+     * @param holder The ViewHolder to bind data to
+     * @param position The position in the dataset
+     * @param payloads The change payloads of the update
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ModuleViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        ModuleRow currentRow = getDisplayedItem(position);
+        if (currentRow == null || payloads.isEmpty() || !onlyGradePayloads(payloads)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        bindGrade(holder, currentRow);
+    }
 
-        Float average = currentModule.getAverageGrade();
-        if (average != null) {
-            holder.textViewAverageGrade.setText(String.format("%.1f", average));
+    /**
+     * Gets the row shown at a position, a pending edit wins over the loaded row
+     *
+     * @param position The position in the dataset
+     * @return The row or null for a placeholder
+     */
+    ModuleRow getDisplayedItem(int position) {
+        ModuleRow row = getItem(position);
+        if (row == null) {
+            return null;
+        }
+        ModuleRow edited = pendingRows.get(row.getModuleNumber());
+        return edited != null ? edited : row;
+    }
+
+    /**
+     * Shows new pending edits and rebinds the loaded rows whose edit changed.
+     * Only the rows of changed edits are built here; there are a few edits at a time.
+     *
+     * @param edits The pending edits by module number
+     */
+    public void setPendingEdits(Map<String, Module> edits) {
+        Map<String, Module> previous = pendingEdits;
+        Map<String, ModuleRow> previousRows = pendingRows;
+        Map<String, ModuleRow> rows = new HashMap<>(edits.size() * 4 / 3 + 1);
+
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Module> entry : edits.entrySet()) {
+            if (previous.get(entry.getKey()) != entry.getValue()) {
+                changed.add(entry.getKey());
+                rows.put(entry.getKey(), new ModuleRow(entry.getValue()));
+            } else {
+                rows.put(entry.getKey(), previousRows.get(entry.getKey()));
+            }
+        }
+        pendingEdits = edits;
+        pendingRows = rows;
+        for (String moduleNumber : previous.keySet()) {
+            if (!edits.containsKey(moduleNumber)) {
+                changed.add(moduleNumber);
+            }
+        }
+
+        // Only loaded rows can be on screen, placeholders have nothing to replace
+        PagedList<ModuleRow> loadedRows = getCurrentList();
+        if (changed.isEmpty() || loadedRows == null) {
+            return;
+        }
+        int end = loadedRows.getPositionOffset() + loadedRows.getLoadedCount();
+        for (int position = loadedRows.getPositionOffset(); position < end; position++) {
+            ModuleRow row = loadedRows.get(position);
+            if (row != null && changed.contains(row.getModuleNumber())) {
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    /**
+     * Binds the average grade of a row
+     *
+     * @param holder The ViewHolder to bind data to
+     * @param row The row to show
+     */
+    private void bindGrade(ModuleViewHolder holder, ModuleRow row) {
+        if (row.isGradeVisible()) {
+            holder.textViewAverageGrade.setText(row.getGradeText());
             holder.textViewAverageGrade.setVisibility(View.VISIBLE);
         } else {
             holder.textViewAverageGrade.setVisibility(View.GONE);
@@ -90,23 +287,80 @@ public class ModuleAdapter extends RecyclerView.Adapter<ModuleAdapter.ModuleView
     }
 
     /**
-     * Gets the number of items in the adapter
+     * Checks whether all payloads of an update are grade payloads
      *
-     * @return The number of items
+     * @param payloads The change payloads
+     * @return true if only the grade changed
      */
-    @Override
-    public int getItemCount() {
-        return modules.size();
+    private static boolean onlyGradePayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_GRADE) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Updates the adapter data
+     * Clears a row whose module is not loaded yet
      *
-     * @param modules The new list of modules
+     * @param holder The ViewHolder to clear
      */
-    public void setModules(List<Module> modules) {
-        this.modules = modules;
-        notifyDataSetChanged();
+    private void bindPlaceholder(ModuleViewHolder holder) {
+        holder.textViewModuleNumber.setText(null);
+        holder.textViewModuleTitle.setText(null);
+        holder.textViewAverageGrade.setVisibility(View.GONE);
+        bindSelection(holder, false);
+    }
+
+    /**
+     * Highlights a row if it is selected
+     *
+     * @param holder The ViewHolder to highlight
+     * @param selected Whether the row is selected
+     */
+    private void bindSelection(ModuleViewHolder holder, boolean selected) {
+        holder.itemView.setActivated(selected);
+        ((CardView) holder.itemView).setCardBackgroundColor(ContextCompat.getColor(
+                holder.itemView.getContext(), selected ? R.color.module_selected : R.color.white));
+    }
+
+    /**
+     * Selects or deselects the module at the given position
+     *
+     * @param position The position in the dataset
+     * @param row The row at that position
+     */
+    private void toggleSelection(int position, ModuleRow row) {
+        String moduleNumber = row.getModuleNumber();
+        if (!selectedModuleNumbers.remove(moduleNumber)) {
+            selectedModuleNumbers.add(moduleNumber);
+        }
+        notifyItemChanged(position);
+
+        if (selectionListener != null) {
+            selectionListener.onSelectionChanged(selectedModuleNumbers.size());
+        }
+    }
+
+    /**
+     * Gets the numbers of all selected modules
+     *
+     * @return A copy of the selected module numbers
+     */
+    public List<String> getSelectedModuleNumbers() {
+        return new ArrayList<>(selectedModuleNumbers);
+    }
+
+    /**
+     * Leaves the multi-select mode and clears the selection
+     */
+    public void clearSelection() {
+        selectionMode = false;
+        if (!selectedModuleNumbers.isEmpty()) {
+            selectedModuleNumbers.clear();
+            notifyItemRangeChanged(0, getItemCount());
+        }
     }
 
     /**
@@ -116,6 +370,13 @@ public class ModuleAdapter extends RecyclerView.Adapter<ModuleAdapter.ModuleView
         void onItemClick(Module module);
     }
 
+    /**
+     * Interface for following the multi-select mode
+     */
+    public interface OnSelectionChangedListener {
+        void onSelectionChanged(int selectedCount);
+    }
+
     /**
      * Sets the item click listener
      *
@@ -124,4 +385,13 @@ public class ModuleAdapter extends RecyclerView.Adapter<ModuleAdapter.ModuleView
     public void setOnItemClickListener(OnItemClickListener listener) {
         this.listener = listener;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the selection listener
+     *
+     * @param selectionListener The listener to set
+     */
+    public void setOnSelectionChangedListener(OnSelectionChangedListener selectionListener) {
+        this.selectionListener = selectionListener;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.m335.data;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
+
+import com.example.m335.model.Assessment;
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleWithAssessments;
+import com.example.m335.model.WeightedAverage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Access Object for the Assessment entity and modules loaded with their assessments.
+ * Modules with assessments are loaded with a fixed number of queries, never one per module.
+ */
+@Dao
+public interface AssessmentDao {
+
+    /**
+     * Grades and weights of ZP, LB and all assessments as one row per grade.
+     * ZP and LB count with {@link Assessment#STANDARD_WEIGHT}.
+     */
+    String WEIGHTED_GRADES = "SELECT moduleNumber, zpHundredths AS grade, "
+            + Assessment.STANDARD_WEIGHT + " AS weight FROM modules "
+            + "UNION ALL SELECT moduleNumber, lbHundredths, " + Assessment.STANDARD_WEIGHT + " FROM modules "
+            + "UNION ALL SELECT moduleNumber, gradeHundredths, weight FROM assessments";
+
+    /**
+     * Weighted average in hundredths per module, NO_GRADE if any grade is missing.
+     * The sums are exact integers, only the final division is rounded.
+     */
+    String WEIGHTED_AVERAGE_SELECT = "SELECT moduleNumber, CASE WHEN MIN(grade) = " + Module.NO_GRADE
+            + " THEN " + Module.NO_GRADE
+            + " ELSE CAST(ROUND(SUM(weight * grade) * 1.0 / SUM(weight)) AS INTEGER) END "
+            + "AS averageHundredths FROM (" + WEIGHTED_GRADES + ")";
+
+    /**
+     * Inserts an assessment, the module must exist
+     *
+     * @param assessment The assessment to insert
+     * @return The ID of the new assessment
+     */
+    @Insert
+    long insert(Assessment assessment);
+
+    /**
+     * Inserts several assessments in one transaction
+     *
+     * @param assessments The assessments to insert
+     * @return The IDs of the new assessments
+     */
+    @Insert
+    List<Long> insertAll(List<Assessment> assessments);
+
+    /**
+     * Updates an assessment
+     *
+     * @param assessment The assessment to update
+     */
+    @Update
+    void update(Assessment assessment);
+
+    /**
+     * Deletes an assessment
+     *
+     * @param assessment The assessment to delete
+     */
+    @Delete
+    void delete(Assessment assessment);
+
+    /**
+     * Gets the assessments of one module
+     *
+     * @param moduleNumber The module number
+     * @return The assessments in insertion order
+     */
+    @Query("SELECT * FROM assessments WHERE moduleNumber = :moduleNumber ORDER BY id ASC")
+    List<Assessment> getAssessments(String moduleNumber);
+
+    /**
+     * Gets the assessments of all modules, grouped by module number
+     *
+     * @return All assessments ordered by module number and insertion order
+     */
+    @Query("SELECT * FROM assessments ORDER BY moduleNumber ASC, id ASC")
+    List<Assessment> getAllAssessments();
+
+    /**
+     * Gets one module with its assessments
+     *
+     * @param moduleNumber The module number
+     * @return The module with its assessments, or null if it doesn't exist
+     */
+    @Transaction
+    @Query("SELECT * FROM modules WHERE moduleNumber = :moduleNumber")
+    ModuleWithAssessments getModuleWithAssessments(String moduleNumber);
+
+    /**
+     * Gets the first modules in natural order with their assessments.
+     * Room loads the assessments of all modules with one IN query per 999 modules.
+     *
+     * @param limit The maximum number of modules
+     * @return The modules with their assessments
+     */
+    @Transaction
+    @Query("SELECT * FROM modules ORDER BY sortKey ASC, moduleNumber ASC LIMIT :limit")
+    List<ModuleWithAssessments> getFirstModulesWithAssessments(int limit);
+
+    /**
+     * Gets all modules in natural order, for joining them with their assessments
+     *
+     * @return All modules
+     */
+    @Query("SELECT * FROM modules ORDER BY sortKey ASC, moduleNumber ASC")
+    List<Module> getAllModulesOrdered();
+
+    /**
+     * Gets all modules with their assessments in exactly two queries, however many modules
+     * there are. Both tables are read once and joined by module number in memory.
+     *
+     * @return The modules with their assessments in natural order
+     */
+    @Transaction
+    default List<ModuleWithAssessments> getAllModulesWithAssessments() {
+        List<Module> modules = getAllModulesOrdered();
+        Map<String, List<Assessment>> assessmentsByModule = new HashMap<>();
+        for (Assessment assessment : getAllAssessments()) {
+            List<Assessment> assessments = assessmentsByModule.get(assessment.getModuleNumber());
+            if (assessments == null) {
+                assessments = new ArrayList<>();
+                assessmentsByModule.put(assessment.getModuleNumber(), assessments);
+            }
+            assessments.add(assessment);
+        }
+
+        List<ModuleWithAssessments> result = new ArrayList<>(modules.size());
+        for (Module module : modules) {
+            ModuleWithAssessments entry = new ModuleWithAssessments();
+            entry.setModule(module);
+            List<Assessment> assessments = assessmentsByModule.get(module.getModuleNumber());
+            entry.setAssessments(assessments != null ? assessments : Collections.<Assessment>emptyList());
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the weighted average of every module, computed in SQL
+     *
+     * @return One weighted average per module
+     */
+    @Query(WEIGHTED_AVERAGE_SELECT + " GROUP BY moduleNumber")
+    List<WeightedAverage> getWeightedAverages();
+
+    /**
+     * Gets the weighted average of one module, computed in SQL
+     *
+     * @param moduleNumber The module number
+     * @return The weighted average, or null if the module doesn't exist
+     */
+    @Query(WEIGHTED_AVERAGE_SELECT + " WHERE moduleNumber = :moduleNumber GROUP BY moduleNumber")
+    WeightedAverage getWeightedAverage(String moduleNumber);
+}
@@ -0,0 +1,120 @@
+package com.example.m335.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads UTF-8 characters from a channel through fixed-size buffers.
+ * Only one buffer of bytes and one of characters are held, whatever the size of the input.
+ */
+class ChannelCharReader {
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private boolean endOfInput = false;
+    private boolean flushed = false;
+    private boolean started = false;
+    private int line = 1;
+
+    /**
+     * Constructor allocates the buffers
+     *
+     * @param channel The channel to read from
+     * @param bufferSize The size of the byte and character buffers
+     */
+    ChannelCharReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = ByteBuffer.allocate(bufferSize);
+        this.chars = CharBuffer.allocate(bufferSize);
+        this.chars.flip();
+    }
+
+    /**
+     * Reads the next character
+     *
+     * @return The character or -1 at the end of the input
+     * @throws IOException If the channel fails or the input is not valid UTF-8
+     */
+    int read() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        char c = chars.get();
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    /**
+     * Gets the next character without consuming it
+     *
+     * @return The character or -1 at the end of the input
+     * @throws IOException If the channel fails or the input is not valid UTF-8
+     */
+    int peek() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get(chars.position());
+    }
+
+    /**
+     * Gets the current line, used for error messages
+     *
+     * @return The line number starting at 1
+     */
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * Decodes the next block of characters
+     *
+     * @return true if characters are available
+     * @throws IOException If the channel fails or the input is not valid UTF-8
+     */
+    private boolean fill() throws IOException {
+        if (flushed) {
+            return false;
+        }
+        chars.clear();
+        while (chars.position() == 0 && !flushed) {
+            if (!endOfInput && channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            bytes.compact();
+            if (endOfInput) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+        }
+        chars.flip();
+
+        // Skip a byte order mark at the start of the file
+        if (!started && chars.hasRemaining()) {
+            started = true;
+            if (chars.get(chars.position()) == BYTE_ORDER_MARK) {
+                chars.get();
+                return chars.hasRemaining() || fill();
+            }
+        }
+        return chars.hasRemaining();
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.m335.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleGrades;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded LRU cache of modules keyed by module number.
+ * Writes of the write queue remove exactly the written numbers as soon as they are committed.
+ * Writes around the queue, e.g. through the DAO, are only seen as table notification; the
+ * change triggers number every write, so a notification removes the modules changed since the
+ * last change sequence number it saw, and the queue's own batches leave the other modules cached.
+ * Writes that leave title and grades unchanged are not numbered and keep cached rows.
+ * Without sync counters every notification clears the whole cache.
+ * Loaded rows are only stored if no invalidation happened while they were read, so a slow
+ * read can never put an outdated row back. Cached modules are shared and must not be modified.
+ */
+public class ModuleCache implements ModuleWriteQueue.ChangeListener {
+
+    /**
+     * Number of modules kept by default
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final LinkedHashMap<String, Module> entries;
+    private long generation = 0;
+    // Last change sequence number whose writes were removed, -1 before the first notification.
+    // Only used on the writer thread
+    private long seenChangeSeq = -1;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * Constructor creates an empty cache
+     *
+     * @param capacity The maximum number of cached modules
+     */
+    public ModuleCache(final int capacity) {
+        // Access order turns the map into an LRU list, the eldest entry is the least recently used
+        entries = new LinkedHashMap<String, Module>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Module> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Connects the cache to the database, invalidations are handled on the writer thread
+     * so that they are ordered with the batches of the queue
+     *
+     * @param database The database whose table changes clear the cache
+     * @param writeQueue The queue whose batches remove the written modules
+     */
+    void attach(ModuleDatabase database, final ModuleWriteQueue writeQueue) {
+        final ModuleSyncDao syncDao = database.moduleSyncDao();
+        writeQueue.addChangeListener(this);
+        final Runnable tableChanged = new Runnable() {
+            @Override
+            public void run() {
+                onTableChanged(syncDao);
+            }
+        };
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("modules") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                writeQueue.runOnWriter(tableChanged);
+            }
+        });
+        // Reads the change sequence number the later notifications are compared with
+        writeQueue.runOnWriter(tableChanged);
+    }
+
+    /**
+     * Gets a cached module and counts the lookup as hit or miss
+     *
+     * @param moduleNumber The module number
+     * @return The module or null if it is not cached
+     */
+    public synchronized Module get(String moduleNumber) {
+        Module module = entries.get(moduleNumber);
+        if (module != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return module;
+    }
+
+    /**
+     * Reads a module from the database and caches it.
+     * Must not run on the main thread.
+     *
+     * @param moduleNumber The module number
+     * @param moduleDao The DAO to read from
+     * @return The module or null if it doesn't exist
+     */
+    public Module load(String moduleNumber, ModuleDao moduleDao) {
+        long startGeneration = getGeneration();
+        Module module = moduleDao.getModuleByNumberNow(moduleNumber);
+        if (module != null) {
+            putAllIfCurrent(Collections.singletonList(module), startGeneration);
+        }
+        return module;
+    }
+
+    /**
+     * Gets the current generation, to be read before loading rows for {@link #putAllIfCurrent}
+     *
+     * @return The number of invalidations so far
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches loaded modules unless the cache was invalidated since the load started
+     *
+     * @param modules The loaded modules
+     * @param startGeneration The generation read before the load
+     */
+    public synchronized void putAllIfCurrent(List<Module> modules, long startGeneration) {
+        if (startGeneration != generation) {
+            return;
+        }
+        for (Module module : modules) {
+            entries.put(module.getModuleNumber(), module);
+        }
+    }
+
+    /**
+     * Removes one module
+     *
+     * @param moduleNumber The module number
+     */
+    public synchronized void invalidate(String moduleNumber) {
+        generation++;
+        entries.remove(moduleNumber);
+    }
+
+    /**
+     * Removes several modules
+     *
+     * @param moduleNumbers The module numbers
+     */
+    public synchronized void invalidate(List<String> moduleNumbers) {
+        if (moduleNumbers.isEmpty()) {
+            return;
+        }
+        generation++;
+        for (String moduleNumber : moduleNumbers) {
+            entries.remove(moduleNumber);
+        }
+    }
+
+    /**
+     * Removes all modules
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Removes the modules written by a committed batch, called on the writer thread
+     *
+     * @param previous The grades stored before the batch
+     * @param inserts The inserted or replaced modules
+     * @param updates The updated modules
+     * @param deleteNumbers The numbers of the deleted modules
+     */
+    @Override
+    public void onBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                               List<Module> updates, List<String> deleteNumbers) {
+        synchronized (this) {
+            generation++;
+            for (Module module : inserts) {
+                entries.remove(module.getModuleNumber());
+            }
+            for (Module module : updates) {
+                entries.remove(module.getModuleNumber());
+            }
+            for (String moduleNumber : deleteNumbers) {
+                entries.remove(moduleNumber);
+            }
+        }
+    }
+
+    /**
+     * Handles a table notification on the writer thread.
+     * Removes the modules changed since the last notification, their batches from the queue
+     * included, and drops loads still in flight. The first notification and a database
+     * without sync counters clear the whole cache.
+     *
+     * @param syncDao The DAO of the change table
+     */
+    void onTableChanged(ModuleSyncDao syncDao) {
+        Long changeSeq = syncDao.getLastChangeSeq();
+        if (changeSeq == null || seenChangeSeq < 0) {
+            invalidateAll();
+        } else if (changeSeq != seenChangeSeq) {
+            // Read after the counter, so every write up to it is listed
+            invalidate(syncDao.getChangedSince(seenChangeSeq));
+        }
+        seenChangeSeq = changeSeq != null ? changeSeq : -1;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache
+     *
+     * @return The hit count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of lookups that had to go to the database
+     *
+     * @return The miss count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of cached modules
+     *
+     * @return The cache size
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.m335.data;
+
+/**
+ * Thrown when a conditional update finds a module that was changed or deleted
+ * since the version the update is based on was read
+ */
+public class ModuleConflictException extends RuntimeException {
+    private final String moduleNumber;
+
+    /**
+     * Constructor with the module whose update failed
+     *
+     * @param moduleNumber The module number
+     */
+    public ModuleConflictException(String moduleNumber) {
+        super("Modul " + moduleNumber + " wurde in der Zwischenzeit geändert");
+        this.moduleNumber = moduleNumber;
+    }
+
+    /**
+     * Gets the number of the module whose update failed
+     *
+     * @return The module number
+     */
+    public String getModuleNumber() {
+        return moduleNumber;
+    }
+}
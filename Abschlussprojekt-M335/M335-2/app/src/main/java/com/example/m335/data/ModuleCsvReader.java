@@ -0,0 +1,152 @@
+package com.example.m335.data;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for module CSV files (RFC 4180 quoting).
+ * An optional header row names the columns moduleNumber, moduleTitle, zpNote and lbNote
+ * in any order; without a header the columns are expected in that order.
+ */
+public class ModuleCsvReader implements ModuleRecordReader {
+    private static final char DELIMITER = ',';
+    private static final String[] COLUMNS = {"moduleNumber", "moduleTitle", "zpNote", "lbNote"};
+
+    private final ChannelCharReader reader;
+    private final List<String> fields = new ArrayList<>(COLUMNS.length);
+    private final StringBuilder field = new StringBuilder();
+    private final int[] columnIndex = {0, 1, 2, 3};
+    private boolean firstRow = true;
+    private int rowLine;
+
+    /**
+     * Constructor for a file read through the given channel
+     *
+     * @param channel The channel to read from
+     * @param bufferSize The size of the read buffers
+     */
+    public ModuleCsvReader(ReadableByteChannel channel, int bufferSize) {
+        this.reader = new ChannelCharReader(channel, bufferSize);
+    }
+
+    /**
+     * Reads the next module row, skipping the header and empty lines
+     *
+     * @param record The record to fill
+     * @return false at the end of the file
+     * @throws IOException If the file cannot be read or is not well-formed
+     */
+    @Override
+    public boolean next(Record record) throws IOException {
+        while (readRow()) {
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue;
+            }
+            if (firstRow) {
+                firstRow = false;
+                if (COLUMNS[0].equalsIgnoreCase(fields.get(0).trim())) {
+                    readHeader();
+                    continue;
+                }
+            }
+            record.clear();
+            record.line = rowLine;
+            record.moduleNumber = column(0);
+            record.moduleTitle = column(1);
+            record.zpNote = column(2);
+            record.lbNote = column(3);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Maps the known columns to their position in the header row
+     *
+     * @throws ModuleFormatException If a known column is missing
+     */
+    private void readHeader() throws ModuleFormatException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columnIndex[i] = -1;
+            for (int j = 0; j < fields.size(); j++) {
+                if (COLUMNS[i].equalsIgnoreCase(fields.get(j).trim())) {
+                    columnIndex[i] = j;
+                    break;
+                }
+            }
+        }
+        if (columnIndex[0] < 0 || columnIndex[1] < 0) {
+            throw new ModuleFormatException(rowLine, "Spalten moduleNumber und moduleTitle fehlen");
+        }
+    }
+
+    /**
+     * Gets a field of the current row by column
+     *
+     * @param column The column, index into COLUMNS
+     * @return The trimmed value or null if it is empty or missing
+     */
+    private String column(int column) {
+        int index = columnIndex[column];
+        if (index < 0 || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Reads the fields of the next row
+     *
+     * @return false at the end of the file
+     * @throws IOException If the file cannot be read or a quote is not closed
+     */
+    private boolean readRow() throws IOException {
+        fields.clear();
+        if (reader.peek() == -1) {
+            return false;
+        }
+        rowLine = reader.getLine();
+
+        while (true) {
+            field.setLength(0);
+            int c = reader.read();
+            if (c == '"') {
+                // Quoted field, may contain delimiters, line breaks and doubled quotes
+                while (true) {
+                    c = reader.read();
+                    if (c == -1) {
+                        throw new ModuleFormatException(rowLine, "Anführungszeichen nicht geschlossen");
+                    }
+                    if (c == '"') {
+                        if (reader.peek() != '"') {
+                            break;
+                        }
+                        reader.read();
+                    }
+                    field.append((char) c);
+                }
+                c = reader.read();
+            } else {
+                while (c != -1 && c != DELIMITER && c != '\n' && c != '\r') {
+                    field.append((char) c);
+                    c = reader.read();
+                }
+            }
+            fields.add(field.toString());
+
+            if (c == DELIMITER) {
+                continue;
+            }
+            if (c == '\r' && reader.peek() == '\n') {
+                reader.read();
+            }
+            if (c == -1 || c == '\n' || c == '\r') {
+                return true;
+            }
+            throw new ModuleFormatException(reader.getLine(), "Unerwartetes Zeichen nach Anführungszeichen");
+        }
+    }
+}
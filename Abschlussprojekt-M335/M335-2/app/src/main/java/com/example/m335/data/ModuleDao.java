@@ -6,10 +6,15 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
-import androidx.room.Update;
+import androidx.room.Transaction;
 
+import com.example.m335.model.GradeSumCount;
 import com.example.m335.model.Module;
+import com.example.m335.model.ModuleFamilyStats;
+import com.example.m335.model.ModuleGrades;
+import com.example.m335.model.ModuleSummary;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -20,20 +25,162 @@ import java.util.List;
 public interface ModuleDao {
 
     /**
-     * Inserts a module into the database
+     * Maximum number of module numbers bound in one statement
+     */
+    int DELETE_CHUNK_SIZE = 500;
+
+    /**
+     * SQL expression for the sum of both grades in hundredths, NULL if a grade is missing.
+     * Aggregates run over these integers, so sums are exact and only the final
+     * division produces a fraction.
+     */
+    String GRADE_SUM_EXPRESSION = "(CASE WHEN zpHundredths >= 0 AND lbHundredths >= 0 "
+            + "THEN zpHundredths + lbHundredths END)";
+
+    /**
+     * Aggregate query behind the summary header
+     */
+    String SUMMARY_QUERY = "SELECT COUNT(*) AS moduleCount, "
+            + "COUNT(" + GRADE_SUM_EXPRESSION + ") AS gradedCount, "
+            + "COALESCE(SUM(" + GRADE_SUM_EXPRESSION + " >= " + 2 * Module.PASSING_GRADE_HUNDREDTHS + "), 0) AS passedCount, "
+            + "COALESCE(SUM(" + GRADE_SUM_EXPRESSION + " < " + 2 * Module.PASSING_GRADE_HUNDREDTHS + "), 0) AS failedCount, "
+            + "AVG(" + GRADE_SUM_EXPRESSION + ") / 200.0 AS averageGrade, "
+            + "MAX(" + GRADE_SUM_EXPRESSION + ") / 200.0 AS bestGrade, "
+            + "MIN(" + GRADE_SUM_EXPRESSION + ") / 200.0 AS worstGrade "
+            + "FROM modules";
+
+    /**
+     * Aggregate query grouped by module family
+     */
+    String FAMILY_STATS_QUERY = "SELECT substr(moduleNumber, 1, 2) AS family, "
+            + "COUNT(*) AS moduleCount, "
+            + "COUNT(" + GRADE_SUM_EXPRESSION + ") AS gradedCount, "
+            + "AVG(" + GRADE_SUM_EXPRESSION + ") / 200.0 AS averageGrade "
+            + "FROM modules GROUP BY family ORDER BY family";
+
+    /**
+     * Update statement shared by the plain and the conditional update.
+     * Every write raises the row version, so that a conditional update based on an older
+     * read fails. The row is updated in place; rowid, full-text entry and references stay.
+     */
+    String UPDATE_FIELDS = "UPDATE modules SET moduleTitle = :moduleTitle, "
+            + "zpHundredths = :zpHundredths, lbHundredths = :lbHundredths, "
+            + "gradeSumHundredths = CASE WHEN :zpHundredths >= 0 AND :lbHundredths >= 0 "
+            + "THEN :zpHundredths + :lbHundredths ELSE " + Module.NO_GRADE + " END, "
+            + "version = version + 1 WHERE moduleNumber = :moduleNumber";
+
+    /**
+     * List order by average: grade sum, then natural module number order.
+     * Modules without average have the sum NO_GRADE and come first.
+     * Both directions walk the (gradeSumHundredths, sortKey, moduleNumber) index.
+     */
+    String GRADE_ORDER_ASC = " ORDER BY gradeSumHundredths ASC, sortKey ASC, moduleNumber ASC";
+
+    /**
+     * Reverse list order by average, the index walked backwards
+     */
+    String GRADE_ORDER_DESC = " ORDER BY gradeSumHundredths DESC, sortKey DESC, moduleNumber DESC";
+
+    /**
+     * Modules after the given position in ascending average order. The first condition
+     * lets SQLite seek in the grade index, the rest breaks ties like GRADE_ORDER_ASC.
+     */
+    String GRADE_KEY_ABOVE = " WHERE gradeSumHundredths >= :gradeSum AND (gradeSumHundredths > :gradeSum "
+            + "OR sortKey > :sortKey OR (sortKey = :sortKey AND moduleNumber > :moduleNumber))";
+
+    /**
+     * Modules before the given position in ascending average order
+     */
+    String GRADE_KEY_BELOW = " WHERE gradeSumHundredths <= :gradeSum AND (gradeSumHundredths < :gradeSum "
+            + "OR sortKey < :sortKey OR (sortKey = :sortKey AND moduleNumber < :moduleNumber))";
+
+    /**
+     * Inserts a module unless its module number already exists
+     *
+     * @param module The module to insert
+     * @return The rowid of the new row, -1 if the module number already exists
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertIfAbsent(Module module);
+
+    /**
+     * Inserts several modules, skipping module numbers that already exist
+     *
+     * @param modules The modules to insert
+     * @return The rowid per module, -1 for module numbers that already exist
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    List<Long> insertAllIfAbsent(List<Module> modules);
+
+    /**
+     * Overwrites title and grades of a stored module, whatever its version
+     *
+     * @param moduleNumber The module number
+     * @param moduleTitle The new title
+     * @param zpHundredths The new ZP grade in hundredths or {@link Module#NO_GRADE}
+     * @param lbHundredths The new LB grade in hundredths or {@link Module#NO_GRADE}
+     * @return The number of updated rows, 0 if the module doesn't exist
+     */
+    @Query(UPDATE_FIELDS)
+    int updateFields(String moduleNumber, String moduleTitle, int zpHundredths, int lbHundredths);
+
+    /**
+     * Overwrites title and grades of a stored module if it still has the expected version
+     *
+     * @param moduleNumber The module number
+     * @param moduleTitle The new title
+     * @param zpHundredths The new ZP grade in hundredths or {@link Module#NO_GRADE}
+     * @param lbHundredths The new LB grade in hundredths or {@link Module#NO_GRADE}
+     * @param expectedVersion The version the change is based on
+     * @return 1 if the row was updated, 0 if it changed in the meantime or doesn't exist
+     */
+    @Query(UPDATE_FIELDS + " AND version = :expectedVersion")
+    int updateFieldsIfVersion(String moduleNumber, String moduleTitle, int zpHundredths,
+                              int lbHundredths, long expectedVersion);
+
+    /**
+     * Gets the stored version of a module
+     *
+     * @param moduleNumber The module number
+     * @return The version or null if the module doesn't exist
+     */
+    @Query("SELECT version FROM modules WHERE moduleNumber = :moduleNumber")
+    Long getVersion(String moduleNumber);
+
+    /**
+     * Inserts a module, or updates the stored one in place if the module number exists.
+     * Unlike REPLACE the row is never deleted, so its rowid and full-text entry stay.
      *
      * @param module The module to insert
      */
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insert(Module module);
+    @Transaction
+    default void insert(Module module) {
+        if (insertIfAbsent(module) == -1) {
+            update(module);
+        }
+    }
 
     /**
-     * Updates an existing module in the database
+     * Updates an existing module in the database, the last write wins.
+     * Use {@link #compareAndSet(Module)} to detect concurrent edits.
      *
      * @param module The module to update
      */
-    @Update
-    void update(Module module);
+    default void update(Module module) {
+        updateFields(module.getModuleNumber(), module.getModuleTitle(),
+                module.getZpHundredths(), module.getLbHundredths());
+    }
+
+    /**
+     * Updates a module only if the stored row still has the version the module was read with
+     *
+     * @param module The changed module, carrying the version it is based on
+     * @return true if the row was updated, false on a conflict or if the module was deleted
+     */
+    default boolean compareAndSet(Module module) {
+        return updateFieldsIfVersion(module.getModuleNumber(), module.getModuleTitle(),
+                module.getZpHundredths(), module.getLbHundredths(), module.getVersion()) == 1;
+    }
 
     /**
      * Deletes a module from the database
@@ -44,13 +191,418 @@ public interface ModuleDao {
     void delete(Module module);
 
     /**
-     * Gets all modules from the database
+     * Inserts several modules in one transaction, existing module numbers are updated in place
+     *
+     * @param modules The modules to insert
+     */
+    @Transaction
+    default void insertAll(List<Module> modules) {
+        List<Long> rowIds = insertAllIfAbsent(modules);
+        for (int i = 0; i < rowIds.size(); i++) {
+            if (rowIds.get(i) == -1) {
+                update(modules.get(i));
+            }
+        }
+    }
+
+    /**
+     * Updates several modules in one transaction
+     *
+     * @param modules The modules to update
+     */
+    @Transaction
+    default void updateAll(List<Module> modules) {
+        for (Module module : modules) {
+            update(module);
+        }
+    }
+
+    /**
+     * Deletes several modules in one transaction
+     *
+     * @param modules The modules to delete
+     */
+    @Delete
+    void deleteAll(List<Module> modules);
+
+    /**
+     * Deletes modules by their module numbers.
+     * The list must stay below SQLite's bind variable limit, see {@link #applyBatch}.
+     *
+     * @param moduleNumbers The numbers of the modules to delete
+     * @return The number of deleted rows
+     */
+    @Query("DELETE FROM modules WHERE moduleNumber IN (:moduleNumbers)")
+    int deleteByNumbers(List<String> moduleNumbers);
+
+    /**
+     * Gets several modules synchronously, must not be called on the main thread.
+     * The list must stay below SQLite's bind variable limit, see {@link #applyBatch}.
+     *
+     * @param moduleNumbers The module numbers
+     * @return The modules that exist, in no particular order
+     */
+    @Query("SELECT * FROM modules WHERE moduleNumber IN (:moduleNumbers)")
+    List<Module> getModulesByNumbersNow(List<String> moduleNumbers);
+
+    /**
+     * Gets the stored grades of several modules.
+     * The list must stay below SQLite's bind variable limit, see {@link #applyBatch}.
+     *
+     * @param moduleNumbers The module numbers
+     * @return The grades of the modules that exist
+     */
+    @Query("SELECT moduleNumber, zpHundredths, lbHundredths FROM modules "
+            + "WHERE moduleNumber IN (:moduleNumbers)")
+    List<ModuleGrades> getGradesByNumbers(List<String> moduleNumbers);
+
+    /**
+     * Gets the distribution of the grade sums of all graded modules,
+     * at most one row per possible average
+     *
+     * @return The number of modules per grade sum
+     */
+    @Query("SELECT zpHundredths + lbHundredths AS gradeSum, COUNT(*) AS moduleCount FROM modules "
+            + "WHERE zpHundredths >= 0 AND lbHundredths >= 0 GROUP BY gradeSum")
+    List<GradeSumCount> getGradeSumCounts();
+
+    /**
+     * Applies inserts, updates and deletes in a single transaction,
+     * so that observers of the modules table are notified only once.
+     * The grades stored before the batch are read in the same transaction,
+     * so that running statistics can apply the exact difference.
+     * Every module number may appear in only one of the lists.
+     *
+     * @param inserts The modules to insert, existing ones are updated in place
+     * @param updates The modules to update, the last write wins
+     * @param conditionalUpdates The modules to update only if their version is unchanged
+     * @param deleteNumbers The numbers of the modules to delete
+     * @param conflicts Receives the conditional updates that were not applied
+     * @return The previous grades of the written modules that existed before
+     */
+    @Transaction
+    default List<ModuleGrades> applyBatch(List<Module> inserts, List<Module> updates,
+                                          List<Module> conditionalUpdates,
+                                          List<String> deleteNumbers, List<Module> conflicts) {
+        List<String> numbers = new ArrayList<>(inserts.size() + updates.size()
+                + conditionalUpdates.size() + deleteNumbers.size());
+        for (Module module : inserts) {
+            numbers.add(module.getModuleNumber());
+        }
+        for (Module module : updates) {
+            numbers.add(module.getModuleNumber());
+        }
+        for (Module module : conditionalUpdates) {
+            numbers.add(module.getModuleNumber());
+        }
+        numbers.addAll(deleteNumbers);
+        // Read and delete in chunks to stay below the bind variable limit of 999
+        List<ModuleGrades> previous = new ArrayList<>();
+        for (int start = 0; start < numbers.size(); start += DELETE_CHUNK_SIZE) {
+            previous.addAll(getGradesByNumbers(
+                    numbers.subList(start, Math.min(numbers.size(), start + DELETE_CHUNK_SIZE))));
+        }
+
+        if (!inserts.isEmpty()) {
+            insertAll(inserts);
+        }
+        if (!updates.isEmpty()) {
+            updateAll(updates);
+        }
+        for (Module module : conditionalUpdates) {
+            if (!compareAndSet(module)) {
+                conflicts.add(module);
+            }
+        }
+        for (int start = 0; start < deleteNumbers.size(); start += DELETE_CHUNK_SIZE) {
+            int end = Math.min(deleteNumbers.size(), start + DELETE_CHUNK_SIZE);
+            deleteByNumbers(deleteNumbers.subList(start, end));
+        }
+        return previous;
+    }
+
+    /**
+     * Gets all modules from the database in natural module number order
      *
      * @return LiveData containing a list of all modules
      */
-    @Query("SELECT * FROM modules ORDER BY moduleNumber ASC")
+    @Query("SELECT * FROM modules ORDER BY sortKey ASC, moduleNumber ASC")
     LiveData<List<Module>> getAllModules();
 
+    /**
+     * Gets all modules synchronously, must not be called on the main thread
+     *
+     * @return A list of all modules in natural module number order
+     */
+    @Query("SELECT * FROM modules ORDER BY sortKey ASC, moduleNumber ASC")
+    List<Module> getAllModulesNow();
+
+    /**
+     * Gets the modules whose sort key lies in a range, e.g. all M3xx modules.
+     * See {@link Module#computeSortKey(String)} for the keys of the range ends.
+     *
+     * @param fromSortKey The lowest sort key (inclusive)
+     * @param toSortKey The highest sort key (inclusive)
+     * @return LiveData containing the modules in natural order
+     */
+    @Query("SELECT * FROM modules WHERE sortKey BETWEEN :fromSortKey AND :toSortKey "
+            + "ORDER BY sortKey ASC, moduleNumber ASC")
+    LiveData<List<Module>> getModulesInRange(long fromSortKey, long toSortKey);
+
+    /**
+     * Gets the first page of modules in list order
+     *
+     * @param limit The page size
+     * @return Up to limit modules
+     */
+    @Query("SELECT * FROM modules ORDER BY sortKey ASC, moduleNumber ASC LIMIT :limit")
+    List<Module> getFirstModules(int limit);
+
+    /**
+     * Gets a page of modules starting at the given position in list order (inclusive).
+     * The position is the pair of sort key and module number; the first condition
+     * lets SQLite seek in the (sortKey, moduleNumber) index.
+     *
+     * @param sortKey The sort key of the first module of the page
+     * @param moduleNumber The number of the first module of the page
+     * @param limit The page size
+     * @return Up to limit modules in ascending order
+     */
+    @Query("SELECT * FROM modules WHERE sortKey >= :sortKey "
+            + "AND (sortKey > :sortKey OR moduleNumber >= :moduleNumber) "
+            + "ORDER BY sortKey ASC, moduleNumber ASC LIMIT :limit")
+    List<Module> getModulesFrom(long sortKey, String moduleNumber, int limit);
+
+    /**
+     * Gets the page of modules following the given position in list order
+     *
+     * @param sortKey The sort key of the last module of the previous page
+     * @param moduleNumber The number of the last module of the previous page
+     * @param limit The page size
+     * @return Up to limit modules in ascending order
+     */
+    @Query("SELECT * FROM modules WHERE sortKey >= :sortKey "
+            + "AND (sortKey > :sortKey OR moduleNumber > :moduleNumber) "
+            + "ORDER BY sortKey ASC, moduleNumber ASC LIMIT :limit")
+    List<Module> getModulesAfter(long sortKey, String moduleNumber, int limit);
+
+    /**
+     * Gets the page of modules preceding the given position in list order
+     *
+     * @param sortKey The sort key of the first module of the following page
+     * @param moduleNumber The number of the first module of the following page
+     * @param limit The page size
+     * @return Up to limit modules in descending order
+     */
+    @Query("SELECT * FROM modules WHERE sortKey <= :sortKey "
+            + "AND (sortKey < :sortKey OR moduleNumber < :moduleNumber) "
+            + "ORDER BY sortKey DESC, moduleNumber DESC LIMIT :limit")
+    List<Module> getModulesBefore(long sortKey, String moduleNumber, int limit);
+
+    /**
+     * Counts all modules
+     *
+     * @return The number of modules
+     */
+    @Query("SELECT COUNT(*) FROM modules")
+    int getModuleCount();
+
+    /**
+     * Counts the modules sorted before the given position in list order
+     *
+     * @param sortKey The sort key of the module
+     * @param moduleNumber The module number
+     * @return The list position of the module
+     */
+    @Query("SELECT COUNT(*) FROM modules WHERE sortKey <= :sortKey "
+            + "AND (sortKey < :sortKey OR moduleNumber < :moduleNumber)")
+    int countModulesBefore(long sortKey, String moduleNumber);
+
+    /**
+     * Gets the first page of modules by average, worst first
+     *
+     * @param limit The page size
+     * @return Up to limit modules, modules without average first
+     */
+    @Query("SELECT * FROM modules" + GRADE_ORDER_ASC + " LIMIT :limit")
+    List<Module> getFirstModulesByGrade(int limit);
+
+    /**
+     * Gets the first page of modules by average, best first
+     *
+     * @param limit The page size
+     * @return Up to limit modules, modules without average last
+     */
+    @Query("SELECT * FROM modules" + GRADE_ORDER_DESC + " LIMIT :limit")
+    List<Module> getFirstModulesByGradeDescending(int limit);
+
+    /**
+     * Gets a page of modules by average starting at the given position (inclusive), worst first
+     *
+     * @param gradeSum The grade sum of the first module of the page
+     * @param sortKey The sort key of the first module of the page
+     * @param moduleNumber The number of the first module of the page
+     * @param limit The page size
+     * @return Up to limit modules in ascending order
+     */
+    @Query("SELECT * FROM modules WHERE gradeSumHundredths >= :gradeSum "
+            + "AND (gradeSumHundredths > :gradeSum OR sortKey > :sortKey "
+            + "OR (sortKey = :sortKey AND moduleNumber >= :moduleNumber))" + GRADE_ORDER_ASC + " LIMIT :limit")
+    List<Module> getModulesFromByGrade(int gradeSum, long sortKey, String moduleNumber, int limit);
+
+    /**
+     * Gets a page of modules by average starting at the given position (inclusive), best first
+     *
+     * @param gradeSum The grade sum of the first module of the page
+     * @param sortKey The sort key of the first module of the page
+     * @param moduleNumber The number of the first module of the page
+     * @param limit The page size
+     * @return Up to limit modules in descending order
+     */
+    @Query("SELECT * FROM modules WHERE gradeSumHundredths <= :gradeSum "
+            + "AND (gradeSumHundredths < :gradeSum OR sortKey < :sortKey "
+            + "OR (sortKey = :sortKey AND moduleNumber <= :moduleNumber))" + GRADE_ORDER_DESC + " LIMIT :limit")
+    List<Module> getModulesFromByGradeDescending(int gradeSum, long sortKey, String moduleNumber, int limit);
+
+    /**
+     * Gets the modules following the given position in ascending average order
+     *
+     * @param gradeSum The grade sum of the module at the position
+     * @param sortKey The sort key of the module at the position
+     * @param moduleNumber The number of the module at the position
+     * @param limit The page size
+     * @return Up to limit modules in ascending order
+     */
+    @Query("SELECT * FROM modules" + GRADE_KEY_ABOVE + GRADE_ORDER_ASC + " LIMIT :limit")
+    List<Module> getModulesAboveGrade(int gradeSum, long sortKey, String moduleNumber, int limit);
+
+    /**
+     * Gets the modules preceding the given position in ascending average order
+     *
+     * @param gradeSum The grade sum of the module at the position
+     * @param sortKey The sort key of the module at the position
+     * @param moduleNumber The number of the module at the position
+     * @param limit The page size
+     * @return Up to limit modules in descending order
+     */
+    @Query("SELECT * FROM modules" + GRADE_KEY_BELOW + GRADE_ORDER_DESC + " LIMIT :limit")
+    List<Module> getModulesBelowGrade(int gradeSum, long sortKey, String moduleNumber, int limit);
+
+    /**
+     * Counts the modules preceding the given position in ascending average order
+     *
+     * @param gradeSum The grade sum of the module
+     * @param sortKey The sort key of the module
+     * @param moduleNumber The module number
+     * @return The number of modules below the position
+     */
+    @Query("SELECT COUNT(*) FROM modules" + GRADE_KEY_BELOW)
+    int countModulesBelowGrade(int gradeSum, long sortKey, String moduleNumber);
+
+    /**
+     * Counts the modules following the given position in ascending average order
+     *
+     * @param gradeSum The grade sum of the module
+     * @param sortKey The sort key of the module
+     * @param moduleNumber The module number
+     * @return The number of modules above the position
+     */
+    @Query("SELECT COUNT(*) FROM modules" + GRADE_KEY_ABOVE)
+    int countModulesAboveGrade(int gradeSum, long sortKey, String moduleNumber);
+
+    /**
+     * Gets the modules whose average lies in a range, e.g. all modules below 4.0
+     * with the range 1.0 to 4.0. Must not be called on the main thread.
+     *
+     * @param fromHundredths The lowest average in hundredths (inclusive)
+     * @param toHundredths The highest average in hundredths (exclusive)
+     * @return The modules, worst first
+     */
+    @Query("SELECT * FROM modules WHERE gradeSumHundredths >= 2 * :fromHundredths "
+            + "AND gradeSumHundredths < 2 * :toHundredths" + GRADE_ORDER_ASC)
+    List<Module> getModulesInAverageRange(int fromHundredths, int toHundredths);
+
+    /**
+     * Gets the modules with the best averages, must not be called on the main thread
+     *
+     * @param limit The number of modules
+     * @return Up to limit graded modules, best first
+     */
+    @Query("SELECT * FROM modules WHERE gradeSumHundredths >= 0" + GRADE_ORDER_DESC + " LIMIT :limit")
+    List<Module> getBestModules(int limit);
+
+    /**
+     * Gets the modules with the worst averages, must not be called on the main thread
+     *
+     * @param limit The number of modules
+     * @return Up to limit graded modules, worst first
+     */
+    @Query("SELECT * FROM modules WHERE gradeSumHundredths >= 0" + GRADE_ORDER_ASC + " LIMIT :limit")
+    List<Module> getWorstModules(int limit);
+
+    /**
+     * Gets aggregate statistics over all modules without loading the rows.
+     * The module average is NULL unless both grades are set, so COUNT, AVG, MIN
+     * and MAX only see graded modules.
+     *
+     * @return LiveData containing the summary, updated on every table change
+     */
+    @Query(SUMMARY_QUERY)
+    LiveData<ModuleSummary> getSummary();
+
+    /**
+     * Gets aggregate statistics over all modules synchronously
+     *
+     * @return The summary
+     */
+    @Query(SUMMARY_QUERY)
+    ModuleSummary getSummaryNow();
+
+    /**
+     * Gets aggregate statistics per module family (first two characters of the number)
+     *
+     * @return LiveData containing one entry per family, ordered by family
+     */
+    @Query(FAMILY_STATS_QUERY)
+    LiveData<List<ModuleFamilyStats>> getFamilyStats();
+
+    /**
+     * Gets aggregate statistics per module family synchronously
+     *
+     * @return One entry per family, ordered by family
+     */
+    @Query(FAMILY_STATS_QUERY)
+    List<ModuleFamilyStats> getFamilyStatsNow();
+
+    /**
+     * Searches modules through the full-text index.
+     * Exact and prefix matches on the module number rank before title matches.
+     * The prefix is compared literally, so % and _ in the search text match only themselves.
+     *
+     * @param match The MATCH expression, see {@link ModuleSearchQuery}
+     * @param text The raw search text, used for ranking
+     * @param limit The page size
+     * @param offset The position of the first result
+     * @return Up to limit matching modules in rank order
+     */
+    @Query("SELECT modules.* FROM modules "
+            + "JOIN modules_fts ON modules.rowid = modules_fts.docid "
+            + "WHERE modules_fts MATCH :match "
+            + "ORDER BY CASE WHEN modules.moduleNumber = :text COLLATE NOCASE THEN 0 "
+            + "WHEN substr(modules.moduleNumber, 1, length(:text)) = :text COLLATE NOCASE THEN 1 ELSE 2 END, "
+            + "modules.sortKey ASC, modules.moduleNumber ASC "
+            + "LIMIT :limit OFFSET :offset")
+    List<Module> search(String match, String text, int limit, int offset);
+
+    /**
+     * Counts the modules matching a full-text search
+     *
+     * @param match The MATCH expression
+     * @return The number of matches
+     */
+    @Query("SELECT COUNT(*) FROM modules_fts WHERE modules_fts MATCH :match")
+    int countSearchResults(String match);
+
     /**
      * Gets a module by its module number
      *
@@ -59,4 +611,13 @@ public interface ModuleDao {
      */
     @Query("SELECT * FROM modules WHERE moduleNumber = :moduleNumber")
     LiveData<Module> getModuleByNumber(String moduleNumber);
-}
\ No newline at end of file
+
+    /**
+     * Gets a module by its module number synchronously, see {@link ModuleCache}
+     *
+     * @param moduleNumber The module number to search for
+     * @return The module or null if it doesn't exist
+     */
+    @Query("SELECT * FROM modules WHERE moduleNumber = :moduleNumber")
+    Module getModuleByNumberNow(String moduleNumber);
+}
@@ -6,13 +6,23 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 
+import com.example.m335.model.Assessment;
 import com.example.m335.model.Module;
+import com.example.m335.model.ModuleChange;
+import com.example.m335.model.ModuleFts;
+import com.example.m335.model.ModuleSyncState;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Room database for storing modules.
  * Implements Singleton pattern to provide a single database instance.
  */
-@Database(entities = {Module.class}, version = 1, exportSchema = false)
+@Database(entities = {Module.class, ModuleFts.class, Assessment.class, ModuleChange.class,
+        ModuleSyncState.class}, version = 8, exportSchema = true)
 public abstract class ModuleDatabase extends RoomDatabase {
 
     /**
@@ -22,7 +32,118 @@ public abstract class ModuleDatabase extends RoomDatabase {
      */
     public abstract ModuleDao moduleDao();
 
-    private static ModuleDatabase INSTANCE;
+    /**
+     * Provides access to the Assessment DAO
+     *
+     * @return The AssessmentDao instance
+     */
+    public abstract AssessmentDao assessmentDao();
+
+    /**
+     * Provides access to the DAO of the change tracking
+     *
+     * @return The ModuleSyncDao instance
+     */
+    public abstract ModuleSyncDao moduleSyncDao();
+
+    // Volatile so that the double-checked locking in getDatabase publishes a fully built instance
+    private static volatile ModuleDatabase INSTANCE;
+
+    private ModuleWriteQueue writeQueue;
+    private ExecutorService transferExecutor;
+    private ModuleStatisticsEngine statisticsEngine;
+    private ModuleCache moduleCache;
+    private ModuleKeysetDataSource.PreloadedPage preloadedPage;
+
+    /**
+     * Gets the single write queue of this database, creating it if it doesn't exist
+     *
+     * @return The ModuleWriteQueue instance
+     */
+    public synchronized ModuleWriteQueue getWriteQueue() {
+        if (writeQueue == null) {
+            writeQueue = new ModuleWriteQueue(this);
+        }
+        return writeQueue;
+    }
+
+    /**
+     * Gets the thread for file imports and exports, creating it if it doesn't exist.
+     * A transfer blocks on the file and on the write queue, so it runs on a thread of its
+     * own instead of the common pool shared with the rest of the process.
+     *
+     * @return The executor running one transfer at a time
+     */
+    public synchronized Executor getTransferExecutor() {
+        if (transferExecutor == null) {
+            transferExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "module-transfer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return transferExecutor;
+    }
+
+    /**
+     * Gets the running module statistics, creating them if they don't exist.
+     * The statistics are rebuilt from SQL on the writer thread and then follow every
+     * batch of the write queue.
+     *
+     * @return The ModuleStatisticsEngine instance
+     */
+    public synchronized ModuleStatisticsEngine getStatisticsEngine() {
+        if (statisticsEngine == null) {
+            final ModuleStatisticsEngine engine = new ModuleStatisticsEngine();
+            ModuleWriteQueue queue = getWriteQueue();
+            queue.addChangeListener(engine);
+            queue.runOnWriter(new Runnable() {
+                @Override
+                public void run() {
+                    engine.resync(moduleDao());
+                }
+            });
+            statisticsEngine = engine;
+        }
+        return statisticsEngine;
+    }
+
+    /**
+     * Gets the module cache of this database, creating it if it doesn't exist
+     *
+     * @return The ModuleCache instance
+     */
+    public synchronized ModuleCache getModuleCache() {
+        if (moduleCache == null) {
+            ModuleCache cache = new ModuleCache(ModuleCache.DEFAULT_CAPACITY);
+            cache.attach(this, getWriteQueue());
+            moduleCache = cache;
+        }
+        return moduleCache;
+    }
+
+    /**
+     * Keeps the first page read by the warm-up for the first list
+     *
+     * @param page The preloaded page
+     */
+    synchronized void setPreloadedPage(ModuleKeysetDataSource.PreloadedPage page) {
+        preloadedPage = page;
+    }
+
+    /**
+     * Takes the first page read by the warm-up, it is handed out only once
+     *
+     * @return The preloaded page or null
+     */
+    synchronized ModuleKeysetDataSource.PreloadedPage takePreloadedPage() {
+        ModuleKeysetDataSource.PreloadedPage page = preloadedPage;
+        preloadedPage = null;
+        return page;
+    }
 
     /**
      * Gets the database instance, creating it if it doesn't exist
@@ -34,13 +155,17 @@ public abstract class ModuleDatabase extends RoomDatabase {
         if (INSTANCE == null) {
             synchronized (ModuleDatabase.class) {
                 if (INSTANCE == null) {
-                    // Create database
+                    // Create database, every schema version needs a migration in ModuleMigrations
                     INSTANCE = Room.databaseBuilder(
                                     context.getApplicationContext(),
                                     ModuleDatabase.class,
                                     "module_database")
-                            .fallbackToDestructiveMigration()
+                            .addMigrations(ModuleMigrations.ALL)
+                            .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                            .openHelperFactory(new ModuleOpenHelperFactory())
                             .build();
+                    // Migrations run on first open, which must not happen on the main thread
+                    ModuleMigrationRunner.openInBackground(INSTANCE);
                 }
             }
         }
@@ -0,0 +1,163 @@
+package com.example.m335.data;
+
+import android.database.Cursor;
+
+import com.example.m335.model.Module;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams modules from a database cursor into a CSV or JSON file.
+ * Rows are written as the cursor walks the table, no module list is built.
+ */
+public class ModuleExporter {
+
+    /**
+     * Query for the exported columns in natural module order
+     */
+    public static final String EXPORT_QUERY = "SELECT moduleNumber, moduleTitle, zpHundredths, "
+            + "lbHundredths FROM modules ORDER BY sortKey ASC, moduleNumber ASC";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ModuleExporter() {
+    }
+
+    /**
+     * Writes all rows of an export cursor.
+     * The channel is flushed but not closed.
+     *
+     * @param cursor A cursor over {@link #EXPORT_QUERY}
+     * @param format The file format
+     * @param channel The channel to write to
+     * @return The number of exported modules
+     * @throws IOException If the channel fails
+     */
+    public static int export(Cursor cursor, ModuleFileFormat format, WritableByteChannel channel)
+            throws IOException {
+        Writer writer = new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE);
+        StringBuilder grade = new StringBuilder(8);
+        int count = 0;
+
+        if (format == ModuleFileFormat.JSON) {
+            writer.write('[');
+        } else {
+            writer.write("moduleNumber,moduleTitle,zpNote,lbNote\n");
+        }
+        while (cursor.moveToNext()) {
+            String moduleNumber = cursor.getString(0);
+            String moduleTitle = cursor.getString(1);
+            int zpHundredths = cursor.getInt(2);
+            int lbHundredths = cursor.getInt(3);
+
+            if (format == ModuleFileFormat.JSON) {
+                writer.write(count == 0 ? "\n  {\"moduleNumber\": " : ",\n  {\"moduleNumber\": ");
+                writeJsonString(writer, moduleNumber);
+                writer.write(", \"moduleTitle\": ");
+                writeJsonString(writer, moduleTitle);
+                writer.write(", \"zpNote\": ");
+                writeGrade(writer, grade, zpHundredths, "null");
+                writer.write(", \"lbNote\": ");
+                writeGrade(writer, grade, lbHundredths, "null");
+                writer.write('}');
+            } else {
+                writeCsvField(writer, moduleNumber);
+                writer.write(',');
+                writeCsvField(writer, moduleTitle);
+                writer.write(',');
+                writeGrade(writer, grade, zpHundredths, "");
+                writer.write(',');
+                writeGrade(writer, grade, lbHundredths, "");
+                writer.write('\n');
+            }
+            count++;
+        }
+        if (format == ModuleFileFormat.JSON) {
+            writer.write("\n]\n");
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Writes a grade in hundredths as a decimal number without going through float
+     *
+     * @param writer The writer
+     * @param buffer A reusable buffer
+     * @param hundredths The grade in hundredths or {@link Module#NO_GRADE}
+     * @param missing The text written for a missing grade
+     * @throws IOException If the channel fails
+     */
+    static void writeGrade(Writer writer, StringBuilder buffer, int hundredths, String missing)
+            throws IOException {
+        if (hundredths == Module.NO_GRADE) {
+            writer.write(missing);
+            return;
+        }
+        buffer.setLength(0);
+        buffer.append(hundredths / 100).append('.');
+        int fraction = hundredths % 100;
+        if (fraction < 10) {
+            buffer.append('0');
+        }
+        buffer.append(fraction);
+        writer.append(buffer);
+    }
+
+    /**
+     * Writes a CSV field, quoted if it contains a delimiter, quote or line break
+     *
+     * @param writer The writer
+     * @param value The field value
+     * @throws IOException If the channel fails
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Writes a JSON string with quotes and escapes
+     *
+     * @param writer The writer
+     * @param value The string
+     * @throws IOException If the channel fails
+     */
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+}
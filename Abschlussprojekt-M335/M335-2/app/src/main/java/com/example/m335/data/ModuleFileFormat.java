@@ -0,0 +1,34 @@
+package com.example.m335.data;
+
+/**
+ * File formats for module import and export
+ */
+public enum ModuleFileFormat {
+    CSV("text/csv"),
+    JSON("application/json");
+
+    private final String mimeType;
+
+    ModuleFileFormat(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * Gets the MIME type of the format
+     *
+     * @return The MIME type
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Finds the format of a file from its MIME type, CSV unless it is JSON
+     *
+     * @param mimeType The MIME type or null if unknown
+     * @return The file format
+     */
+    public static ModuleFileFormat fromMimeType(String mimeType) {
+        return mimeType != null && mimeType.endsWith("json") ? JSON : CSV;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.m335.data;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an import file is not well-formed CSV or JSON
+ */
+public class ModuleFormatException extends IOException {
+
+    /**
+     * Constructor with the position of the error
+     *
+     * @param line The line of the error
+     * @param message The error message
+     */
+    public ModuleFormatException(int line, String message) {
+        super("Zeile " + line + ": " + message);
+    }
+}
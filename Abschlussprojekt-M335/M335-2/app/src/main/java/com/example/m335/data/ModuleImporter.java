@@ -0,0 +1,179 @@
+package com.example.m335.data;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleValidator;
+import com.example.m335.model.ValidationMessages;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams modules from a CSV or JSON file into the database.
+ * Records are validated with the same rules as the edit screen and written in batches,
+ * so memory use is bounded by one batch regardless of the file size.
+ */
+public class ModuleImporter {
+
+    /**
+     * Default number of modules written per transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Size of the read buffers
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    // Only the first rejections are kept for the result message
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    /**
+     * Receives the validated modules batch by batch
+     */
+    public interface BatchSink {
+        /**
+         * Writes one batch, returning once it is committed
+         *
+         * @param modules The modules of the batch
+         */
+        void write(List<Module> modules);
+    }
+
+    private final BatchSink sink;
+    private final int batchSize;
+    private final ValidationMessages messages;
+    private final ModuleValidator validator = new ModuleValidator();
+
+    /**
+     * Constructor with the target of the batches
+     *
+     * @param sink Receives the batches
+     * @param batchSize The number of modules per batch
+     * @param messages The messages for rejected records
+     */
+    public ModuleImporter(BatchSink sink, int batchSize, ValidationMessages messages) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.messages = messages;
+    }
+
+    /**
+     * Creates the reader for a file format
+     *
+     * @param channel The channel to read from
+     * @param format The file format
+     * @return The record reader
+     */
+    public static ModuleRecordReader createReader(ReadableByteChannel channel, ModuleFileFormat format) {
+        if (format == ModuleFileFormat.JSON) {
+            return new ModuleJsonReader(channel, BUFFER_SIZE);
+        }
+        return new ModuleCsvReader(channel, BUFFER_SIZE);
+    }
+
+    /**
+     * Imports all records of a file.
+     * Invalid records are skipped and reported; a malformed file stops the import
+     * after the batches written so far.
+     *
+     * @param reader The record reader of the file
+     * @return The number of imported and rejected modules
+     * @throws IOException If the file cannot be read or is not well-formed
+     */
+    public Result importModules(ModuleRecordReader reader) throws IOException {
+        ModuleRecordReader.Record record = new ModuleRecordReader.Record();
+        ModuleValidator.Result validation = new ModuleValidator.Result();
+        List<Module> batch = new ArrayList<>(batchSize);
+        List<String> errors = new ArrayList<>();
+        int imported = 0;
+        int rejected = 0;
+
+        while (reader.next(record)) {
+            if (!validator.validate(record.moduleNumber, record.moduleTitle,
+                    record.zpNote, record.lbNote, validation)) {
+                rejected++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    ModuleValidator.Field field = validation.getFirstError();
+                    errors.add("Zeile " + record.line + ": "
+                            + messages.getMessage(field, validation.getCode(field)));
+                }
+                continue;
+            }
+
+            batch.add(toModule(record, validation));
+            if (batch.size() == batchSize) {
+                sink.write(batch);
+                imported += batch.size();
+                // The sink may still hold the written list, so start a new one
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.write(batch);
+            imported += batch.size();
+        }
+        return new Result(imported, rejected, errors);
+    }
+
+    /**
+     * Creates a module from a validated record, the grades are already parsed
+     *
+     * @param record The validated record
+     * @param validation The validation result of the record
+     * @return The module
+     */
+    private static Module toModule(ModuleRecordReader.Record record, ModuleValidator.Result validation) {
+        Module module = new Module(record.moduleNumber.trim(), record.moduleTitle.trim());
+        module.setZpHundredths(validation.getZpHundredths());
+        module.setLbHundredths(validation.getLbHundredths());
+        return module;
+    }
+
+    /**
+     * Outcome of an import
+     */
+    public static final class Result {
+        private final int importedCount;
+        private final int rejectedCount;
+        private final List<String> errors;
+
+        Result(int importedCount, int rejectedCount, List<String> errors) {
+            this.importedCount = importedCount;
+            this.rejectedCount = rejectedCount;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * Gets the number of imported modules
+         *
+         * @return The imported modules
+         */
+        public int getImportedCount() {
+            return importedCount;
+        }
+
+        /**
+         * Gets the number of records rejected by validation
+         *
+         * @return The rejected records
+         */
+        public int getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * Gets the validation errors of the first rejected records
+         *
+         * @return Messages with the line of the record
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+}
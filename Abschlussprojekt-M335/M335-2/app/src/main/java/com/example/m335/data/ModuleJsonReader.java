@@ -0,0 +1,245 @@
+package com.example.m335.data;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streaming reader for module JSON files.
+ * The file is an array of objects with the members moduleNumber, moduleTitle, zpNote
+ * and lbNote; grades may be numbers, strings or null and unknown members are skipped.
+ * Only the current value is held in memory.
+ */
+public class ModuleJsonReader implements ModuleRecordReader {
+    private final ChannelCharReader reader;
+    private final StringBuilder value = new StringBuilder();
+    private boolean started = false;
+    private boolean finished = false;
+
+    /**
+     * Constructor for a file read through the given channel
+     *
+     * @param channel The channel to read from
+     * @param bufferSize The size of the read buffers
+     */
+    public ModuleJsonReader(ReadableByteChannel channel, int bufferSize) {
+        this.reader = new ChannelCharReader(channel, bufferSize);
+    }
+
+    /**
+     * Reads the next module object of the array
+     *
+     * @param record The record to fill
+     * @return false after the last element
+     * @throws IOException If the file cannot be read or is not well-formed
+     */
+    @Override
+    public boolean next(Record record) throws IOException {
+        if (finished) {
+            return false;
+        }
+        int c = skipWhitespace();
+        if (!started) {
+            started = true;
+            expect(c, '[');
+            c = skipWhitespace();
+            if (c == ']') {
+                finished = true;
+                return false;
+            }
+        } else if (c == ']') {
+            finished = true;
+            return false;
+        } else {
+            expect(c, ',');
+            c = skipWhitespace();
+        }
+
+        expect(c, '{');
+        record.clear();
+        record.line = reader.getLine();
+        c = skipWhitespace();
+        if (c == '}') {
+            return true;
+        }
+        while (true) {
+            expect(c, '"');
+            String name = readString();
+            expect(skipWhitespace(), ':');
+            String member = readValue();
+            if ("moduleNumber".equals(name)) {
+                record.moduleNumber = member;
+            } else if ("moduleTitle".equals(name)) {
+                record.moduleTitle = member;
+            } else if ("zpNote".equals(name)) {
+                record.zpNote = member;
+            } else if ("lbNote".equals(name)) {
+                record.lbNote = member;
+            }
+
+            c = skipWhitespace();
+            if (c == '}') {
+                return true;
+            }
+            expect(c, ',');
+            c = skipWhitespace();
+        }
+    }
+
+    /**
+     * Reads a scalar value, skipping nested objects and arrays
+     *
+     * @return The value as text, null for JSON null, objects and arrays
+     * @throws IOException If the file cannot be read or is not well-formed
+     */
+    private String readValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            skipNested(c);
+            return null;
+        }
+
+        // Number, true, false or null
+        if (isValueEnd(c)) {
+            throw new ModuleFormatException(reader.getLine(), "Wert erwartet");
+        }
+        value.setLength(0);
+        value.append((char) c);
+        while (!isValueEnd(reader.peek())) {
+            value.append((char) reader.read());
+        }
+        String literal = value.toString();
+        return "null".equals(literal) ? null : literal;
+    }
+
+    /**
+     * Checks if a character ends a number or literal
+     *
+     * @param c The character or -1
+     * @return true at a separator, whitespace or the end of the file
+     */
+    private static boolean isValueEnd(int c) {
+        return c == -1 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c);
+    }
+
+    /**
+     * Reads a string after its opening quote and resolves escapes
+     *
+     * @return The string
+     * @throws IOException If the file cannot be read or the string is not closed
+     */
+    private String readString() throws IOException {
+        value.setLength(0);
+        while (true) {
+            int c = reader.read();
+            if (c == -1) {
+                throw new ModuleFormatException(reader.getLine(), "Zeichenkette nicht geschlossen");
+            }
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append((char) c);
+                continue;
+            }
+            c = reader.read();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    value.append((char) c);
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    value.append(readUnicodeEscape());
+                    break;
+                default:
+                    throw new ModuleFormatException(reader.getLine(), "Ungültige Escape-Sequenz");
+            }
+        }
+    }
+
+    /**
+     * Reads the four hex digits of a \\u escape
+     *
+     * @return The escaped character
+     * @throws IOException If the file cannot be read or a digit is invalid
+     */
+    private char readUnicodeEscape() throws IOException {
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(reader.read(), 16);
+            if (digit < 0) {
+                throw new ModuleFormatException(reader.getLine(), "Ungültige Escape-Sequenz");
+            }
+            code = code * 16 + digit;
+        }
+        return (char) code;
+    }
+
+    /**
+     * Skips a nested object or array after its opening bracket
+     *
+     * @param open The opening bracket
+     * @throws IOException If the file cannot be read or ends inside the value
+     */
+    private void skipNested(int open) throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = reader.read();
+            if (c == -1) {
+                throw new ModuleFormatException(reader.getLine(), "Unerwartetes Dateiende");
+            }
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads up to the next character that is not whitespace
+     *
+     * @return The character or -1 at the end of the file
+     * @throws IOException If the file cannot be read
+     */
+    private int skipWhitespace() throws IOException {
+        int c = reader.read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = reader.read();
+        }
+        return c;
+    }
+
+    /**
+     * Checks that the expected character was read
+     *
+     * @param actual The character read
+     * @param expected The character required by the JSON grammar
+     * @throws ModuleFormatException If the characters differ
+     */
+    private void expect(int actual, char expected) throws ModuleFormatException {
+        if (actual != expected) {
+            throw new ModuleFormatException(reader.getLine(), "'" + expected + "' erwartet");
+        }
+    }
+}
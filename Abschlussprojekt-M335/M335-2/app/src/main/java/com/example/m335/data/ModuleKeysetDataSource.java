@@ -0,0 +1,338 @@
+package com.example.m335.data;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.ItemKeyedDataSource;
+
+import com.example.m335.model.Module;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Paged data source for the module list.
+ * Pages are loaded with keyset pagination on (sortKey, moduleNumber) instead of OFFSET,
+ * so every page is an index range scan no matter how deep the user has scrolled.
+ * Sorted by average, the key is (gradeSumHundredths, sortKey, moduleNumber).
+ * The key of a page boundary is the module at that boundary.
+ * Loaded pages fill the {@link ModuleCache}, so opening a visible module needs no query.
+ */
+public class ModuleKeysetDataSource extends ItemKeyedDataSource<Module, Module> {
+    private final ModuleDatabase database;
+    private final ModuleDao moduleDao;
+    private final ModuleCache moduleCache;
+    private final ModuleSortOrder sortOrder;
+
+    /**
+     * Constructor for the list in module number order
+     *
+     * @param database The module database
+     */
+    public ModuleKeysetDataSource(ModuleDatabase database) {
+        this(database, ModuleSortOrder.NUMBER);
+    }
+
+    /**
+     * Constructor registers the data source for changes of the modules table
+     *
+     * @param database The module database
+     * @param sortOrder The order of the list
+     */
+    public ModuleKeysetDataSource(ModuleDatabase database, ModuleSortOrder sortOrder) {
+        this.database = database;
+        this.sortOrder = sortOrder;
+        this.moduleDao = database.moduleDao();
+        this.moduleCache = database.getModuleCache();
+
+        // Any write to the table invalidates this source, the PagedList then reloads
+        // around the last visible key from a new source
+        WeakTableObserver.register(database, this, "modules");
+    }
+
+    /**
+     * Loads the first page, either from the start or from the requested module.
+     * Count and page are read in one transaction so the placeholders match the page.
+     *
+     * @param params The requested key and load size
+     * @param callback Receives the page, its position and the total count
+     */
+    @Override
+    public void loadInitial(@NonNull final LoadInitialParams<Module> params,
+                            @NonNull LoadInitialCallback<Module> callback) {
+        long generation = moduleCache.getGeneration();
+        InitialPage page = null;
+        // The warm-up only reads the first page in module number order
+        if (params.requestedInitialKey == null && sortOrder == ModuleSortOrder.NUMBER) {
+            page = takePreloadedPage(params.requestedLoadSize, generation);
+        }
+        if (page == null) {
+            page = database.runInTransaction(new Callable<InitialPage>() {
+                @Override
+                public InitialPage call() {
+                    Module key = params.requestedInitialKey;
+                    if (key == null) {
+                        return new InitialPage(loadFirst(params.requestedLoadSize),
+                                0, moduleDao.getModuleCount());
+                    }
+                    return new InitialPage(loadFrom(key, params.requestedLoadSize),
+                            countBefore(key), moduleDao.getModuleCount());
+                }
+            });
+            moduleCache.putAllIfCurrent(page.modules, generation);
+        }
+
+        if (params.placeholdersEnabled) {
+            callback.onResult(page.modules, page.position, page.totalCount);
+        } else {
+            callback.onResult(page.modules);
+        }
+    }
+
+    /**
+     * Reads the first page ahead of the first list, see {@link ModuleWarmUp}.
+     * The page is handed to the next initial load from the start of the list,
+     * unless a write happens in between.
+     *
+     * @param database The module database
+     * @param loadSize The initial load size the list will request
+     */
+    static void preloadFirstPage(final ModuleDatabase database, final int loadSize) {
+        ModuleCache cache = database.getModuleCache();
+        long generation = cache.getGeneration();
+        InitialPage page = database.runInTransaction(new Callable<InitialPage>() {
+            @Override
+            public InitialPage call() {
+                return loadFirstPage(database.moduleDao(), loadSize);
+            }
+        });
+        cache.putAllIfCurrent(page.modules, generation);
+        database.setPreloadedPage(new PreloadedPage(page, loadSize, generation));
+    }
+
+    /**
+     * Takes the preloaded first page if it is still valid for this load
+     *
+     * @param loadSize The requested load size
+     * @param generation The cache generation read before this load
+     * @return The page or null if there is none or it may be outdated
+     */
+    private InitialPage takePreloadedPage(int loadSize, long generation) {
+        PreloadedPage preloaded = database.takePreloadedPage();
+        // Every write raises the cache generation, an older page may miss it
+        if (preloaded == null || preloaded.generation != generation || preloaded.loadSize < loadSize) {
+            return null;
+        }
+        List<Module> modules = preloaded.page.modules;
+        if (modules.size() > loadSize) {
+            modules = new ArrayList<>(modules.subList(0, loadSize));
+        }
+        return new InitialPage(modules, 0, preloaded.page.totalCount);
+    }
+
+    /**
+     * Reads the count and the first page, to be called inside a transaction
+     *
+     * @param moduleDao The DAO to read with
+     * @param loadSize The page size
+     * @return The first page
+     */
+    private static InitialPage loadFirstPage(ModuleDao moduleDao, int loadSize) {
+        int totalCount = moduleDao.getModuleCount();
+        return new InitialPage(moduleDao.getFirstModules(loadSize), 0, totalCount);
+    }
+
+    /**
+     * Loads the page following the given module
+     *
+     * @param params The last loaded module and the load size
+     * @param callback Receives the page
+     */
+    @Override
+    public void loadAfter(@NonNull LoadParams<Module> params,
+                          @NonNull LoadCallback<Module> callback) {
+        long generation = moduleCache.getGeneration();
+        List<Module> modules = loadAfter(params.key, params.requestedLoadSize);
+        moduleCache.putAllIfCurrent(modules, generation);
+        callback.onResult(modules);
+    }
+
+    /**
+     * Loads the page preceding the given module
+     *
+     * @param params The first loaded module and the load size
+     * @param callback Receives the page in ascending order
+     */
+    @Override
+    public void loadBefore(@NonNull LoadParams<Module> params,
+                           @NonNull LoadCallback<Module> callback) {
+        long generation = moduleCache.getGeneration();
+        List<Module> modules = loadBefore(params.key, params.requestedLoadSize);
+        // The query walks the index against the list order, the page has to be handed over in list order
+        Collections.reverse(modules);
+        moduleCache.putAllIfCurrent(modules, generation);
+        callback.onResult(modules);
+    }
+
+    /**
+     * Reads the first page
+     *
+     * @param limit The page size
+     * @return The first modules in list order
+     */
+    private List<Module> loadFirst(int limit) {
+        switch (sortOrder) {
+            case BEST_FIRST:
+                return moduleDao.getFirstModulesByGradeDescending(limit);
+            case WORST_FIRST:
+                return moduleDao.getFirstModulesByGrade(limit);
+            default:
+                return moduleDao.getFirstModules(limit);
+        }
+    }
+
+    /**
+     * Reads a page starting at a module (inclusive)
+     *
+     * @param key The first module of the page
+     * @param limit The page size
+     * @return The modules in list order
+     */
+    private List<Module> loadFrom(Module key, int limit) {
+        switch (sortOrder) {
+            case BEST_FIRST:
+                return moduleDao.getModulesFromByGradeDescending(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber(), limit);
+            case WORST_FIRST:
+                return moduleDao.getModulesFromByGrade(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber(), limit);
+            default:
+                return moduleDao.getModulesFrom(key.getSortKey(), key.getModuleNumber(), limit);
+        }
+    }
+
+    /**
+     * Counts the modules listed before a module
+     *
+     * @param key The module
+     * @return The list position of the module
+     */
+    private int countBefore(Module key) {
+        switch (sortOrder) {
+            case BEST_FIRST:
+                return moduleDao.countModulesAboveGrade(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber());
+            case WORST_FIRST:
+                return moduleDao.countModulesBelowGrade(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber());
+            default:
+                return moduleDao.countModulesBefore(key.getSortKey(), key.getModuleNumber());
+        }
+    }
+
+    /**
+     * Reads the page following a module
+     *
+     * @param key The last module of the previous page
+     * @param limit The page size
+     * @return The modules in list order
+     */
+    private List<Module> loadAfter(Module key, int limit) {
+        switch (sortOrder) {
+            case BEST_FIRST:
+                return moduleDao.getModulesBelowGrade(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber(), limit);
+            case WORST_FIRST:
+                return moduleDao.getModulesAboveGrade(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber(), limit);
+            default:
+                return moduleDao.getModulesAfter(key.getSortKey(), key.getModuleNumber(), limit);
+        }
+    }
+
+    /**
+     * Reads the page preceding a module
+     *
+     * @param key The first module of the following page
+     * @param limit The page size
+     * @return The modules in reverse list order
+     */
+    private List<Module> loadBefore(Module key, int limit) {
+        switch (sortOrder) {
+            case BEST_FIRST:
+                return moduleDao.getModulesAboveGrade(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber(), limit);
+            case WORST_FIRST:
+                return moduleDao.getModulesBelowGrade(
+                        key.getGradeSumHundredths(), key.getSortKey(), key.getModuleNumber(), limit);
+            default:
+                return moduleDao.getModulesBefore(key.getSortKey(), key.getModuleNumber(), limit);
+        }
+    }
+
+    /**
+     * Gets the keyset key of a module
+     *
+     * @param item The module
+     * @return The module itself, its sort key and number form the key
+     */
+    @NonNull
+    @Override
+    public Module getKey(@NonNull Module item) {
+        return item;
+    }
+
+    /**
+     * Result of the initial load
+     */
+    private static class InitialPage {
+        final List<Module> modules;
+        final int position;
+        final int totalCount;
+
+        InitialPage(List<Module> modules, int position, int totalCount) {
+            this.modules = modules;
+            this.position = position;
+            this.totalCount = totalCount;
+        }
+    }
+
+    /**
+     * A first page read by the warm-up, with the state it was read in
+     */
+    static class PreloadedPage {
+        final InitialPage page;
+        final int loadSize;
+        final long generation;
+
+        PreloadedPage(InitialPage page, int loadSize, long generation) {
+            this.page = page;
+            this.loadSize = loadSize;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Factory creating a new data source after every invalidation
+     */
+    public static class Factory extends DataSource.Factory<Module, Module> {
+        private final ModuleDatabase database;
+        private final ModuleSortOrder sortOrder;
+
+        public Factory(ModuleDatabase database) {
+            this(database, ModuleSortOrder.NUMBER);
+        }
+
+        public Factory(ModuleDatabase database, ModuleSortOrder sortOrder) {
+            this.database = database;
+            this.sortOrder = sortOrder;
+        }
+
+        @NonNull
+        @Override
+        public DataSource<Module, Module> create() {
+            return new ModuleKeysetDataSource(database, sortOrder);
+        }
+    }
+}
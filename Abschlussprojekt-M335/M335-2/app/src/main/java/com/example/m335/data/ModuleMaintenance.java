@@ -0,0 +1,501 @@
+package com.example.m335.data;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Maintenance pass over the database file: refreshes the query planner statistics,
+ * returns free pages to the file system and checkpoints the write-ahead log.
+ * <p>
+ * Every step runs as its own task on the writer thread of the {@link ModuleWriteQueue},
+ * outside any transaction, so queued writes run between the steps and never meet a
+ * half-done VACUUM. Free pages are released in small steps and the pass can be stopped
+ * between any two of them.
+ * <p>
+ * SQLite can switch a populated file to incremental auto-vacuum only with a full VACUUM,
+ * which cannot run inside Room's migration transaction; the first pass on a database does
+ * that conversion once, later passes only release the free pages. New files are created in
+ * incremental mode by {@link ModuleOpenHelperFactory} and skip the conversion.
+ * <p>
+ * The full-text index has to be rebuilt after the VACUUM. A flag in the file marks the rebuild
+ * as pending before the VACUUM starts, so a pass that is killed in between leaves the flag
+ * and the next pass rebuilds the index before anything else.
+ */
+public class ModuleMaintenance {
+
+    /**
+     * Free pages released per writer task
+     */
+    public static final int VACUUM_STEP_PAGES = 256;
+
+    /**
+     * Value of PRAGMA auto_vacuum for incremental auto-vacuum
+     */
+    static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * Maintenance step recorded in the file while it is pending
+     */
+    static final String STEP_FTS_REBUILD = "fts_rebuild";
+
+    private final ModuleDatabase database;
+    private volatile boolean stopped;
+
+    /**
+     * Constructor with the database to maintain
+     *
+     * @param database The database
+     */
+    public ModuleMaintenance(ModuleDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Stops a running pass after its current step, e.g. when the device leaves idle
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Runs the maintenance pass. Blocks; must not be called on the main thread or the writer thread.
+     *
+     * @return The state of the file before and after, with what was done
+     */
+    public Report run() {
+        long start = System.nanoTime();
+        Report report = new Report();
+        report.before = onWriter(new Callable<FileStats>() {
+            @Override
+            public FileStats call() {
+                return readStats(database());
+            }
+        });
+
+        if (!stopped) {
+            report.ftsRebuilt = onWriter(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return rebuildFtsIfPending(database());
+                }
+            });
+        }
+
+        if (!stopped) {
+            report.fullAnalyze = onWriter(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return analyze(database());
+                }
+            });
+        }
+
+        if (!stopped && report.before.autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+            onWriter(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    convertToIncrementalVacuum(database());
+                    return null;
+                }
+            });
+            report.convertedToIncremental = true;
+            report.ftsRebuilt = true;
+        }
+        while (!stopped) {
+            int freed = onWriter(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return vacuumStep(database());
+                }
+            });
+            if (freed == 0) {
+                break;
+            }
+            report.pagesFreed += freed;
+        }
+
+        if (!stopped) {
+            report.checkpointBusy = onWriter(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return checkpoint(database());
+                }
+            });
+        }
+
+        report.after = onWriter(new Callable<FileStats>() {
+            @Override
+            public FileStats call() {
+                return readStats(database());
+            }
+        });
+        report.stopped = stopped;
+        report.durationMillis = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+
+    private SupportSQLiteDatabase database() {
+        return database.getOpenHelper().getWritableDatabase();
+    }
+
+    /**
+     * Runs a step on the writer thread and waits for it
+     *
+     * @param step The step
+     * @return The result of the step
+     */
+    private <T> T onWriter(final Callable<T> step) {
+        final CompletableFuture<T> done = new CompletableFuture<>();
+        database.getWriteQueue().runOnWriter(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    done.complete(step.call());
+                } catch (Exception e) {
+                    done.completeExceptionally(e);
+                }
+            }
+        });
+        try {
+            return done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            throw new IllegalStateException("Interrupted during database maintenance", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Database maintenance failed", e.getCause());
+        }
+    }
+
+    /**
+     * Reads size, free pages and vacuum mode of the database file
+     *
+     * @param db The database
+     * @return The file statistics
+     */
+    static FileStats readStats(SupportSQLiteDatabase db) {
+        FileStats stats = new FileStats();
+        stats.pageSize = queryLong(db, "PRAGMA page_size");
+        stats.pageCount = queryLong(db, "PRAGMA page_count");
+        stats.freePages = queryLong(db, "PRAGMA freelist_count");
+        stats.autoVacuum = (int) queryLong(db, "PRAGMA auto_vacuum");
+        String path = db.getPath();
+        stats.walBytes = path != null ? new File(path + "-wal").length() : 0;
+        return stats;
+    }
+
+    /**
+     * Collects planner statistics: a full ANALYZE the first time, afterwards PRAGMA optimize,
+     * which only analyzes tables whose statistics are likely out of date
+     *
+     * @param db The database
+     * @return true if a full ANALYZE ran
+     */
+    static boolean analyze(SupportSQLiteDatabase db) {
+        boolean hasStatistics;
+        try (Cursor cursor = db.query("SELECT 1 FROM sqlite_master WHERE name = 'sqlite_stat1'")) {
+            hasStatistics = cursor.moveToFirst();
+        }
+        if (!hasStatistics) {
+            db.execSQL("ANALYZE");
+            return true;
+        }
+        drain(db, "PRAGMA optimize");
+        return false;
+    }
+
+    /**
+     * Checks if the file has no schema yet
+     *
+     * @param db The database
+     * @return true if no table, index or trigger exists
+     */
+    static boolean isEmpty(SupportSQLiteDatabase db) {
+        return queryLong(db, "SELECT COUNT(*) FROM sqlite_master") == 0;
+    }
+
+    /**
+     * Puts an empty file into incremental auto-vacuum mode.
+     * Switching to WAL may already have written the file header with the default mode,
+     * the pragma then only takes effect with a VACUUM, which costs nothing on an empty file.
+     *
+     * @param db The database without schema, not inside a transaction
+     */
+    static void setIncrementalVacuum(SupportSQLiteDatabase db) {
+        db.execSQL("PRAGMA auto_vacuum = " + AUTO_VACUUM_INCREMENTAL);
+        if (queryLong(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("VACUUM");
+        }
+    }
+
+    /**
+     * Switches the file to incremental auto-vacuum, which takes a full VACUUM.
+     * VACUUM may renumber the rowids of tables without an INTEGER PRIMARY KEY, so the
+     * full-text index, which refers to module rowids, is rebuilt afterwards.
+     *
+     * @param db The database, not inside a transaction
+     */
+    static void convertToIncrementalVacuum(SupportSQLiteDatabase db) {
+        markFtsRebuildPending(db);
+        db.execSQL("PRAGMA auto_vacuum = " + AUTO_VACUUM_INCREMENTAL);
+        db.execSQL("VACUUM");
+        rebuildFtsIfPending(db);
+    }
+
+    /**
+     * Records in the file that the full-text index has to be rebuilt.
+     * The table is not part of Room's schema and is created on first use.
+     *
+     * @param db The database, not inside a transaction so the flag is committed at once
+     */
+    static void markFtsRebuildPending(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `maintenance_state` (`step` TEXT NOT NULL, PRIMARY KEY(`step`))");
+        db.execSQL("INSERT OR IGNORE INTO `maintenance_state` (`step`) VALUES ('" + STEP_FTS_REBUILD + "')");
+    }
+
+    /**
+     * Rebuilds the full-text index if a conversion marked it as pending,
+     * the rebuild and the removal of the flag are committed together
+     *
+     * @param db The database
+     * @return true if the index was rebuilt
+     */
+    static boolean rebuildFtsIfPending(SupportSQLiteDatabase db) {
+        boolean hasState = queryLong(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'maintenance_state'") > 0;
+        if (!hasState || queryLong(db,
+                "SELECT COUNT(*) FROM `maintenance_state` WHERE `step` = '" + STEP_FTS_REBUILD + "'") == 0) {
+            return false;
+        }
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO `modules_fts`(`modules_fts`) VALUES ('rebuild')");
+            db.execSQL("DELETE FROM `maintenance_state` WHERE `step` = '" + STEP_FTS_REBUILD + "'");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return true;
+    }
+
+    /**
+     * Releases up to {@link #VACUUM_STEP_PAGES} free pages to the file system
+     *
+     * @param db The database in incremental auto-vacuum mode
+     * @return The number of released pages, 0 if there are none left
+     */
+    static int vacuumStep(SupportSQLiteDatabase db) {
+        long freePages = queryLong(db, "PRAGMA freelist_count");
+        if (freePages == 0) {
+            return 0;
+        }
+        // The pragma releases one page per result row, the cursor has to be read to the end
+        drain(db, "PRAGMA incremental_vacuum(" + Math.min(freePages, VACUUM_STEP_PAGES) + ")");
+        return (int) (freePages - queryLong(db, "PRAGMA freelist_count"));
+    }
+
+    /**
+     * Copies the write-ahead log into the database file and truncates it to zero bytes
+     *
+     * @param db The database
+     * @return true if readers kept the checkpoint from completing
+     */
+    static boolean checkpoint(SupportSQLiteDatabase db) {
+        try (Cursor cursor = db.query("PRAGMA wal_checkpoint(TRUNCATE)")) {
+            return cursor.moveToFirst() && cursor.getInt(0) != 0;
+        }
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Runs a statement through a cursor to its end, for pragmas that may return rows
+     */
+    private static void drain(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            while (cursor.moveToNext()) {
+                // Only the side effect counts
+            }
+        }
+    }
+
+    /**
+     * Size and free space of the database file at one point in time
+     */
+    public static final class FileStats {
+        private long pageSize;
+        private long pageCount;
+        private long freePages;
+        private int autoVacuum;
+        private long walBytes;
+
+        /**
+         * Gets the size of the database file
+         *
+         * @return The size in bytes
+         */
+        public long getFileBytes() {
+            return pageSize * pageCount;
+        }
+
+        /**
+         * Gets the number of pages of the database file
+         *
+         * @return The page count
+         */
+        public long getPageCount() {
+            return pageCount;
+        }
+
+        /**
+         * Gets the number of unused pages inside the database file
+         *
+         * @return The free pages
+         */
+        public long getFreePages() {
+            return freePages;
+        }
+
+        /**
+         * Gets the auto-vacuum mode of the file
+         *
+         * @return 0 for none, 1 for full, 2 for incremental
+         */
+        public int getAutoVacuum() {
+            return autoVacuum;
+        }
+
+        /**
+         * Gets the size of the write-ahead log file
+         *
+         * @return The size in bytes, 0 if there is no log file
+         */
+        public long getWalBytes() {
+            return walBytes;
+        }
+
+        @Override
+        public String toString() {
+            return getFileBytes() + " bytes, " + freePages + " free pages, WAL " + walBytes + " bytes";
+        }
+    }
+
+    /**
+     * Outcome of a maintenance pass
+     */
+    public static final class Report {
+        private FileStats before;
+        private FileStats after;
+        private boolean fullAnalyze;
+        private boolean convertedToIncremental;
+        private boolean ftsRebuilt;
+        private long pagesFreed;
+        private boolean checkpointBusy;
+        private boolean stopped;
+        private long durationMillis;
+
+        /**
+         * Gets the state of the file before the pass
+         *
+         * @return The file statistics before
+         */
+        public FileStats getBefore() {
+            return before;
+        }
+
+        /**
+         * Gets the state of the file after the pass
+         *
+         * @return The file statistics after
+         */
+        public FileStats getAfter() {
+            return after;
+        }
+
+        /**
+         * Checks if the statistics were collected by a full ANALYZE
+         *
+         * @return true for ANALYZE, false for PRAGMA optimize or a stopped pass
+         */
+        public boolean isFullAnalyze() {
+            return fullAnalyze;
+        }
+
+        /**
+         * Checks if the file was switched to incremental auto-vacuum by a full VACUUM
+         *
+         * @return true if the conversion ran in this pass
+         */
+        public boolean isConvertedToIncremental() {
+            return convertedToIncremental;
+        }
+
+        /**
+         * Checks if the full-text index was rebuilt, after the conversion or to finish
+         * a conversion whose pass was killed before the rebuild
+         *
+         * @return true if the index was rebuilt in this pass
+         */
+        public boolean isFtsRebuilt() {
+            return ftsRebuilt;
+        }
+
+        /**
+         * Gets the number of free pages released by incremental vacuum steps
+         *
+         * @return The released pages
+         */
+        public long getPagesFreed() {
+            return pagesFreed;
+        }
+
+        /**
+         * Checks if readers kept the checkpoint from completing
+         *
+         * @return true if the log could not be fully checkpointed
+         */
+        public boolean isCheckpointBusy() {
+            return checkpointBusy;
+        }
+
+        /**
+         * Checks if the pass was stopped before all steps ran
+         *
+         * @return true if stopped
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        /**
+         * Gets the wall time of the pass
+         *
+         * @return The duration in milliseconds
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "before " + before + ", after " + after + ", " + pagesFreed + " pages freed"
+                    + (convertedToIncremental ? ", converted to incremental vacuum" : "")
+                    + (ftsRebuilt ? ", full-text index rebuilt" : "")
+                    + (checkpointBusy ? ", checkpoint busy" : "")
+                    + (stopped ? ", stopped" : "") + ", " + durationMillis + " ms";
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.m335.data;
+
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opens the module database off the main thread and reports the progress of migrations.
+ * Large tables are copied in rowid chunks, so a migration never holds more than one
+ * chunk of work between two progress reports.
+ */
+public final class ModuleMigrationRunner {
+
+    /**
+     * Number of rows copied per statement
+     */
+    public static final int CHUNK_SIZE = 10_000;
+
+    /**
+     * Receives migration progress, called on the migrating thread
+     */
+    public interface ProgressListener {
+        /**
+         * Called after every chunk and once when the database is open
+         *
+         * @param progress The current progress
+         */
+        void onProgress(Progress progress);
+    }
+
+    private static final MutableLiveData<Progress> PROGRESS = new MutableLiveData<>();
+    private static volatile ProgressListener progressListener;
+
+    private ModuleMigrationRunner() {
+    }
+
+    /**
+     * Gets the migration progress of the app database
+     *
+     * @return LiveData with the progress of a running migration, null once the database is open
+     */
+    public static LiveData<Progress> getProgress() {
+        return PROGRESS;
+    }
+
+    /**
+     * Sets an additional listener receiving every progress report
+     *
+     * @param listener The listener or null to remove it
+     */
+    public static void setProgressListener(ProgressListener listener) {
+        progressListener = listener;
+    }
+
+    /**
+     * Opens the database on its own thread, running pending migrations there
+     *
+     * @param database The database to open
+     */
+    public static void openInBackground(ModuleDatabase database) {
+        openInBackground(database, createMigrationExecutor());
+    }
+
+    /**
+     * Opens the database on the given executor, running pending migrations there.
+     * Queries issued meanwhile wait for the migration in the open helper.
+     *
+     * @param database The database to open
+     * @param executor The executor opening the database
+     */
+    static void openInBackground(final ModuleDatabase database, Executor executor) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                database.getOpenHelper().getWritableDatabase();
+                report(Progress.finished());
+            }
+        });
+    }
+
+    /**
+     * Copies all rows of a table into another table in rowid chunks.
+     * Row ids are kept, so a content-synced full-text index stays valid.
+     *
+     * @param db The database being migrated
+     * @param step The name of the migration step for progress reports
+     * @param sourceTable The table to copy from
+     * @param targetTable The table to copy into
+     * @param targetColumns The target columns, without rowid
+     * @param sourceExpressions One expression over the source row per target column
+     */
+    static void copyInChunks(SupportSQLiteDatabase db, String step, String sourceTable,
+                             String targetTable, String targetColumns, String sourceExpressions) {
+        long total = count(db, sourceTable);
+        String insert = "INSERT INTO `" + targetTable + "` (`rowid`, " + targetColumns + ") "
+                + "SELECT `rowid`, " + sourceExpressions + " FROM `" + sourceTable + "` "
+                + "WHERE `rowid` > ? AND `rowid` <= ?";
+        String nextBoundary = "SELECT `rowid` FROM `" + sourceTable + "` WHERE `rowid` > ? "
+                + "ORDER BY `rowid` LIMIT 1 OFFSET " + (CHUNK_SIZE - 1);
+
+        long copied = 0;
+        long lastRowId = Long.MIN_VALUE;
+        report(new Progress(step, 0, total));
+        while (copied < total) {
+            long boundary = Long.MAX_VALUE;
+            try (Cursor cursor = db.query(nextBoundary, new Object[]{lastRowId})) {
+                if (cursor.moveToFirst()) {
+                    boundary = cursor.getLong(0);
+                }
+            }
+            db.execSQL(insert, new Object[]{lastRowId, boundary});
+            copied = boundary == Long.MAX_VALUE ? total : copied + CHUNK_SIZE;
+            lastRowId = boundary;
+            report(new Progress(step, copied, total));
+        }
+    }
+
+    /**
+     * Counts the rows of a table
+     *
+     * @param db The database
+     * @param table The table
+     * @return The number of rows
+     */
+    static long count(SupportSQLiteDatabase db, String table) {
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM `" + table + "`")) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    /**
+     * Publishes a progress report to the listener and the LiveData.
+     * The finished report clears the LiveData, so an observer subscribing after the run
+     * does not get the last report of a migration that is long over.
+     *
+     * @param progress The progress to report
+     */
+    static void report(Progress progress) {
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onProgress(progress);
+        }
+        PROGRESS.postValue(progress.isFinished() ? null : progress);
+    }
+
+    /**
+     * Creates the thread that opens and migrates the database
+     *
+     * @return A single-thread executor with a daemon thread
+     */
+    private static ExecutorService createMigrationExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "module-migration");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Progress of one migration step
+     */
+    public static final class Progress {
+        private final String step;
+        private final long done;
+        private final long total;
+        private final boolean finished;
+
+        /**
+         * Constructor for a running step
+         *
+         * @param step The name of the step
+         * @param done The number of rows processed
+         * @param total The number of rows of the step
+         */
+        public Progress(String step, long done, long total) {
+            this(step, done, total, false);
+        }
+
+        private Progress(String step, long done, long total, boolean finished) {
+            this.step = step;
+            this.done = done;
+            this.total = total;
+            this.finished = finished;
+        }
+
+        /**
+         * Creates the report sent once the database is open
+         *
+         * @return The finished progress
+         */
+        static Progress finished() {
+            return new Progress(null, 0, 0, true);
+        }
+
+        /**
+         * Gets the name of the step
+         *
+         * @return The step or null when finished
+         */
+        public String getStep() {
+            return step;
+        }
+
+        /**
+         * Gets the number of rows processed
+         *
+         * @return The processed rows
+         */
+        public long getDone() {
+            return done;
+        }
+
+        /**
+         * Gets the number of rows of the step
+         *
+         * @return The total rows
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Checks if the database is open and all migrations are done
+         *
+         * @return true once the database is ready
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Gets the progress of the step in percent
+         *
+         * @return 0 to 100
+         */
+        public int getPercent() {
+            return total > 0 ? (int) (done * 100 / total) : 100;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.m335.data;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.m335.model.Assessment;
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleSyncState;
+
+/**
+ * Schema migrations of the module database.
+ * Every schema version gets a migration here and a test case in ModuleMigrationTest;
+ * the database no longer falls back to deleting the user's modules.
+ */
+public final class ModuleMigrations {
+
+    /**
+     * Version 2 adds the full-text index over module numbers and titles.
+     * The statements match what Room generates for {@link com.example.m335.model.ModuleFts}.
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            createFtsIndex(db);
+        }
+    };
+
+    /**
+     * Version 3 adds the natural sort key of the module number and its index.
+     * Existing rows get their key computed in Java, the same way new rows do.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `modules` ADD COLUMN `sortKey` INTEGER NOT NULL DEFAULT 0");
+            // Filling the key does not touch indexed text, the full-text update triggers
+            // would only delete and re-add every row
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_modules_fts_BEFORE_UPDATE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_modules_fts_AFTER_UPDATE");
+            fillSortKeys(db);
+            createFtsTriggers(db);
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_modules_sortKey_moduleNumber` "
+                    + "ON `modules` (`sortKey`, `moduleNumber`)");
+        }
+    };
+
+    /**
+     * Version 4 stores grades as hundredths in INTEGER columns instead of REAL.
+     * SQLite cannot change a column type, so the table is copied in chunks into a new one.
+     * Row ids are kept, so the full-text index stays valid; only its triggers,
+     * which are dropped with the old table, are created again.
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `modules_new` ("
+                    + "`moduleNumber` TEXT NOT NULL, `moduleTitle` TEXT NOT NULL, "
+                    + "`zpHundredths` INTEGER NOT NULL DEFAULT -1, "
+                    + "`lbHundredths` INTEGER NOT NULL DEFAULT -1, "
+                    + "`sortKey` INTEGER NOT NULL, PRIMARY KEY(`moduleNumber`))");
+            ModuleMigrationRunner.copyInChunks(db, "grades", "modules", "modules_new",
+                    "`moduleNumber`, `moduleTitle`, `zpHundredths`, `lbHundredths`, `sortKey`",
+                    "`moduleNumber`, `moduleTitle`, " + toHundredthsSql("zpNote") + ", "
+                            + toHundredthsSql("lbNote") + ", `sortKey`");
+            db.execSQL("DROP TABLE `modules`");
+            db.execSQL("ALTER TABLE `modules_new` RENAME TO `modules`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_modules_sortKey_moduleNumber` "
+                    + "ON `modules` (`sortKey`, `moduleNumber`)");
+            createFtsTriggers(db);
+        }
+    };
+
+    /**
+     * Version 5 adds the row version used by conditional updates.
+     * Adding a column with a default touches no row, so the full-text triggers don't fire.
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `modules` ADD COLUMN `version` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Version 6 adds the weighted assessments of a module.
+     * The statements match what Room generates for {@link com.example.m335.model.Assessment},
+     * the triggers add the weight check Room cannot declare.
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `assessments` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `moduleNumber` TEXT NOT NULL, "
+                    + "`kind` TEXT NOT NULL, `weight` INTEGER NOT NULL, "
+                    + "`gradeHundredths` INTEGER NOT NULL DEFAULT -1, "
+                    + "FOREIGN KEY(`moduleNumber`) REFERENCES `modules`(`moduleNumber`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_assessments_moduleNumber_kind` "
+                    + "ON `assessments` (`moduleNumber`, `kind`)");
+            createAssessmentTriggers(db);
+        }
+    };
+
+    /**
+     * Version 7 stores the grade sum of every module, maintained by triggers and indexed,
+     * so that the list can be sorted and filtered by average in SQL.
+     * Like in version 3 the full-text update triggers are dropped while the column is filled.
+     */
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `modules` ADD COLUMN `gradeSumHundredths` INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_modules_fts_BEFORE_UPDATE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_modules_fts_AFTER_UPDATE");
+            // Ungraded modules keep the default, the fill is a single statement
+            long total = ModuleMigrationRunner.count(db, "modules");
+            ModuleMigrationRunner.report(new ModuleMigrationRunner.Progress("average", 0, total));
+            db.execSQL("UPDATE `modules` SET `gradeSumHundredths` = `zpHundredths` + `lbHundredths` "
+                    + "WHERE `zpHundredths` >= 0 AND `lbHundredths` >= 0");
+            ModuleMigrationRunner.report(new ModuleMigrationRunner.Progress("average", total, total));
+            createFtsTriggers(db);
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_modules_gradeSumHundredths_sortKey_moduleNumber` "
+                    + "ON `modules` (`gradeSumHundredths`, `sortKey`, `moduleNumber`)");
+            createGradeSumTriggers(db);
+        }
+    };
+
+    /**
+     * Version 8 adds the change tracking of the delta sync.
+     * The statements match what Room generates for {@link com.example.m335.model.ModuleChange}
+     * and {@link com.example.m335.model.ModuleSyncState}. Every existing module is recorded
+     * as a pending change, so the first sync sends all of them.
+     */
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `module_changes` ("
+                    + "`moduleNumber` TEXT NOT NULL, `changeSeq` INTEGER NOT NULL, "
+                    + "`pending` INTEGER NOT NULL, `deleted` INTEGER NOT NULL, "
+                    + "`serverSeq` INTEGER NOT NULL, `baseTitle` TEXT, "
+                    + "`baseZpHundredths` INTEGER NOT NULL DEFAULT -1, "
+                    + "`baseLbHundredths` INTEGER NOT NULL DEFAULT -1, PRIMARY KEY(`moduleNumber`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_module_changes_pending_changeSeq` "
+                    + "ON `module_changes` (`pending`, `changeSeq`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_state` (`id` INTEGER NOT NULL, "
+                    + "`lastChangeSeq` INTEGER NOT NULL, `pullCursor` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            createSyncState(db);
+            // The rowid is unique, so it serves as the first change sequence number
+            long total = ModuleMigrationRunner.count(db, "modules");
+            ModuleMigrationRunner.report(new ModuleMigrationRunner.Progress("sync", 0, total));
+            db.execSQL("INSERT INTO `module_changes` (`moduleNumber`, `changeSeq`, `pending`, `deleted`, `serverSeq`) "
+                    + "SELECT `moduleNumber`, `rowid`, 1, 0, 0 FROM `modules`");
+            db.execSQL("UPDATE `sync_state` SET `lastChangeSeq` = "
+                    + "IFNULL((SELECT MAX(`changeSeq`) FROM `module_changes`), 0) "
+                    + "WHERE `id` = " + ModuleSyncState.ROW_ID);
+            ModuleMigrationRunner.report(new ModuleMigrationRunner.Progress("sync", total, total));
+            createChangeTriggers(db);
+        }
+    };
+
+    /**
+     * All migrations, in version order
+     */
+    public static final Migration[] ALL = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8
+    };
+
+    /**
+     * Creates what Room does not generate itself when a new database is created:
+     * the triggers and the row of sync counters.
+     * Migrated databases get the same objects from their migrations.
+     */
+    public static final RoomDatabase.Callback CREATE_TRIGGERS = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            createAssessmentTriggers(db);
+            createGradeSumTriggers(db);
+            createSyncState(db);
+            createChangeTriggers(db);
+        }
+    };
+
+    private ModuleMigrations() {
+    }
+
+    /**
+     * Builds the SQL expression converting a REAL grade column to hundredths
+     *
+     * @param column The grade column
+     * @return The expression, -1 for NULL grades
+     */
+    static String toHundredthsSql(String column) {
+        return "CASE WHEN `" + column + "` IS NULL THEN " + Module.NO_GRADE
+                + " ELSE CAST(ROUND(`" + column + "` * 100) AS INTEGER) END";
+    }
+
+    /**
+     * Builds the SQL expression of the grade sum of a row, see {@link Module#computeGradeSum(int, int)}
+     *
+     * @param row The row, NEW inside a trigger
+     * @return The expression, -1 if a grade is missing
+     */
+    static String gradeSumSql(String row) {
+        return "CASE WHEN " + row + ".`zpHundredths` >= 0 AND " + row + ".`lbHundredths` >= 0 "
+                + "THEN " + row + ".`zpHundredths` + " + row + ".`lbHundredths` ELSE " + Module.NO_GRADE + " END";
+    }
+
+    /**
+     * Creates the triggers that keep the stored grade sum correct for every insert and update,
+     * whoever writes the row. The app already writes the correct sum, so the triggers only
+     * rewrite a row whose sum is wrong; a rewrite would also update its full-text entry.
+     *
+     * @param db The database being created or migrated
+     */
+    static void createGradeSumTriggers(SupportSQLiteDatabase db) {
+        String sum = gradeSumSql("NEW");
+        String fix = "WHEN NEW.`gradeSumHundredths` != " + sum + " BEGIN "
+                + "UPDATE `modules` SET `gradeSumHundredths` = " + sum + " WHERE `rowid` = NEW.`rowid`; END";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS modules_grade_sum_AFTER_INSERT "
+                + "AFTER INSERT ON `modules` " + fix);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS modules_grade_sum_AFTER_UPDATE "
+                + "AFTER UPDATE OF `zpHundredths`, `lbHundredths`, `gradeSumHundredths` ON `modules` " + fix);
+    }
+
+    /**
+     * Creates the triggers that reject an assessment weight below {@link Assessment#MIN_WEIGHT},
+     * the CHECK constraint Room cannot declare. They also catch writes that bypass the entity,
+     * e.g. raw SQL or a future import.
+     *
+     * @param db The database being created or migrated
+     */
+    static void createAssessmentTriggers(SupportSQLiteDatabase db) {
+        String check = "WHEN NEW.`weight` < " + Assessment.MIN_WEIGHT + " BEGIN "
+                + "SELECT RAISE(ABORT, 'assessment weight must be at least " + Assessment.MIN_WEIGHT + "'); END";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS assessments_weight_BEFORE_INSERT "
+                + "BEFORE INSERT ON `assessments` " + check);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS assessments_weight_BEFORE_UPDATE "
+                + "BEFORE UPDATE OF `weight` ON `assessments` " + check);
+    }
+
+    /**
+     * Inserts the row of sync counters if it doesn't exist
+     *
+     * @param db The database being created or migrated
+     */
+    static void createSyncState(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT OR IGNORE INTO `sync_state` (`id`, `lastChangeSeq`, `pullCursor`) "
+                + "VALUES (" + ModuleSyncState.ROW_ID + ", 0, 0)");
+    }
+
+    /**
+     * Builds the trigger statements recording a write of a module as pending change
+     * with the next change sequence number
+     *
+     * @param row The written row, NEW or OLD
+     * @param deleted true if the row was deleted
+     * @return The statements of the trigger body
+     */
+    static String recordChangeSql(String row, boolean deleted) {
+        String number = row + ".`moduleNumber`";
+        // A plain insert, an OR IGNORE here would take the conflict policy of an outer REPLACE
+        return "UPDATE `sync_state` SET `lastChangeSeq` = `lastChangeSeq` + 1 "
+                + "WHERE `id` = " + ModuleSyncState.ROW_ID + "; "
+                + "INSERT INTO `module_changes` (`moduleNumber`, `changeSeq`, `pending`, `deleted`, `serverSeq`) "
+                + "SELECT " + number + ", 0, 1, 0, 0 WHERE NOT EXISTS "
+                + "(SELECT 1 FROM `module_changes` WHERE `moduleNumber` = " + number + "); "
+                + "UPDATE `module_changes` SET `changeSeq` = (SELECT `lastChangeSeq` FROM `sync_state` "
+                + "WHERE `id` = " + ModuleSyncState.ROW_ID + "), `pending` = 1, `deleted` = "
+                + (deleted ? 1 : 0) + " WHERE `moduleNumber` = " + number + ";";
+    }
+
+    /**
+     * Creates the triggers that record every insert, content change and delete of a module
+     * in the change table, whoever writes the row. They only write the change table,
+     * so the full-text entries of the modules are not touched.
+     *
+     * @param db The database being created or migrated
+     */
+    static void createChangeTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS modules_change_AFTER_INSERT "
+                + "AFTER INSERT ON `modules` BEGIN " + recordChangeSql("NEW", false) + " END");
+        // Writes that leave title and grades as they are, e.g. of the sort key, are no change
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS modules_change_AFTER_UPDATE "
+                + "AFTER UPDATE OF `moduleTitle`, `zpHundredths`, `lbHundredths` ON `modules` "
+                + "WHEN OLD.`moduleTitle` IS NOT NEW.`moduleTitle` "
+                + "OR OLD.`zpHundredths` != NEW.`zpHundredths` OR OLD.`lbHundredths` != NEW.`lbHundredths` "
+                + "BEGIN " + recordChangeSql("NEW", false) + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS modules_change_AFTER_DELETE "
+                + "AFTER DELETE ON `modules` BEGIN " + recordChangeSql("OLD", true) + " END");
+    }
+
+    /**
+     * Computes the sort key of every module
+     *
+     * @param db The database being migrated
+     */
+    static void fillSortKeys(SupportSQLiteDatabase db) {
+        SupportSQLiteStatement update = db.compileStatement(
+                "UPDATE `modules` SET `sortKey` = ? WHERE `rowid` = ?");
+        long total = ModuleMigrationRunner.count(db, "modules");
+        long done = 0;
+        try (Cursor cursor = db.query("SELECT `rowid`, `moduleNumber` FROM `modules`")) {
+            while (cursor.moveToNext()) {
+                update.bindLong(1, Module.computeSortKey(cursor.getString(1)));
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+                if (++done % ModuleMigrationRunner.CHUNK_SIZE == 0) {
+                    ModuleMigrationRunner.report(
+                            new ModuleMigrationRunner.Progress("sortKey", done, total));
+                }
+            }
+        }
+        ModuleMigrationRunner.report(new ModuleMigrationRunner.Progress("sortKey", total, total));
+    }
+
+    /**
+     * Creates the full-text table with its content sync triggers and fills it from the modules table
+     *
+     * @param db The database being migrated
+     */
+    static void createFtsIndex(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `modules_fts` USING FTS4("
+                + "`moduleNumber` TEXT, `moduleTitle` TEXT, content=`modules`)");
+        createFtsTriggers(db);
+        // The rebuild is a single statement, progress is reported before and after it
+        long total = ModuleMigrationRunner.count(db, "modules");
+        ModuleMigrationRunner.report(new ModuleMigrationRunner.Progress("search", 0, total));
+        db.execSQL("INSERT INTO `modules_fts`(`modules_fts`) VALUES ('rebuild')");
+        ModuleMigrationRunner.report(new ModuleMigrationRunner.Progress("search", total, total));
+    }
+
+    /**
+     * Creates the triggers that keep the full-text table in sync with the modules table
+     *
+     * @param db The database being migrated
+     */
+    static void createFtsTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_modules_fts_BEFORE_UPDATE "
+                + "BEFORE UPDATE ON `modules` BEGIN "
+                + "DELETE FROM `modules_fts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_modules_fts_BEFORE_DELETE "
+                + "BEFORE DELETE ON `modules` BEGIN "
+                + "DELETE FROM `modules_fts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_modules_fts_AFTER_UPDATE "
+                + "AFTER UPDATE ON `modules` BEGIN "
+                + "INSERT INTO `modules_fts`(`docid`, `moduleNumber`, `moduleTitle`) "
+                + "VALUES (NEW.`rowid`, NEW.`moduleNumber`, NEW.`moduleTitle`); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_modules_fts_AFTER_INSERT "
+                + "AFTER INSERT ON `modules` BEGIN "
+                + "INSERT INTO `modules_fts`(`docid`, `moduleNumber`, `moduleTitle`) "
+                + "VALUES (NEW.`rowid`, NEW.`moduleNumber`, NEW.`moduleTitle`); END");
+    }
+}
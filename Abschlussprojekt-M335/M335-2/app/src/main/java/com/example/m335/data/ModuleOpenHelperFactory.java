@@ -0,0 +1,77 @@
+package com.example.m335.data;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+/**
+ * Opens the database file with the framework helper and creates new files in incremental
+ * auto-vacuum mode. SQLite takes the mode only before the first table is created, so it is
+ * set when the file is configured, before Room's callback creates the schema.
+ * Files created by older versions of the app are converted by {@link ModuleMaintenance}.
+ */
+public final class ModuleOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+    private final SupportSQLiteOpenHelper.Factory delegate = new FrameworkSQLiteOpenHelperFactory();
+
+    @NonNull
+    @Override
+    public SupportSQLiteOpenHelper create(@NonNull SupportSQLiteOpenHelper.Configuration configuration) {
+        return delegate.create(SupportSQLiteOpenHelper.Configuration.builder(configuration.context)
+                .name(configuration.name)
+                .callback(new IncrementalVacuumCallback(configuration.callback))
+                .noBackupDirectory(configuration.useNoBackupDirectory)
+                .allowDataLossOnRecovery(configuration.allowDataLossOnRecovery)
+                .build());
+    }
+
+    /**
+     * Sets the vacuum mode of an empty file and hands every call on to Room's callback
+     */
+    private static final class IncrementalVacuumCallback extends SupportSQLiteOpenHelper.Callback {
+        private final SupportSQLiteOpenHelper.Callback delegate;
+
+        /**
+         * Constructor with the callback of Room
+         *
+         * @param delegate The callback creating and migrating the schema
+         */
+        IncrementalVacuumCallback(SupportSQLiteOpenHelper.Callback delegate) {
+            super(delegate.version);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onConfigure(@NonNull SupportSQLiteDatabase db) {
+            if (!db.isReadOnly() && ModuleMaintenance.isEmpty(db)) {
+                ModuleMaintenance.setIncrementalVacuum(db);
+            }
+            delegate.onConfigure(db);
+        }
+
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            delegate.onCreate(db);
+        }
+
+        @Override
+        public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+            delegate.onUpgrade(db, oldVersion, newVersion);
+        }
+
+        @Override
+        public void onDowngrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+            delegate.onDowngrade(db, oldVersion, newVersion);
+        }
+
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            delegate.onOpen(db);
+        }
+
+        @Override
+        public void onCorruption(@NonNull SupportSQLiteDatabase db) {
+            delegate.onCorruption(db);
+        }
+    }
+}
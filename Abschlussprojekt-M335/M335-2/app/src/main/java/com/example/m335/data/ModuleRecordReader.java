@@ -0,0 +1,84 @@
+package com.example.m335.data;
+
+import java.io.IOException;
+
+/**
+ * Reads module records one at a time from an import file
+ */
+public interface ModuleRecordReader {
+
+    /**
+     * Reads the next record into the given record
+     *
+     * @param record The record to fill, reused for every call
+     * @return false at the end of the file
+     * @throws IOException If the file cannot be read or is not well-formed
+     */
+    boolean next(Record record) throws IOException;
+
+    /**
+     * The raw text fields of one module, validated before a module is created
+     */
+    final class Record {
+        String moduleNumber;
+        String moduleTitle;
+        String zpNote;
+        String lbNote;
+        int line;
+
+        /**
+         * Clears all fields before the next record is read
+         */
+        void clear() {
+            moduleNumber = null;
+            moduleTitle = null;
+            zpNote = null;
+            lbNote = null;
+        }
+
+        /**
+         * Gets the module number
+         *
+         * @return The module number or null if missing
+         */
+        public String getModuleNumber() {
+            return moduleNumber;
+        }
+
+        /**
+         * Gets the module title
+         *
+         * @return The module title or null if missing
+         */
+        public String getModuleTitle() {
+            return moduleTitle;
+        }
+
+        /**
+         * Gets the ZP grade as written in the file
+         *
+         * @return The ZP grade or null if missing
+         */
+        public String getZpNote() {
+            return zpNote;
+        }
+
+        /**
+         * Gets the LB grade as written in the file
+         *
+         * @return The LB grade or null if missing
+         */
+        public String getLbNote() {
+            return lbNote;
+        }
+
+        /**
+         * Gets the line the record starts on
+         *
+         * @return The line number
+         */
+        public int getLine() {
+            return line;
+        }
+    }
+}
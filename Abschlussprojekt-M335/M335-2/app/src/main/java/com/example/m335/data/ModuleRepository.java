@@ -1,20 +1,55 @@
 package com.example.m335.data;
 
 import android.app.Application;
-import android.os.AsyncTask;
+import android.database.Cursor;
 
+import androidx.core.content.ContextCompat;
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
+import androidx.sqlite.db.SimpleSQLiteQuery;
 
 import com.example.m335.model.Module;
+import com.example.m335.model.ModuleFamilyStats;
+import com.example.m335.model.ModuleMerge;
+import com.example.m335.model.ModuleRow;
+import com.example.m335.model.ModuleStatistics;
+import com.example.m335.model.ModuleSummary;
+import com.example.m335.model.ResourceValidationMessages;
+import com.example.m335.model.ValidationMessages;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Repository class that abstracts access to the module data sources
  */
 public class ModuleRepository {
+
+    /**
+     * Number of attempts of a conditional update before a conflict is reported
+     */
+    public static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private ModuleDatabase database;
     private ModuleDao moduleDao;
-    private LiveData<List<Module>> allModules;
+    private ModuleWriteQueue writeQueue;
+    private ModuleCache moduleCache;
+    private ModuleStore store;
+    private Executor mainExecutor;
+    private Executor transferExecutor;
+    private ValidationMessages validationMessages;
 
     /**
      * Constructor initializes the database and data access components
@@ -22,9 +57,15 @@ public class ModuleRepository {
      * @param application The application context
      */
     public ModuleRepository(Application application) {
-        ModuleDatabase database = ModuleDatabase.getDatabase(application);
+        database = ModuleDatabase.getDatabase(application);
         moduleDao = database.moduleDao();
-        allModules = moduleDao.getAllModules();
+        writeQueue = database.getWriteQueue();
+        moduleCache = database.getModuleCache();
+        // Queries are shared by all repositories through the application-wide store
+        store = ModuleStore.getInstance(application);
+        mainExecutor = ContextCompat.getMainExecutor(application);
+        transferExecutor = database.getTransferExecutor();
+        validationMessages = new ResourceValidationMessages(application.getResources());
     }
 
     /**
@@ -33,7 +74,76 @@ public class ModuleRepository {
      * @return LiveData containing a list of all modules
      */
     public LiveData<List<Module>> getAllModules() {
-        return allModules;
+        return store.getAllModules();
+    }
+
+    /**
+     * Gets a factory for keyset-paged module lists in the given order
+     *
+     * @param sortOrder The order of the list
+     * @return A data source factory
+     */
+    public DataSource.Factory<Module, Module> getPagedModules(ModuleSortOrder sortOrder) {
+        return new ModuleKeysetDataSource.Factory(database, sortOrder);
+    }
+
+    /**
+     * Gets the modules between two module numbers in natural order,
+     * e.g. M300 to M399 for all M3xx modules
+     *
+     * @param fromModuleNumber The first module number of the range
+     * @param toModuleNumber The last module number of the range
+     * @return LiveData containing the modules in the range
+     */
+    public LiveData<List<Module>> getModulesInRange(String fromModuleNumber, String toModuleNumber) {
+        return moduleDao.getModulesInRange(
+                Module.computeSortKey(fromModuleNumber), Module.computeSortKey(toModuleNumber));
+    }
+
+    /**
+     * Gets a factory for paged full-text search results
+     *
+     * @param text The search text typed by the user
+     * @return A data source factory in rank order
+     */
+    public ModuleSearchDataSource.Factory searchModules(String text) {
+        return new ModuleSearchDataSource.Factory(database, text);
+    }
+
+    /**
+     * Gets the progress of the schema migration running on first open
+     *
+     * @return LiveData with the migration progress, null once the database is ready
+     */
+    public LiveData<ModuleMigrationRunner.Progress> getMigrationProgress() {
+        return ModuleMigrationRunner.getProgress();
+    }
+
+    /**
+     * Gets aggregate statistics over all modules
+     *
+     * @return LiveData containing the summary
+     */
+    public LiveData<ModuleSummary> getSummary() {
+        return store.getSummary();
+    }
+
+    /**
+     * Gets the running statistics, updated from every write without rescanning the table
+     *
+     * @return LiveData containing the statistics
+     */
+    public LiveData<ModuleStatistics> getStatistics() {
+        return database.getStatisticsEngine().getStatistics();
+    }
+
+    /**
+     * Gets aggregate statistics per module family
+     *
+     * @return LiveData containing one entry per family
+     */
+    public LiveData<List<ModuleFamilyStats>> getFamilyStats() {
+        return store.getFamilyStats();
     }
 
     /**
@@ -46,81 +156,409 @@ public class ModuleRepository {
         return moduleDao.getModuleByNumber(moduleNumber);
     }
 
+    /**
+     * Finds a module by its module number, answered from the cache when possible.
+     * Must be called on the main thread.
+     *
+     * @param moduleNumber The module number to search for
+     * @return Completes with the module, or null if it doesn't exist
+     */
+    public CompletableFuture<Module> findModule(final String moduleNumber) {
+        // An edit that is not written yet is newer than any stored row
+        Module pending = store.getPendingEdit(moduleNumber);
+        if (pending != null) {
+            return CompletableFuture.completedFuture(pending);
+        }
+        Module cached = moduleCache.get(moduleNumber);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(new Supplier<Module>() {
+            @Override
+            public Module get() {
+                return moduleCache.load(moduleNumber, moduleDao);
+            }
+        });
+    }
+
+    /**
+     * Gets the module cache, e.g. for its hit and miss counters
+     *
+     * @return The ModuleCache instance
+     */
+    public ModuleCache getModuleCache() {
+        return moduleCache;
+    }
+
     /**
      * Inserts a module into the database asynchronously
      *
      * @param module The module to insert
+     * @return Completes once the insert is committed
      */
-    public void insert(Module module) {
-        new InsertModuleAsyncTask(moduleDao).execute(module);
+    public CompletableFuture<Void> insert(Module module) {
+        return writeQueue.insert(module);
     }
 
     /**
      * Updates a module in the database asynchronously
      *
      * @param module The module to update
+     * @return Completes once the update is committed
      */
-    public void update(Module module) {
-        new UpdateModuleAsyncTask(moduleDao).execute(module);
+    public CompletableFuture<Void> update(Module module) {
+        return writeQueue.update(module);
     }
 
     /**
-     * Deletes a module from the database asynchronously
+     * Updates a module only if it was not changed since it was read
      *
-     * @param module The module to delete
+     * @param module The changed module, carrying the version it is based on
+     * @return Completes once the update is committed, or exceptionally with a
+     *         {@link ModuleConflictException} on a concurrent change
      */
-    public void delete(Module module) {
-        new DeleteModuleAsyncTask(moduleDao).execute(module);
+    public CompletableFuture<Void> compareAndSet(Module module) {
+        return writeQueue.compareAndSet(module);
     }
 
     /**
-     * AsyncTask to insert a module on a background thread
+     * Applies a change to the stored module with conditional updates.
+     * On a conflict the module is read again and the change is applied once more,
+     * up to {@link #MAX_WRITE_ATTEMPTS} times.
+     *
+     * @param moduleNumber The number of the module to change
+     * @param change Changes a freshly read module in place, may be called several times
+     * @return Completes with the written module, with null if the module doesn't exist,
+     *         or exceptionally with a {@link ModuleConflictException} once all attempts failed
      */
-    private static class InsertModuleAsyncTask extends AsyncTask<Module, Void, Void> {
-        private ModuleDao asyncTaskDao;
+    public CompletableFuture<Module> updateWithRetry(final String moduleNumber,
+                                                     final Consumer<Module> change) {
+        return updateWithRetry(moduleNumber, change, 1);
+    }
 
-        InsertModuleAsyncTask(ModuleDao dao) {
-            asyncTaskDao = dao;
-        }
+    /**
+     * Runs one attempt of {@link #updateWithRetry(String, Consumer)}
+     */
+    private CompletableFuture<Module> updateWithRetry(final String moduleNumber,
+                                                      final Consumer<Module> change,
+                                                      final int attempt) {
+        return CompletableFuture.supplyAsync(new Supplier<Module>() {
+            @Override
+            public Module get() {
+                return moduleDao.getModuleByNumberNow(moduleNumber);
+            }
+        }).thenCompose(new Function<Module, CompletableFuture<Module>>() {
+            @Override
+            public CompletableFuture<Module> apply(final Module module) {
+                if (module == null) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                change.accept(module);
+                return retryOnConflict(writeQueue.compareAndSet(module), attempt,
+                        new Supplier<CompletableFuture<Module>>() {
+                            @Override
+                            public CompletableFuture<Module> get() {
+                                return updateWithRetry(moduleNumber, change, attempt + 1);
+                            }
+                        }, module);
+            }
+        });
+    }
 
-        @Override
-        protected Void doInBackground(Module... modules) {
-            asyncTaskDao.insert(modules[0]);
-            return null;
+    /**
+     * Updates a module and shows the change before it is written.
+     * The update is conditional on the version of the module the edit started from;
+     * if the module was changed in the meantime, the edited fields are merged into the
+     * newer row, see {@link ModuleMerge}. Must be called on the main thread;
+     * a failed write rolls the change back.
+     *
+     * @param base The module as it was when the edit started, its version is the base of the write
+     * @param module The edited module
+     * @return Completes on the main thread once the update is committed or rolled back
+     * @throws IllegalArgumentException If there is no base module
+     */
+    public CompletableFuture<Void> updateOptimistic(Module base, final Module module) {
+        if (base == null) {
+            throw new IllegalArgumentException("An optimistic update needs the module it is based on");
         }
+        store.applyEdit(module);
+        module.setVersion(base.getVersion());
+        return writeMerged(base, module, 1).whenCompleteAsync(new BiConsumer<Module, Throwable>() {
+            @Override
+            public void accept(Module written, Throwable error) {
+                if (error == null) {
+                    // Every write raises the version the written module was based on
+                    store.commitEdit(module, written.getVersion() + 1);
+                } else {
+                    store.rollbackEdit(module);
+                }
+            }
+        }, mainExecutor).thenApply(new Function<Module, Void>() {
+            @Override
+            public Void apply(Module written) {
+                return null;
+            }
+        });
     }
 
     /**
-     * AsyncTask to update a module on a background thread
+     * Writes an edit conditionally and merges it into the newer row on a conflict
+     *
+     * @param base The module the edit is based on
+     * @param edit The edited module, carrying the version of the base
+     * @param attempt The number of this attempt, starting at 1
+     * @return Completes with the written module
      */
-    private static class UpdateModuleAsyncTask extends AsyncTask<Module, Void, Void> {
-        private ModuleDao asyncTaskDao;
+    private CompletableFuture<Module> writeMerged(final Module base, final Module edit,
+                                                  final int attempt) {
+        return retryOnConflict(writeQueue.compareAndSet(edit), attempt,
+                new Supplier<CompletableFuture<Module>>() {
+                    @Override
+                    public CompletableFuture<Module> get() {
+                        return CompletableFuture.supplyAsync(new Supplier<Module>() {
+                            @Override
+                            public Module get() {
+                                return moduleDao.getModuleByNumberNow(edit.getModuleNumber());
+                            }
+                        }).thenCompose(new Function<Module, CompletableFuture<Module>>() {
+                            @Override
+                            public CompletableFuture<Module> apply(Module current) {
+                                if (current == null) {
+                                    // Deleted in the meantime, there is nothing to merge into
+                                    return failed(new ModuleConflictException(edit.getModuleNumber()));
+                                }
+                                return writeMerged(current, ModuleMerge.merge(base, edit, current),
+                                        attempt + 1);
+                            }
+                        });
+                    }
+                }, edit);
+    }
 
-        UpdateModuleAsyncTask(ModuleDao dao) {
-            asyncTaskDao = dao;
-        }
+    /**
+     * Starts the next attempt if a conditional update failed with a conflict
+     *
+     * @param write The conditional update
+     * @param attempt The number of the finished attempt, starting at 1
+     * @param retry Starts the next attempt
+     * @param written The module written by the update
+     * @return Completes with the written module, or exceptionally once all attempts failed
+     */
+    private static CompletableFuture<Module> retryOnConflict(
+            CompletableFuture<Void> write, final int attempt,
+            final Supplier<CompletableFuture<Module>> retry, final Module written) {
+        return write.handle(new BiFunction<Void, Throwable, CompletableFuture<Module>>() {
+            @Override
+            public CompletableFuture<Module> apply(Void result, Throwable error) {
+                if (error == null) {
+                    return CompletableFuture.completedFuture(written);
+                }
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause instanceof ModuleConflictException && attempt < MAX_WRITE_ATTEMPTS) {
+                    return retry.get();
+                }
+                return failed(cause);
+            }
+        }).thenCompose(new Function<CompletableFuture<Module>, CompletableFuture<Module>>() {
+            @Override
+            public CompletableFuture<Module> apply(CompletableFuture<Module> next) {
+                return next;
+            }
+        });
+    }
 
-        @Override
-        protected Void doInBackground(Module... modules) {
-            asyncTaskDao.update(modules[0]);
-            return null;
-        }
+    /**
+     * Creates a future that failed with the given error
+     *
+     * @param error The error
+     * @return The failed future
+     */
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
     }
 
     /**
-     * AsyncTask to delete a module on a background thread
+     * Gets the edits that are shown before they are written
+     *
+     * @return LiveData with the pending edits by module number
      */
-    private static class DeleteModuleAsyncTask extends AsyncTask<Module, Void, Void> {
-        private ModuleDao asyncTaskDao;
+    public LiveData<Map<String, Module>> getPendingEdits() {
+        return store.getPendingEdits();
+    }
 
-        DeleteModuleAsyncTask(ModuleDao dao) {
-            asyncTaskDao = dao;
-        }
+    /**
+     * Gets the number of the last module whose edit could not be saved
+     *
+     * @return LiveData with the module number as event
+     */
+    public LiveData<SingleEvent<String>> getFailedEdit() {
+        return store.getFailedEdit();
+    }
 
-        @Override
-        protected Void doInBackground(Module... modules) {
-            asyncTaskDao.delete(modules[0]);
-            return null;
-        }
+    /**
+     * Drops the pending edits that a newly shown list already contains
+     *
+     * @param shownRows The loaded rows of the shown list, null for rows not loaded yet
+     */
+    public void reconcileEdits(List<ModuleRow> shownRows) {
+        store.reconcileEdits(shownRows);
+    }
+
+    /**
+     * Deletes a module from the database asynchronously
+     *
+     * @param module The module to delete
+     * @return Completes once the delete is committed
+     */
+    public CompletableFuture<Void> delete(Module module) {
+        return writeQueue.delete(module);
+    }
+
+    /**
+     * Inserts several modules in one transaction
+     *
+     * @param modules The modules to insert
+     * @return Completes once all inserts are committed
+     */
+    public CompletableFuture<Void> insertAll(List<Module> modules) {
+        return writeQueue.insertAll(modules);
+    }
+
+    /**
+     * Updates several modules in one transaction
+     *
+     * @param modules The modules to update
+     * @return Completes once all updates are committed
+     */
+    public CompletableFuture<Void> updateAll(List<Module> modules) {
+        return writeQueue.updateAll(modules);
+    }
+
+    /**
+     * Deletes several modules in one transaction
+     *
+     * @param modules The modules to delete
+     * @return Completes once all deletes are committed
+     */
+    public CompletableFuture<Void> deleteAll(List<Module> modules) {
+        return writeQueue.deleteAll(modules);
+    }
+
+    /**
+     * Deletes modules by their numbers in one transaction
+     *
+     * @param moduleNumbers The numbers of the modules to delete
+     * @return Completes once all deletes are committed
+     */
+    public CompletableFuture<Void> deleteByNumbers(List<String> moduleNumbers) {
+        return writeQueue.deleteByNumbers(moduleNumbers);
+    }
+
+    /**
+     * Sets the grades of several modules with conditional updates.
+     * The modules are read at once and their updates queued together, so they are
+     * usually committed in one batch; a module changed in the meantime is read again
+     * and updated on its own, see {@link #updateWithRetry(String, Consumer)}.
+     *
+     * @param moduleNumbers The numbers of the modules to regrade
+     * @param zpHundredths The new ZP grade in hundredths, {@link Module#NO_GRADE} keeps it
+     * @param lbHundredths The new LB grade in hundredths, {@link Module#NO_GRADE} keeps it
+     * @return Completes once all modules are written, or exceptionally if one of them
+     *         kept conflicting
+     */
+    public CompletableFuture<Void> regradeByNumbers(final List<String> moduleNumbers,
+                                                    final int zpHundredths, final int lbHundredths) {
+        final Consumer<Module> regrade = new Consumer<Module>() {
+            @Override
+            public void accept(Module module) {
+                if (zpHundredths != Module.NO_GRADE) {
+                    module.setZpHundredths(zpHundredths);
+                }
+                if (lbHundredths != Module.NO_GRADE) {
+                    module.setLbHundredths(lbHundredths);
+                }
+            }
+        };
+        return CompletableFuture.supplyAsync(new Supplier<List<Module>>() {
+            @Override
+            public List<Module> get() {
+                List<Module> modules = new ArrayList<>(moduleNumbers.size());
+                for (int start = 0; start < moduleNumbers.size(); start += ModuleDao.DELETE_CHUNK_SIZE) {
+                    modules.addAll(moduleDao.getModulesByNumbersNow(moduleNumbers.subList(
+                            start, Math.min(moduleNumbers.size(), start + ModuleDao.DELETE_CHUNK_SIZE))));
+                }
+                return modules;
+            }
+        }).thenCompose(new Function<List<Module>, CompletableFuture<Void>>() {
+            @Override
+            public CompletableFuture<Void> apply(List<Module> modules) {
+                CompletableFuture<?>[] writes = new CompletableFuture<?>[modules.size()];
+                for (int i = 0; i < modules.size(); i++) {
+                    final Module module = modules.get(i);
+                    regrade.accept(module);
+                    writes[i] = retryOnConflict(writeQueue.compareAndSet(module), 1,
+                            new Supplier<CompletableFuture<Module>>() {
+                                @Override
+                                public CompletableFuture<Module> get() {
+                                    return updateWithRetry(module.getModuleNumber(), regrade, 2);
+                                }
+                            }, module);
+                }
+                return CompletableFuture.allOf(writes);
+            }
+        });
+    }
+
+    /**
+     * Imports modules from a file on the transfer thread.
+     * Every batch goes through the write queue and is committed before the next one is read.
+     *
+     * @param channel The channel of the file, closed by the caller
+     * @param format The file format
+     * @param batchSize The number of modules per transaction
+     * @return Completes with the import result, or exceptionally if the file is malformed
+     */
+    public CompletableFuture<ModuleImporter.Result> importModules(final ReadableByteChannel channel,
+                                                                 final ModuleFileFormat format,
+                                                                 int batchSize) {
+        final ModuleImporter importer = new ModuleImporter(new ModuleImporter.BatchSink() {
+            @Override
+            public void write(List<Module> modules) {
+                writeQueue.insertAll(modules).join();
+            }
+        }, batchSize, validationMessages);
+        return CompletableFuture.supplyAsync(new Supplier<ModuleImporter.Result>() {
+            @Override
+            public ModuleImporter.Result get() {
+                try {
+                    return importer.importModules(ModuleImporter.createReader(channel, format));
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, transferExecutor);
+    }
+
+    /**
+     * Exports all modules to a file on the transfer thread, streaming from a cursor
+     *
+     * @param channel The channel of the file, closed by the caller
+     * @param format The file format
+     * @return Completes with the number of exported modules
+     */
+    public CompletableFuture<Integer> exportModules(final WritableByteChannel channel,
+                                                    final ModuleFileFormat format) {
+        return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                try (Cursor cursor = database.query(new SimpleSQLiteQuery(ModuleExporter.EXPORT_QUERY))) {
+                    return ModuleExporter.export(cursor, format, channel);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, transferExecutor);
     }
-}
\ No newline at end of file
+}
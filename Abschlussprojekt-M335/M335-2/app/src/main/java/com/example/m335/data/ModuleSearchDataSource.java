@@ -0,0 +1,114 @@
+package com.example.m335.data;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.PositionalDataSource;
+
+import com.example.m335.model.Module;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Paged data source for ranked full-text search results.
+ * Results are ranked, not ordered by a key, so pages are loaded by position.
+ */
+public class ModuleSearchDataSource extends PositionalDataSource<Module> {
+    private final ModuleDatabase database;
+    private final ModuleDao moduleDao;
+    private final String match;
+    private final String text;
+
+    /**
+     * Constructor registers the data source for changes of the modules table
+     *
+     * @param database The module database
+     * @param text The search text typed by the user
+     */
+    public ModuleSearchDataSource(ModuleDatabase database, String text) {
+        this.database = database;
+        this.moduleDao = database.moduleDao();
+        this.text = text.trim();
+        this.match = ModuleSearchQuery.toMatchExpression(text);
+
+        WeakTableObserver.register(database, this, "modules", "modules_fts");
+    }
+
+    /**
+     * Loads the first page of results together with the result count
+     *
+     * @param params The requested position and load size
+     * @param callback Receives the page, its position and the total count
+     */
+    @Override
+    public void loadInitial(@NonNull final LoadInitialParams params,
+                            @NonNull LoadInitialCallback<Module> callback) {
+        // Skip outdated searches that were replaced before they started
+        if (match == null || isInvalid()) {
+            callback.onResult(Collections.<Module>emptyList(), 0, 0);
+            return;
+        }
+
+        final int[] position = new int[1];
+        final int[] totalCount = new int[1];
+        List<Module> modules = database.runInTransaction(new Callable<List<Module>>() {
+            @Override
+            public List<Module> call() {
+                totalCount[0] = moduleDao.countSearchResults(match);
+                position[0] = computeInitialLoadPosition(params, totalCount[0]);
+                int size = computeInitialLoadSize(params, position[0], totalCount[0]);
+                return moduleDao.search(match, text, size, position[0]);
+            }
+        });
+        callback.onResult(modules, position[0], totalCount[0]);
+    }
+
+    /**
+     * Loads a further page of results
+     *
+     * @param params The start position and load size
+     * @param callback Receives the page
+     */
+    @Override
+    public void loadRange(@NonNull LoadRangeParams params,
+                          @NonNull LoadRangeCallback<Module> callback) {
+        if (isInvalid()) {
+            callback.onResult(Collections.<Module>emptyList());
+            return;
+        }
+        callback.onResult(moduleDao.search(match, text, params.loadSize, params.startPosition));
+    }
+
+    /**
+     * Factory for the data sources of one search text.
+     * A new search invalidates the last source of the previous factory, so its pending
+     * page loads are skipped.
+     */
+    public static class Factory extends DataSource.Factory<Integer, Module> {
+        private final ModuleDatabase database;
+        private final String text;
+        private ModuleSearchDataSource latestSource;
+
+        public Factory(ModuleDatabase database, String text) {
+            this.database = database;
+            this.text = text;
+        }
+
+        @NonNull
+        @Override
+        public synchronized DataSource<Integer, Module> create() {
+            latestSource = new ModuleSearchDataSource(database, text);
+            return latestSource;
+        }
+
+        /**
+         * Invalidates the data source created last, called when the search text changes
+         */
+        public synchronized void cancel() {
+            if (latestSource != null) {
+                latestSource.invalidate();
+            }
+        }
+    }
+}
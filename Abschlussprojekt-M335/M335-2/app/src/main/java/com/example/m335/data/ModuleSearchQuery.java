@@ -0,0 +1,47 @@
+package com.example.m335.data;
+
+/**
+ * Turns user input into a full-text MATCH expression.
+ * Every word becomes a prefix term and all terms must match, so "mob app"
+ * finds "Mobile Apps erstellen".
+ */
+public final class ModuleSearchQuery {
+
+    private ModuleSearchQuery() {
+    }
+
+    /**
+     * Builds the MATCH expression for the given input
+     *
+     * @param input The text typed by the user
+     * @return The MATCH expression, or null if the input contains no searchable characters
+     */
+    public static String toMatchExpression(String input) {
+        if (input == null) {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder(input.length() + 8);
+        boolean inToken = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inToken && match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(c);
+                inToken = true;
+            } else {
+                // Quotes, operators and punctuation would change the meaning of the expression
+                if (inToken) {
+                    match.append('*');
+                }
+                inToken = false;
+            }
+        }
+        if (inToken) {
+            match.append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.m335.data;
+
+/**
+ * Order of the paged module list, every order is walked along an index.
+ */
+public enum ModuleSortOrder {
+    /**
+     * Natural order of the module numbers
+     */
+    NUMBER,
+
+    /**
+     * Best average first, modules without average last
+     */
+    BEST_FIRST,
+
+    /**
+     * Worst average first, modules without average before all graded ones
+     */
+    WORST_FIRST
+}
@@ -0,0 +1,244 @@
+package com.example.m335.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.m335.model.GradeSumCount;
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleGrades;
+import com.example.m335.model.ModuleStatistics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running statistics over all modules, updated from the deltas of every write batch.
+ * A module average is tracked as the sum of both grades in hundredths (twice the average),
+ * so sums and sums of squares are exact integers. Counts per possible sum give exact
+ * minimum and maximum after deletes in constant time. Averages outside 1.0 to 6.0,
+ * which validation does not let through, are counted at the nearest end of the range.
+ */
+public class ModuleStatisticsEngine implements ModuleWriteQueue.ChangeListener {
+
+    /**
+     * Number of histogram buckets of width 0.5 between 1.0 and 6.0
+     */
+    public static final int BUCKET_COUNT = 10;
+
+    // Grade sums of valid averages, 1.0 to 6.0 in hundredths of both grades
+    static final int MIN_GRADE_SUM = 2 * 100;
+    static final int MAX_GRADE_SUM = 2 * 600;
+    private static final int SUMS_PER_BUCKET = (MAX_GRADE_SUM - MIN_GRADE_SUM) / BUCKET_COUNT;
+
+    private final MutableLiveData<ModuleStatistics> statistics = new MutableLiveData<>();
+
+    private int moduleCount;
+    private int gradedCount;
+    private long sum;
+    private long sumOfSquares;
+    private final int[] sumCounts = new int[MAX_GRADE_SUM - MIN_GRADE_SUM + 1];
+    private final int[] histogram = new int[BUCKET_COUNT];
+    private int minIndex = -1;
+    private int maxIndex = -1;
+
+    /**
+     * Gets the statistics as observable state
+     *
+     * @return LiveData with the latest snapshot, set after the first synchronisation
+     */
+    public LiveData<ModuleStatistics> getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Rebuilds all aggregates from the database.
+     * Must run on the writer thread, so that no batch is applied twice or missed.
+     *
+     * @param moduleDao The DAO to read the grade distribution from
+     */
+    public synchronized void resync(ModuleDao moduleDao) {
+        int totalCount = moduleDao.getModuleCount();
+        List<GradeSumCount> distribution = moduleDao.getGradeSumCounts();
+
+        gradedCount = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        Arrays.fill(sumCounts, 0);
+        Arrays.fill(histogram, 0);
+        minIndex = -1;
+        maxIndex = -1;
+        for (GradeSumCount entry : distribution) {
+            addGraded(entry.getGradeSum(), entry.getModuleCount());
+        }
+        moduleCount = totalCount;
+        publish();
+    }
+
+    /**
+     * Applies the difference of a committed batch, O(1) per written module
+     *
+     * @param previous The grades stored before the batch
+     * @param inserts The inserted or replaced modules
+     * @param updates The updated modules
+     * @param deleteNumbers The numbers of the deleted modules
+     */
+    @Override
+    public synchronized void onBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                                            List<Module> updates, List<String> deleteNumbers) {
+        Map<String, ModuleGrades> before = new HashMap<>(previous.size() * 2);
+        for (ModuleGrades grades : previous) {
+            before.put(grades.getModuleNumber(), grades);
+        }
+
+        for (Module module : inserts) {
+            // An insert overwrites an existing module with the same number
+            ModuleGrades old = before.get(module.getModuleNumber());
+            if (old != null) {
+                remove(old.getZpHundredths(), old.getLbHundredths());
+            }
+            add(module.getZpHundredths(), module.getLbHundredths());
+        }
+        for (Module module : updates) {
+            ModuleGrades old = before.get(module.getModuleNumber());
+            if (old != null) {
+                remove(old.getZpHundredths(), old.getLbHundredths());
+                add(module.getZpHundredths(), module.getLbHundredths());
+            }
+        }
+        for (String moduleNumber : deleteNumbers) {
+            ModuleGrades old = before.get(moduleNumber);
+            if (old != null) {
+                remove(old.getZpHundredths(), old.getLbHundredths());
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Creates a snapshot of the current aggregates
+     *
+     * @return The statistics
+     */
+    public synchronized ModuleStatistics snapshot() {
+        if (gradedCount == 0) {
+            return new ModuleStatistics(moduleCount, 0, null, null, null, null, histogram.clone());
+        }
+        double mean = (double) sum / gradedCount;
+        double variance = Math.max(0, (double) sumOfSquares / gradedCount - mean * mean);
+        return new ModuleStatistics(moduleCount, gradedCount,
+                (float) (mean / 200),
+                (float) (Math.sqrt(variance) / 200),
+                toAverage(maxIndex),
+                toAverage(minIndex),
+                histogram.clone());
+    }
+
+    /**
+     * Adds one module
+     *
+     * @param zpHundredths The ZP grade or {@link Module#NO_GRADE}
+     * @param lbHundredths The LB grade or {@link Module#NO_GRADE}
+     */
+    private void add(int zpHundredths, int lbHundredths) {
+        moduleCount++;
+        if (zpHundredths != Module.NO_GRADE && lbHundredths != Module.NO_GRADE) {
+            addGraded(zpHundredths + lbHundredths, 1);
+        }
+    }
+
+    /**
+     * Removes one module
+     *
+     * @param zpHundredths The ZP grade or {@link Module#NO_GRADE}
+     * @param lbHundredths The LB grade or {@link Module#NO_GRADE}
+     */
+    private void remove(int zpHundredths, int lbHundredths) {
+        moduleCount--;
+        if (zpHundredths == Module.NO_GRADE || lbHundredths == Module.NO_GRADE) {
+            return;
+        }
+        int gradeSum = zpHundredths + lbHundredths;
+        int index = indexOf(gradeSum);
+        gradedCount--;
+        sum -= gradeSum;
+        sumOfSquares -= (long) gradeSum * gradeSum;
+        sumCounts[index]--;
+        histogram[bucketOf(index)]--;
+
+        // Move the bounds past values that no longer occur, at most once over the range
+        if (sumCounts[index] == 0) {
+            if (gradedCount == 0) {
+                minIndex = -1;
+                maxIndex = -1;
+            } else if (index == minIndex) {
+                while (sumCounts[minIndex] == 0) {
+                    minIndex++;
+                }
+            } else if (index == maxIndex) {
+                while (sumCounts[maxIndex] == 0) {
+                    maxIndex--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds graded modules with the same grade sum
+     *
+     * @param gradeSum ZP plus LB grade in hundredths
+     * @param count The number of modules
+     */
+    private void addGraded(int gradeSum, int count) {
+        int index = indexOf(gradeSum);
+        gradedCount += count;
+        sum += (long) gradeSum * count;
+        sumOfSquares += (long) gradeSum * gradeSum * count;
+        sumCounts[index] += count;
+        histogram[bucketOf(index)] += count;
+        if (minIndex < 0 || index < minIndex) {
+            minIndex = index;
+        }
+        if (index > maxIndex) {
+            maxIndex = index;
+        }
+    }
+
+    /**
+     * Maps a grade sum to its counter, sums outside the valid range are clamped
+     *
+     * @param gradeSum ZP plus LB grade in hundredths
+     * @return The counter index
+     */
+    private static int indexOf(int gradeSum) {
+        return Math.max(MIN_GRADE_SUM, Math.min(MAX_GRADE_SUM, gradeSum)) - MIN_GRADE_SUM;
+    }
+
+    /**
+     * Maps a counter to its histogram bucket, 6.0 belongs to the last bucket
+     *
+     * @param index The counter index
+     * @return The bucket index
+     */
+    private static int bucketOf(int index) {
+        return Math.min(BUCKET_COUNT - 1, index / SUMS_PER_BUCKET);
+    }
+
+    /**
+     * Converts a counter index back to a module average
+     *
+     * @param index The counter index
+     * @return The module average
+     */
+    private static Float toAverage(int index) {
+        return (index + MIN_GRADE_SUM) / 200.0f;
+    }
+
+    /**
+     * Publishes a new snapshot to observers
+     */
+    private void publish() {
+        statistics.postValue(snapshot());
+    }
+}
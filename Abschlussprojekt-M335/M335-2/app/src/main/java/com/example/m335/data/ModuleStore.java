@@ -0,0 +1,208 @@
+package com.example.m335.data;
+
+import android.app.Application;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleFamilyStats;
+import com.example.m335.model.ModuleRow;
+import com.example.m335.model.ModuleSummary;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application-wide store of the module queries.
+ * All repositories and view models share one subscription per query and one
+ * in-memory snapshot of its result instead of starting their own queries.
+ * Edits that are not committed yet are kept as an overlay over the loaded rows, so the
+ * list shows them at once. All overlay methods must be called on the main thread.
+ */
+public final class ModuleStore {
+    private static volatile ModuleStore INSTANCE;
+
+    private final SharedQueryLiveData<List<Module>> allModules;
+    private final SharedQueryLiveData<ModuleSummary> summary;
+    private final SharedQueryLiveData<List<ModuleFamilyStats>> familyStats;
+
+    // Optimistic edits by module number, committed ones are dropped once a shown list has their row
+    private final LinkedHashMap<String, Module> pendingEdits = new LinkedHashMap<>();
+    // Lowest row version that contains a committed edit, by module number
+    private final Map<String, Long> committedEdits = new HashMap<>();
+    private final MutableLiveData<Map<String, Module>> pendingEditsData =
+            new MutableLiveData<>(Collections.<String, Module>emptyMap());
+    // The store outlives the activities, an event keeps a new activity from showing an old failure
+    private final MutableLiveData<SingleEvent<String>> failedEdit = new MutableLiveData<>();
+
+    /**
+     * Constructor creates the shared queries, none of them runs before it is observed
+     *
+     * @param moduleDao The DAO of the app database
+     */
+    ModuleStore(ModuleDao moduleDao) {
+        allModules = new SharedQueryLiveData<>(moduleDao.getAllModules());
+        summary = new SharedQueryLiveData<>(moduleDao.getSummary());
+        familyStats = new SharedQueryLiveData<>(moduleDao.getFamilyStats());
+    }
+
+    /**
+     * Gets the store instance, creating it if it doesn't exist
+     *
+     * @param application The application
+     * @return The ModuleStore instance
+     */
+    public static ModuleStore getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (ModuleStore.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ModuleStore(ModuleDatabase.getDatabase(application).moduleDao());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the shared list of all modules
+     *
+     * @return LiveData containing all modules in natural order
+     */
+    public SharedQueryLiveData<List<Module>> getAllModules() {
+        return allModules;
+    }
+
+    /**
+     * Gets the last loaded list of all modules without subscribing
+     *
+     * @return The snapshot or null if the list was never observed
+     */
+    public List<Module> getModulesSnapshot() {
+        return allModules.getValue();
+    }
+
+    /**
+     * Gets the shared aggregate statistics
+     *
+     * @return LiveData containing the summary
+     */
+    public SharedQueryLiveData<ModuleSummary> getSummary() {
+        return summary;
+    }
+
+    /**
+     * Gets the shared statistics per module family
+     *
+     * @return LiveData containing one entry per family
+     */
+    public SharedQueryLiveData<List<ModuleFamilyStats>> getFamilyStats() {
+        return familyStats;
+    }
+
+    /**
+     * Gets the edits shown in place of the loaded rows
+     *
+     * @return LiveData with the pending edits by module number
+     */
+    public LiveData<Map<String, Module>> getPendingEdits() {
+        return pendingEditsData;
+    }
+
+    /**
+     * Gets the pending edit of a module
+     *
+     * @param moduleNumber The module number
+     * @return The edited module or null if there is none
+     */
+    public Module getPendingEdit(String moduleNumber) {
+        return pendingEdits.get(moduleNumber);
+    }
+
+    /**
+     * Gets the number of the last module whose edit could not be saved
+     *
+     * @return LiveData with the module number as event, taken by the observer that reports it
+     */
+    public LiveData<SingleEvent<String>> getFailedEdit() {
+        return failedEdit;
+    }
+
+    /**
+     * Shows an edit before it is written, replacing an older pending edit of the module
+     *
+     * @param module The edited module
+     */
+    public void applyEdit(Module module) {
+        pendingEdits.put(module.getModuleNumber(), module);
+        committedEdits.remove(module.getModuleNumber());
+        publishEdits();
+    }
+
+    /**
+     * Marks an edit as written, it stays visible until a shown list has loaded the written row
+     *
+     * @param module The edited module passed to {@link #applyEdit}
+     * @param committedVersion The lowest row version that contains the edit
+     */
+    public void commitEdit(Module module, long committedVersion) {
+        // A newer edit of the same module is still pending
+        if (pendingEdits.get(module.getModuleNumber()) == module) {
+            committedEdits.put(module.getModuleNumber(), committedVersion);
+        }
+    }
+
+    /**
+     * Removes an edit that could not be written, the loaded row shows again
+     *
+     * @param module The edited module passed to {@link #applyEdit}
+     */
+    public void rollbackEdit(Module module) {
+        if (pendingEdits.get(module.getModuleNumber()) == module) {
+            pendingEdits.remove(module.getModuleNumber());
+            committedEdits.remove(module.getModuleNumber());
+            publishEdits();
+        }
+        failedEdit.setValue(new SingleEvent<>(module.getModuleNumber()));
+    }
+
+    /**
+     * Drops the committed edits whose written row is shown, called once a new list is shown.
+     * A list loaded before the write still has the older row version and keeps the edit.
+     *
+     * @param shownRows The loaded rows of the shown list, null for rows not loaded yet
+     */
+    public void reconcileEdits(List<ModuleRow> shownRows) {
+        if (committedEdits.isEmpty()) {
+            return;
+        }
+        boolean reconciled = false;
+        for (ModuleRow row : shownRows) {
+            if (row == null) {
+                continue;
+            }
+            Long committedVersion = committedEdits.get(row.getModuleNumber());
+            if (committedVersion != null && row.getVersion() >= committedVersion) {
+                committedEdits.remove(row.getModuleNumber());
+                pendingEdits.remove(row.getModuleNumber());
+                reconciled = true;
+                if (committedEdits.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        if (reconciled) {
+            publishEdits();
+        }
+    }
+
+    /**
+     * Publishes a copy of the pending edits to observers
+     */
+    private void publishEdits() {
+        pendingEditsData.setValue(Collections.unmodifiableMap(new LinkedHashMap<>(pendingEdits)));
+    }
+}
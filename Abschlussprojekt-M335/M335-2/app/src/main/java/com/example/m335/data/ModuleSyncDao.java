@@ -0,0 +1,122 @@
+package com.example.m335.data;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleChange;
+
+import java.util.List;
+
+/**
+ * Data Access Object for the change tracking of the delta sync.
+ * The change rows are written by triggers on every local write; this DAO reads the
+ * pending ones and records what the server acknowledged.
+ */
+@Dao
+public interface ModuleSyncDao {
+
+    /**
+     * Gets the oldest pending changes, deletes included
+     *
+     * @param limit The maximum number of changes
+     * @return The pending changes in the order they were made
+     */
+    @Query("SELECT * FROM module_changes WHERE pending = 1 ORDER BY changeSeq ASC LIMIT :limit")
+    List<ModuleChange> getPendingChanges(int limit);
+
+    /**
+     * Counts the changes that were not sent yet
+     *
+     * @return The number of pending changes
+     */
+    @Query("SELECT COUNT(*) FROM module_changes WHERE pending = 1")
+    int countPendingChanges();
+
+    /**
+     * Gets the change rows of several module numbers.
+     * The list must stay below SQLite's bind variable limit, see {@link ModuleDao#applyBatch}.
+     *
+     * @param moduleNumbers The module numbers
+     * @return The change rows of the module numbers that were ever written
+     */
+    @Query("SELECT * FROM module_changes WHERE moduleNumber IN (:moduleNumbers)")
+    List<ModuleChange> getChanges(List<String> moduleNumbers);
+
+    /**
+     * Gets several modules by their numbers.
+     * The list must stay below SQLite's bind variable limit, see {@link ModuleDao#applyBatch}.
+     *
+     * @param moduleNumbers The module numbers
+     * @return The modules that exist
+     */
+    @Query("SELECT * FROM modules WHERE moduleNumber IN (:moduleNumbers)")
+    List<Module> getModulesByNumbers(List<String> moduleNumbers);
+
+    /**
+     * Records that the server accepted a change. The change stays pending if the module
+     * was written again since it was read for sending.
+     *
+     * @param moduleNumber The module number
+     * @param sentChangeSeq The change sequence number of the sent state
+     * @param serverSeq The server sequence number of the accepted change
+     * @param baseTitle The sent title, null for a delete
+     * @param baseZpHundredths The sent ZP grade in hundredths
+     * @param baseLbHundredths The sent LB grade in hundredths
+     */
+    @Query("UPDATE module_changes SET pending = CASE WHEN changeSeq = :sentChangeSeq THEN 0 ELSE pending END, "
+            + "serverSeq = :serverSeq, baseTitle = :baseTitle, baseZpHundredths = :baseZpHundredths, "
+            + "baseLbHundredths = :baseLbHundredths WHERE moduleNumber = :moduleNumber")
+    void markPushed(String moduleNumber, long sentChangeSeq, long serverSeq, String baseTitle,
+                    int baseZpHundredths, int baseLbHundredths);
+
+    /**
+     * Records the server state a module was synced with
+     *
+     * @param moduleNumber The module number
+     * @param pending true if the local module still differs from the server state
+     * @param serverSeq The server sequence number of the state
+     * @param baseTitle The title of the state, null for a delete
+     * @param baseZpHundredths The ZP grade of the state in hundredths
+     * @param baseLbHundredths The LB grade of the state in hundredths
+     */
+    @Query("UPDATE module_changes SET pending = :pending, serverSeq = :serverSeq, baseTitle = :baseTitle, "
+            + "baseZpHundredths = :baseZpHundredths, baseLbHundredths = :baseLbHundredths "
+            + "WHERE moduleNumber = :moduleNumber")
+    void markSynced(String moduleNumber, boolean pending, long serverSeq, String baseTitle,
+                    int baseZpHundredths, int baseLbHundredths);
+
+    /**
+     * Gets the server sequence number up to which changes were pulled
+     *
+     * @return The pull cursor, 0 before the first sync
+     */
+    @Query("SELECT pullCursor FROM sync_state WHERE id = 0")
+    long getPullCursor();
+
+    /**
+     * Sets the server sequence number up to which changes were pulled
+     *
+     * @param pullCursor The new pull cursor
+     */
+    @Query("UPDATE sync_state SET pullCursor = :pullCursor WHERE id = 0")
+    void setPullCursor(long pullCursor);
+
+    /**
+     * Gets the sequence number of the last local change, raised by the triggers of every write
+     *
+     * @return The last change sequence number, null if the database has no sync counters
+     */
+    @Query("SELECT lastChangeSeq FROM sync_state WHERE id = 0")
+    Long getLastChangeSeq();
+
+    /**
+     * Gets the numbers of the modules written after a change sequence number, deletes included.
+     * Both values of pending are listed so that the index on pending and changeSeq is used.
+     *
+     * @param changeSeq The last change sequence number already seen
+     * @return The numbers of the modules changed since
+     */
+    @Query("SELECT moduleNumber FROM module_changes WHERE pending IN (0, 1) AND changeSeq > :changeSeq")
+    List<String> getChangedSince(long changeSeq);
+}
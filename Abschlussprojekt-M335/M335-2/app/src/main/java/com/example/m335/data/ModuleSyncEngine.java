@@ -0,0 +1,513 @@
+package com.example.m335.data;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleChange;
+import com.example.m335.model.ModuleGrades;
+import com.example.m335.model.ModuleMerge;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Two-way delta sync of the modules with a server.
+ * Only modules written since the last sync are sent, read from the change table the
+ * triggers maintain, and only changes after the pull cursor are received; both
+ * directions are gzip-compressed JSON, see {@link ModuleSyncProtocol}.
+ * Received changes are written on the writer thread of the {@link ModuleWriteQueue},
+ * so they never interleave with a batch and the statistics and the cache follow them.
+ * <p>
+ * Conflicts, where the server changed a module this device changed too, are resolved
+ * per field: both edits are merged against the last state agreed with the server, and
+ * the merged module is sent again if it differs from the server's. A local edit wins
+ * over a remote delete, a remote edit wins over a local delete.
+ * <p>
+ * The database must be built with {@link ModuleMigrations#CREATE_TRIGGERS}, otherwise
+ * no change is tracked.
+ */
+public class ModuleSyncEngine {
+
+    /**
+     * Default number of changes sent per request, stays below SQLite's bind variable limit
+     */
+    public static final int DEFAULT_BATCH_SIZE = ModuleDao.DELETE_CHUNK_SIZE;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+
+    private final ModuleDatabase database;
+    private final ModuleDao moduleDao;
+    private final ModuleSyncDao syncDao;
+    private final ModuleWriteQueue writeQueue;
+    private final URL endpoint;
+    private final int batchSize;
+
+    /**
+     * Constructor with the sync endpoint of the server
+     *
+     * @param database The database to sync
+     * @param endpoint The URL requests are posted to
+     */
+    public ModuleSyncEngine(ModuleDatabase database, URL endpoint) {
+        this(database, endpoint, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor with the number of changes sent per request
+     *
+     * @param database The database to sync
+     * @param endpoint The URL requests are posted to
+     * @param batchSize The maximum number of changes per request, at most {@link #DEFAULT_BATCH_SIZE}
+     */
+    public ModuleSyncEngine(ModuleDatabase database, URL endpoint, int batchSize) {
+        if (batchSize < 1 || batchSize > DEFAULT_BATCH_SIZE) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + DEFAULT_BATCH_SIZE);
+        }
+        this.database = database;
+        this.moduleDao = database.moduleDao();
+        this.syncDao = database.moduleSyncDao();
+        this.writeQueue = database.getWriteQueue();
+        this.endpoint = endpoint;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sends all pending changes and receives all changes of other devices, in as many
+     * rounds as needed. Blocks; must not be called on the main thread or the writer thread.
+     * Changes made while the sync runs are sent by this or the next sync.
+     *
+     * @return The counts, bytes and time of the sync
+     * @throws IOException If the server cannot be reached or answers with an error;
+     *                     rounds completed before stay applied
+     */
+    public synchronized Result sync() throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        while (true) {
+            Outgoing outgoing = database.runInTransaction(new Callable<Outgoing>() {
+                @Override
+                public Outgoing call() {
+                    return readOutgoing();
+                }
+            });
+            byte[] body = ModuleSyncProtocol.encodeRequest(outgoing.request);
+            result.bytesSent += body.length;
+            ModuleSyncProtocol.Response response = post(body, result);
+            if (response.more && response.cursor <= outgoing.request.cursor) {
+                throw new IOException("Sync cursor did not advance");
+            }
+
+            int stillPending = apply(outgoing, response, result);
+            result.rounds++;
+            result.pushedCount += response.accepted.size();
+            if (!response.more && stillPending == 0 && outgoing.changes.size() < batchSize) {
+                break;
+            }
+        }
+        result.durationMillis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    /**
+     * Reads the oldest pending changes with the current state of their modules,
+     * must run in a transaction
+     *
+     * @return The changes and the request sending them
+     */
+    private Outgoing readOutgoing() {
+        Outgoing outgoing = new Outgoing();
+        outgoing.changes = syncDao.getPendingChanges(batchSize);
+        outgoing.request.cursor = syncDao.getPullCursor();
+        List<String> numbers = new ArrayList<>(outgoing.changes.size());
+        for (ModuleChange change : outgoing.changes) {
+            numbers.add(change.getModuleNumber());
+        }
+        Map<String, Module> modules = numbers.isEmpty()
+                ? Collections.<String, Module>emptyMap() : loadModules(numbers);
+
+        for (ModuleChange change : outgoing.changes) {
+            Module module = modules.get(change.getModuleNumber());
+            // The change is based on the server state it was last synced with
+            outgoing.request.changes.add(change.isDeleted() || module == null
+                    ? ModuleSyncProtocol.Record.tombstone(change.getModuleNumber(), change.getServerSeq())
+                    : ModuleSyncProtocol.Record.of(module, change.getServerSeq()));
+        }
+        return outgoing;
+    }
+
+    /**
+     * Posts a request and reads the response, both compressed
+     *
+     * @param body The compressed request body
+     * @param result Receives the number of bytes received
+     * @return The response
+     * @throws IOException If the request fails
+     */
+    private ModuleSyncProtocol.Response post(byte[] body, Result result) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", ModuleSyncProtocol.CONTENT_TYPE);
+            connection.setRequestProperty("Content-Encoding", ModuleSyncProtocol.CONTENT_ENCODING);
+            // Requested explicitly, so the body arrives compressed and is decoded by the protocol
+            connection.setRequestProperty("Accept-Encoding", ModuleSyncProtocol.CONTENT_ENCODING);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Sync failed with HTTP " + status);
+            }
+            CountingInputStream in = new CountingInputStream(connection.getInputStream());
+            try {
+                return ModuleSyncProtocol.decodeResponse(in);
+            } finally {
+                result.bytesReceived += in.count;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Applies a response on the writer thread and waits until it is committed
+     *
+     * @param outgoing The changes that were sent
+     * @param response The response of the server
+     * @param result Receives the numbers of pulled modules and conflicts
+     * @return The number of modules that have to be sent again
+     * @throws IOException If the response cannot be applied
+     */
+    private int apply(final Outgoing outgoing, final ModuleSyncProtocol.Response response,
+                      final Result result) throws IOException {
+        final CompletableFuture<Incoming> done = new CompletableFuture<>();
+        writeQueue.runOnWriter(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Incoming incoming = new Incoming();
+                    database.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            applyInTransaction(outgoing, response, incoming);
+                        }
+                    });
+                    writeQueue.notifyBatchApplied(incoming.previous, incoming.upserts,
+                            Collections.<Module>emptyList(), incoming.deletes);
+                    done.complete(incoming);
+                } catch (RuntimeException e) {
+                    done.completeExceptionally(e);
+                }
+            }
+        });
+
+        Incoming incoming;
+        try {
+            incoming = done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while applying the sync response");
+        } catch (ExecutionException e) {
+            throw new IOException("Applying the sync response failed", e.getCause());
+        }
+        result.pulledCount += incoming.pulled;
+        result.conflictCount += incoming.conflicts;
+        return incoming.stillPending;
+    }
+
+    /**
+     * Records the accepted changes and writes the server states, must run in a transaction
+     * on the writer thread
+     *
+     * @param outgoing The changes that were sent
+     * @param response The response of the server
+     * @param incoming Receives the writes and counts
+     */
+    private void applyInTransaction(Outgoing outgoing, ModuleSyncProtocol.Response response,
+                                    Incoming incoming) {
+        Map<String, Integer> sentIndex = new HashMap<>();
+        for (int i = 0; i < outgoing.changes.size(); i++) {
+            sentIndex.put(outgoing.changes.get(i).getModuleNumber(), i);
+        }
+        for (ModuleSyncProtocol.Record accepted : response.accepted) {
+            Integer index = sentIndex.get(accepted.moduleNumber);
+            if (index == null) {
+                continue;
+            }
+            // Still pending if the module was written again after it was read for sending
+            ModuleSyncProtocol.Record sent = outgoing.request.changes.get(index);
+            syncDao.markPushed(accepted.moduleNumber, outgoing.changes.get(index).getChangeSeq(),
+                    accepted.seq, sent.deleted ? null : sent.moduleTitle,
+                    sent.zpHundredths, sent.lbHundredths);
+        }
+
+        // Latest server state per module, a rejected change may also be among the pulled ones
+        LinkedHashMap<String, ModuleSyncProtocol.Record> states = new LinkedHashMap<>();
+        addLatest(states, response.conflicts);
+        addLatest(states, response.changes);
+        List<String> numbers = new ArrayList<>(states.keySet());
+        Map<String, ModuleChange> changes = new HashMap<>();
+        for (int start = 0; start < numbers.size(); start += ModuleDao.DELETE_CHUNK_SIZE) {
+            List<String> chunk = numbers.subList(start,
+                    Math.min(numbers.size(), start + ModuleDao.DELETE_CHUNK_SIZE));
+            for (ModuleChange change : syncDao.getChanges(chunk)) {
+                changes.put(change.getModuleNumber(), change);
+            }
+        }
+        Map<String, Module> modules = numbers.isEmpty()
+                ? Collections.<String, Module>emptyMap() : loadModules(numbers);
+
+        List<ModuleSyncProtocol.Record> synced = new ArrayList<>();
+        List<Boolean> syncedPending = new ArrayList<>();
+        for (ModuleSyncProtocol.Record state : states.values()) {
+            ModuleChange change = changes.get(state.moduleNumber);
+            if (change != null && state.seq <= change.getServerSeq()) {
+                // Already known, e.g. this device's own accepted change
+                continue;
+            }
+            incoming.pulled++;
+            Module local = modules.get(state.moduleNumber);
+            boolean localPending = change != null && change.isPending();
+            boolean localDeleted = local == null || (change != null && change.isDeleted());
+            boolean pending = false;
+
+            if (!localPending || (state.deleted && localDeleted)) {
+                takeServerState(state, local, incoming);
+            } else if (state.deleted) {
+                // The local edit wins over the remote delete and is sent again as a new module
+                incoming.conflicts++;
+                pending = true;
+            } else if (localDeleted) {
+                // The remote edit wins over the local delete
+                incoming.conflicts++;
+                takeServerState(state, local, incoming);
+            } else {
+                incoming.conflicts++;
+                Module remote = state.toModule();
+                Module base = change.getBaseModule();
+                Module merged = ModuleMerge.merge(base != null ? base : remote, local, remote);
+                if (!sameContent(merged, local)) {
+                    incoming.upserts.add(merged);
+                }
+                pending = !sameContent(merged, remote);
+            }
+            if (pending) {
+                incoming.stillPending++;
+            }
+            synced.add(state);
+            syncedPending.add(pending);
+        }
+
+        if (!incoming.upserts.isEmpty() || !incoming.deletes.isEmpty()) {
+            incoming.previous = moduleDao.applyBatch(incoming.upserts, Collections.<Module>emptyList(),
+                    Collections.<Module>emptyList(), incoming.deletes, new ArrayList<Module>());
+        }
+        // After the writes, whose triggers mark the modules as changed locally
+        for (int i = 0; i < synced.size(); i++) {
+            ModuleSyncProtocol.Record state = synced.get(i);
+            syncDao.markSynced(state.moduleNumber, syncedPending.get(i), state.seq,
+                    state.deleted ? null : state.moduleTitle, state.zpHundredths, state.lbHundredths);
+        }
+        syncDao.setPullCursor(response.cursor);
+    }
+
+    /**
+     * Queues the write of a server state
+     *
+     * @param state The server state
+     * @param local The local module, null if it doesn't exist
+     * @param incoming Receives the write
+     */
+    private static void takeServerState(ModuleSyncProtocol.Record state, Module local, Incoming incoming) {
+        if (state.deleted) {
+            if (local != null) {
+                incoming.deletes.add(state.moduleNumber);
+            }
+        } else {
+            Module remote = state.toModule();
+            if (local == null || !sameContent(remote, local)) {
+                incoming.upserts.add(remote);
+            }
+        }
+    }
+
+    /**
+     * Adds records to a map by module number, keeping the one with the highest sequence number
+     */
+    private static void addLatest(Map<String, ModuleSyncProtocol.Record> states,
+                                  List<ModuleSyncProtocol.Record> records) {
+        for (ModuleSyncProtocol.Record record : records) {
+            ModuleSyncProtocol.Record known = states.get(record.moduleNumber);
+            if (known == null || known.seq < record.seq) {
+                states.put(record.moduleNumber, record);
+            }
+        }
+    }
+
+    /**
+     * Loads modules by number in chunks below the bind variable limit
+     *
+     * @param numbers The module numbers
+     * @return The modules that exist, by module number
+     */
+    private Map<String, Module> loadModules(List<String> numbers) {
+        Map<String, Module> modules = new HashMap<>();
+        for (int start = 0; start < numbers.size(); start += ModuleDao.DELETE_CHUNK_SIZE) {
+            List<String> chunk = numbers.subList(start,
+                    Math.min(numbers.size(), start + ModuleDao.DELETE_CHUNK_SIZE));
+            for (Module module : syncDao.getModulesByNumbers(chunk)) {
+                modules.put(module.getModuleNumber(), module);
+            }
+        }
+        return modules;
+    }
+
+    private static boolean sameContent(Module a, Module b) {
+        return a.getModuleTitle().equals(b.getModuleTitle())
+                && a.getZpHundredths() == b.getZpHundredths()
+                && a.getLbHundredths() == b.getLbHundredths();
+    }
+
+    /**
+     * The pending changes of one round and the request sending them, in the same order
+     */
+    private static class Outgoing {
+        List<ModuleChange> changes;
+        final ModuleSyncProtocol.Request request = new ModuleSyncProtocol.Request();
+    }
+
+    /**
+     * The writes and counts of applying one response
+     */
+    private static class Incoming {
+        final List<Module> upserts = new ArrayList<>();
+        final List<String> deletes = new ArrayList<>();
+        List<ModuleGrades> previous = Collections.emptyList();
+        int pulled;
+        int conflicts;
+        int stillPending;
+    }
+
+    /**
+     * Counts the bytes read from a stream
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Outcome of a sync
+     */
+    public static final class Result {
+        private int rounds;
+        private int pushedCount;
+        private int pulledCount;
+        private int conflictCount;
+        private long bytesSent;
+        private long bytesReceived;
+        private long durationMillis;
+
+        /**
+         * Gets the number of requests
+         *
+         * @return The requests of the sync
+         */
+        public int getRounds() {
+            return rounds;
+        }
+
+        /**
+         * Gets the number of changes the server accepted
+         *
+         * @return The accepted changes
+         */
+        public int getPushedCount() {
+            return pushedCount;
+        }
+
+        /**
+         * Gets the number of server states applied locally, merged ones included
+         *
+         * @return The applied server states
+         */
+        public int getPulledCount() {
+            return pulledCount;
+        }
+
+        /**
+         * Gets the number of modules changed on both sides
+         *
+         * @return The resolved conflicts
+         */
+        public int getConflictCount() {
+            return conflictCount;
+        }
+
+        /**
+         * Gets the compressed size of all requests
+         *
+         * @return The bytes sent
+         */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * Gets the compressed size of all responses
+         *
+         * @return The bytes received
+         */
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * Gets the wall time of the sync
+         *
+         * @return The duration in milliseconds
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
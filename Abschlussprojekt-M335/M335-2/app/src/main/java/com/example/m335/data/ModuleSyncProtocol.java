@@ -0,0 +1,295 @@
+package com.example.m335.data;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import com.example.m335.model.Module;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Wire format of the delta sync: gzip-compressed JSON in both directions.
+ * A request carries the pull cursor and the changed modules; the response carries the
+ * accepted changes, the rejected ones with the server state, and the changes of other
+ * devices since the cursor. Deleted modules are sent as tombstones without title and grades.
+ */
+public final class ModuleSyncProtocol {
+
+    /**
+     * Content type of requests and responses
+     */
+    public static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    /**
+     * Content encoding of requests and responses
+     */
+    public static final String CONTENT_ENCODING = "gzip";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private ModuleSyncProtocol() {
+    }
+
+    /**
+     * State of one module on the wire
+     */
+    public static final class Record {
+        public String moduleNumber;
+        public String moduleTitle; // null for a tombstone
+        public int zpHundredths = Module.NO_GRADE;
+        public int lbHundredths = Module.NO_GRADE;
+        public boolean deleted;
+        // In a request the server sequence number the change is based on,
+        // in a response the server sequence number of the state
+        public long seq;
+
+        /**
+         * Creates the record of a stored module
+         *
+         * @param module The module
+         * @param seq The sequence number of the record
+         * @return The record
+         */
+        public static Record of(Module module, long seq) {
+            Record record = new Record();
+            record.moduleNumber = module.getModuleNumber();
+            record.moduleTitle = module.getModuleTitle();
+            record.zpHundredths = module.getZpHundredths();
+            record.lbHundredths = module.getLbHundredths();
+            record.seq = seq;
+            return record;
+        }
+
+        /**
+         * Creates the tombstone of a deleted module
+         *
+         * @param moduleNumber The number of the deleted module
+         * @param seq The sequence number of the record
+         * @return The record
+         */
+        public static Record tombstone(String moduleNumber, long seq) {
+            Record record = new Record();
+            record.moduleNumber = moduleNumber;
+            record.deleted = true;
+            record.seq = seq;
+            return record;
+        }
+
+        /**
+         * Creates the module of a record that is not a tombstone
+         *
+         * @return The module
+         */
+        public Module toModule() {
+            Module module = new Module(moduleNumber, moduleTitle);
+            module.setZpHundredths(zpHundredths);
+            module.setLbHundredths(lbHundredths);
+            return module;
+        }
+    }
+
+    /**
+     * Body of a sync request
+     */
+    public static final class Request {
+        public long cursor; // Server sequence number up to which the device has pulled
+        public final List<Record> changes = new ArrayList<>();
+    }
+
+    /**
+     * Body of a sync response
+     */
+    public static final class Response {
+        public long cursor; // New pull cursor of the device
+        public boolean more; // More changes are waiting after the cursor
+        public final List<Record> accepted = new ArrayList<>(); // Only number and new sequence number
+        public final List<Record> conflicts = new ArrayList<>(); // Server state of rejected changes
+        public final List<Record> changes = new ArrayList<>(); // Changes of other devices
+    }
+
+    /**
+     * Encodes a request
+     *
+     * @param request The request
+     * @return The compressed body
+     * @throws IOException If the body cannot be written
+     */
+    public static byte[] encodeRequest(Request request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (JsonWriter writer = openWriter(bytes)) {
+            writer.beginObject();
+            writer.name("cursor").value(request.cursor);
+            writeRecords(writer, "changes", request.changes);
+            writer.endObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a request
+     *
+     * @param body The compressed body
+     * @return The request
+     * @throws IOException If the body is not a well-formed request
+     */
+    public static Request decodeRequest(InputStream body) throws IOException {
+        Request request = new Request();
+        try (JsonReader reader = openReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("cursor")) {
+                    request.cursor = reader.nextLong();
+                } else if (name.equals("changes")) {
+                    readRecords(reader, request.changes, true);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return request;
+    }
+
+    /**
+     * Encodes a response
+     *
+     * @param response The response
+     * @return The compressed body
+     * @throws IOException If the body cannot be written
+     */
+    public static byte[] encodeResponse(Response response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (JsonWriter writer = openWriter(bytes)) {
+            writer.beginObject();
+            writer.name("cursor").value(response.cursor);
+            writer.name("more").value(response.more);
+            writer.name("accepted").beginArray();
+            for (Record record : response.accepted) {
+                writer.beginObject();
+                writer.name("moduleNumber").value(record.moduleNumber);
+                writer.name("seq").value(record.seq);
+                writer.endObject();
+            }
+            writer.endArray();
+            writeRecords(writer, "conflicts", response.conflicts);
+            writeRecords(writer, "changes", response.changes);
+            writer.endObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a response
+     *
+     * @param body The compressed body
+     * @return The response
+     * @throws IOException If the body is not a well-formed response
+     */
+    public static Response decodeResponse(InputStream body) throws IOException {
+        Response response = new Response();
+        try (JsonReader reader = openReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("cursor")) {
+                    response.cursor = reader.nextLong();
+                } else if (name.equals("more")) {
+                    response.more = reader.nextBoolean();
+                } else if (name.equals("accepted")) {
+                    readRecords(reader, response.accepted, false);
+                } else if (name.equals("conflicts")) {
+                    readRecords(reader, response.conflicts, true);
+                } else if (name.equals("changes")) {
+                    readRecords(reader, response.changes, true);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return response;
+    }
+
+    private static JsonWriter openWriter(ByteArrayOutputStream bytes) throws IOException {
+        return new JsonWriter(new OutputStreamWriter(
+                new GZIPOutputStream(bytes, BUFFER_SIZE), StandardCharsets.UTF_8));
+    }
+
+    private static JsonReader openReader(InputStream body) throws IOException {
+        return new JsonReader(new InputStreamReader(
+                new GZIPInputStream(body, BUFFER_SIZE), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a named array of records; tombstones are written without title and grades
+     */
+    private static void writeRecords(JsonWriter writer, String name, List<Record> records)
+            throws IOException {
+        writer.name(name).beginArray();
+        for (Record record : records) {
+            writer.beginObject();
+            writer.name("moduleNumber").value(record.moduleNumber);
+            if (record.deleted) {
+                writer.name("deleted").value(true);
+            } else {
+                writer.name("moduleTitle").value(record.moduleTitle);
+                writer.name("zpHundredths").value(record.zpHundredths);
+                writer.name("lbHundredths").value(record.lbHundredths);
+            }
+            writer.name("seq").value(record.seq);
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Reads an array of records, missing fields keep their defaults
+     *
+     * @param withState false for acknowledgements, which carry only number and sequence number
+     */
+    private static void readRecords(JsonReader reader, List<Record> records, boolean withState)
+            throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Record record = new Record();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                } else if (name.equals("moduleNumber")) {
+                    record.moduleNumber = reader.nextString();
+                } else if (name.equals("moduleTitle")) {
+                    record.moduleTitle = reader.nextString();
+                } else if (name.equals("zpHundredths")) {
+                    record.zpHundredths = reader.nextInt();
+                } else if (name.equals("lbHundredths")) {
+                    record.lbHundredths = reader.nextInt();
+                } else if (name.equals("deleted")) {
+                    record.deleted = reader.nextBoolean();
+                } else if (name.equals("seq")) {
+                    record.seq = reader.nextLong();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (record.moduleNumber == null || (withState && !record.deleted && record.moduleTitle == null)) {
+                throw new IOException("Incomplete sync record");
+            }
+            records.add(record);
+        }
+        reader.endArray();
+    }
+}
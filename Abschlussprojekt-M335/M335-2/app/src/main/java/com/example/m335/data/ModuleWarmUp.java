@@ -0,0 +1,62 @@
+package com.example.m335.data;
+
+import android.content.Context;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opens and warms up the module database at application start, before the first screen asks.
+ * The open runs Room's schema check and pending migrations; afterwards the first page of
+ * the list is read, which compiles its statements and leaves the page ready for the list.
+ */
+public final class ModuleWarmUp {
+
+    private ModuleWarmUp() {
+    }
+
+    /**
+     * Starts the warm-up on its own thread
+     *
+     * @param context The application context
+     * @param initialLoadSize The size of the first page the list will request
+     * @param onOpen Called on the warm-up thread once the database is open
+     * @return Completes once the first page is preloaded
+     */
+    public static CompletableFuture<Void> start(final Context context, final int initialLoadSize,
+                                                final Runnable onOpen) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "module-warmup");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CompletableFuture<Void> warmUp = CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                warmUp(ModuleDatabase.getDatabase(context), initialLoadSize, onOpen);
+            }
+        }, executor);
+        // The thread ends after the warm-up
+        executor.shutdown();
+        return warmUp;
+    }
+
+    /**
+     * Opens the database and preloads the first page, must not be called on the main thread
+     *
+     * @param database The database to warm up
+     * @param initialLoadSize The size of the first page the list will request
+     * @param onOpen Called once the database is open
+     */
+    public static void warmUp(ModuleDatabase database, int initialLoadSize, Runnable onOpen) {
+        // Waits for a migration started by getDatabase, or opens the database itself
+        database.getOpenHelper().getWritableDatabase();
+        onOpen.run();
+        ModuleKeysetDataSource.preloadFirstPage(database, initialLoadSize);
+    }
+}
@@ -0,0 +1,510 @@
+package com.example.m335.data;
+
+import android.util.Log;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleGrades;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Single-writer queue for module writes.
+ * Pending operations are drained into one database transaction per batch and
+ * operations on the same module number are collapsed before they are written.
+ * Conditional updates are never collapsed: a write meeting one on the same module number
+ * waits for the next batch, so every conditional update sees exactly the writes queued before it.
+ */
+public class ModuleWriteQueue {
+
+    /**
+     * Kind of a pending write operation
+     */
+    enum Operation {
+        INSERT,
+        UPDATE,
+        COMPARE_AND_SET,
+        DELETE
+    }
+
+    /**
+     * Receives every committed batch, called on the writer thread
+     */
+    public interface ChangeListener {
+        /**
+         * Called after a batch is committed, before its writes complete.
+         * A listener that throws is logged and skipped, the batch stays committed.
+         *
+         * @param previous The grades stored before the batch, for modules that existed
+         * @param inserts The inserted or replaced modules
+         * @param updates The updated modules, updates of missing modules change nothing.
+         *                Conditional updates are included only if they were applied.
+         * @param deleteNumbers The numbers of the deleted modules
+         */
+        void onBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                            List<Module> updates, List<String> deleteNumbers);
+    }
+
+    private static final String TAG = "M335WriteQueue";
+
+    private final ModuleDao moduleDao;
+    private final Executor writeExecutor;
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    private final Object lock = new Object();
+    private LinkedHashMap<String, PendingWrite> pending = new LinkedHashMap<>();
+    // Writes that must not be collapsed into the pending batch, in the order they were queued
+    private List<PendingWrite> deferred = new ArrayList<>();
+    private final Set<String> deferredNumbers = new HashSet<>();
+    private boolean drainScheduled = false;
+
+    /**
+     * Constructor creates a queue with its own writer thread
+     *
+     * @param database The database to write to
+     */
+    public ModuleWriteQueue(ModuleDatabase database) {
+        this(database.moduleDao(), createWriterExecutor());
+    }
+
+    /**
+     * Constructor with an explicit writer executor.
+     * The executor must run tasks one after another.
+     *
+     * @param moduleDao The DAO used to apply the writes
+     * @param writeExecutor The single-threaded executor that drains the queue
+     */
+    ModuleWriteQueue(ModuleDao moduleDao, Executor writeExecutor) {
+        this.moduleDao = moduleDao;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /**
+     * Adds a listener informed about every committed batch
+     *
+     * @param listener The listener
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addChangeListener}
+     *
+     * @param listener The listener
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Runs a task on the writer thread, between two batches
+     *
+     * @param task The task to run
+     */
+    void runOnWriter(Runnable task) {
+        writeExecutor.execute(task);
+    }
+
+    /**
+     * Informs the listeners about writes committed on the writer thread outside the queue,
+     * e.g. changes pulled by the sync. Must be called on the writer thread.
+     *
+     * @param previous The grades stored before the writes, for modules that existed
+     * @param inserts The inserted or replaced modules
+     * @param updates The updated modules
+     * @param deleteNumbers The numbers of the deleted modules
+     */
+    void notifyBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                            List<Module> updates, List<String> deleteNumbers) {
+        if (inserts.isEmpty() && updates.isEmpty() && deleteNumbers.isEmpty()) {
+            return;
+        }
+        for (ChangeListener listener : changeListeners) {
+            // The batch is committed, a failing listener must not keep its writes from completing
+            try {
+                listener.onBatchApplied(previous, inserts, updates, deleteNumbers);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Change listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Queues a module insert
+     *
+     * @param module The module to insert
+     * @return Completes once the batch containing the insert is committed
+     */
+    public CompletableFuture<Void> insert(Module module) {
+        return enqueue(Operation.INSERT, module.getModuleNumber(), module);
+    }
+
+    /**
+     * Queues a module update
+     *
+     * @param module The module to update
+     * @return Completes once the batch containing the update is committed
+     */
+    public CompletableFuture<Void> update(Module module) {
+        return enqueue(Operation.UPDATE, module.getModuleNumber(), module);
+    }
+
+    /**
+     * Queues an update that is only applied if the stored module still has the version
+     * the given module was read with
+     *
+     * @param module The changed module, carrying the version it is based on
+     * @return Completes once the update is committed, or exceptionally with a
+     *         {@link ModuleConflictException} if the module was changed or deleted in the meantime
+     */
+    public CompletableFuture<Void> compareAndSet(Module module) {
+        return enqueue(Operation.COMPARE_AND_SET, module.getModuleNumber(), module);
+    }
+
+    /**
+     * Queues a module delete
+     *
+     * @param module The module to delete
+     * @return Completes once the batch containing the delete is committed
+     */
+    public CompletableFuture<Void> delete(Module module) {
+        return enqueue(Operation.DELETE, module.getModuleNumber(), module);
+    }
+
+    /**
+     * Queues inserts for several modules that are committed together
+     *
+     * @param modules The modules to insert
+     * @return Completes once all inserts are committed
+     */
+    public CompletableFuture<Void> insertAll(List<Module> modules) {
+        return enqueueAll(Operation.INSERT, modules);
+    }
+
+    /**
+     * Queues updates for several modules that are committed together
+     *
+     * @param modules The modules to update
+     * @return Completes once all updates are committed
+     */
+    public CompletableFuture<Void> updateAll(List<Module> modules) {
+        return enqueueAll(Operation.UPDATE, modules);
+    }
+
+    /**
+     * Queues deletes for several modules that are committed together
+     *
+     * @param modules The modules to delete
+     * @return Completes once all deletes are committed
+     */
+    public CompletableFuture<Void> deleteAll(List<Module> modules) {
+        return enqueueAll(Operation.DELETE, modules);
+    }
+
+    /**
+     * Queues deletes by module number that are committed together
+     *
+     * @param moduleNumbers The numbers of the modules to delete
+     * @return Completes once all deletes are committed
+     */
+    public CompletableFuture<Void> deleteByNumbers(List<String> moduleNumbers) {
+        return enqueueAll(Operation.DELETE, moduleNumbers, null);
+    }
+
+    /**
+     * Adds an operation to the pending batch and schedules a drain if none is scheduled yet
+     *
+     * @param operation The kind of write
+     * @param moduleNumber The key of the written row
+     * @param module The module to write
+     * @return The completion handle of the operation
+     */
+    private CompletableFuture<Void> enqueue(Operation operation, String moduleNumber, Module module) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        boolean scheduleDrain;
+        synchronized (lock) {
+            addPending(operation, moduleNumber, module, completion);
+            scheduleDrain = markDrainScheduled();
+        }
+        return scheduleIfNeeded(scheduleDrain, completion);
+    }
+
+    /**
+     * Adds the same operation for several modules under one lock,
+     * so that all of them end up in the same transaction
+     *
+     * @param operation The kind of write
+     * @param modules The modules to write
+     * @return One completion handle for all operations
+     */
+    private CompletableFuture<Void> enqueueAll(Operation operation, List<Module> modules) {
+        List<String> moduleNumbers = new ArrayList<>(modules.size());
+        for (Module module : modules) {
+            moduleNumbers.add(module.getModuleNumber());
+        }
+        return enqueueAll(operation, moduleNumbers, modules);
+    }
+
+    /**
+     * Adds the same operation for several module numbers under one lock.
+     * The writes that go into the pending batch share one completion handle; a write that has
+     * to wait for a later batch gets its own, so the result only completes once every write
+     * is committed and fails if any of them fails.
+     *
+     * @param operation The kind of write
+     * @param moduleNumbers The keys of the written rows
+     * @param modules The modules to write in the order of the numbers, null for deletes by number
+     * @return One completion handle for all operations
+     */
+    private CompletableFuture<Void> enqueueAll(Operation operation, List<String> moduleNumbers,
+                                               List<Module> modules) {
+        CompletableFuture<Void> batched = new CompletableFuture<>();
+        List<CompletableFuture<Void>> completions = new ArrayList<>();
+        boolean batchedUsed = false;
+        boolean scheduleDrain;
+        synchronized (lock) {
+            for (int i = 0; i < moduleNumbers.size(); i++) {
+                String moduleNumber = moduleNumbers.get(i);
+                Module module = modules != null ? modules.get(i) : null;
+                if (mustDefer(operation, moduleNumber)) {
+                    CompletableFuture<Void> completion = new CompletableFuture<>();
+                    completions.add(completion);
+                    addPending(operation, moduleNumber, module, completion);
+                } else {
+                    if (!batchedUsed) {
+                        completions.add(batched);
+                        batchedUsed = true;
+                    }
+                    addPending(operation, moduleNumber, module, batched);
+                }
+            }
+            scheduleDrain = markDrainScheduled();
+        }
+        scheduleIfNeeded(scheduleDrain, null);
+        return CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Checks if an operation has to wait for a later batch, caller must hold the lock
+     *
+     * @param operation The kind of write
+     * @param moduleNumber The key of the written row
+     * @return true if the operation cannot be collapsed into the pending batch
+     */
+    private boolean mustDefer(Operation operation, String moduleNumber) {
+        PendingWrite previous = pending.get(moduleNumber);
+        return previous != null && (deferredNumbers.contains(moduleNumber)
+                || operation == Operation.COMPARE_AND_SET
+                || previous.getOperation() == Operation.COMPARE_AND_SET);
+    }
+
+    /**
+     * Stores or collapses a pending operation, caller must hold the lock.
+     * Operations that cannot be collapsed are deferred to the next batch.
+     */
+    private void addPending(Operation operation, String moduleNumber, Module module,
+                            CompletableFuture<Void> completion) {
+        PendingWrite previous = pending.get(moduleNumber);
+        if (previous == null) {
+            pending.put(moduleNumber, new PendingWrite(operation, moduleNumber, module, completion));
+        } else if (mustDefer(operation, moduleNumber)) {
+            deferred.add(new PendingWrite(operation, moduleNumber, module, completion));
+            deferredNumbers.add(moduleNumber);
+        } else {
+            previous.collapse(operation, module, completion);
+        }
+    }
+
+    /**
+     * Marks a drain as scheduled, caller must hold the lock
+     *
+     * @return true if the caller has to schedule the drain
+     */
+    private boolean markDrainScheduled() {
+        boolean scheduleDrain = !drainScheduled;
+        drainScheduled = true;
+        return scheduleDrain;
+    }
+
+    private CompletableFuture<Void> scheduleIfNeeded(boolean scheduleDrain,
+                                                     CompletableFuture<Void> completion) {
+        if (scheduleDrain) {
+            writeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+        return completion;
+    }
+
+    /**
+     * Writes all pending operations in one transaction.
+     * Operations queued while the transaction runs end up in the next batch.
+     */
+    private void drain() {
+        LinkedHashMap<String, PendingWrite> batch;
+        boolean drainAgain;
+        synchronized (lock) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            // Deferred writes were queued before anything that arrives from now on
+            List<PendingWrite> replay = deferred;
+            deferred = new ArrayList<>();
+            deferredNumbers.clear();
+            for (PendingWrite write : replay) {
+                addPending(write.getOperation(), write.getModuleNumber(), write.getModule(),
+                        write.getCompletion());
+            }
+            drainAgain = !pending.isEmpty();
+            drainScheduled = drainAgain;
+        }
+        scheduleIfNeeded(drainAgain, null);
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Module> inserts = new ArrayList<>();
+        List<Module> updates = new ArrayList<>();
+        List<Module> conditionalUpdates = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        for (PendingWrite write : batch.values()) {
+            switch (write.getOperation()) {
+                case INSERT:
+                    inserts.add(write.getModule());
+                    break;
+                case UPDATE:
+                    updates.add(write.getModule());
+                    break;
+                case COMPARE_AND_SET:
+                    conditionalUpdates.add(write.getModule());
+                    break;
+                case DELETE:
+                    deletes.add(write.getModuleNumber());
+                    break;
+            }
+        }
+
+        List<ModuleGrades> previous;
+        List<Module> conflicts = new ArrayList<>();
+        try {
+            previous = moduleDao.applyBatch(inserts, updates, conditionalUpdates, deletes, conflicts);
+        } catch (RuntimeException e) {
+            for (PendingWrite write : batch.values()) {
+                write.fail(e);
+            }
+            return;
+        }
+
+        // Listeners only see the conditional updates that were applied
+        conditionalUpdates.removeAll(conflicts);
+        updates.addAll(conditionalUpdates);
+        notifyBatchApplied(previous, inserts, updates, deletes);
+
+        for (Module conflict : conflicts) {
+            batch.remove(conflict.getModuleNumber())
+                    .fail(new ModuleConflictException(conflict.getModuleNumber()));
+        }
+        for (PendingWrite write : batch.values()) {
+            write.complete();
+        }
+    }
+
+    /**
+     * Creates the executor backing the writer thread
+     *
+     * @return A single-threaded executor
+     */
+    private static ExecutorService createWriterExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "module-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * The collapsed state of all queued operations for one module number
+     */
+    static class PendingWrite {
+        private final String moduleNumber;
+        private Operation operation;
+        private Module module;
+        private final List<CompletableFuture<Void>> completions = new ArrayList<>(1);
+
+        PendingWrite(Operation operation, String moduleNumber, Module module,
+                     CompletableFuture<Void> completion) {
+            this.operation = operation;
+            this.moduleNumber = moduleNumber;
+            this.module = module;
+            this.completions.add(completion);
+        }
+
+        /**
+         * Folds a newer operation on the same module number into this one.
+         * The result has the same effect as running both operations in order.
+         *
+         * @param newOperation The newer operation
+         * @param newModule The module of the newer operation, null for deletes by number
+         * @param completion The completion handle of the newer operation
+         */
+        void collapse(Operation newOperation, Module newModule, CompletableFuture<Void> completion) {
+            if (!completions.contains(completion)) {
+                completions.add(completion);
+            }
+
+            if (newOperation == Operation.UPDATE) {
+                // An update keeps an earlier insert an insert and is a no-op after a delete
+                if (operation == Operation.DELETE) {
+                    return;
+                }
+            } else {
+                operation = newOperation;
+            }
+            module = newModule;
+        }
+
+        Operation getOperation() {
+            return operation;
+        }
+
+        String getModuleNumber() {
+            return moduleNumber;
+        }
+
+        Module getModule() {
+            return module;
+        }
+
+        CompletableFuture<Void> getCompletion() {
+            return completions.get(0);
+        }
+
+        void complete() {
+            for (CompletableFuture<Void> completion : completions) {
+                completion.complete(null);
+            }
+        }
+
+        void fail(Throwable error) {
+            for (CompletableFuture<Void> completion : completions) {
+                completion.completeExceptionally(error);
+            }
+        }
+    }
+}
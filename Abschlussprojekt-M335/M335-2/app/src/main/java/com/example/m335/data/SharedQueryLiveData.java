@@ -0,0 +1,70 @@
+package com.example.m335.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+
+/**
+ * LiveData sharing one database query between all observers of the process.
+ * The query is subscribed when the first observer becomes active and dropped when
+ * the last one goes away; the last result stays available as the shared snapshot.
+ *
+ * @param <T> The query result type
+ */
+public class SharedQueryLiveData<T> extends LiveData<T> {
+    private final LiveData<T> query;
+    private boolean subscribed = false;
+    private int subscriptionCount = 0;
+
+    private final Observer<T> forwarder = new Observer<T>() {
+        @Override
+        public void onChanged(T value) {
+            setValue(value);
+        }
+    };
+
+    /**
+     * Constructor wrapping a query that is only run while observed
+     *
+     * @param query The Room query LiveData
+     */
+    public SharedQueryLiveData(LiveData<T> query) {
+        this.query = query;
+    }
+
+    /**
+     * Subscribes the query for the first active observer
+     */
+    @Override
+    protected void onActive() {
+        subscribed = true;
+        subscriptionCount++;
+        query.observeForever(forwarder);
+    }
+
+    /**
+     * Drops the query once no observer is active anymore
+     */
+    @Override
+    protected void onInactive() {
+        query.removeObserver(forwarder);
+        subscribed = false;
+    }
+
+    /**
+     * Checks if the query is currently subscribed
+     *
+     * @return true while at least one observer is active
+     */
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * Gets how often the query was subscribed since the process started
+     *
+     * @return Number of subscriptions
+     */
+    public int getSubscriptionCount() {
+        return subscriptionCount;
+    }
+}
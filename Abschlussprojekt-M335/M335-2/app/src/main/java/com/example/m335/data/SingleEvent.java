@@ -0,0 +1,45 @@
+package com.example.m335.data;
+
+/**
+ * Value of a LiveData that is handled once, e.g. a message shown as toast.
+ * LiveData replays its last value to every new observer, also after a rotation;
+ * the event hands its content only to the first observer that takes it.
+ * Events are taken on the main thread.
+ *
+ * @param <T> The content type
+ */
+public class SingleEvent<T> {
+    private final T content;
+    private boolean taken = false;
+
+    /**
+     * Constructor with the content of the event
+     *
+     * @param content The content
+     */
+    public SingleEvent(T content) {
+        this.content = content;
+    }
+
+    /**
+     * Takes the content, only the first call gets it
+     *
+     * @return The content or null if it was taken before
+     */
+    public T take() {
+        if (taken) {
+            return null;
+        }
+        taken = true;
+        return content;
+    }
+
+    /**
+     * Gets the content whether it was taken or not
+     *
+     * @return The content
+     */
+    public T peek() {
+        return content;
+    }
+}
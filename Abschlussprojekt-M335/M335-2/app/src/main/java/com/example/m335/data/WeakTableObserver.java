@@ -0,0 +1,54 @@
+package com.example.m335.data;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.room.InvalidationTracker;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+
+/**
+ * Invalidates a paged data source when one of its tables changes.
+ * The data source is held weakly, like Room's own paged sources do, so a source that is
+ * dropped without being invalidated can still be collected together with its PagedList;
+ * the observer then removes itself at the next change of its tables.
+ */
+final class WeakTableObserver extends InvalidationTracker.Observer {
+    private final InvalidationTracker tracker;
+    private final WeakReference<DataSource<?, ?>> dataSource;
+
+    /**
+     * Registers an observer for a data source, it is removed again once the source is invalidated
+     *
+     * @param database The database of the tables
+     * @param dataSource The data source to invalidate
+     * @param tables The observed tables
+     */
+    static void register(ModuleDatabase database, DataSource<?, ?> dataSource, String... tables) {
+        final WeakTableObserver observer = new WeakTableObserver(
+                database.getInvalidationTracker(), dataSource, tables);
+        observer.tracker.addObserver(observer);
+        dataSource.addInvalidatedCallback(new DataSource.InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                observer.tracker.removeObserver(observer);
+            }
+        });
+    }
+
+    private WeakTableObserver(InvalidationTracker tracker, DataSource<?, ?> dataSource, String[] tables) {
+        super(tables);
+        this.tracker = tracker;
+        this.dataSource = new WeakReference<DataSource<?, ?>>(dataSource);
+    }
+
+    @Override
+    public void onInvalidated(@NonNull Set<String> tables) {
+        DataSource<?, ?> source = dataSource.get();
+        if (source == null) {
+            tracker.removeObserver(this);
+        } else {
+            source.invalidate();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.m335.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class representing a weighted assessment of a module, e.g. a project or a presentation.
+ * The ZP and LB grades stored on the module count as two assessments of {@link #STANDARD_WEIGHT};
+ * assessments of this table are added on top of them. Deleting a module deletes its assessments.
+ */
+@Entity(tableName = "assessments",
+        foreignKeys = @ForeignKey(entity = Module.class,
+                parentColumns = "moduleNumber",
+                childColumns = "moduleNumber",
+                onDelete = ForeignKey.CASCADE),
+        // Also serves the foreign key: lookups by module number use its first column
+        indices = {@Index(value = {"moduleNumber", "kind"}, unique = true)})
+public class Assessment {
+
+    /**
+     * Weight of the ZP and LB grades of a module
+     */
+    public static final int STANDARD_WEIGHT = 1;
+
+    /**
+     * Lowest relative weight of an assessment, also enforced by triggers of the table
+     */
+    public static final int MIN_WEIGHT = 1;
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    @NonNull
+    private String moduleNumber;
+
+    @NonNull
+    private String kind; // e.g. Projekt, Präsentation; unique within a module
+
+    private int weight; // Relative weight, at least MIN_WEIGHT
+
+    // Grade in hundredths (5.25 is stored as 525), Module.NO_GRADE if not set
+    @ColumnInfo(defaultValue = "-1")
+    private int gradeHundredths = Module.NO_GRADE;
+
+    /**
+     * Constructor to create a new assessment
+     *
+     * @param moduleNumber The number of the assessed module
+     * @param kind The kind of the assessment
+     * @param weight The relative weight, at least {@link #MIN_WEIGHT}
+     * @throws IllegalArgumentException If the weight is below {@link #MIN_WEIGHT}
+     */
+    public Assessment(@NonNull String moduleNumber, @NonNull String kind, int weight) {
+        this.moduleNumber = moduleNumber;
+        this.kind = kind;
+        this.weight = checkWeight(weight);
+    }
+
+    /**
+     * Gets the ID of the assessment
+     *
+     * @return The ID, 0 before it is inserted
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the ID of the assessment
+     *
+     * @param id The ID to set
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the number of the assessed module
+     *
+     * @return The module number
+     */
+    @NonNull
+    public String getModuleNumber() {
+        return moduleNumber;
+    }
+
+    /**
+     * Sets the number of the assessed module
+     *
+     * @param moduleNumber The module number to set
+     */
+    public void setModuleNumber(@NonNull String moduleNumber) {
+        this.moduleNumber = moduleNumber;
+    }
+
+    /**
+     * Gets the kind of the assessment
+     *
+     * @return The kind
+     */
+    @NonNull
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * Sets the kind of the assessment
+     *
+     * @param kind The kind to set
+     */
+    public void setKind(@NonNull String kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Gets the relative weight
+     *
+     * @return The weight
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Sets the relative weight
+     *
+     * @param weight The weight to set, at least {@link #MIN_WEIGHT}
+     * @throws IllegalArgumentException If the weight is below {@link #MIN_WEIGHT}
+     */
+    public void setWeight(int weight) {
+        this.weight = checkWeight(weight);
+    }
+
+    /**
+     * Gets the grade in hundredths
+     *
+     * @return The grade or {@link Module#NO_GRADE}
+     */
+    public int getGradeHundredths() {
+        return gradeHundredths;
+    }
+
+    /**
+     * Sets the grade in hundredths
+     *
+     * @param gradeHundredths The grade or {@link Module#NO_GRADE}
+     */
+    public void setGradeHundredths(int gradeHundredths) {
+        this.gradeHundredths = gradeHundredths;
+    }
+
+    /**
+     * Checks a weight, a weight of 0 would drop the assessment from the average
+     * and a negative one would turn the average around
+     *
+     * @param weight The weight to check
+     * @return The weight
+     */
+    private static int checkWeight(int weight) {
+        if (weight < MIN_WEIGHT) {
+            throw new IllegalArgumentException("weight must be at least " + MIN_WEIGHT + ", was " + weight);
+        }
+        return weight;
+    }
+}
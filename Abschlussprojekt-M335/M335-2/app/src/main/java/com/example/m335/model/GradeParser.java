@@ -0,0 +1,88 @@
+package com.example.m335.model;
+
+/**
+ * Parses grades typed by the user or read from a file into hundredths.
+ * Accepts a decimal point or comma and surrounding whitespace. The parser reads the
+ * characters in place and reports invalid input with a return code, so it neither
+ * allocates nor throws, not even for bad input.
+ */
+public final class GradeParser {
+
+    /**
+     * Returned for input that is not a number
+     */
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    // Larger integer parts are clamped, they are out of range anyway
+    private static final long MAX_WHOLE = 1_000_000L;
+
+    private GradeParser() {
+    }
+
+    /**
+     * Parses a grade
+     *
+     * @param text The grade, e.g. "5.25", "4,5" or " 6 "
+     * @param rounding The rounding rule applied to the grade
+     * @return The grade in hundredths, 0 for negative numbers, {@link Module#NO_GRADE}
+     *         for empty input or {@link #INVALID} if the text is not a number
+     */
+    public static int parseHundredths(CharSequence text, GradeRounding rounding) {
+        if (text == null) {
+            return Module.NO_GRADE;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return Module.NO_GRADE;
+        }
+
+        int i = start;
+        boolean negative = false;
+        char first = text.charAt(i);
+        if (first == '+' || first == '-') {
+            negative = first == '-';
+            i++;
+        }
+
+        boolean hasDigits = false;
+        long whole = 0;
+        while (i < end && isDigit(text.charAt(i))) {
+            whole = Math.min(MAX_WHOLE, whole * 10 + (text.charAt(i) - '0'));
+            hasDigits = true;
+            i++;
+        }
+
+        // Up to three fraction digits are kept, the third one only decides the rounding
+        int thousandths = 0;
+        if (i < end && (text.charAt(i) == '.' || text.charAt(i) == ',')) {
+            i++;
+            int scale = 100;
+            while (i < end && isDigit(text.charAt(i))) {
+                thousandths += (text.charAt(i) - '0') * scale;
+                scale /= 10;
+                hasDigits = true;
+                i++;
+            }
+        }
+        if (!hasDigits || i != end) {
+            return INVALID;
+        }
+
+        if (negative) {
+            // Below every valid grade, -1 would be mistaken for NO_GRADE
+            return 0;
+        }
+        return rounding.round((int) ((whole * 1000 + thousandths + 5) / 10));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
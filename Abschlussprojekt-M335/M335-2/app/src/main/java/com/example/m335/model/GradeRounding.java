@@ -0,0 +1,37 @@
+package com.example.m335.model;
+
+/**
+ * Rounding rule applied to entered grades, e.g. to quarter or half grades
+ */
+public enum GradeRounding {
+    /**
+     * Grades are kept to the hundredth
+     */
+    NONE(1),
+
+    /**
+     * Grades are rounded to the nearest quarter, 4.37 becomes 4.25
+     */
+    QUARTER(25),
+
+    /**
+     * Grades are rounded to the nearest half, 4.75 becomes 5.0
+     */
+    HALF(50);
+
+    private final int stepHundredths;
+
+    GradeRounding(int stepHundredths) {
+        this.stepHundredths = stepHundredths;
+    }
+
+    /**
+     * Rounds a grade, halves are rounded up
+     *
+     * @param hundredths The grade in hundredths, not negative
+     * @return The rounded grade in hundredths
+     */
+    public int round(int hundredths) {
+        return (hundredths * 2 + stepHundredths) / (stepHundredths * 2) * stepHundredths;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.m335.model;
+
+/**
+ * Number of graded modules sharing the same sum of both grades in hundredths,
+ * one row of the grade distribution query
+ */
+public class GradeSumCount {
+    private final int gradeSum;
+    private final int moduleCount;
+
+    /**
+     * Constructor used by Room to map the distribution query
+     *
+     * @param gradeSum ZP plus LB grade in hundredths, twice the average
+     * @param moduleCount Number of modules with this sum
+     */
+    public GradeSumCount(int gradeSum, int moduleCount) {
+        this.gradeSum = gradeSum;
+        this.moduleCount = moduleCount;
+    }
+
+    /**
+     * Gets the sum of both grades in hundredths
+     *
+     * @return The grade sum
+     */
+    public int getGradeSum() {
+        return gradeSum;
+    }
+
+    /**
+     * Gets the number of modules with this grade sum
+     *
+     * @return Number of modules
+     */
+    public int getModuleCount() {
+        return moduleCount;
+    }
+}
@@ -1,16 +1,39 @@
 package com.example.m335.model;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
  * Entity class representing a module with its properties.
  * Stores information about module number, title, and grades.
  */
-@Entity(tableName = "modules")
+@Entity(tableName = "modules", indices = {@Index({"sortKey", "moduleNumber"}),
+        @Index({"gradeSumHundredths", "sortKey", "moduleNumber"})})
 public class Module {
 
+    /**
+     * Lowest passing average grade in hundredths
+     */
+    public static final int PASSING_GRADE_HUNDREDTHS = 400;
+
+    /**
+     * Lowest average grade that counts as passed, derived from {@link #PASSING_GRADE_HUNDREDTHS}
+     */
+    public static final float PASSING_GRADE = PASSING_GRADE_HUNDREDTHS / 100f;
+
+    /**
+     * Stored grade value of a missing grade
+     */
+    public static final int NO_GRADE = -1;
+
+    // Sort key layout: up to 4 prefix letters in the upper bits, the number in the lower 40 bits
+    private static final int SORT_KEY_PREFIX_LETTERS = 4;
+    private static final int SORT_KEY_NUMBER_BITS = 40;
+    private static final long SORT_KEY_MAX_NUMBER = (1L << SORT_KEY_NUMBER_BITS) - 1;
+
     @PrimaryKey
     @NonNull
     private String moduleNumber; // e.g. M106, M223, M335
@@ -18,8 +41,24 @@ public class Module {
     @NonNull
     private String moduleTitle; // e.g. Mobile Apps erstellen
 
-    private Float zpNote; // Zwischenprüfungsnote
-    private Float lbNote; // Leistungsbewertung
+    // Grades in hundredths (5.25 is stored as 525), NO_GRADE if not set
+    @ColumnInfo(defaultValue = "-1")
+    private int zpHundredths = NO_GRADE; // Zwischenprüfungsnote
+
+    @ColumnInfo(defaultValue = "-1")
+    private int lbHundredths = NO_GRADE; // Leistungsbewertung
+
+    // Sum of both grades in hundredths (twice the average), NO_GRADE if a grade is missing.
+    // Stored and indexed so that the database can sort and filter by average; triggers
+    // keep it correct for every write, see ModuleMigrations#createGradeSumTriggers
+    @ColumnInfo(defaultValue = "-1")
+    private int gradeSumHundredths = NO_GRADE;
+
+    private long sortKey; // Natural order of the module number, derived from it
+
+    // Row version, raised by every write so that conditional updates can detect concurrent edits
+    @ColumnInfo(defaultValue = "0")
+    private long version;
 
     /**
      * Constructor to create a new Module with required fields
@@ -30,6 +69,7 @@ public class Module {
     public Module(@NonNull String moduleNumber, @NonNull String moduleTitle) {
         this.moduleNumber = moduleNumber;
         this.moduleTitle = moduleTitle;
+        this.sortKey = computeSortKey(moduleNumber);
     }
 
     /**
@@ -49,6 +89,90 @@ public class Module {
      */
     public void setModuleNumber(@NonNull String moduleNumber) {
         this.moduleNumber = moduleNumber;
+        this.sortKey = computeSortKey(moduleNumber);
+    }
+
+    /**
+     * Gets the natural sort key of the module number
+     *
+     * @return The sort key
+     */
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * Sets the sort key, used by Room when loading a module.
+     * The key is derived from the module number, see {@link #computeSortKey(String)}.
+     *
+     * @param sortKey The stored sort key
+     */
+    public void setSortKey(long sortKey) {
+        this.sortKey = sortKey;
+    }
+
+    /**
+     * Computes the natural sort key of a module number.
+     * The leading letters and the following number are packed into one integer,
+     * so that M99 sorts before M106 and M335 before M1000. Letters are compared
+     * case-insensitively; anything after the number is left to the module number
+     * as a tie-breaker.
+     *
+     * @param moduleNumber The module number (e.g. M335)
+     * @return The sort key
+     */
+    public static long computeSortKey(String moduleNumber) {
+        int length = moduleNumber.length();
+        int i = 0;
+
+        // Letters in base 27, left-aligned so that M sorts before MA
+        long prefix = 0;
+        int letters = 0;
+        while (i < length && letters < SORT_KEY_PREFIX_LETTERS) {
+            char c = Character.toUpperCase(moduleNumber.charAt(i));
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            prefix = prefix * 27 + (c - 'A' + 1);
+            letters++;
+            i++;
+        }
+        for (; letters < SORT_KEY_PREFIX_LETTERS; letters++) {
+            prefix *= 27;
+        }
+
+        // Skip further letters, they are only compared through the module number
+        while (i < length && !Character.isDigit(moduleNumber.charAt(i))) {
+            i++;
+        }
+
+        long number = 0;
+        while (i < length && Character.isDigit(moduleNumber.charAt(i))) {
+            number = Math.min(SORT_KEY_MAX_NUMBER, number * 10 + Character.digit(moduleNumber.charAt(i), 10));
+            i++;
+        }
+
+        return (prefix << SORT_KEY_NUMBER_BITS) | number;
+    }
+
+    /**
+     * Gets the row version this module was read with
+     *
+     * @return The version, 0 for modules that were never stored
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the row version, used by Room when loading a module.
+     * A conditional update only succeeds if the stored row still has this version,
+     * see {@link com.example.m335.data.ModuleDao#compareAndSet(Module)}.
+     *
+     * @param version The stored version
+     */
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     /**
@@ -76,7 +200,7 @@ public class Module {
      * @return The ZP grade or null if not set
      */
     public Float getZpNote() {
-        return zpNote;
+        return toGrade(zpHundredths);
     }
 
     /**
@@ -85,7 +209,7 @@ public class Module {
      * @param zpNote The new ZP grade
      */
     public void setZpNote(Float zpNote) {
-        this.zpNote = zpNote;
+        setZpHundredths(toHundredths(zpNote));
     }
 
     /**
@@ -94,7 +218,7 @@ public class Module {
      * @return The LB grade or null if not set
      */
     public Float getLbNote() {
-        return lbNote;
+        return toGrade(lbHundredths);
     }
 
     /**
@@ -103,7 +227,80 @@ public class Module {
      * @param lbNote The new LB grade
      */
     public void setLbNote(Float lbNote) {
-        this.lbNote = lbNote;
+        setLbHundredths(toHundredths(lbNote));
+    }
+
+    /**
+     * Gets the ZP grade in hundredths without boxing
+     *
+     * @return The ZP grade in hundredths or {@link #NO_GRADE} if not set
+     */
+    public int getZpHundredths() {
+        return zpHundredths;
+    }
+
+    /**
+     * Sets the ZP grade in hundredths
+     *
+     * @param zpHundredths The ZP grade in hundredths or {@link #NO_GRADE}
+     */
+    public void setZpHundredths(int zpHundredths) {
+        this.zpHundredths = zpHundredths;
+        this.gradeSumHundredths = computeGradeSum(zpHundredths, lbHundredths);
+    }
+
+    /**
+     * Gets the LB grade in hundredths without boxing
+     *
+     * @return The LB grade in hundredths or {@link #NO_GRADE} if not set
+     */
+    public int getLbHundredths() {
+        return lbHundredths;
+    }
+
+    /**
+     * Sets the LB grade in hundredths
+     *
+     * @param lbHundredths The LB grade in hundredths or {@link #NO_GRADE}
+     */
+    public void setLbHundredths(int lbHundredths) {
+        this.lbHundredths = lbHundredths;
+        this.gradeSumHundredths = computeGradeSum(zpHundredths, lbHundredths);
+    }
+
+    /**
+     * Gets the sum of both grades in hundredths, the stored sort key of the average
+     *
+     * @return Twice the average in hundredths or {@link #NO_GRADE} if a grade is missing
+     */
+    public int getGradeSumHundredths() {
+        return gradeSumHundredths;
+    }
+
+    /**
+     * Sets the stored grade sum, used by Room when loading a module.
+     * The sum follows the grade setters, see {@link #computeGradeSum(int, int)}.
+     *
+     * @param gradeSumHundredths The stored grade sum
+     */
+    public void setGradeSumHundredths(int gradeSumHundredths) {
+        this.gradeSumHundredths = gradeSumHundredths;
+    }
+
+    /**
+     * Computes the sum of both grades the way the triggers of the modules table do.
+     * The sum is exact, unlike an average rounded to hundredths, so sorting and
+     * filtering by it agree with the passing limit of {@link #PASSING_GRADE_HUNDREDTHS}.
+     *
+     * @param zpHundredths The ZP grade in hundredths or {@link #NO_GRADE}
+     * @param lbHundredths The LB grade in hundredths or {@link #NO_GRADE}
+     * @return The sum or {@link #NO_GRADE} if a grade is missing
+     */
+    public static int computeGradeSum(int zpHundredths, int lbHundredths) {
+        if (zpHundredths < 0 || lbHundredths < 0) {
+            return NO_GRADE;
+        }
+        return zpHundredths + lbHundredths;
     }
 
     /**
@@ -112,18 +309,50 @@ public class Module {
      * @return The average grade or null if either grade is missing
      */
     public Float getAverageGrade() {
-        if (zpNote != null && lbNote != null) {
-            return (zpNote + lbNote) / 2.0f;
+        if (hasAllGrades()) {
+            return getAverageGradeValue();
         }
         return null;
     }
 
+    /**
+     * Calculates the average grade without boxing, for the list binding
+     *
+     * @return The average grade or {@link Float#NaN} if either grade is missing
+     */
+    public float getAverageGradeValue() {
+        if (hasAllGrades()) {
+            return (zpHundredths + lbHundredths) / 200.0f;
+        }
+        return Float.NaN;
+    }
+
     /**
      * Checks if this module has all required grades
      *
      * @return true if both ZP and LB grades are present
      */
     public boolean hasAllGrades() {
-        return zpNote != null && lbNote != null;
+        return zpHundredths != NO_GRADE && lbHundredths != NO_GRADE;
+    }
+
+    /**
+     * Converts a grade to hundredths, rounding to the nearest hundredth
+     *
+     * @param grade The grade or null
+     * @return The grade in hundredths or {@link #NO_GRADE} for null
+     */
+    public static int toHundredths(Float grade) {
+        return grade != null ? Math.round(grade * 100) : NO_GRADE;
+    }
+
+    /**
+     * Converts a grade in hundredths back to a grade
+     *
+     * @param hundredths The grade in hundredths or {@link #NO_GRADE}
+     * @return The grade or null if not set
+     */
+    public static Float toGrade(int hundredths) {
+        return hundredths != NO_GRADE ? hundredths / 100.0f : null;
     }
-}
\ No newline at end of file
+}
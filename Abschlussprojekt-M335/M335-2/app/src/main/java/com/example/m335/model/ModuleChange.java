@@ -0,0 +1,207 @@
+package com.example.m335.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class tracking the sync state of one module number.
+ * Rows are written by triggers on the modules table, every local write gets the next
+ * change sequence number and marks the row pending. A deleted module keeps its row
+ * as a tombstone, so that the delete is sent to the server too.
+ * The base fields hold the module as last agreed with the server, for three-way merges.
+ */
+@Entity(tableName = "module_changes", indices = {@Index({"pending", "changeSeq"})})
+public class ModuleChange {
+
+    @PrimaryKey
+    @NonNull
+    private String moduleNumber;
+
+    private long changeSeq; // Local sequence number of the last write
+    private boolean pending; // Written locally since the last sync
+    private boolean deleted; // Tombstone of a deleted module
+    private long serverSeq; // Server sequence number of the last synced state, 0 if never synced
+
+    // Module as last agreed with the server, baseTitle is null if there is no such state
+    @Nullable
+    private String baseTitle;
+    @ColumnInfo(defaultValue = "-1")
+    private int baseZpHundredths = Module.NO_GRADE;
+    @ColumnInfo(defaultValue = "-1")
+    private int baseLbHundredths = Module.NO_GRADE;
+
+    /**
+     * Constructor to create the change record of a module number
+     *
+     * @param moduleNumber The module number
+     */
+    public ModuleChange(@NonNull String moduleNumber) {
+        this.moduleNumber = moduleNumber;
+    }
+
+    /**
+     * Gets the module number
+     *
+     * @return The module number
+     */
+    @NonNull
+    public String getModuleNumber() {
+        return moduleNumber;
+    }
+
+    /**
+     * Sets the module number
+     *
+     * @param moduleNumber The module number to set
+     */
+    public void setModuleNumber(@NonNull String moduleNumber) {
+        this.moduleNumber = moduleNumber;
+    }
+
+    /**
+     * Gets the local sequence number of the last write
+     *
+     * @return The change sequence number
+     */
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    /**
+     * Sets the local sequence number of the last write
+     *
+     * @param changeSeq The change sequence number to set
+     */
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    /**
+     * Checks if the module was written locally since the last sync
+     *
+     * @return true if the change still has to be sent
+     */
+    public boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * Sets if the module was written locally since the last sync
+     *
+     * @param pending true if the change still has to be sent
+     */
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
+    /**
+     * Checks if the record is the tombstone of a deleted module
+     *
+     * @return true if the module was deleted
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Sets if the record is the tombstone of a deleted module
+     *
+     * @param deleted true if the module was deleted
+     */
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    /**
+     * Gets the server sequence number of the last synced state
+     *
+     * @return The server sequence number, 0 if the module was never synced
+     */
+    public long getServerSeq() {
+        return serverSeq;
+    }
+
+    /**
+     * Sets the server sequence number of the last synced state
+     *
+     * @param serverSeq The server sequence number to set
+     */
+    public void setServerSeq(long serverSeq) {
+        this.serverSeq = serverSeq;
+    }
+
+    /**
+     * Gets the title last agreed with the server
+     *
+     * @return The base title, null if there is no agreed state
+     */
+    @Nullable
+    public String getBaseTitle() {
+        return baseTitle;
+    }
+
+    /**
+     * Sets the title last agreed with the server
+     *
+     * @param baseTitle The base title to set, null if there is no agreed state
+     */
+    public void setBaseTitle(@Nullable String baseTitle) {
+        this.baseTitle = baseTitle;
+    }
+
+    /**
+     * Gets the ZP grade last agreed with the server
+     *
+     * @return The base ZP grade in hundredths or {@link Module#NO_GRADE}
+     */
+    public int getBaseZpHundredths() {
+        return baseZpHundredths;
+    }
+
+    /**
+     * Sets the ZP grade last agreed with the server
+     *
+     * @param baseZpHundredths The base ZP grade in hundredths or {@link Module#NO_GRADE}
+     */
+    public void setBaseZpHundredths(int baseZpHundredths) {
+        this.baseZpHundredths = baseZpHundredths;
+    }
+
+    /**
+     * Gets the LB grade last agreed with the server
+     *
+     * @return The base LB grade in hundredths or {@link Module#NO_GRADE}
+     */
+    public int getBaseLbHundredths() {
+        return baseLbHundredths;
+    }
+
+    /**
+     * Sets the LB grade last agreed with the server
+     *
+     * @param baseLbHundredths The base LB grade in hundredths or {@link Module#NO_GRADE}
+     */
+    public void setBaseLbHundredths(int baseLbHundredths) {
+        this.baseLbHundredths = baseLbHundredths;
+    }
+
+    /**
+     * Gets the module as last agreed with the server
+     *
+     * @return The base module, or null if there is no agreed state
+     */
+    @Nullable
+    public Module getBaseModule() {
+        if (baseTitle == null) {
+            return null;
+        }
+        Module base = new Module(moduleNumber, baseTitle);
+        base.setZpHundredths(baseZpHundredths);
+        base.setLbHundredths(baseLbHundredths);
+        return base;
+    }
+}
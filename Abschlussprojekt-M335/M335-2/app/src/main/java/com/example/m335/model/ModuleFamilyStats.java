@@ -0,0 +1,72 @@
+package com.example.m335.model;
+
+/**
+ * Aggregate statistics for one module family, e.g. all M3xx modules.
+ * The family is the first two characters of the module number.
+ */
+public class ModuleFamilyStats {
+    private final String family;
+    private final int moduleCount;
+    private final int gradedCount;
+    private final Float averageGrade;
+
+    /**
+     * Constructor used by Room to map the grouped query
+     *
+     * @param family The module number prefix, e.g. M3
+     * @param moduleCount Number of modules in the family
+     * @param gradedCount Number of modules with both grades
+     * @param averageGrade Mean of the module averages, null if none is graded
+     */
+    public ModuleFamilyStats(String family, int moduleCount, int gradedCount, Float averageGrade) {
+        this.family = family;
+        this.moduleCount = moduleCount;
+        this.gradedCount = gradedCount;
+        this.averageGrade = averageGrade;
+    }
+
+    /**
+     * Gets the module number prefix of the family
+     *
+     * @return The prefix, e.g. M3
+     */
+    public String getFamily() {
+        return family;
+    }
+
+    /**
+     * Gets the display label of the family
+     *
+     * @return The label, e.g. M3xx
+     */
+    public String getLabel() {
+        return family + "xx";
+    }
+
+    /**
+     * Gets the number of modules
+     *
+     * @return Number of modules
+     */
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    /**
+     * Gets the number of modules with both grades
+     *
+     * @return Number of graded modules
+     */
+    public int getGradedCount() {
+        return gradedCount;
+    }
+
+    /**
+     * Gets the mean of the module averages
+     *
+     * @return The average or null if no module is graded
+     */
+    public Float getAverageGrade() {
+        return averageGrade;
+    }
+}
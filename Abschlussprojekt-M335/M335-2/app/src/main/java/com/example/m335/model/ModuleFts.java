@@ -0,0 +1,52 @@
+package com.example.m335.model;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index over module numbers and titles.
+ * Backed by the modules table as external content; Room keeps it in sync with triggers.
+ */
+@Fts4(contentEntity = Module.class)
+@Entity(tableName = "modules_fts")
+public class ModuleFts {
+
+    private String moduleNumber;
+    private String moduleTitle;
+
+    /**
+     * Gets the indexed module number
+     *
+     * @return The module number
+     */
+    public String getModuleNumber() {
+        return moduleNumber;
+    }
+
+    /**
+     * Sets the indexed module number
+     *
+     * @param moduleNumber The module number
+     */
+    public void setModuleNumber(String moduleNumber) {
+        this.moduleNumber = moduleNumber;
+    }
+
+    /**
+     * Gets the indexed module title
+     *
+     * @return The module title
+     */
+    public String getModuleTitle() {
+        return moduleTitle;
+    }
+
+    /**
+     * Sets the indexed module title
+     *
+     * @param moduleTitle The module title
+     */
+    public void setModuleTitle(String moduleTitle) {
+        this.moduleTitle = moduleTitle;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.m335.model;
+
+/**
+ * The stored grades of one module, read before a write to compute statistic deltas
+ */
+public class ModuleGrades {
+    private final String moduleNumber;
+    private final int zpHundredths;
+    private final int lbHundredths;
+
+    /**
+     * Constructor used by Room to map the grade query
+     *
+     * @param moduleNumber The module number
+     * @param zpHundredths The ZP grade in hundredths or {@link Module#NO_GRADE}
+     * @param lbHundredths The LB grade in hundredths or {@link Module#NO_GRADE}
+     */
+    public ModuleGrades(String moduleNumber, int zpHundredths, int lbHundredths) {
+        this.moduleNumber = moduleNumber;
+        this.zpHundredths = zpHundredths;
+        this.lbHundredths = lbHundredths;
+    }
+
+    /**
+     * Gets the module number
+     *
+     * @return The module number
+     */
+    public String getModuleNumber() {
+        return moduleNumber;
+    }
+
+    /**
+     * Gets the ZP grade in hundredths
+     *
+     * @return The ZP grade or {@link Module#NO_GRADE}
+     */
+    public int getZpHundredths() {
+        return zpHundredths;
+    }
+
+    /**
+     * Gets the LB grade in hundredths
+     *
+     * @return The LB grade or {@link Module#NO_GRADE}
+     */
+    public int getLbHundredths() {
+        return lbHundredths;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.m335.model;
+
+/**
+ * Three-way merge of concurrent module edits.
+ * Used when a conditional update finds a newer row: the fields the user changed are
+ * applied on top of the newer row, all other fields keep their newer values.
+ */
+public final class ModuleMerge {
+
+    private ModuleMerge() {
+    }
+
+    /**
+     * Merges an edit into a module that was changed since the edit started
+     *
+     * @param base The module as it was when the edit started
+     * @param edit The edited module
+     * @param current The module as it is stored now
+     * @return A new module with the edited fields on top of the stored ones,
+     *         carrying the stored version so that it can be written conditionally
+     */
+    public static Module merge(Module base, Module edit, Module current) {
+        Module merged = new Module(current.getModuleNumber(),
+                edit.getModuleTitle().equals(base.getModuleTitle())
+                        ? current.getModuleTitle() : edit.getModuleTitle());
+        merged.setZpHundredths(edit.getZpHundredths() != base.getZpHundredths()
+                ? edit.getZpHundredths() : current.getZpHundredths());
+        merged.setLbHundredths(edit.getLbHundredths() != base.getLbHundredths()
+                ? edit.getLbHundredths() : current.getLbHundredths());
+        merged.setVersion(current.getVersion());
+        return merged;
+    }
+}
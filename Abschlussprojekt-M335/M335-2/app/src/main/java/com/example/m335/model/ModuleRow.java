@@ -0,0 +1,145 @@
+package com.example.m335.model;
+
+/**
+ * Immutable row of the module list with everything the list shows precomputed.
+ * Rows are built on the paging thread, so binding a row only assigns fields.
+ * Listed in compose_stability.conf, equal rows are skipped by the Compose list.
+ */
+public final class ModuleRow {
+    private final Module module;
+    private final String moduleNumber;
+    private final String moduleTitle;
+    private final int zpHundredths;
+    private final int lbHundredths;
+    private final long version;
+    private final String gradeText;
+
+    /**
+     * Constructor precomputes the row of a module
+     *
+     * @param module The module to show, must not be modified afterwards
+     */
+    public ModuleRow(Module module) {
+        this.module = module;
+        moduleNumber = module.getModuleNumber();
+        moduleTitle = module.getModuleTitle();
+        zpHundredths = module.getZpHundredths();
+        lbHundredths = module.getLbHundredths();
+        version = module.getVersion();
+        gradeText = module.hasAllGrades() ? String.format("%.1f", module.getAverageGradeValue()) : null;
+    }
+
+    /**
+     * Gets the module the row was built from
+     *
+     * @return The module
+     */
+    public Module getModule() {
+        return module;
+    }
+
+    /**
+     * Gets the module number
+     *
+     * @return The module number
+     */
+    public String getModuleNumber() {
+        return moduleNumber;
+    }
+
+    /**
+     * Gets the row version the module was read with
+     *
+     * @return The row version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the module title
+     *
+     * @return The module title
+     */
+    public String getModuleTitle() {
+        return moduleTitle;
+    }
+
+    /**
+     * Gets the formatted average grade
+     *
+     * @return The average with one decimal, or null if a grade is missing
+     */
+    public String getGradeText() {
+        return gradeText;
+    }
+
+    /**
+     * Checks if the average grade is shown
+     *
+     * @return true if both grades are present
+     */
+    public boolean isGradeVisible() {
+        return gradeText != null;
+    }
+
+    /**
+     * Checks if the grades differ from another row, the title is not compared
+     *
+     * @param other The other row
+     * @return true if the ZP or LB grade differs
+     */
+    public boolean gradesDiffer(ModuleRow other) {
+        return zpHundredths != other.zpHundredths || lbHundredths != other.lbHundredths;
+    }
+
+    /**
+     * Checks if the row still shows a module, used to reuse rows across list reloads
+     *
+     * @param other The module as it was read now
+     * @return true if number, title, grades and version are unchanged
+     */
+    public boolean matches(Module other) {
+        return version == other.getVersion()
+                && zpHundredths == other.getZpHundredths()
+                && lbHundredths == other.getLbHundredths()
+                && moduleNumber.equals(other.getModuleNumber())
+                && moduleTitle.equals(other.getModuleTitle());
+    }
+
+    /**
+     * Compares the shown content, so that an equal row can be skipped when the list is redrawn
+     *
+     * @param o The other object
+     * @return true if both rows show the same module in the same version
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ModuleRow)) {
+            return false;
+        }
+        ModuleRow other = (ModuleRow) o;
+        return version == other.version
+                && zpHundredths == other.zpHundredths
+                && lbHundredths == other.lbHundredths
+                && moduleNumber.equals(other.moduleNumber)
+                && moduleTitle.equals(other.moduleTitle);
+    }
+
+    /**
+     * Gets a hash code consistent with equals
+     *
+     * @return The hash code
+     */
+    @Override
+    public int hashCode() {
+        int result = moduleNumber.hashCode();
+        result = 31 * result + moduleTitle.hashCode();
+        result = 31 * result + zpHundredths;
+        result = 31 * result + lbHundredths;
+        return 31 * result + Long.hashCode(version);
+    }
+}
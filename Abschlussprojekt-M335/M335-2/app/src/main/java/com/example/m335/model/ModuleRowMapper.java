@@ -0,0 +1,70 @@
+package com.example.m335.model;
+
+import androidx.arch.core.util.Function;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Maps loaded modules to list rows, called by the paging thread for every loaded page.
+ * The rows built last are kept by module number; a reloaded module that did not change
+ * gets its previous row back, so a list reload neither formats nor allocates for it and
+ * the diff finds the unchanged rows by identity.
+ */
+public class ModuleRowMapper implements Function<Module, ModuleRow> {
+    private final LinkedHashMap<String, ModuleRow> rows;
+    private long reusedCount = 0;
+    private long builtCount = 0;
+
+    /**
+     * Constructor creates a mapper without remembered rows
+     *
+     * @param capacity The maximum number of rows kept for reuse
+     */
+    public ModuleRowMapper(final int capacity) {
+        // Access order turns the map into an LRU list, the eldest entry is the least recently used
+        rows = new LinkedHashMap<String, ModuleRow>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ModuleRow> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the row of a module, the previous row if the module is unchanged
+     *
+     * @param module The loaded module
+     * @return The row to show
+     */
+    @Override
+    public synchronized ModuleRow apply(Module module) {
+        ModuleRow row = rows.get(module.getModuleNumber());
+        if (row != null && row.matches(module)) {
+            reusedCount++;
+            return row;
+        }
+        builtCount++;
+        row = new ModuleRow(module);
+        rows.put(row.getModuleNumber(), row);
+        return row;
+    }
+
+    /**
+     * Gets the number of rows that were reused
+     *
+     * @return The reuse count
+     */
+    public synchronized long getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * Gets the number of rows that were built
+     *
+     * @return The build count
+     */
+    public synchronized long getBuiltCount() {
+        return builtCount;
+    }
+}
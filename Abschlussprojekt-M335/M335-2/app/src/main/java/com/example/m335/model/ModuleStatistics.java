@@ -0,0 +1,137 @@
+package com.example.m335.model;
+
+/**
+ * Snapshot of the running module statistics.
+ * Averages are null if no module has both grades yet.
+ */
+public class ModuleStatistics {
+
+    /**
+     * Width of one histogram bucket on the grade scale
+     */
+    public static final float BUCKET_WIDTH = 0.5f;
+
+    private final int moduleCount;
+    private final int gradedCount;
+    private final Float averageGrade;
+    private final Float standardDeviation;
+    private final Float bestGrade;
+    private final Float worstGrade;
+    private final int[] histogram;
+
+    /**
+     * Constructor for a snapshot
+     *
+     * @param moduleCount Number of modules
+     * @param gradedCount Number of modules with both grades
+     * @param averageGrade Mean of the module averages
+     * @param standardDeviation Population standard deviation of the module averages
+     * @param bestGrade Highest module average
+     * @param worstGrade Lowest module average
+     * @param histogram Graded modules per bucket from 1.0 to 6.0, owned by the snapshot
+     */
+    public ModuleStatistics(int moduleCount, int gradedCount, Float averageGrade,
+                            Float standardDeviation, Float bestGrade, Float worstGrade,
+                            int[] histogram) {
+        this.moduleCount = moduleCount;
+        this.gradedCount = gradedCount;
+        this.averageGrade = averageGrade;
+        this.standardDeviation = standardDeviation;
+        this.bestGrade = bestGrade;
+        this.worstGrade = worstGrade;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Gets the number of modules
+     *
+     * @return Number of modules
+     */
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    /**
+     * Gets the number of modules with both grades
+     *
+     * @return Number of graded modules
+     */
+    public int getGradedCount() {
+        return gradedCount;
+    }
+
+    /**
+     * Gets the number of modules that are still missing a grade
+     *
+     * @return Number of incomplete modules
+     */
+    public int getIncompleteCount() {
+        return moduleCount - gradedCount;
+    }
+
+    /**
+     * Gets the mean of all module averages
+     *
+     * @return The overall average or null if no module is graded
+     */
+    public Float getAverageGrade() {
+        return averageGrade;
+    }
+
+    /**
+     * Gets the standard deviation of the module averages
+     *
+     * @return The standard deviation or null if no module is graded
+     */
+    public Float getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * Gets the highest module average
+     *
+     * @return The best average or null if no module is graded
+     */
+    public Float getBestGrade() {
+        return bestGrade;
+    }
+
+    /**
+     * Gets the lowest module average
+     *
+     * @return The worst average or null if no module is graded
+     */
+    public Float getWorstGrade() {
+        return worstGrade;
+    }
+
+    /**
+     * Gets the number of histogram buckets
+     *
+     * @return Number of buckets
+     */
+    public int getHistogramSize() {
+        return histogram.length;
+    }
+
+    /**
+     * Gets the lowest average that falls into a bucket
+     *
+     * @param bucket The bucket index
+     * @return The lower bound of the bucket, e.g. 4.5
+     */
+    public float getBucketLowerBound(int bucket) {
+        return 1.0f + bucket * BUCKET_WIDTH;
+    }
+
+    /**
+     * Gets the number of graded modules in a bucket.
+     * The last bucket includes the upper bound 6.0.
+     *
+     * @param bucket The bucket index
+     * @return Number of modules with an average in the bucket
+     */
+    public int getHistogramCount(int bucket) {
+        return histogram[bucket];
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.m335.model;
+
+/**
+ * Aggregate statistics over all modules, computed by SQLite.
+ * Averages are null if no module has both grades yet.
+ */
+public class ModuleSummary {
+    private final int moduleCount;
+    private final int gradedCount;
+    private final int passedCount;
+    private final int failedCount;
+    private final Float averageGrade;
+    private final Float bestGrade;
+    private final Float worstGrade;
+
+    /**
+     * Constructor used by Room to map the aggregate query
+     *
+     * @param moduleCount Number of modules
+     * @param gradedCount Number of modules with both grades
+     * @param passedCount Number of graded modules with a sufficient average
+     * @param failedCount Number of graded modules with an insufficient average
+     * @param averageGrade Mean of the module averages
+     * @param bestGrade Highest module average
+     * @param worstGrade Lowest module average
+     */
+    public ModuleSummary(int moduleCount, int gradedCount, int passedCount, int failedCount,
+                         Float averageGrade, Float bestGrade, Float worstGrade) {
+        this.moduleCount = moduleCount;
+        this.gradedCount = gradedCount;
+        this.passedCount = passedCount;
+        this.failedCount = failedCount;
+        this.averageGrade = averageGrade;
+        this.bestGrade = bestGrade;
+        this.worstGrade = worstGrade;
+    }
+
+    /**
+     * Gets the number of modules
+     *
+     * @return Number of modules
+     */
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    /**
+     * Gets the number of modules with both grades
+     *
+     * @return Number of graded modules
+     */
+    public int getGradedCount() {
+        return gradedCount;
+    }
+
+    /**
+     * Gets the number of modules that are still missing a grade
+     *
+     * @return Number of modules without both grades
+     */
+    public int getMissingGradeCount() {
+        return moduleCount - gradedCount;
+    }
+
+    /**
+     * Gets the number of graded modules that are passed
+     *
+     * @return Number of passed modules
+     */
+    public int getPassedCount() {
+        return passedCount;
+    }
+
+    /**
+     * Gets the number of graded modules that are not passed
+     *
+     * @return Number of failed modules
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Gets the mean of the module averages
+     *
+     * @return The average or null if no module is graded
+     */
+    public Float getAverageGrade() {
+        return averageGrade;
+    }
+
+    /**
+     * Gets the highest module average
+     *
+     * @return The best average or null if no module is graded
+     */
+    public Float getBestGrade() {
+        return bestGrade;
+    }
+
+    /**
+     * Gets the lowest module average
+     *
+     * @return The worst average or null if no module is graded
+     */
+    public Float getWorstGrade() {
+        return worstGrade;
+    }
+}
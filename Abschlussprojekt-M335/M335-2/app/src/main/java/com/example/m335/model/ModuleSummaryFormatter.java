@@ -0,0 +1,54 @@
+package com.example.m335.model;
+
+import java.util.List;
+
+/**
+ * Formats the summary header of the module list, shared by the RecyclerView and Compose screens
+ */
+public final class ModuleSummaryFormatter {
+
+    private ModuleSummaryFormatter() {
+    }
+
+    /**
+     * Formats the summary header line
+     *
+     * @param summary The aggregate statistics
+     * @return The text for the header
+     */
+    public static String formatSummary(ModuleSummary summary) {
+        StringBuilder text = new StringBuilder();
+        if (summary.getAverageGrade() != null) {
+            text.append("Ø ").append(String.format("%.1f", summary.getAverageGrade())).append(" · ");
+        }
+        text.append(summary.getModuleCount()).append(" Module");
+        if (summary.getMissingGradeCount() > 0) {
+            text.append(" · ").append(summary.getMissingGradeCount()).append(" ohne Noten");
+        }
+        if (summary.getFailedCount() > 0) {
+            text.append(" · ").append(summary.getFailedCount()).append(" ungenügend");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Formats the averages per module family
+     *
+     * @param familyStats The statistics per family
+     * @return The text for the header
+     */
+    public static String formatFamilyStats(List<ModuleFamilyStats> familyStats) {
+        StringBuilder text = new StringBuilder();
+        for (ModuleFamilyStats stats : familyStats) {
+            if (stats.getAverageGrade() == null) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append(" · ");
+            }
+            text.append(stats.getLabel()).append(" Ø ")
+                    .append(String.format("%.1f", stats.getAverageGrade()));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.m335.model;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class holding the single row of sync counters.
+ * The change triggers take their sequence numbers from it, the sync engine keeps
+ * the position of the last change pulled from the server in it.
+ */
+@Entity(tableName = "sync_state")
+public class ModuleSyncState {
+
+    /**
+     * ID of the only row
+     */
+    public static final int ROW_ID = 0;
+
+    @PrimaryKey
+    private int id = ROW_ID;
+
+    private long lastChangeSeq; // Last local change sequence number handed out
+    private long pullCursor; // Server sequence number up to which changes were pulled
+
+    /**
+     * Gets the ID of the row
+     *
+     * @return Always {@link #ROW_ID}
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Sets the ID of the row
+     *
+     * @param id The ID to set
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the last local change sequence number handed out
+     *
+     * @return The last change sequence number
+     */
+    public long getLastChangeSeq() {
+        return lastChangeSeq;
+    }
+
+    /**
+     * Sets the last local change sequence number handed out
+     *
+     * @param lastChangeSeq The last change sequence number to set
+     */
+    public void setLastChangeSeq(long lastChangeSeq) {
+        this.lastChangeSeq = lastChangeSeq;
+    }
+
+    /**
+     * Gets the server sequence number up to which changes were pulled
+     *
+     * @return The pull cursor, 0 before the first sync
+     */
+    public long getPullCursor() {
+        return pullCursor;
+    }
+
+    /**
+     * Sets the server sequence number up to which changes were pulled
+     *
+     * @param pullCursor The pull cursor to set
+     */
+    public void setPullCursor(long pullCursor) {
+        this.pullCursor = pullCursor;
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.m335.model;
+
+/**
+ * Validation rules for module input.
+ * Shared by the edit screen and the file import, so both accept the same modules.
+ * Results are codes per field; the messages for them come from {@link ValidationMessages}.
+ * Validation reads the input in place and fills reusable results, so checking
+ * many rows creates next to no garbage.
+ */
+public final class ModuleValidator {
+
+    /**
+     * Minimum length of module number and title
+     */
+    public static final int MIN_TEXT_LENGTH = 4;
+
+    /**
+     * Lowest valid grade in hundredths
+     */
+    public static final int MIN_GRADE_HUNDREDTHS = 100;
+
+    /**
+     * Highest valid grade in hundredths
+     */
+    public static final int MAX_GRADE_HUNDREDTHS = 600;
+
+    /**
+     * Validated input fields, in the order they are checked
+     */
+    public enum Field {
+        MODULE_NUMBER,
+        MODULE_TITLE,
+        ZP_NOTE,
+        LB_NOTE
+    }
+
+    /**
+     * Outcome of the validation of one field
+     */
+    public enum Code {
+        VALID,
+        TOO_SHORT,
+        NOT_A_NUMBER,
+        OUT_OF_RANGE
+    }
+
+    /**
+     * Rows checked in batch mode, read by index so no row objects are needed
+     */
+    public interface Candidates {
+        /**
+         * Gets the number of rows
+         *
+         * @return The row count
+         */
+        int size();
+
+        /**
+         * Gets the module number of a row
+         *
+         * @param row The row index
+         * @return The module number as entered
+         */
+        CharSequence getModuleNumber(int row);
+
+        /**
+         * Gets the module title of a row
+         *
+         * @param row The row index
+         * @return The module title as entered
+         */
+        CharSequence getModuleTitle(int row);
+
+        /**
+         * Gets the ZP grade of a row
+         *
+         * @param row The row index
+         * @return The ZP grade as entered
+         */
+        CharSequence getZpNote(int row);
+
+        /**
+         * Gets the LB grade of a row
+         *
+         * @param row The row index
+         * @return The LB grade as entered
+         */
+        CharSequence getLbNote(int row);
+    }
+
+    // values() copies the array on every call
+    private static final Field[] FIELDS = Field.values();
+    private static final Code[] CODES = Code.values();
+    private static final int BITS_PER_CODE = 2;
+    private static final int CODE_MASK = (1 << BITS_PER_CODE) - 1;
+
+    private final GradeRounding rounding;
+
+    /**
+     * Constructor for grades kept to the hundredth
+     */
+    public ModuleValidator() {
+        this(GradeRounding.NONE);
+    }
+
+    /**
+     * Constructor with a rounding rule for the grades
+     *
+     * @param rounding The rounding rule applied to grades that passed the range check
+     */
+    public ModuleValidator(GradeRounding rounding) {
+        this.rounding = rounding;
+    }
+
+    /**
+     * Validates a module before saving
+     *
+     * @param moduleNumber The module number to validate
+     * @param moduleTitle The module title to validate
+     * @param zpNote The ZP grade to validate (can be null or empty)
+     * @param lbNote The LB grade to validate (can be null or empty)
+     * @param result Receives the codes and parsed grades, reused between calls
+     * @return true if all fields are valid
+     */
+    public boolean validate(CharSequence moduleNumber, CharSequence moduleTitle,
+                            CharSequence zpNote, CharSequence lbNote, Result result) {
+        result.codes[Field.MODULE_NUMBER.ordinal()] = checkText(moduleNumber);
+        result.codes[Field.MODULE_TITLE.ordinal()] = checkText(moduleTitle);
+        int zpHundredths = GradeParser.parseHundredths(zpNote, GradeRounding.NONE);
+        result.codes[Field.ZP_NOTE.ordinal()] = checkGrade(zpHundredths);
+        result.zpHundredths = roundValid(zpHundredths);
+        int lbHundredths = GradeParser.parseHundredths(lbNote, GradeRounding.NONE);
+        result.codes[Field.LB_NOTE.ordinal()] = checkGrade(lbHundredths);
+        result.lbHundredths = roundValid(lbHundredths);
+        return result.isValid();
+    }
+
+    /**
+     * Validates a single grade, e.g. one entered for several modules at once
+     *
+     * @param grade The grade to validate (can be null or empty)
+     * @return The code of the grade, valid for a missing grade
+     */
+    public Code validateGrade(CharSequence grade) {
+        return checkGrade(GradeParser.parseHundredths(grade, GradeRounding.NONE));
+    }
+
+    /**
+     * Parses a grade with the rounding rule of this validator
+     *
+     * @param grade A grade that {@link #validateGrade} accepted
+     * @return The grade in hundredths or {@link Module#NO_GRADE} if it is empty
+     */
+    public int parseGrade(CharSequence grade) {
+        return roundValid(GradeParser.parseHundredths(grade, GradeRounding.NONE));
+    }
+
+    /**
+     * Validates many rows at once.
+     * The codes of a row are packed into one int, see {@link #getCode(int, Field)}.
+     *
+     * @param candidates The rows to validate
+     * @param outcomes Receives the packed codes per row, at least as long as the row count
+     * @return The number of invalid rows
+     */
+    public int validateAll(Candidates candidates, int[] outcomes) {
+        int size = candidates.size();
+        int invalid = 0;
+        for (int row = 0; row < size; row++) {
+            int outcome = pack(Field.MODULE_NUMBER, checkText(candidates.getModuleNumber(row)))
+                    | pack(Field.MODULE_TITLE, checkText(candidates.getModuleTitle(row)))
+                    | pack(Field.ZP_NOTE, checkGrade(GradeParser.parseHundredths(
+                            candidates.getZpNote(row), GradeRounding.NONE)))
+                    | pack(Field.LB_NOTE, checkGrade(GradeParser.parseHundredths(
+                            candidates.getLbNote(row), GradeRounding.NONE)));
+            outcomes[row] = outcome;
+            if (outcome != 0) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Gets the code of one field from a packed batch outcome
+     *
+     * @param outcome The packed codes of a row
+     * @param field The field
+     * @return The code of the field
+     */
+    public static Code getCode(int outcome, Field field) {
+        return CODES[(outcome >>> (field.ordinal() * BITS_PER_CODE)) & CODE_MASK];
+    }
+
+    /**
+     * Moves the code of a field to its bits in a packed outcome
+     *
+     * @param field The field
+     * @param code The code of the field
+     * @return The packed code, 0 if the field is valid
+     */
+    private static int pack(Field field, Code code) {
+        return code.ordinal() << (field.ordinal() * BITS_PER_CODE);
+    }
+
+    /**
+     * Checks the length of a text without the surrounding whitespace
+     *
+     * @param text The text
+     * @return The code of the text
+     */
+    private static Code checkText(CharSequence text) {
+        if (text == null) {
+            return Code.TOO_SHORT;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start < MIN_TEXT_LENGTH ? Code.TOO_SHORT : Code.VALID;
+    }
+
+    /**
+     * Checks a parsed grade, a missing grade is valid
+     *
+     * @param hundredths The result of {@link GradeParser#parseHundredths}
+     * @return The code of the grade
+     */
+    private static Code checkGrade(int hundredths) {
+        if (hundredths == Module.NO_GRADE) {
+            return Code.VALID;
+        }
+        if (hundredths == GradeParser.INVALID) {
+            return Code.NOT_A_NUMBER;
+        }
+        if (hundredths < MIN_GRADE_HUNDREDTHS || hundredths > MAX_GRADE_HUNDREDTHS) {
+            return Code.OUT_OF_RANGE;
+        }
+        return Code.VALID;
+    }
+
+    /**
+     * Rounds a grade that passed the range check.
+     * Rounding first would let a grade just outside the range, e.g. 6.1, round into it.
+     *
+     * @param hundredths The unrounded result of {@link GradeParser#parseHundredths}
+     * @return The rounded grade, other results unchanged
+     */
+    private int roundValid(int hundredths) {
+        if (hundredths == Module.NO_GRADE || checkGrade(hundredths) != Code.VALID) {
+            return hundredths;
+        }
+        return rounding.round(hundredths);
+    }
+
+    /**
+     * Codes and parsed grades of one validated module, meant to be reused
+     */
+    public static final class Result {
+        private final Code[] codes = new Code[FIELDS.length];
+        private int zpHundredths = Module.NO_GRADE;
+        private int lbHundredths = Module.NO_GRADE;
+
+        /**
+         * Constructor creates a result with all fields valid
+         */
+        public Result() {
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = Code.VALID;
+            }
+        }
+
+        /**
+         * Checks if all fields are valid
+         *
+         * @return true if no field has an error
+         */
+        public boolean isValid() {
+            return getFirstError() == null;
+        }
+
+        /**
+         * Gets the code of a field
+         *
+         * @param field The field
+         * @return The code of the field
+         */
+        public Code getCode(Field field) {
+            return codes[field.ordinal()];
+        }
+
+        /**
+         * Gets the first field with an error, in the order of the form
+         *
+         * @return The field or null if all fields are valid
+         */
+        public Field getFirstError() {
+            for (Field field : FIELDS) {
+                if (codes[field.ordinal()] != Code.VALID) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the parsed and rounded ZP grade, valid if the field is valid
+         *
+         * @return The grade in hundredths or {@link Module#NO_GRADE}
+         */
+        public int getZpHundredths() {
+            return zpHundredths;
+        }
+
+        /**
+         * Gets the parsed and rounded LB grade, valid if the field is valid
+         *
+         * @return The grade in hundredths or {@link Module#NO_GRADE}
+         */
+        public int getLbHundredths() {
+            return lbHundredths;
+        }
+    }
+}
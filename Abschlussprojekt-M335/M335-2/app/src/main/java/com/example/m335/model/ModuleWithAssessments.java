@@ -0,0 +1,77 @@
+package com.example.m335.model;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A module together with its assessments, loaded by Room in one transaction
+ */
+public class ModuleWithAssessments {
+    @Embedded
+    private Module module;
+
+    @Relation(parentColumn = "moduleNumber", entityColumn = "moduleNumber")
+    private List<Assessment> assessments = Collections.emptyList();
+
+    /**
+     * Gets the module
+     *
+     * @return The module
+     */
+    public Module getModule() {
+        return module;
+    }
+
+    /**
+     * Sets the module
+     *
+     * @param module The module to set
+     */
+    public void setModule(Module module) {
+        this.module = module;
+    }
+
+    /**
+     * Gets the assessments of the module on top of ZP and LB
+     *
+     * @return The assessments, empty if there are none
+     */
+    public List<Assessment> getAssessments() {
+        return assessments;
+    }
+
+    /**
+     * Sets the assessments of the module
+     *
+     * @param assessments The assessments to set
+     */
+    public void setAssessments(List<Assessment> assessments) {
+        this.assessments = assessments;
+    }
+
+    /**
+     * Calculates the weighted average over ZP, LB and all assessments,
+     * the same way the weighted average query of AssessmentDao does
+     *
+     * @return The average in hundredths or {@link Module#NO_GRADE} if a grade is missing
+     */
+    public int getWeightedAverageHundredths() {
+        if (!module.hasAllGrades()) {
+            return Module.NO_GRADE;
+        }
+        long weightedSum = (long) Assessment.STANDARD_WEIGHT
+                * (module.getZpHundredths() + module.getLbHundredths());
+        long totalWeight = 2L * Assessment.STANDARD_WEIGHT;
+        for (Assessment assessment : assessments) {
+            if (assessment.getGradeHundredths() == Module.NO_GRADE) {
+                return Module.NO_GRADE;
+            }
+            weightedSum += (long) assessment.getWeight() * assessment.getGradeHundredths();
+            totalWeight += assessment.getWeight();
+        }
+        return (int) Math.round((double) weightedSum / totalWeight);
+    }
+}
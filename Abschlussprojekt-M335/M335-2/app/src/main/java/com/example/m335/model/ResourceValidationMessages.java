@@ -0,0 +1,48 @@
+package com.example.m335.model;
+
+import android.content.res.Resources;
+
+import com.example.m335.R;
+
+/**
+ * Validation messages from the string resources of the app
+ */
+public class ResourceValidationMessages implements ValidationMessages {
+    private final Resources resources;
+
+    /**
+     * Constructor with the resources of the current configuration
+     *
+     * @param resources The app resources
+     */
+    public ResourceValidationMessages(Resources resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * Gets the message for the error of a field
+     *
+     * @param field The field with the error
+     * @param code The error code
+     * @return The localised message
+     */
+    @Override
+    public String getMessage(ModuleValidator.Field field, ModuleValidator.Code code) {
+        switch (field) {
+            case MODULE_NUMBER:
+                return resources.getString(R.string.validation_module_number_too_short,
+                        ModuleValidator.MIN_TEXT_LENGTH);
+            case MODULE_TITLE:
+                return resources.getString(R.string.validation_module_title_too_short,
+                        ModuleValidator.MIN_TEXT_LENGTH);
+            case ZP_NOTE:
+                return resources.getString(code == ModuleValidator.Code.NOT_A_NUMBER
+                        ? R.string.validation_zp_note_not_a_number
+                        : R.string.validation_zp_note_out_of_range);
+            default:
+                return resources.getString(code == ModuleValidator.Code.NOT_A_NUMBER
+                        ? R.string.validation_lb_note_not_a_number
+                        : R.string.validation_lb_note_out_of_range);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.m335.model;
+
+/**
+ * Source of the messages shown for validation errors, kept apart from the rules
+ * so that they can be translated
+ */
+public interface ValidationMessages {
+    /**
+     * Gets the message for the error of a field
+     *
+     * @param field The field with the error
+     * @param code The error code, not {@link ModuleValidator.Code#VALID}
+     * @return The message for the user
+     */
+    String getMessage(ModuleValidator.Field field, ModuleValidator.Code code);
+}
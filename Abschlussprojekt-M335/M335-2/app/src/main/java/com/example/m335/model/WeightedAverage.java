@@ -0,0 +1,38 @@
+package com.example.m335.model;
+
+/**
+ * The weighted average of one module, computed by the weighted average query
+ */
+public class WeightedAverage {
+    private final String moduleNumber;
+    private final int averageHundredths;
+
+    /**
+     * Constructor used by Room to map the weighted average query
+     *
+     * @param moduleNumber The module number
+     * @param averageHundredths The weighted average in hundredths or {@link Module#NO_GRADE}
+     */
+    public WeightedAverage(String moduleNumber, int averageHundredths) {
+        this.moduleNumber = moduleNumber;
+        this.averageHundredths = averageHundredths;
+    }
+
+    /**
+     * Gets the module number
+     *
+     * @return The module number
+     */
+    public String getModuleNumber() {
+        return moduleNumber;
+    }
+
+    /**
+     * Gets the weighted average in hundredths
+     *
+     * @return The average or {@link Module#NO_GRADE} if a grade is missing
+     */
+    public int getAverageHundredths() {
+        return averageHundredths;
+    }
+}
@@ -0,0 +1,284 @@
+@file:JvmName("ModuleListCompose")
+
+package com.example.m335.ui
+
+import androidx.compose.foundation.ExperimentalFoundationApi
+import androidx.compose.foundation.combinedClickable
+import androidx.compose.foundation.layout.Column
+import androidx.compose.foundation.layout.PaddingValues
+import androidx.compose.foundation.layout.Row
+import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.layout.height
+import androidx.compose.foundation.layout.padding
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.rememberLazyListState
+import androidx.compose.foundation.shape.RoundedCornerShape
+import androidx.compose.material3.Card
+import androidx.compose.material3.CardDefaults
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.Text
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.SideEffect
+import androidx.compose.runtime.derivedStateOf
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.livedata.observeAsState
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.snapshotFlow
+import androidx.compose.ui.Alignment
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.ComposeView
+import androidx.compose.ui.platform.testTag
+import androidx.compose.ui.res.colorResource
+import androidx.compose.ui.text.font.FontWeight
+import androidx.compose.ui.unit.dp
+import androidx.paging.PagedList
+import com.example.m335.R
+import com.example.m335.StartupTimeline
+import com.example.m335.model.Module
+import com.example.m335.model.ModuleFamilyStats
+import com.example.m335.model.ModuleRow
+import com.example.m335.model.ModuleSummary
+import com.example.m335.model.ModuleSummaryFormatter
+import com.example.m335.ui.theme.M335Theme
+import com.example.m335.viewmodel.ModuleViewModel
+
+/**
+ * Test tag of the module list
+ */
+const val MODULE_LIST_TAG = "module_list"
+
+/**
+ * Shows the Compose module list in a view of MainActivity
+ *
+ * @param view The view to show the list in
+ * @param viewModel The ViewModel of the activity
+ * @param controller Receives clicks and keeps the selection
+ */
+fun showModuleList(view: ComposeView, viewModel: ModuleViewModel, controller: ModuleListController) {
+    view.setContent {
+        M335Theme(dynamicColor = false) {
+            ModuleListScreen(viewModel, controller)
+        }
+    }
+}
+
+/**
+ * Module list fed by the LiveData of the ViewModel
+ *
+ * @param viewModel The ViewModel of the activity
+ * @param controller Receives clicks and keeps the selection
+ */
+@Composable
+fun ModuleListScreen(viewModel: ModuleViewModel, controller: ModuleListController) {
+    val rows by viewModel.displayedModules.observeAsState()
+    val pendingEdits by viewModel.pendingEdits.observeAsState(emptyMap())
+    val summary by viewModel.summary.observeAsState()
+    val familyStats by viewModel.familyStats.observeAsState(emptyList())
+
+    ModuleList(rows, pendingEdits, summary, familyStats, controller)
+
+    // Once the new list is shown, the edits whose written row it has are dropped
+    LaunchedEffect(rows) {
+        rows?.let {
+            StartupTimeline.getInstance().mark(StartupTimeline.Phase.FIRST_DATA)
+            viewModel.reconcileEdits(it)
+        }
+    }
+}
+
+/**
+ * Summary header and the paged module list.
+ * Rows are keyed by module number; unchanged rows are equal and their composition is skipped.
+ *
+ * @param rows The paged rows, null before the first list is loaded
+ * @param pendingEdits Edited modules by number, shown until the list contains them
+ * @param summary The aggregate statistics, null before they are loaded
+ * @param familyStats The statistics per module family
+ * @param controller Receives clicks and keeps the selection
+ * @param modifier The modifier of the list
+ */
+@Composable
+fun ModuleList(
+    rows: PagedList<ModuleRow>?,
+    pendingEdits: Map<String, Module>,
+    summary: ModuleSummary?,
+    familyStats: List<ModuleFamilyStats>,
+    controller: ModuleListController,
+    modifier: Modifier = Modifier
+) {
+    val loadedRows = rememberLoadedRows(rows)
+    // Only the rows of the few edited modules are built here
+    val pendingRows = remember(pendingEdits) { pendingEdits.mapValues { ModuleRow(it.value) } }
+    val listState = rememberLazyListState()
+    // Changes once when the first row scrolls out, not on every scrolled pixel
+    val expanded by remember { derivedStateOf { listState.firstVisibleItemIndex == 0 } }
+    val selectedNumbers = controller.selectedNumbers
+
+    Column(modifier.fillMaxSize()) {
+        ModuleSummaryHeader(summary, familyStats, expanded, controller)
+        LazyColumn(
+            state = listState,
+            modifier = Modifier
+                .weight(1f)
+                .testTag(MODULE_LIST_TAG),
+            contentPadding = PaddingValues(8.dp)
+        ) {
+            items(
+                count = loadedRows.size,
+                // Placeholders are keyed by position; an Int never equals a module number
+                key = { index -> loadedRows[index]?.moduleNumber ?: index }
+            ) { index ->
+                val row = loadedRows[index]
+                if (row == null) {
+                    ModulePlaceholder()
+                } else {
+                    val shown = pendingRows[row.moduleNumber] ?: row
+                    ModuleRowItem(shown, shown.moduleNumber in selectedNumbers, controller)
+                }
+            }
+        }
+    }
+
+    // Pages are loaded around the first visible row while scrolling
+    if (rows != null) {
+        LaunchedEffect(rows, listState) {
+            snapshotFlow { listState.firstVisibleItemIndex }.collect { index ->
+                if (index < rows.size) {
+                    rows.loadAround(index)
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Summary line and family averages above the list, the family line is hidden while scrolled
+ *
+ * @param summary The aggregate statistics, null before they are loaded
+ * @param familyStats The statistics per module family
+ * @param expanded Whether the family line is shown
+ * @param controller Counts the compositions
+ */
+@Composable
+fun ModuleSummaryHeader(
+    summary: ModuleSummary?,
+    familyStats: List<ModuleFamilyStats>,
+    expanded: Boolean,
+    controller: ModuleListController
+) {
+    SideEffect { controller.onHeaderComposed() }
+    val summaryText = remember(summary) {
+        if (summary != null) ModuleSummaryFormatter.formatSummary(summary) else ""
+    }
+    val familyText = remember(familyStats) { ModuleSummaryFormatter.formatFamilyStats(familyStats) }
+
+    Column(Modifier.padding(start = 16.dp, end = 16.dp, bottom = 4.dp)) {
+        Text(summaryText, style = MaterialTheme.typography.titleMedium)
+        if (expanded && familyText.isNotEmpty()) {
+            Text(
+                familyText,
+                style = MaterialTheme.typography.bodySmall,
+                modifier = Modifier.padding(top = 2.dp)
+            )
+        }
+    }
+}
+
+/**
+ * One module of the list, the Compose counterpart of module_item.xml
+ *
+ * @param row The precomputed row
+ * @param selected Whether the row is selected
+ * @param controller Receives clicks and counts the compositions
+ */
+@OptIn(ExperimentalFoundationApi::class)
+@Composable
+fun ModuleRowItem(row: ModuleRow, selected: Boolean, controller: ModuleListController) {
+    SideEffect {
+        controller.onRowComposed()
+        StartupTimeline.getInstance().mark(StartupTimeline.Phase.FIRST_BIND)
+    }
+    Card(
+        modifier = Modifier
+            .fillMaxWidth()
+            .padding(vertical = 4.dp)
+            .combinedClickable(
+                onClick = { controller.onClick(row) },
+                onLongClick = { controller.onLongClick(row) }
+            ),
+        shape = RoundedCornerShape(8.dp),
+        colors = CardDefaults.cardColors(
+            containerColor = colorResource(if (selected) R.color.module_selected else R.color.white)
+        ),
+        elevation = CardDefaults.cardElevation(defaultElevation = 4.dp)
+    ) {
+        Row(Modifier.padding(16.dp), verticalAlignment = Alignment.CenterVertically) {
+            Column(Modifier.weight(1f)) {
+                Text(row.moduleNumber, style = MaterialTheme.typography.titleLarge)
+                Text(
+                    row.moduleTitle,
+                    style = MaterialTheme.typography.titleMedium,
+                    modifier = Modifier.padding(top = 4.dp)
+                )
+            }
+            if (row.isGradeVisible) {
+                Text(
+                    row.gradeText,
+                    style = MaterialTheme.typography.titleLarge,
+                    fontWeight = FontWeight.Bold
+                )
+            }
+        }
+    }
+}
+
+/**
+ * Empty row for a module that is not loaded yet
+ */
+@Composable
+fun ModulePlaceholder() {
+    Card(
+        modifier = Modifier
+            .fillMaxWidth()
+            .padding(vertical = 4.dp)
+            .height(72.dp),
+        shape = RoundedCornerShape(8.dp)
+    ) {
+    }
+}
+
+/**
+ * Gets the rows loaded so far; a loaded page replaces the list with a new snapshot
+ *
+ * @param rows The paged rows
+ * @return The current snapshot, null entries are placeholders
+ */
+@Composable
+private fun rememberLoadedRows(rows: PagedList<ModuleRow>?): List<ModuleRow?> {
+    val snapshot = remember(rows) { mutableStateOf<List<ModuleRow?>>(rows?.snapshot() ?: emptyList()) }
+    DisposableEffect(rows) {
+        val callback = object : PagedList.Callback() {
+            override fun onChanged(position: Int, count: Int) {
+                snapshot.value = rows!!.snapshot()
+            }
+
+            override fun onInserted(position: Int, count: Int) {
+                snapshot.value = rows!!.snapshot()
+            }
+
+            override fun onRemoved(position: Int, count: Int) {
+                snapshot.value = rows!!.snapshot()
+            }
+        }
+        // Pages loaded since the first snapshot are reported at once
+        rows?.addWeakCallback(snapshot.value, callback)
+        onDispose {
+            rows?.removeWeakCallback(callback)
+        }
+    }
+    return snapshot.value
+}
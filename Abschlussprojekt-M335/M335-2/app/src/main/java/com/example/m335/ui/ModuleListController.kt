@@ -0,0 +1,116 @@
+package com.example.m335.ui
+
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.setValue
+import com.example.m335.adapter.ModuleAdapter
+import com.example.m335.model.ModuleRow
+
+/**
+ * Connects the Compose module list to the activity: clicks, the multi-select mode and
+ * composition counters. Offers the same calls as ModuleAdapter, so MainActivity can drive
+ * either list.
+ */
+class ModuleListController {
+    // Module numbers of the selected rows, kept by number so that list updates don't shift them
+    internal var selectedNumbers by mutableStateOf<Set<String>>(emptySet())
+        private set
+    private var selectionMode = false
+    private var itemClickListener: ModuleAdapter.OnItemClickListener? = null
+    private var selectionListener: ModuleAdapter.OnSelectionChangedListener? = null
+
+    /**
+     * Number of row compositions since the last reset, the Compose counterpart of row binds
+     */
+    var rowCompositionCount = 0
+        private set
+
+    /**
+     * Number of summary header compositions since the last reset
+     */
+    var headerCompositionCount = 0
+        private set
+
+    /**
+     * Sets the item click listener
+     *
+     * @param listener The listener to set
+     */
+    fun setOnItemClickListener(listener: ModuleAdapter.OnItemClickListener?) {
+        itemClickListener = listener
+    }
+
+    /**
+     * Sets the selection listener
+     *
+     * @param listener The listener to set
+     */
+    fun setOnSelectionChangedListener(listener: ModuleAdapter.OnSelectionChangedListener?) {
+        selectionListener = listener
+    }
+
+    /**
+     * Gets the numbers of all selected modules
+     *
+     * @return A copy of the selected module numbers
+     */
+    fun getSelectedModuleNumbers(): List<String> = ArrayList(selectedNumbers)
+
+    /**
+     * Leaves the multi-select mode and clears the selection
+     */
+    fun clearSelection() {
+        selectionMode = false
+        selectedNumbers = emptySet()
+    }
+
+    /**
+     * Resets the composition counters
+     */
+    fun resetCompositionCounts() {
+        rowCompositionCount = 0
+        headerCompositionCount = 0
+    }
+
+    /**
+     * Opens a module, or selects it while the multi-select mode is on
+     *
+     * @param row The clicked row
+     */
+    internal fun onClick(row: ModuleRow) {
+        if (selectionMode) {
+            toggleSelection(row)
+        } else {
+            itemClickListener?.onItemClick(row.module)
+        }
+    }
+
+    /**
+     * Starts the multi-select mode with the long clicked row
+     *
+     * @param row The long clicked row
+     */
+    internal fun onLongClick(row: ModuleRow) {
+        selectionMode = true
+        toggleSelection(row)
+    }
+
+    internal fun onRowComposed() {
+        rowCompositionCount++
+    }
+
+    internal fun onHeaderComposed() {
+        headerCompositionCount++
+    }
+
+    /**
+     * Selects or deselects a row
+     *
+     * @param row The row
+     */
+    private fun toggleSelection(row: ModuleRow) {
+        val number = row.moduleNumber
+        selectedNumbers = if (number in selectedNumbers) selectedNumbers - number else selectedNumbers + number
+        selectionListener?.onSelectionChanged(selectedNumbers.size)
+    }
+}
@@ -1,22 +1,67 @@
 package com.example.m335.viewmodel;
 
 import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
+import androidx.arch.core.util.Function;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
 
+import com.example.m335.data.ModuleFileFormat;
+import com.example.m335.data.ModuleImporter;
+import com.example.m335.data.ModuleMigrationRunner;
 import com.example.m335.data.ModuleRepository;
+import com.example.m335.data.ModuleSearchDataSource;
+import com.example.m335.data.ModuleSortOrder;
+import com.example.m335.data.SingleEvent;
 import com.example.m335.model.Module;
+import com.example.m335.model.ModuleFamilyStats;
+import com.example.m335.model.ModuleRow;
+import com.example.m335.model.ModuleRowMapper;
+import com.example.m335.model.ModuleStatistics;
+import com.example.m335.model.ModuleSummary;
+import com.example.m335.model.ModuleValidator;
+import com.example.m335.model.ResourceValidationMessages;
+import com.example.m335.model.ValidationMessages;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
  * ViewModel to store and manage UI-related data in a lifecycle conscious way
  */
 public class ModuleViewModel extends AndroidViewModel {
+    // Paging setup: rows kept in memory stay bounded by MAX_LOADED_MODULES
+    public static final int PAGE_SIZE = 50;
+    public static final int PREFETCH_DISTANCE = 100;
+    public static final int MAX_LOADED_MODULES = 400;
+
     private ModuleRepository repository;
     private LiveData<List<Module>> allModules;
+    private LiveData<PagedList<ModuleRow>> pagedModules;
+    private LiveData<PagedList<ModuleRow>> displayedModules;
+    private final ModuleRowMapper rowMapper = new ModuleRowMapper(MAX_LOADED_MODULES);
+    private final MutableLiveData<ModuleSortOrder> sortOrder = new MutableLiveData<>(ModuleSortOrder.NUMBER);
+    private final MutableLiveData<String> searchText = new MutableLiveData<>("");
+    private ModuleSearchDataSource.Factory currentSearch;
+    private final MutableLiveData<SingleEvent<String>> transferMessage = new MutableLiveData<>();
+    private final ModuleValidator validator = new ModuleValidator();
+    private final ValidationMessages validationMessages;
 
     /**
      * Constructor initializes the repository and data
@@ -26,7 +71,50 @@ public class ModuleViewModel extends AndroidViewModel {
     public ModuleViewModel(@NonNull Application application) {
         super(application);
         repository = new ModuleRepository(application);
+        validationMessages = new ResourceValidationMessages(application.getResources());
         allModules = repository.getAllModules();
+        // Rows are built on the paging thread as pages load, not while binding.
+        // A new order starts a new list from its first page
+        pagedModules = Transformations.switchMap(sortOrder,
+                new Function<ModuleSortOrder, LiveData<PagedList<ModuleRow>>>() {
+                    @Override
+                    public LiveData<PagedList<ModuleRow>> apply(ModuleSortOrder order) {
+                        return new LivePagedListBuilder<>(repository.getPagedModules(order).map(rowMapper),
+                                createPagedListConfig())
+                                .build();
+                    }
+                });
+
+        // Switching to a new search text drops the subscription to the previous results
+        displayedModules = Transformations.switchMap(searchText,
+                new Function<String, LiveData<PagedList<ModuleRow>>>() {
+                    @Override
+                    public LiveData<PagedList<ModuleRow>> apply(String text) {
+                        if (text.trim().isEmpty()) {
+                            currentSearch = null;
+                            return pagedModules;
+                        }
+                        currentSearch = repository.searchModules(text);
+                        return new LivePagedListBuilder<>(currentSearch.map(rowMapper),
+                                createPagedListConfig())
+                                .build();
+                    }
+                });
+    }
+
+    /**
+     * Creates the paging configuration for the module list
+     *
+     * @return The PagedList configuration
+     */
+    public static PagedList.Config createPagedListConfig() {
+        return new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setPrefetchDistance(PREFETCH_DISTANCE)
+                .setInitialLoadSizeHint(2 * PAGE_SIZE)
+                .setEnablePlaceholders(true)
+                .setMaxSize(MAX_LOADED_MODULES)
+                .build();
     }
 
     /**
@@ -38,6 +126,101 @@ public class ModuleViewModel extends AndroidViewModel {
         return allModules;
     }
 
+    /**
+     * Gets the module list in the selected order as pages loaded while scrolling
+     *
+     * @return LiveData containing the paged list rows
+     */
+    public LiveData<PagedList<ModuleRow>> getPagedModules() {
+        return pagedModules;
+    }
+
+    /**
+     * Gets the list shown on the main screen: all modules, or the search results
+     * while a search text is set
+     *
+     * @return LiveData containing the paged list rows
+     */
+    public LiveData<PagedList<ModuleRow>> getDisplayedModules() {
+        return displayedModules;
+    }
+
+    /**
+     * Gets the order of the module list
+     *
+     * @return The selected order
+     */
+    public ModuleSortOrder getSortOrder() {
+        return sortOrder.getValue();
+    }
+
+    /**
+     * Sets the order of the module list, search results stay in rank order
+     *
+     * @param order The new order
+     */
+    public void setSortOrder(ModuleSortOrder order) {
+        if (order != sortOrder.getValue()) {
+            sortOrder.setValue(order);
+        }
+    }
+
+    /**
+     * Sets the search text, an empty text shows all modules again
+     *
+     * @param text The search text typed by the user
+     */
+    public void setSearchText(String text) {
+        String newText = text != null ? text : "";
+        if (newText.equals(searchText.getValue())) {
+            return;
+        }
+
+        ModuleSearchDataSource.Factory previousSearch = currentSearch;
+        searchText.setValue(newText);
+        // Pending page loads of the outdated search are skipped
+        if (previousSearch != null) {
+            previousSearch.cancel();
+        }
+    }
+
+    /**
+     * Gets the progress of a database migration after an app update
+     *
+     * @return LiveData with the migration progress
+     */
+    public LiveData<ModuleMigrationRunner.Progress> getMigrationProgress() {
+        return repository.getMigrationProgress();
+    }
+
+    /**
+     * Gets aggregate statistics over all modules for the summary header
+     *
+     * @return LiveData containing the summary
+     */
+    public LiveData<ModuleSummary> getSummary() {
+        return repository.getSummary();
+    }
+
+    /**
+     * Gets the running statistics: overall average, spread, extremes, grade histogram
+     * and the count of incomplete modules
+     *
+     * @return LiveData containing the statistics
+     */
+    public LiveData<ModuleStatistics> getStatistics() {
+        return repository.getStatistics();
+    }
+
+    /**
+     * Gets aggregate statistics per module family
+     *
+     * @return LiveData containing one entry per family
+     */
+    public LiveData<List<ModuleFamilyStats>> getFamilyStats() {
+        return repository.getFamilyStats();
+    }
+
     /**
      * Gets a module by its module number
      *
@@ -48,6 +231,16 @@ public class ModuleViewModel extends AndroidViewModel {
         return repository.getModuleByNumber(moduleNumber);
     }
 
+    /**
+     * Finds a module by its module number, answered from the cache when possible
+     *
+     * @param moduleNumber The module number to search for
+     * @return Completes with the module, or null if it doesn't exist
+     */
+    public CompletableFuture<Module> findModule(String moduleNumber) {
+        return repository.findModule(moduleNumber);
+    }
+
     /**
      * Inserts a module into the repository
      *
@@ -66,6 +259,45 @@ public class ModuleViewModel extends AndroidViewModel {
         repository.update(module);
     }
 
+    /**
+     * Updates a module and shows the change in the list before it is written.
+     * Changes made by others since the edit started are kept for the fields the user didn't change.
+     *
+     * @param base The module as it was when the edit started
+     * @param module The edited module
+     */
+    public void updateOptimistic(Module base, Module module) {
+        repository.updateOptimistic(base, module);
+    }
+
+    /**
+     * Gets the edits that are shown before they are written
+     *
+     * @return LiveData with the pending edits by module number
+     */
+    public LiveData<Map<String, Module>> getPendingEdits() {
+        return repository.getPendingEdits();
+    }
+
+    /**
+     * Gets the number of the last module whose edit could not be saved
+     *
+     * @return LiveData with the module number as event
+     */
+    public LiveData<SingleEvent<String>> getFailedEdit() {
+        return repository.getFailedEdit();
+    }
+
+    /**
+     * Drops the pending edits that a newly shown list already contains
+     *
+     * @param shownList The list that is shown now
+     */
+    public void reconcileEdits(PagedList<ModuleRow> shownList) {
+        // The snapshot holds the loaded rows without loading more
+        repository.reconcileEdits(shownList.snapshot());
+    }
+
     /**
      * Deletes a module from the repository
      *
@@ -76,48 +308,182 @@ public class ModuleViewModel extends AndroidViewModel {
     }
 
     /**
-     * Validates a module before saving
+     * Deletes several modules in one batch
      *
-     * @param moduleNumber The module number to validate
-     * @param moduleTitle The module title to validate
-     * @param zpNote The ZP grade to validate (can be null)
-     * @param lbNote The LB grade to validate (can be null)
-     * @return An error message, or null if validation passed
-     */
-    public String validateModule(String moduleNumber, String moduleTitle,
-                                 String zpNote, String lbNote) {
-        // Check required fields
-        if (moduleNumber == null || moduleNumber.trim().length() < 4) {
-            return "Modulnummer muss mindestens 4 Zeichen lang sein";
-        }
+     * @param moduleNumbers The numbers of the modules to delete
+     */
+    public void deleteByNumbers(List<String> moduleNumbers) {
+        repository.deleteByNumbers(moduleNumbers);
+    }
+
+    /**
+     * Sets the grades of several modules in one batch
+     *
+     * @param moduleNumbers The numbers of the modules to regrade
+     * @param zpHundredths The new ZP grade in hundredths, {@link Module#NO_GRADE} keeps it
+     * @param lbHundredths The new LB grade in hundredths, {@link Module#NO_GRADE} keeps it
+     */
+    public void regradeByNumbers(List<String> moduleNumbers, int zpHundredths, int lbHundredths) {
+        repository.regradeByNumbers(moduleNumbers, zpHundredths, lbHundredths);
+    }
+
+    /**
+     * Validates a grade entered for several modules at once
+     *
+     * @param grade The grade to validate (can be empty)
+     * @return The code of the grade
+     */
+    public ModuleValidator.Code validateGrade(CharSequence grade) {
+        return validator.validateGrade(grade);
+    }
+
+    /**
+     * Parses a grade that {@link #validateGrade} accepted
+     *
+     * @param grade The grade
+     * @return The grade in hundredths or {@link Module#NO_GRADE} if it is empty
+     */
+    public int parseGrade(CharSequence grade) {
+        return validator.parseGrade(grade);
+    }
 
-        if (moduleTitle == null || moduleTitle.trim().length() < 4) {
-            return "Modultitel muss mindestens 4 Zeichen lang sein";
+    /**
+     * Gets the result messages of imports and exports
+     *
+     * @return LiveData with the latest message, shown once
+     */
+    public LiveData<SingleEvent<String>> getTransferMessage() {
+        return transferMessage;
+    }
+
+    /**
+     * Imports modules from a CSV or JSON document
+     *
+     * @param uri The document to import
+     */
+    public void importModules(Uri uri) {
+        ContentResolver resolver = getApplication().getContentResolver();
+        ModuleFileFormat format = ModuleFileFormat.fromMimeType(resolver.getType(uri));
+        InputStream input;
+        try {
+            input = resolver.openInputStream(uri);
+        } catch (IOException e) {
+            input = null;
+        }
+        // The provider returns null if it crashed
+        if (input == null) {
+            transferMessage.setValue(new SingleEvent<>("Import fehlgeschlagen: Datei kann nicht gelesen werden"));
+            return;
         }
+        final ReadableByteChannel channel = Channels.newChannel(input);
+        repository.importModules(channel, format, ModuleImporter.DEFAULT_BATCH_SIZE)
+                .whenComplete(new BiConsumer<ModuleImporter.Result, Throwable>() {
+                    @Override
+                    public void accept(ModuleImporter.Result result, Throwable error) {
+                        closeQuietly(channel);
+                        if (error != null) {
+                            postTransferMessage("Import fehlgeschlagen: " + rootMessage(error));
+                        } else if (result.getRejectedCount() > 0) {
+                            postTransferMessage(result.getImportedCount() + " Module importiert, "
+                                    + result.getRejectedCount() + " ungültig ("
+                                    + result.getErrors().get(0) + ")");
+                        } else {
+                            postTransferMessage(result.getImportedCount() + " Module importiert");
+                        }
+                    }
+                });
+    }
 
-        // Validate grade format if provided
-        if (zpNote != null && !zpNote.isEmpty()) {
-            try {
-                float note = Float.parseFloat(zpNote);
-                if (note < 1.0f || note > 6.0f) {
-                    return "ZP-Note muss zwischen 1.0 und 6.0 liegen";
+    /**
+     * Exports all modules into a document
+     *
+     * @param uri The document to write
+     * @param format The file format
+     */
+    public void exportModules(Uri uri, ModuleFileFormat format) {
+        OutputStream output;
+        try {
+            output = getApplication().getContentResolver().openOutputStream(uri);
+        } catch (IOException e) {
+            output = null;
+        }
+        if (output == null) {
+            transferMessage.setValue(new SingleEvent<>("Export fehlgeschlagen: Datei kann nicht geschrieben werden"));
+            return;
+        }
+        final WritableByteChannel channel = Channels.newChannel(output);
+        repository.exportModules(channel, format).whenComplete(new BiConsumer<Integer, Throwable>() {
+            @Override
+            public void accept(Integer count, Throwable error) {
+                closeQuietly(channel);
+                if (error != null) {
+                    postTransferMessage("Export fehlgeschlagen: " + rootMessage(error));
+                } else {
+                    postTransferMessage(count + " Module exportiert");
                 }
-            } catch (NumberFormatException e) {
-                return "ZP-Note muss eine gültige Zahl sein";
             }
+        });
+    }
+
+    /**
+     * Publishes the result of a transfer from the transfer thread
+     *
+     * @param message The message to show once
+     */
+    private void postTransferMessage(String message) {
+        transferMessage.postValue(new SingleEvent<>(message));
+    }
+
+    /**
+     * Closes a file channel, ignoring errors after the transfer is done
+     *
+     * @param channel The channel to close
+     */
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to do with the file
         }
+    }
 
-        if (lbNote != null && !lbNote.isEmpty()) {
-            try {
-                float note = Float.parseFloat(lbNote);
-                if (note < 1.0f || note > 6.0f) {
-                    return "LB-Note muss zwischen 1.0 und 6.0 liegen";
-                }
-            } catch (NumberFormatException e) {
-                return "LB-Note muss eine gültige Zahl sein";
-            }
+    /**
+     * Gets the message of the exception that caused a failed transfer
+     *
+     * @param error The failure, possibly wrapped by the future
+     * @return The message of the innermost cause
+     */
+    private static String rootMessage(Throwable error) {
+        while (error.getCause() != null) {
+            error = error.getCause();
         }
+        return error.getMessage();
+    }
+
+    /**
+     * Validates a module before saving, cheap enough to run on every keystroke
+     *
+     * @param moduleNumber The module number to validate
+     * @param moduleTitle The module title to validate
+     * @param zpNote The ZP grade to validate (can be empty)
+     * @param lbNote The LB grade to validate (can be empty)
+     * @return The codes per field and the parsed grades, owned by the caller
+     */
+    public ModuleValidator.Result validateModule(CharSequence moduleNumber, CharSequence moduleTitle,
+                                                 CharSequence zpNote, CharSequence lbNote) {
+        ModuleValidator.Result result = new ModuleValidator.Result();
+        validator.validate(moduleNumber, moduleTitle, zpNote, lbNote, result);
+        return result;
+    }
 
-        return null; // Validation passed
+    /**
+     * Gets the message for a validation error
+     *
+     * @param field The field with the error
+     * @param code The error code
+     * @return The localised message
+     */
+    public String getValidationMessage(ModuleValidator.Field field, ModuleValidator.Code code) {
+        return validationMessages.getMessage(field, code);
     }
 }
\ No newline at end of file
@@ -100,6 +100,57 @@ public class ModuleUnitTest {
         assertFalse("Non-numeric grade should be invalid", isValidGrade(invalidGradeFormat));
     }
 
+    /**
+     * Test case 5: Natural sort key of module numbers
+     * Verifies that numbers are compared by value and prefixes by letters.
+     */
+    @Test
+    public void testNaturalSortKey() {
+        // Numeric part is compared as a number, not as text
+        assertTrue(Module.computeSortKey("M99") < Module.computeSortKey("M106"));
+        assertTrue(Module.computeSortKey("M335") < Module.computeSortKey("M1000"));
+
+        // Prefix letters decide first, a shorter prefix sorts first
+        assertTrue(Module.computeSortKey("M999") < Module.computeSortKey("MA1"));
+        assertTrue(Module.computeSortKey("MZ999") < Module.computeSortKey("N1"));
+        assertEquals(Module.computeSortKey("m335"), Module.computeSortKey("M335"));
+
+        // Range of all M3xx modules
+        long from = Module.computeSortKey("M300");
+        long to = Module.computeSortKey("M399");
+        long key = Module.computeSortKey("M335");
+        assertTrue(key >= from && key <= to);
+        assertFalse(Module.computeSortKey("M1000") <= to);
+
+        // The key follows the module number
+        Module module = new Module("M106", "Datenbanken abfragen");
+        module.setModuleNumber("M335");
+        assertEquals(Module.computeSortKey("M335"), module.getSortKey());
+    }
+
+    /**
+     * Test case 6: Grades are stored as hundredths with a sentinel for missing grades
+     */
+    @Test
+    public void testGradeHundredths() {
+        Module module = new Module("M335", "Mobile Apps erstellen");
+        assertEquals(Module.NO_GRADE, module.getZpHundredths());
+        assertTrue(Float.isNaN(module.getAverageGradeValue()));
+
+        // Float input is rounded to the nearest hundredth
+        module.setZpNote(4.7f);
+        module.setLbNote(5.333f);
+        assertEquals(470, module.getZpHundredths());
+        assertEquals(533, module.getLbHundredths());
+        assertEquals(5.015f, module.getAverageGradeValue(), 0.0001f);
+        assertEquals(Float.valueOf(5.33f), module.getLbNote());
+
+        // Clearing a grade restores the sentinel
+        module.setLbNote(null);
+        assertEquals(Module.NO_GRADE, module.getLbHundredths());
+        assertNull(module.getAverageGrade());
+    }
+
     /**
      * Helper method that simulates module input validation
      */
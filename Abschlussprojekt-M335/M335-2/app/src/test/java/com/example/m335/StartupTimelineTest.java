@@ -0,0 +1,152 @@
+package com.example.m335;
+
+import android.os.Looper;
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.data.ModuleDatabase;
+import com.example.m335.data.ModuleWarmUp;
+import com.example.m335.model.Module;
+import com.example.m335.viewmodel.ModuleViewModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests for the startup timeline and the order of the phases of a cold start.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StartupTimelineTest {
+    private static final int STORED_MODULES = 2000;
+
+    private ExecutorService background;
+
+    @Before
+    public void setUp() {
+        background = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        background.shutdownNow();
+    }
+
+    /**
+     * Test case 1: Every phase is recorded once, the first mark wins
+     */
+    @Test
+    public void testPhasesAreMarkedOnce() {
+        final List<StartupTimeline.Phase> reported = new ArrayList<>();
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.setListener(new StartupTimeline.Listener() {
+            @Override
+            public void onPhase(StartupTimeline.Phase phase, long millis) {
+                reported.add(phase);
+            }
+        });
+
+        assertFalse(timeline.isMarked(StartupTimeline.Phase.DATABASE_OPEN));
+        assertEquals(-1, timeline.getMillis(StartupTimeline.Phase.DATABASE_OPEN));
+
+        timeline.mark(StartupTimeline.Phase.DATABASE_OPEN);
+        long first = timeline.getMillis(StartupTimeline.Phase.DATABASE_OPEN);
+        timeline.mark(StartupTimeline.Phase.DATABASE_OPEN);
+        assertEquals(first, timeline.getMillis(StartupTimeline.Phase.DATABASE_OPEN));
+        assertEquals(1, reported.size());
+        assertTrue(timeline.toString().endsWith("FIRST_BIND -"));
+
+        timeline.start();
+        assertFalse(timeline.isMarked(StartupTimeline.Phase.DATABASE_OPEN));
+    }
+
+    /**
+     * Test case 2: A cold start of the main screen over a stored database reaches
+     * database open, first data and first bind in this order
+     */
+    @Test
+    public void testColdStartMarksPhasesInOrder() throws Exception {
+        M335Application application = ApplicationProvider.getApplicationContext();
+        application.getWarmUp().get(30, TimeUnit.SECONDS);
+        final ModuleDatabase database = ModuleDatabase.getDatabase(application);
+        int storedModules = seedDatabase(database);
+
+        // Start over as the application does, with the modules of a returning user stored
+        final StartupTimeline timeline = StartupTimeline.getInstance();
+        timeline.start();
+        ModuleWarmUp.start(application, ModuleViewModel.createPagedListConfig().initialLoadSizeHint,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        timeline.mark(StartupTimeline.Phase.DATABASE_OPEN);
+                    }
+                }).get(30, TimeUnit.SECONDS);
+
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).setup();
+        RecyclerView recyclerView = controller.get().findViewById(R.id.recycler_view);
+        // The list is loaded on the paging executor and handed to the activity on the main thread
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!timeline.isMarked(StartupTimeline.Phase.FIRST_DATA)
+                || recyclerView.getAdapter().getItemCount() < storedModules) {
+            assertTrue("The module list was not shown, timeline " + timeline,
+                    System.currentTimeMillis() < deadline);
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(5);
+        }
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 1080, 1920);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(storedModules, recyclerView.getAdapter().getItemCount());
+        assertTrue("First bind missing, timeline " + timeline,
+                timeline.isMarked(StartupTimeline.Phase.FIRST_BIND));
+        assertTrue("Phases out of order: " + timeline,
+                timeline.getMillis(StartupTimeline.Phase.DATABASE_OPEN)
+                        <= timeline.getMillis(StartupTimeline.Phase.FIRST_DATA)
+                        && timeline.getMillis(StartupTimeline.Phase.FIRST_DATA)
+                        <= timeline.getMillis(StartupTimeline.Phase.FIRST_BIND));
+
+        controller.pause().stop().destroy();
+    }
+
+    /**
+     * Stores the modules of a returning user in the app database
+     *
+     * @param database The app database
+     * @return The number of stored modules
+     */
+    private int seedDatabase(final ModuleDatabase database) throws Exception {
+        List<Module> modules = new ArrayList<>(STORED_MODULES);
+        for (int i = 0; i < STORED_MODULES; i++) {
+            Module module = new Module("M" + (100 + i), "Modul " + i);
+            module.setZpHundredths(400 + (i % 9) * 25);
+            modules.add(module);
+        }
+        database.getWriteQueue().insertAll(modules).get(30, TimeUnit.SECONDS);
+        // The shared database may hold modules of earlier tests
+        return background.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return database.moduleDao().getModuleCount();
+            }
+        }).get(30, TimeUnit.SECONDS);
+    }
+}
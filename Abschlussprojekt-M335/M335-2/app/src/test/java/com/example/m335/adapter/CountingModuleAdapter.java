@@ -0,0 +1,73 @@
+package com.example.m335.adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Module adapter that counts its binds, used to measure how much work an update causes.
+ */
+public class CountingModuleAdapter extends ModuleAdapter {
+    private int fullBindCount = 0;
+    private int gradeBindCount = 0;
+
+    /**
+     * Constructor diffs new lists on the default background executor
+     */
+    public CountingModuleAdapter() {
+        super();
+    }
+
+    /**
+     * Constructor with an explicit executor for diffing new lists
+     *
+     * @param diffExecutor The background executor for list diffing
+     */
+    public CountingModuleAdapter(Executor diffExecutor) {
+        super(diffExecutor);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ModuleViewHolder holder, int position) {
+        fullBindCount++;
+        super.onBindViewHolder(holder, position);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ModuleViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        int fullBindsBefore = fullBindCount;
+        super.onBindViewHolder(holder, position, payloads);
+        // The adapter falls back to a full bind unless only the grade changed
+        if (fullBindCount == fullBindsBefore) {
+            gradeBindCount++;
+        }
+    }
+
+    /**
+     * Gets the number of full row binds since the last reset
+     *
+     * @return The full bind count
+     */
+    public int getFullBindCount() {
+        return fullBindCount;
+    }
+
+    /**
+     * Gets the number of grade-only binds since the last reset
+     *
+     * @return The grade bind count
+     */
+    public int getGradeBindCount() {
+        return gradeBindCount;
+    }
+
+    /**
+     * Resets the bind counters
+     */
+    public void resetBindCounts() {
+        fullBindCount = 0;
+        gradeBindCount = 0;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.m335.adapter;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.View;
+
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.data.ModuleDatabase;
+import com.example.m335.data.ModuleKeysetDataSource;
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleRow;
+import com.example.m335.model.ModuleRowMapper;
+import com.example.m335.viewmodel.ModuleViewModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests for list diffing and partial rebinding in the module adapter.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleAdapterTest {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private Context context;
+    private ModuleDatabase database;
+    private final ModuleRowMapper rowMapper = new ModuleRowMapper(ModuleViewModel.MAX_LOADED_MODULES);
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: A grade-only change is dispatched as one change with the grade payload
+     */
+    @Test
+    public void testGradeChangeProducesGradePayload() {
+        List<Module> oldModules = createModules(2000);
+        List<Module> newModules = createModules(2000);
+        newModules.get(10).setLbNote(6.0f);
+        newModules.get(20).setModuleTitle("Geänderter Titel");
+        List<ModuleRow> oldList = toRows(oldModules);
+        List<ModuleRow> newList = toRows(newModules);
+
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                new ListDiffCallback(oldList, newList), false);
+
+        final List<Object> payloads = new ArrayList<>();
+        final int[] structuralChanges = {0};
+        result.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                structuralChanges[0] += count;
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                structuralChanges[0] += count;
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                structuralChanges[0]++;
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                for (int i = 0; i < count; i++) {
+                    payloads.add(payload);
+                }
+            }
+        });
+
+        assertEquals("Structural changes in a diff of 2000 modules", 0, structuralChanges[0]);
+        assertEquals("Changed rows in a diff of 2000 modules", 2, payloads.size());
+        assertSame(ModuleAdapter.PAYLOAD_GRADE, payloads.get(0));
+        assertNull(payloads.get(1));
+    }
+
+    /**
+     * Test case 2: After a grade update only the changed row is rebound, and only its grade view
+     */
+    @Test
+    public void testGradeUpdateRebindsOnlyGradeView() {
+        database.moduleDao().insertAll(createModules(200));
+
+        CountingModuleAdapter adapter = new CountingModuleAdapter(DIRECT_EXECUTOR);
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setAdapter(adapter);
+
+        adapter.submitList(buildPagedList());
+        layoutFrame(recyclerView);
+        assertTrue("Visible rows must be bound", adapter.getFullBindCount() > 0);
+
+        // Change the grade of the first module and submit the reloaded list
+        Module changed = database.moduleDao().getFirstModules(1).get(0);
+        changed.setZpNote(6.0f);
+        database.moduleDao().update(changed);
+        adapter.resetBindCounts();
+
+        adapter.submitList(buildPagedList());
+        layoutFrame(recyclerView);
+
+        assertEquals("Full binds after a grade update", 0, adapter.getFullBindCount());
+        assertEquals("Grade binds after a grade update", 1, adapter.getGradeBindCount());
+    }
+
+    /**
+     * Test case 3: Reloading an unchanged list reuses every row and rebinds nothing
+     */
+    @Test
+    public void testUnchangedReloadReusesRows() {
+        database.moduleDao().insertAll(createModules(200));
+
+        CountingModuleAdapter adapter = new CountingModuleAdapter(DIRECT_EXECUTOR);
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setAdapter(adapter);
+
+        PagedList<ModuleRow> first = buildPagedList();
+        adapter.submitList(first);
+        layoutFrame(recyclerView);
+        long built = rowMapper.getBuiltCount();
+        adapter.resetBindCounts();
+
+        PagedList<ModuleRow> reloaded = buildPagedList();
+        adapter.submitList(reloaded);
+        layoutFrame(recyclerView);
+
+        assertEquals(built, rowMapper.getBuiltCount());
+        assertSame(first.get(0), reloaded.get(0));
+        assertEquals(0, adapter.getFullBindCount());
+        assertEquals(0, adapter.getGradeBindCount());
+    }
+
+    /**
+     * Runs pending main thread work and one measure and layout pass
+     *
+     * @param recyclerView The RecyclerView to lay out
+     */
+    private void layoutFrame(RecyclerView recyclerView) {
+        shadowOf(Looper.getMainLooper()).idle();
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 1080, 1920);
+        // Let change animations finish so that the next frame starts from a settled state
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private PagedList<ModuleRow> buildPagedList() {
+        return new PagedList.Builder<>(new ModuleKeysetDataSource(database).map(rowMapper),
+                ModuleViewModel.createPagedListConfig())
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .setNotifyExecutor(DIRECT_EXECUTOR)
+                .build();
+    }
+
+    private static List<Module> createModules(int count) {
+        List<Module> modules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Module module = new Module(String.format("M%04d", i), "Modul " + i);
+            module.setZpNote(4.0f);
+            module.setLbNote(5.0f);
+            modules.add(module);
+        }
+        return modules;
+    }
+
+    private static List<ModuleRow> toRows(List<Module> modules) {
+        List<ModuleRow> rows = new ArrayList<>(modules.size());
+        for (Module module : modules) {
+            rows.add(new ModuleRow(module));
+        }
+        return rows;
+    }
+
+    /**
+     * Runs the adapter's item callback over two plain lists
+     */
+    private static class ListDiffCallback extends DiffUtil.Callback {
+        private final List<ModuleRow> oldList;
+        private final List<ModuleRow> newList;
+
+        ListDiffCallback(List<ModuleRow> oldList, List<ModuleRow> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return ModuleAdapter.DIFF_CALLBACK.areItemsTheSame(
+                    oldList.get(oldPosition), newList.get(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return ModuleAdapter.DIFF_CALLBACK.areContentsTheSame(
+                    oldList.get(oldPosition), newList.get(newPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldPosition, int newPosition) {
+            return ModuleAdapter.DIFF_CALLBACK.getChangePayload(
+                    oldList.get(oldPosition), newList.get(newPosition));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.m335.data;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * In-memory sync server for tests, served by a MockWebServer.
+ * Every accepted change gets the next server sequence number; a change is rejected
+ * if it is not based on the latest state of its module. Deleted modules stay as tombstones.
+ */
+class FakeSyncServer extends Dispatcher {
+    private final int pageSize;
+    private final Map<String, ModuleSyncProtocol.Record> records = new HashMap<>();
+    // The latest record of every module by its sequence number, the order changes are pulled in
+    private final TreeMap<Long, ModuleSyncProtocol.Record> log = new TreeMap<>();
+    private long seq;
+    private int requestCount;
+    private long bytesReceived;
+    private long bytesSent;
+
+    /**
+     * Constructor with the number of changes pulled per request
+     *
+     * @param pageSize The maximum number of pulled changes per response
+     */
+    FakeSyncServer(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public synchronized MockResponse dispatch(RecordedRequest recorded) {
+        ModuleSyncProtocol.Request request;
+        try {
+            request = ModuleSyncProtocol.decodeRequest(recorded.getBody().inputStream());
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(400);
+        }
+        requestCount++;
+        bytesReceived += recorded.getBodySize();
+
+        // Pulled before the pushed changes are stored, so a device never gets its own changes back
+        ModuleSyncProtocol.Response response = new ModuleSyncProtocol.Response();
+        long cursor = request.cursor;
+        for (ModuleSyncProtocol.Record record : log.tailMap(request.cursor, false).values()) {
+            if (response.changes.size() == pageSize) {
+                response.more = true;
+                break;
+            }
+            response.changes.add(record);
+            cursor = record.seq;
+        }
+
+        for (ModuleSyncProtocol.Record change : request.changes) {
+            ModuleSyncProtocol.Record current = records.get(change.moduleNumber);
+            if (current != null && current.seq != change.seq) {
+                response.conflicts.add(current);
+                continue;
+            }
+            ModuleSyncProtocol.Record stored = copy(change);
+            stored.seq = ++seq;
+            if (current != null) {
+                log.remove(current.seq);
+            }
+            records.put(stored.moduleNumber, stored);
+            log.put(stored.seq, stored);
+
+            ModuleSyncProtocol.Record accepted = new ModuleSyncProtocol.Record();
+            accepted.moduleNumber = stored.moduleNumber;
+            accepted.seq = stored.seq;
+            response.accepted.add(accepted);
+        }
+        // Everything up to the latest sequence number is known to the device once all is pulled
+        response.cursor = response.more ? cursor : seq;
+
+        byte[] body;
+        try {
+            body = ModuleSyncProtocol.encodeResponse(response);
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(500);
+        }
+        bytesSent += body.length;
+        return new MockResponse()
+                .setHeader("Content-Type", ModuleSyncProtocol.CONTENT_TYPE)
+                .setHeader("Content-Encoding", ModuleSyncProtocol.CONTENT_ENCODING)
+                .setBody(new Buffer().write(body));
+    }
+
+    /**
+     * Gets the stored state of a module
+     *
+     * @param moduleNumber The module number
+     * @return The record, a tombstone for deleted modules, or null if the module is unknown
+     */
+    synchronized ModuleSyncProtocol.Record getRecord(String moduleNumber) {
+        return records.get(moduleNumber);
+    }
+
+    /**
+     * Gets the number of requests served
+     *
+     * @return The requests
+     */
+    synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Gets the compressed size of all request bodies
+     *
+     * @return The bytes received
+     */
+    synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the compressed size of all response bodies
+     *
+     * @return The bytes sent
+     */
+    synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    private static ModuleSyncProtocol.Record copy(ModuleSyncProtocol.Record record) {
+        ModuleSyncProtocol.Record copy = new ModuleSyncProtocol.Record();
+        copy.moduleNumber = record.moduleNumber;
+        copy.moduleTitle = record.moduleTitle;
+        copy.zpHundredths = record.zpHundredths;
+        copy.lbHundredths = record.lbHundredths;
+        copy.deleted = record.deleted;
+        copy.seq = record.seq;
+        return copy;
+    }
+}
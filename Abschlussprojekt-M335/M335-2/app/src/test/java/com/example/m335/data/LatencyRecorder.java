@@ -0,0 +1,73 @@
+package com.example.m335.data;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Collects latency samples for benchmark tests and reports throughput and percentiles.
+ */
+class LatencyRecorder {
+    private long[] samples;
+    private int count = 0;
+
+    /**
+     * Constructor reserves space for the expected number of samples
+     *
+     * @param expectedSamples Number of samples that will be recorded
+     */
+    LatencyRecorder(int expectedSamples) {
+        samples = new long[Math.max(1, expectedSamples)];
+    }
+
+    /**
+     * Records one sample, thread-safe for use from completion callbacks
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * Gets the number of recorded samples
+     *
+     * @return The sample count
+     */
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets a percentile of the recorded samples
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The latency in nanoseconds
+     */
+    synchronized long percentileNanos(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Formats a one-line report for the test output
+     *
+     * @param label Name of the measured variant
+     * @param totalNanos Wall clock time of the whole run
+     * @return The report line
+     */
+    String report(String label, long totalNanos) {
+        double seconds = totalNanos / 1_000_000_000.0;
+        return String.format(Locale.ROOT,
+                "%s: %d ops, %.0f ops/s, p50 %.2f ms, p99 %.2f ms",
+                label, getCount(), getCount() / seconds,
+                percentileNanos(50) / 1_000_000.0, percentileNanos(99) / 1_000_000.0);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.m335.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteConstraintException;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Assessment;
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleWithAssessments;
+import com.example.m335.model.WeightedAverage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the weighted assessments of modules and for loading modules with their assessments.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleAssessmentTest {
+    private static final int BENCHMARK_MODULES = 5000;
+    private static final int ASSESSMENTS_PER_MODULE = 5;
+    // Room binds the keys of a relation in chunks of this size
+    private static final int RELATION_BATCH_SIZE = 999;
+    private static final String[] KINDS = {"Projekt", "Präsentation", "Test", "Bericht", "Portfolio"};
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ModuleDatabase database;
+    private ModuleDao moduleDao;
+    private AssessmentDao assessmentDao;
+    private final AtomicInteger selectCount = new AtomicInteger();
+    private Thread testThread;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        testThread = Thread.currentThread();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                .setQueryCallback(new RoomDatabase.QueryCallback() {
+                    @Override
+                    public void onQuery(@NonNull String sqlQuery, @NonNull List<Object> bindArgs) {
+                        // Only the reads of the test, not the refreshes of the invalidation tracker
+                        if (Thread.currentThread() == testThread
+                                && sqlQuery.trim().toUpperCase().startsWith("SELECT")) {
+                            selectCount.incrementAndGet();
+                        }
+                    }
+                }, DIRECT_EXECUTOR)
+                .build();
+        moduleDao = database.moduleDao();
+        assessmentDao = database.assessmentDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: Assessments need their module, survive a module upsert and are
+     * deleted with the module
+     */
+    @Test
+    public void testForeignKeyAndCascade() {
+        try {
+            assessmentDao.insert(new Assessment("M999", "Projekt", 1));
+            fail("An assessment of a missing module must be rejected");
+        } catch (SQLiteConstraintException expected) {
+            // The foreign key is enforced
+        }
+
+        moduleDao.insert(new Module("M335", "Mobile Apps"));
+        assessmentDao.insertAll(Arrays.asList(
+                new Assessment("M335", "Projekt", 2), new Assessment("M335", "Präsentation", 1)));
+
+        // Inserting an existing module updates it in place and keeps its assessments
+        moduleDao.insert(new Module("M335", "Mobile Apps erstellen"));
+        ModuleWithAssessments loaded = assessmentDao.getModuleWithAssessments("M335");
+        assertEquals("Mobile Apps erstellen", loaded.getModule().getModuleTitle());
+        assertEquals(2, loaded.getAssessments().size());
+        assertEquals("Projekt", loaded.getAssessments().get(0).getKind());
+
+        moduleDao.deleteByNumbers(Arrays.asList("M335"));
+        assertTrue(assessmentDao.getAssessments("M335").isEmpty());
+        assertNull(assessmentDao.getModuleWithAssessments("M335"));
+    }
+
+    /**
+     * Test case 2: The weighted average computed in SQL matches the one computed in Java
+     */
+    @Test
+    public void testWeightedAverageInSql() {
+        Module m335 = new Module("M335", "Mobile Apps");
+        m335.setZpHundredths(400);
+        m335.setLbHundredths(500);
+        moduleDao.insert(m335);
+        Assessment project = new Assessment("M335", "Projekt", 2);
+        project.setGradeHundredths(600);
+        assessmentDao.insert(project);
+        // (400 + 500 + 2 * 600) / 4
+        assertEquals(525, assessmentDao.getWeightedAverage("M335").getAverageHundredths());
+
+        // A missing grade leaves the module without an average
+        assessmentDao.insert(new Assessment("M335", "Präsentation", 1));
+        assertEquals(Module.NO_GRADE, assessmentDao.getWeightedAverage("M335").getAverageHundredths());
+        assertNull(assessmentDao.getWeightedAverage("M999"));
+
+        seed(300, new Random(22));
+        Map<String, Integer> sqlAverages = new HashMap<>();
+        for (WeightedAverage average : assessmentDao.getWeightedAverages()) {
+            sqlAverages.put(average.getModuleNumber(), average.getAverageHundredths());
+        }
+        List<ModuleWithAssessments> modules = assessmentDao.getAllModulesWithAssessments();
+        assertEquals(301, modules.size());
+        assertEquals(modules.size(), sqlAverages.size());
+        int graded = 0;
+        for (ModuleWithAssessments module : modules) {
+            int expected = module.getWeightedAverageHundredths();
+            assertEquals(module.getModule().getModuleNumber(), expected,
+                    (int) sqlAverages.get(module.getModule().getModuleNumber()));
+            if (expected != Module.NO_GRADE) {
+                graded++;
+            }
+        }
+        assertTrue("Some modules must be fully graded", graded > 0);
+    }
+
+    /**
+     * Test case 3: Loading 5000 modules with 5 assessments each takes a fixed number of queries;
+     * loading the assessments per module takes one query per module
+     */
+    @Test
+    public void testLoadingQueryCount() {
+        seed(BENCHMARK_MODULES, new Random(5));
+
+        // One lookup per module, the N+1 pattern
+        selectCount.set(0);
+        List<Module> modules = moduleDao.getAllModulesNow();
+        int perModuleAssessments = 0;
+        for (Module module : modules) {
+            perModuleAssessments += assessmentDao.getAssessments(module.getModuleNumber()).size();
+        }
+        int perModuleQueries = selectCount.get();
+
+        // Room's relation: one query for the modules, one per 999 modules for the assessments
+        selectCount.set(0);
+        List<ModuleWithAssessments> related =
+                assessmentDao.getFirstModulesWithAssessments(BENCHMARK_MODULES);
+        int relationQueries = selectCount.get();
+
+        // Both tables read once and joined in memory
+        selectCount.set(0);
+        List<ModuleWithAssessments> joined = assessmentDao.getAllModulesWithAssessments();
+        int joinedQueries = selectCount.get();
+
+        int expectedAssessments = BENCHMARK_MODULES * ASSESSMENTS_PER_MODULE;
+        assertEquals(expectedAssessments, perModuleAssessments);
+        assertEquals(expectedAssessments, countAssessments(related));
+        assertEquals(expectedAssessments, countAssessments(joined));
+        assertEquals("Queries loading per module", BENCHMARK_MODULES + 1, perModuleQueries);
+        assertTrue("Relation took " + relationQueries + " queries",
+                relationQueries <= 1 + (BENCHMARK_MODULES + RELATION_BATCH_SIZE - 1) / RELATION_BATCH_SIZE);
+        assertEquals("Queries loading joined", 2, joinedQueries);
+        for (int i = 0; i < joined.size(); i++) {
+            assertEquals(related.get(i).getModule().getModuleNumber(),
+                    joined.get(i).getModule().getModuleNumber());
+            assertEquals(related.get(i).getWeightedAverageHundredths(),
+                    joined.get(i).getWeightedAverageHundredths());
+        }
+    }
+
+    /**
+     * Test case 4: A weight below the minimum is rejected by the entity and by the table
+     */
+    @Test
+    public void testWeightBelowMinimumIsRejected() {
+        try {
+            new Assessment("M335", "Projekt", 0);
+            fail("A weight of 0 must be rejected");
+        } catch (IllegalArgumentException expected) {
+            // The constructor checks the weight
+        }
+        Assessment project = new Assessment("M335", "Projekt", Assessment.MIN_WEIGHT);
+        try {
+            project.setWeight(-1);
+            fail("A negative weight must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(Assessment.MIN_WEIGHT, project.getWeight());
+        }
+
+        // Writes around the entity are stopped by the triggers
+        moduleDao.insert(new Module("M335", "Mobile Apps"));
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        try {
+            db.execSQL("INSERT INTO `assessments` (`moduleNumber`, `kind`, `weight`) VALUES ('M335', 'Projekt', 0)");
+            fail("The table must reject a weight of 0");
+        } catch (SQLiteConstraintException expected) {
+            // RAISE(ABORT) in the insert trigger
+        }
+        assessmentDao.insert(project);
+        try {
+            db.execSQL("UPDATE `assessments` SET `weight` = 0 WHERE `kind` = 'Projekt'");
+            fail("The table must reject an update to a weight of 0");
+        } catch (SQLiteConstraintException expected) {
+            // RAISE(ABORT) in the update trigger
+        }
+        assertEquals(Assessment.MIN_WEIGHT, assessmentDao.getAssessments("M335").get(0).getWeight());
+    }
+
+    /**
+     * Inserts modules with up to five assessments each; in the benchmark every module gets five
+     *
+     * @param count The number of modules
+     * @param random The source of grades and weights
+     */
+    private void seed(int count, Random random) {
+        List<Module> modules = new ArrayList<>(count);
+        List<Assessment> assessments = new ArrayList<>();
+        boolean full = count == BENCHMARK_MODULES;
+        for (int i = 0; i < count; i++) {
+            Module module = new Module("A" + (1000 + i), "Modul " + i);
+            module.setZpHundredths(100 + random.nextInt(501));
+            module.setLbHundredths(100 + random.nextInt(501));
+            modules.add(module);
+
+            int assessmentCount = full ? ASSESSMENTS_PER_MODULE : random.nextInt(ASSESSMENTS_PER_MODULE + 1);
+            for (int a = 0; a < assessmentCount; a++) {
+                Assessment assessment = new Assessment(module.getModuleNumber(), KINDS[a], 1 + random.nextInt(4));
+                // Every tenth assessment is not graded yet
+                if (random.nextInt(10) != 0) {
+                    assessment.setGradeHundredths(100 + random.nextInt(501));
+                }
+                assessments.add(assessment);
+            }
+        }
+        moduleDao.insertAll(modules);
+        assessmentDao.insertAll(assessments);
+    }
+
+    private static int countAssessments(List<ModuleWithAssessments> modules) {
+        int count = 0;
+        for (ModuleWithAssessments module : modules) {
+            count += module.getAssessments().size();
+        }
+        return count;
+    }
+}
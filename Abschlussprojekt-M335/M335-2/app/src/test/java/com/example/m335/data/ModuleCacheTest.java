@@ -0,0 +1,172 @@
+package com.example.m335.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the module cache and its invalidation.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleCacheTest {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private static final int REPEATED_LOOKUPS = 20_000;
+
+    private final AtomicInteger moduleQueries = new AtomicInteger();
+    private ModuleDatabase database;
+    private ModuleDao moduleDao;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        // The change triggers number the writes that table notifications are checked against
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                .allowMainThreadQueries()
+                .setQueryCallback(new RoomDatabase.QueryCallback() {
+                    @Override
+                    public void onQuery(@NonNull String sqlQuery, @NonNull List<Object> bindArgs) {
+                        if (sqlQuery.trim().toUpperCase().startsWith("SELECT")
+                                && sqlQuery.contains("FROM modules")) {
+                            moduleQueries.incrementAndGet();
+                        }
+                    }
+                }, DIRECT_EXECUTOR)
+                .build();
+        moduleDao = database.moduleDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: The least recently used module is evicted and lookups are counted
+     */
+    @Test
+    public void testLruEvictionAndCounters() {
+        ModuleCache cache = new ModuleCache(2);
+        cache.putAllIfCurrent(Arrays.asList(new Module("M100", "Erstes Modul"),
+                new Module("M101", "Zweites Modul")), cache.getGeneration());
+
+        // Touching M100 makes M101 the eldest entry
+        assertNotNull(cache.get("M100"));
+        cache.putAllIfCurrent(Collections.singletonList(new Module("M102", "Drittes Modul")),
+                cache.getGeneration());
+
+        assertNull(cache.get("M101"));
+        assertNotNull(cache.get("M102"));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Test case 2: Queue writes and their table notifications remove only the written modules,
+     * a notification of a write around the queue removes the modules it changed
+     */
+    @Test
+    public void testInvalidation() {
+        moduleDao.insertAll(Arrays.asList(new Module("M100", "Erstes Modul"),
+                new Module("M101", "Zweites Modul"), new Module("M102", "Drittes Modul")));
+        ModuleSyncDao syncDao = database.moduleSyncDao();
+        ModuleCache cache = new ModuleCache(ModuleCache.DEFAULT_CAPACITY);
+        ModuleWriteQueue writeQueue = new ModuleWriteQueue(moduleDao, DIRECT_EXECUTOR);
+        writeQueue.addChangeListener(cache);
+        // The first notification clears the cache and reads the change sequence number
+        cache.onTableChanged(syncDao);
+        cache.load("M100", moduleDao);
+        cache.load("M101", moduleDao);
+        cache.load("M102", moduleDao);
+
+        Module updated = new Module("M100", "Erstes Modul geändert");
+        writeQueue.update(updated).join();
+        assertNull(cache.get("M100"));
+        assertNotNull("Unrelated modules stay cached", cache.get("M101"));
+        cache.onTableChanged(syncDao);
+        assertNotNull("The notification of a queued update keeps other modules", cache.get("M101"));
+        assertEquals(2, cache.size());
+        assertEquals("Erstes Modul geändert", cache.load("M100", moduleDao).getModuleTitle());
+
+        // A write around the queue is only seen through the table notification
+        moduleDao.deleteByNumbers(Collections.singletonList("M101"));
+        cache.onTableChanged(syncDao);
+        assertEquals(2, cache.size());
+        assertNull(cache.load("M101", moduleDao));
+
+        // A notification merged with a queue batch removes the module written around the queue
+        writeQueue.insert(new Module("M103", "Viertes Modul")).join();
+        moduleDao.deleteByNumbers(Collections.singletonList("M100"));
+        cache.onTableChanged(syncDao);
+        assertEquals(1, cache.size());
+        assertNull(cache.load("M100", moduleDao));
+        assertNotNull(cache.get("M102"));
+    }
+
+    /**
+     * Test case 3: A row read before an invalidation is not cached afterwards
+     */
+    @Test
+    public void testStaleLoadIsDropped() {
+        ModuleCache cache = new ModuleCache(ModuleCache.DEFAULT_CAPACITY);
+        long generation = cache.getGeneration();
+        Module stale = new Module("M100", "Alter Titel");
+
+        cache.invalidate("M100");
+        cache.putAllIfCurrent(Collections.singletonList(stale), generation);
+
+        assertNull(cache.get("M100"));
+    }
+
+    /**
+     * Test case 4: Repeated lookups of a working set that fits the cache query each module once
+     */
+    @Test
+    public void testRepeatedLookupsQueryOnce() {
+        List<Module> modules = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            modules.add(new Module("M" + (1000 + i), "Modul " + i));
+        }
+        moduleDao.insertAll(modules);
+        ModuleCache cache = new ModuleCache(ModuleCache.DEFAULT_CAPACITY);
+        moduleQueries.set(0);
+
+        // The working set of 100 modules fits into the cache
+        for (int i = 0; i < REPEATED_LOOKUPS; i++) {
+            String number = "M" + (1000 + i % 100);
+            if (cache.get(number) == null) {
+                assertNotNull(cache.load(number, moduleDao));
+            }
+        }
+
+        assertEquals("Queries for " + REPEATED_LOOKUPS + " lookups", 100, moduleQueries.get());
+        assertEquals(100, cache.getMissCount());
+        assertEquals(REPEATED_LOOKUPS - 100, cache.getHitCount());
+    }
+}
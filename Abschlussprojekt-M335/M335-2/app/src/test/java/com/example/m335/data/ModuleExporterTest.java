@@ -0,0 +1,115 @@
+package com.example.m335.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trip tests for the cursor-based module export.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleExporterTest {
+    private ModuleDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+
+        Module quoted = new Module("M335", "Mobile \"Apps\", erstellen");
+        quoted.setZpNote(5.25f);
+        quoted.setLbNote(4.0f);
+        Module multiline = new Module("M1000", "Zeile eins\nZeile zwei – ä");
+        multiline.setZpNote(6.0f);
+        database.moduleDao().insertAll(Arrays.asList(
+                quoted, multiline, new Module("M99", "Ohne Noten")));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: A CSV export imports back to the same modules in natural order
+     */
+    @Test
+    public void testCsvRoundTrip() throws IOException {
+        String csv = export(ModuleFileFormat.CSV);
+        assertTrue(csv.startsWith("moduleNumber,moduleTitle,zpNote,lbNote\nM99,Ohne Noten,,\n"));
+        assertTrue(csv.contains("M335,\"Mobile \"\"Apps\"\", erstellen\",5.25,4.00\n"));
+        assertRoundTrip(csv, ModuleFileFormat.CSV);
+    }
+
+    /**
+     * Test case 2: A JSON export imports back to the same modules
+     */
+    @Test
+    public void testJsonRoundTrip() throws IOException {
+        String json = export(ModuleFileFormat.JSON);
+        assertTrue(json.contains("\"moduleTitle\": \"Zeile eins\\u000aZeile zwei – ä\""));
+        assertTrue(json.contains("\"zpNote\": null"));
+        assertRoundTrip(json, ModuleFileFormat.JSON);
+    }
+
+    private String export(ModuleFileFormat format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery(ModuleExporter.EXPORT_QUERY))) {
+            assertEquals(3, ModuleExporter.export(cursor, format, Channels.newChannel(output)));
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Imports an export and compares it with the stored modules
+     *
+     * @param text The exported file
+     * @param format The file format
+     */
+    private void assertRoundTrip(String text, ModuleFileFormat format) throws IOException {
+        final List<Module> imported = new ArrayList<>();
+        ModuleImporter importer = new ModuleImporter(new ModuleImporter.BatchSink() {
+            @Override
+            public void write(List<Module> modules) {
+                imported.addAll(modules);
+            }
+        }, 2);
+        ModuleImporter.Result result = importer.importModules(ModuleImporter.createReader(
+                Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))),
+                format));
+        assertEquals(0, result.getRejectedCount());
+
+        List<Module> stored = database.moduleDao().getAllModulesNow();
+        assertEquals(stored.size(), imported.size());
+        for (int i = 0; i < stored.size(); i++) {
+            assertEquals(stored.get(i).getModuleNumber(), imported.get(i).getModuleNumber());
+            assertEquals(stored.get(i).getModuleTitle(), imported.get(i).getModuleTitle());
+            assertEquals(stored.get(i).getZpHundredths(), imported.get(i).getZpHundredths());
+            assertEquals(stored.get(i).getLbHundredths(), imported.get(i).getLbHundredths());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.m335.data;
+
+import com.example.m335.model.Module;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic synthetic modules for load tests.
+ * The content of a module depends only on the seed, its index and its revision,
+ * so the expected final state of a table can be recomputed after a run.
+ */
+class ModuleGenerator {
+    private final String prefix;
+    private final long seed;
+
+    /**
+     * Constructor with the module number prefix and the seed of the content
+     *
+     * @param prefix Module number prefix, keeps the rows of different runs apart
+     * @param seed Seed of titles and grades
+     */
+    ModuleGenerator(String prefix, long seed) {
+        this.prefix = prefix;
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the module number of an index
+     *
+     * @param index The module index
+     * @return The module number
+     */
+    String moduleNumber(int index) {
+        return prefix + (1000 + index);
+    }
+
+    /**
+     * Creates a revision of a module
+     *
+     * @param index The module index
+     * @param revision The revision, 0 for the first version
+     * @return The module
+     */
+    Module module(int index, int revision) {
+        long hash = mix(seed ^ (index * 0x9E3779B97F4A7C15L) ^ (revision * 0xC2B2AE3D27D4EB4FL));
+        Module module = new Module(moduleNumber(index), "Modul " + index + " Revision " + revision);
+        module.setZpHundredths(100 + (int) ((hash >>> 1) % 501));
+        // Every eighth module has no LB grade yet
+        if ((hash & 7) != 0) {
+            module.setLbHundredths(100 + (int) ((hash >>> 20) % 501));
+        }
+        return module;
+    }
+
+    /**
+     * Creates the first revision of consecutive modules
+     *
+     * @param from The first index
+     * @param count The number of modules
+     * @return The modules
+     */
+    List<Module> modules(int from, int count) {
+        List<Module> modules = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            modules.add(module(i, 0));
+        }
+        return modules;
+    }
+
+    /**
+     * Checks that a stored module has the content of a revision
+     *
+     * @param stored The stored module, may be null
+     * @param index The module index
+     * @param revision The expected revision
+     * @return true if title and grades match
+     */
+    boolean matches(Module stored, int index, int revision) {
+        Module expected = module(index, revision);
+        return stored != null
+                && expected.getModuleTitle().equals(stored.getModuleTitle())
+                && expected.getZpHundredths() == stored.getZpHundredths()
+                && expected.getLbHundredths() == stored.getLbHundredths();
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads the bits of the input
+     *
+     * @param z The input
+     * @return The mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.m335.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the stored grade sum: its triggers, the queries by average and their query plans.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleGradeSumTest {
+    private static final String GRADE_INDEX = "index_modules_gradeSumHundredths_sortKey_moduleNumber";
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ModuleDatabase database;
+    private ModuleDao moduleDao;
+    private Thread testThread;
+    // Last statement read by the test, with its arguments
+    private String lastQuery;
+    private List<Object> lastArgs;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        testThread = Thread.currentThread();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                .setQueryCallback(new RoomDatabase.QueryCallback() {
+                    @Override
+                    public void onQuery(@NonNull String sqlQuery, @NonNull List<Object> bindArgs) {
+                        if (Thread.currentThread() == testThread
+                                && sqlQuery.trim().toUpperCase().startsWith("SELECT")) {
+                            lastQuery = sqlQuery;
+                            lastArgs = new ArrayList<>(bindArgs);
+                        }
+                    }
+                }, DIRECT_EXECUTOR)
+                .build();
+        moduleDao = database.moduleDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: The triggers keep the grade sum correct for writes that bypass the entity
+     */
+    @Test
+    public void testTriggersMaintainGradeSum() {
+        moduleDao.insert(createModule("M335", 450, 550));
+        assertEquals(1000, moduleDao.getModuleByNumberNow("M335").getGradeSumHundredths());
+
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        db.execSQL("INSERT INTO modules (moduleNumber, moduleTitle, zpHundredths, lbHundredths, sortKey) "
+                + "VALUES ('M106', 'Datenbanken abfragen', 400, 375, 0)");
+        assertEquals(775, moduleDao.getModuleByNumberNow("M106").getGradeSumHundredths());
+
+        db.execSQL("UPDATE modules SET lbHundredths = -1 WHERE moduleNumber = 'M106'");
+        assertEquals(Module.NO_GRADE, moduleDao.getModuleByNumberNow("M106").getGradeSumHundredths());
+
+        // A wrong sum written directly is corrected
+        db.execSQL("UPDATE modules SET gradeSumHundredths = 42 WHERE moduleNumber = 'M335'");
+        assertEquals(1000, moduleDao.getModuleByNumberNow("M335").getGradeSumHundredths());
+
+        // Updates through the DAO write the sum themselves, the full-text entry stays searchable
+        Module edited = createModule("M335", 600, 600);
+        moduleDao.update(edited);
+        Module stored = moduleDao.getModuleByNumberNow("M335");
+        assertEquals(1200, stored.getGradeSumHundredths());
+        assertEquals(edited.getGradeSumHundredths(), stored.getGradeSumHundredths());
+        assertEquals(1, moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression("M335")));
+    }
+
+    /**
+     * Test case 2: Range filter and best/worst modules match the averages computed in Java
+     */
+    @Test
+    public void testQueriesByAverage() {
+        insertModules(300);
+        List<Module> all = moduleDao.getAllModulesNow();
+
+        List<Module> failed = moduleDao.getModulesInAverageRange(0, Module.PASSING_GRADE_HUNDREDTHS);
+        int expectedFailed = 0;
+        for (Module module : all) {
+            if (module.hasAllGrades() && module.getAverageGradeValue() < Module.PASSING_GRADE) {
+                expectedFailed++;
+            }
+        }
+        assertTrue(expectedFailed > 0);
+        assertEquals(expectedFailed, failed.size());
+        for (int i = 0; i < failed.size(); i++) {
+            assertTrue(failed.get(i).getAverageGradeValue() < Module.PASSING_GRADE);
+            if (i > 0) {
+                assertTrue(failed.get(i - 1).getGradeSumHundredths() <= failed.get(i).getGradeSumHundredths());
+            }
+        }
+
+        List<Module> best = moduleDao.getBestModules(5);
+        List<Module> worst = moduleDao.getWorstModules(5);
+        assertEquals(5, best.size());
+        assertEquals(5, worst.size());
+        for (Module module : all) {
+            if (module.hasAllGrades()) {
+                assertTrue(module.getGradeSumHundredths() <= best.get(0).getGradeSumHundredths());
+                assertTrue(module.getGradeSumHundredths() >= worst.get(0).getGradeSumHundredths());
+            }
+        }
+        // Modules without average are neither best nor worst
+        assertTrue(worst.get(0).hasAllGrades());
+        assertTrue(best.get(4).hasAllGrades());
+    }
+
+    /**
+     * Test case 3: Every query by average is a search or scan of the grade index,
+     * without sorting in a temporary tree
+     */
+    @Test
+    public void testQueriesUseGradeIndex() {
+        insertModules(2_000);
+        Module key = moduleDao.getModuleByNumberNow("M1000");
+        int sum = key.getGradeSumHundredths();
+
+        moduleDao.getFirstModulesByGrade(50);
+        assertUsesGradeIndex();
+        moduleDao.getFirstModulesByGradeDescending(50);
+        assertUsesGradeIndex();
+        moduleDao.getModulesFromByGrade(sum, key.getSortKey(), key.getModuleNumber(), 50);
+        assertUsesGradeIndex();
+        moduleDao.getModulesFromByGradeDescending(sum, key.getSortKey(), key.getModuleNumber(), 50);
+        assertUsesGradeIndex();
+        moduleDao.getModulesAboveGrade(sum, key.getSortKey(), key.getModuleNumber(), 50);
+        assertUsesGradeIndex();
+        moduleDao.getModulesBelowGrade(sum, key.getSortKey(), key.getModuleNumber(), 50);
+        assertUsesGradeIndex();
+        moduleDao.countModulesAboveGrade(sum, key.getSortKey(), key.getModuleNumber());
+        assertUsesGradeIndex();
+        moduleDao.countModulesBelowGrade(sum, key.getSortKey(), key.getModuleNumber());
+        assertUsesGradeIndex();
+        moduleDao.getModulesInAverageRange(100, Module.PASSING_GRADE_HUNDREDTHS);
+        assertUsesGradeIndex();
+        moduleDao.getBestModules(10);
+        assertUsesGradeIndex();
+        moduleDao.getWorstModules(10);
+        assertUsesGradeIndex();
+    }
+
+    /**
+     * Explains the last query of the test with its arguments and checks the plan
+     */
+    private void assertUsesGradeIndex() {
+        String query = lastQuery;
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery(
+                "EXPLAIN QUERY PLAN " + query, lastArgs.toArray()))) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        assertTrue(query + "\n" + plan, plan.indexOf(GRADE_INDEX) >= 0);
+        assertTrue(query + "\n" + plan, plan.indexOf("TEMP B-TREE") < 0);
+    }
+
+    /**
+     * Inserts modules with grades in half steps, every eighth module without LB grade
+     *
+     * @param count The number of modules
+     */
+    private void insertModules(int count) {
+        List<Module> modules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            modules.add(createModule("M" + i, 100 + (i % 11) * 50,
+                    i % 8 == 0 ? Module.NO_GRADE : 200 + (i % 9) * 50));
+        }
+        moduleDao.insertAll(modules);
+    }
+
+    private static Module createModule(String moduleNumber, int zpHundredths, int lbHundredths) {
+        Module module = new Module(moduleNumber, "Modul " + moduleNumber);
+        module.setZpHundredths(zpHundredths);
+        module.setLbHundredths(lbHundredths);
+        return module;
+    }
+}
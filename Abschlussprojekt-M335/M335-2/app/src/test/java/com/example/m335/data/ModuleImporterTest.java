@@ -0,0 +1,220 @@
+package com.example.m335.data;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ResourceValidationMessages;
+import com.example.m335.model.ValidationMessages;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the streaming module import, with the validation messages of the app resources.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleImporterTest {
+    private static final int LARGE_IMPORT_ROWS = 1_000_000;
+
+    private final ValidationMessages messages = new ResourceValidationMessages(
+            ApplicationProvider.getApplicationContext().getResources());
+
+    /**
+     * Test case 1: CSV with header, quoting, CRLF line ends and empty grades
+     */
+    @Test
+    public void testCsvImport() throws IOException {
+        String csv = "\uFEFFmoduleTitle,moduleNumber,lbNote,zpNote\r\n"
+                + "\"Mobile Apps, \"\"Android\"\"\",M335,5.5,4.75\r\n"
+                + "\r\n"
+                + "\"Datenbanken\nabfragen\",M106,,\r\n"
+                + "Kurz,M1,4,4\r\n";
+        CollectingSink sink = new CollectingSink();
+        ModuleImporter.Result result = new ModuleImporter(sink, 10, messages)
+                .importModules(new ModuleCsvReader(channelOf(csv), 16));
+
+        assertEquals(2, result.getImportedCount());
+        assertEquals(1, result.getRejectedCount());
+        assertEquals("Zeile 6: Modulnummer muss mindestens 4 Zeichen lang sein", result.getErrors().get(0));
+
+        Module m335 = sink.modules.get(0);
+        assertEquals("M335", m335.getModuleNumber());
+        assertEquals("Mobile Apps, \"Android\"", m335.getModuleTitle());
+        assertEquals(475, m335.getZpHundredths());
+        assertEquals(550, m335.getLbHundredths());
+
+        Module m106 = sink.modules.get(1);
+        assertEquals("Datenbanken\nabfragen", m106.getModuleTitle());
+        assertFalse(m106.hasAllGrades());
+    }
+
+    /**
+     * Test case 2: JSON with escapes, string and number grades and unknown members
+     */
+    @Test
+    public void testJsonImport() throws IOException {
+        String json = "[\n"
+                + "  {\"moduleNumber\": \"M335\", \"moduleTitle\": \"Mobile \\\"Apps\\\" \\u00e4\","
+                + " \"zpNote\": 5.25, \"lbNote\": \"6\", \"tags\": [\"a\", {\"b\": \"]\"}]},\n"
+                + "  {\"moduleNumber\": \"M106\", \"moduleTitle\": \"Datenbanken\", \"zpNote\": null},\n"
+                + "  {\"moduleNumber\": \"M117\", \"moduleTitle\": \"Netzwerk\", \"zpNote\": 7}\n"
+                + "]";
+        CollectingSink sink = new CollectingSink();
+        ModuleImporter.Result result = new ModuleImporter(sink, 10, messages)
+                .importModules(new ModuleJsonReader(channelOf(json), 16));
+
+        assertEquals(2, result.getImportedCount());
+        assertEquals(1, result.getRejectedCount());
+        assertEquals("Zeile 4: ZP-Note muss zwischen 1.0 und 6.0 liegen", result.getErrors().get(0));
+        assertEquals("Mobile \"Apps\" ä", sink.modules.get(0).getModuleTitle());
+        assertEquals(525, sink.modules.get(0).getZpHundredths());
+        assertEquals(600, sink.modules.get(0).getLbHundredths());
+        assertEquals(Module.NO_GRADE, sink.modules.get(1).getZpHundredths());
+    }
+
+    /**
+     * Test case 3: Writes are split into batches of the configured size
+     */
+    @Test
+    public void testBatchSizes() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            csv.append("M").append(1000 + i).append(",Modul ").append(i).append(",4.5,5\n");
+        }
+        CollectingSink sink = new CollectingSink();
+        new ModuleImporter(sink, 10, messages)
+                .importModules(new ModuleCsvReader(channelOf(csv.toString()), 64));
+
+        assertEquals(3, sink.batchSizes.size());
+        assertEquals(Integer.valueOf(10), sink.batchSizes.get(0));
+        assertEquals(Integer.valueOf(10), sink.batchSizes.get(1));
+        assertEquals(Integer.valueOf(5), sink.batchSizes.get(2));
+    }
+
+    /**
+     * Test case 4: A malformed file stops the import with the line of the error
+     */
+    @Test
+    public void testMalformedFiles() {
+        try {
+            new ModuleImporter(new CollectingSink(), 10, messages)
+                    .importModules(new ModuleCsvReader(channelOf("M335,\"Mobile Apps\n"), 16));
+            fail("Unclosed quote must be reported");
+        } catch (IOException e) {
+            assertTrue(e instanceof ModuleFormatException);
+            assertTrue(e.getMessage().startsWith("Zeile 1"));
+        }
+        try {
+            new ModuleImporter(new CollectingSink(), 10, messages)
+                    .importModules(new ModuleJsonReader(channelOf("[{\"moduleNumber\" \"M335\"}]"), 16));
+            fail("Missing colon must be reported");
+        } catch (IOException e) {
+            assertTrue(e instanceof ModuleFormatException);
+        }
+    }
+
+    /**
+     * Test case 5: 1M CSV rows stream through the importer in full batches.
+     * The file is generated while it is read, so it is never held in memory.
+     */
+    @Test
+    public void testLargeImportStreamsInBatches() throws IOException {
+        final int[] written = new int[1];
+        final int[] batches = new int[1];
+        final int[] largestBatch = new int[1];
+        ModuleImporter.BatchSink countingSink = new ModuleImporter.BatchSink() {
+            @Override
+            public void write(List<Module> modules) {
+                written[0] += modules.size();
+                batches[0]++;
+                largestBatch[0] = Math.max(largestBatch[0], modules.size());
+            }
+        };
+
+        ModuleImporter.Result result = new ModuleImporter(
+                countingSink, ModuleImporter.DEFAULT_BATCH_SIZE, messages)
+                .importModules(new ModuleCsvReader(new GeneratedCsvChannel(LARGE_IMPORT_ROWS),
+                        ModuleImporter.BUFFER_SIZE));
+
+        assertEquals(LARGE_IMPORT_ROWS, result.getImportedCount());
+        assertEquals(LARGE_IMPORT_ROWS, written[0]);
+        assertEquals("Batches for " + LARGE_IMPORT_ROWS + " rows",
+                (LARGE_IMPORT_ROWS + ModuleImporter.DEFAULT_BATCH_SIZE - 1) / ModuleImporter.DEFAULT_BATCH_SIZE,
+                batches[0]);
+        assertEquals(ModuleImporter.DEFAULT_BATCH_SIZE, largestBatch[0]);
+    }
+
+    private static ReadableByteChannel channelOf(String text) {
+        return Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Sink keeping all modules and the size of every batch
+     */
+    private static class CollectingSink implements ModuleImporter.BatchSink {
+        final List<Module> modules = new ArrayList<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public void write(List<Module> batch) {
+            modules.addAll(batch);
+            batchSizes.add(batch.size());
+        }
+    }
+
+    /**
+     * Channel producing CSV rows on demand
+     */
+    private static class GeneratedCsvChannel implements ReadableByteChannel {
+        private final int rows;
+        private int nextRow = 0;
+        private ByteBuffer pending = ByteBuffer.allocate(0);
+
+        GeneratedCsvChannel(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(ByteBuffer target) {
+            if (!pending.hasRemaining()) {
+                if (nextRow == rows) {
+                    return -1;
+                }
+                StringBuilder chunk = new StringBuilder();
+                for (int i = 0; i < 1000 && nextRow < rows; i++, nextRow++) {
+                    chunk.append('M').append(100_000 + nextRow).append(",\"Modul ")
+                            .append(nextRow).append("\",").append(1 + nextRow % 5).append(".5,")
+                            .append(4 + nextRow % 3).append('\n');
+                }
+                pending = ByteBuffer.wrap(chunk.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            int count = Math.min(target.remaining(), pending.remaining());
+            ByteBuffer slice = pending.duplicate();
+            slice.limit(slice.position() + count);
+            target.put(slice);
+            pending.position(pending.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.m335.data;
+
+import android.content.Context;
+
+import androidx.paging.PagedList;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+import com.example.m335.viewmodel.ModuleViewModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the keyset-paged module list.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleKeysetDataSourceTest {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ModuleDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: Pages follow the module number order and placeholders cover the whole table
+     */
+    @Test
+    public void testPagesAreOrderedWithPlaceholders() {
+        insertModules(0, 500);
+
+        PagedList<Module> modules = buildPagedList();
+        assertEquals(500, modules.size());
+        assertEquals("M00000", modules.get(0).getModuleNumber());
+
+        // Scroll to the end, every loaded row must follow its predecessor
+        for (int i = 0; i < modules.size(); i++) {
+            modules.loadAround(i);
+        }
+        for (int i = 1; i < modules.size(); i++) {
+            Module previous = modules.get(i - 1);
+            Module current = modules.get(i);
+            if (previous != null && current != null) {
+                assertTrue(previous.getModuleNumber().compareTo(current.getModuleNumber()) < 0);
+            }
+        }
+        assertEquals("M00499", modules.get(499).getModuleNumber());
+    }
+
+    /**
+     * Test case 2: Module numbers are listed in natural order, not text order
+     */
+    @Test
+    public void testNaturalOrder() {
+        database.moduleDao().insertAll(Arrays.asList(
+                new Module("M1000", "Modul 1000"),
+                new Module("M335", "Mobile Apps erstellen"),
+                new Module("M99", "Modul 99"),
+                new Module("M106", "Datenbanken abfragen")));
+
+        PagedList<Module> modules = buildPagedList();
+        assertEquals("M99", modules.get(0).getModuleNumber());
+        assertEquals("M106", modules.get(1).getModuleNumber());
+        assertEquals("M335", modules.get(2).getModuleNumber());
+        assertEquals("M1000", modules.get(3).getModuleNumber());
+    }
+
+    /**
+     * Test case 3: The number of modules held in memory stays bounded while the table grows
+     * and while the whole list is scrolled through
+     */
+    @Test
+    public void testLoadedModulesStayBoundedAsTableGrows() {
+        int[] tableSizes = {1_000, 10_000, 50_000};
+        int inserted = 0;
+        int bound = ModuleViewModel.MAX_LOADED_MODULES + ModuleViewModel.PAGE_SIZE;
+
+        for (int tableSize : tableSizes) {
+            insertModules(inserted, tableSize - inserted);
+            inserted = tableSize;
+
+            PagedList<Module> modules = buildPagedList();
+            assertEquals(tableSize, modules.size());
+
+            int maxLoaded = 0;
+            for (int i = 0; i < tableSize; i += ModuleViewModel.PAGE_SIZE / 2) {
+                modules.loadAround(i);
+                maxLoaded = Math.max(maxLoaded, modules.getLoadedCount());
+            }
+
+            assertTrue("Loaded modules must not grow with the table of " + tableSize
+                            + " rows, was " + maxLoaded,
+                    maxLoaded <= bound);
+        }
+    }
+
+    /**
+     * Test case 4: The first page read by the warm-up is handed to the first list once,
+     * and not at all after a write
+     */
+    @Test
+    public void testPreloadedFirstPage() throws Exception {
+        insertModules(0, 300);
+        final int[] opened = {0};
+        ModuleWarmUp.warmUp(database, ModuleViewModel.createPagedListConfig().initialLoadSizeHint,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        opened[0]++;
+                    }
+                });
+        assertEquals(1, opened[0]);
+        ModuleKeysetDataSource.PreloadedPage preloaded = database.takePreloadedPage();
+        database.setPreloadedPage(preloaded);
+
+        PagedList<Module> modules = buildPagedList();
+        assertSame(preloaded.page.modules.get(0), modules.get(0));
+        assertEquals(300, modules.size());
+        assertNull(database.takePreloadedPage());
+
+        // A write between warm-up and first list makes the page outdated
+        ModuleWarmUp.warmUp(database, ModuleViewModel.createPagedListConfig().initialLoadSizeHint,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                });
+        database.getWriteQueue().insert(new Module("A1", "Neu vor allen")).get(5, TimeUnit.SECONDS);
+        modules = buildPagedList();
+        assertEquals(301, modules.size());
+        assertEquals("A1", modules.get(0).getModuleNumber());
+    }
+
+    /**
+     * Test case 5: Sorted by average, pages follow the grade sum in both directions,
+     * also when the list starts in the middle and is scrolled back up
+     */
+    @Test
+    public void testPagesSortedByAverage() {
+        List<Module> expected = new ArrayList<>();
+        for (int i = 0; i < 700; i++) {
+            Module module = new Module("M" + i, "Modul " + i);
+            // Few distinct averages, so that ties are broken by module number across pages
+            if (i % 9 != 0) {
+                module.setZpHundredths(300 + (i % 7) * 50);
+                module.setLbHundredths(400 + (i % 3) * 25);
+            }
+            expected.add(module);
+        }
+        database.moduleDao().insertAll(expected);
+        Collections.sort(expected, new Comparator<Module>() {
+            @Override
+            public int compare(Module a, Module b) {
+                if (a.getGradeSumHundredths() != b.getGradeSumHundredths()) {
+                    return Integer.compare(a.getGradeSumHundredths(), b.getGradeSumHundredths());
+                }
+                if (a.getSortKey() != b.getSortKey()) {
+                    return Long.compare(a.getSortKey(), b.getSortKey());
+                }
+                return a.getModuleNumber().compareTo(b.getModuleNumber());
+            }
+        });
+
+        assertListOrder(expected, buildPagedList(ModuleSortOrder.WORST_FIRST, null));
+        assertEquals(Module.NO_GRADE, expected.get(0).getGradeSumHundredths());
+        Module middle = expected.get(350);
+        assertListOrder(expected, buildPagedList(ModuleSortOrder.WORST_FIRST, middle));
+
+        Collections.reverse(expected);
+        assertListOrder(expected, buildPagedList(ModuleSortOrder.BEST_FIRST, null));
+        assertListOrder(expected, buildPagedList(ModuleSortOrder.BEST_FIRST, middle));
+    }
+
+    /**
+     * Scrolls through the whole list, from the initial position down and then up,
+     * and compares every loaded module with the expected order
+     *
+     * @param expected The modules in the expected order
+     * @param modules The paged list
+     */
+    private void assertListOrder(List<Module> expected, PagedList<Module> modules) {
+        assertEquals(expected.size(), modules.size());
+        int start = modules.getPositionOffset();
+        int checked = 0;
+        for (int i = start; i < modules.size(); i++) {
+            modules.loadAround(i);
+            assertEquals(expected.get(i).getModuleNumber(), modules.get(i).getModuleNumber());
+            checked++;
+        }
+        for (int i = start - 1; i >= 0; i--) {
+            modules.loadAround(i);
+            assertEquals(expected.get(i).getModuleNumber(), modules.get(i).getModuleNumber());
+            checked++;
+        }
+        assertEquals(expected.size(), checked);
+    }
+
+    /**
+     * Builds a paged list with the app's paging configuration on the calling thread
+     *
+     * @return The paged module list
+     */
+    private PagedList<Module> buildPagedList() {
+        return buildPagedList(ModuleSortOrder.NUMBER, null);
+    }
+
+    /**
+     * Builds a paged list in the given order on the calling thread
+     *
+     * @param sortOrder The order of the list
+     * @param initialKey The module to start at, null for the start of the list
+     * @return The paged module list
+     */
+    private PagedList<Module> buildPagedList(ModuleSortOrder sortOrder, Module initialKey) {
+        return new PagedList.Builder<>(new ModuleKeysetDataSource(database, sortOrder),
+                ModuleViewModel.createPagedListConfig())
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .setNotifyExecutor(DIRECT_EXECUTOR)
+                .setInitialKey(initialKey)
+                .build();
+    }
+
+    /**
+     * Inserts synthetic modules with zero-padded numbers in one transaction
+     *
+     * @param from The first index
+     * @param count The number of modules
+     */
+    private void insertModules(int from, int count) {
+        List<Module> modules = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            Module module = new Module(String.format("M%05d", i), "Modul " + i);
+            module.setZpNote(4.0f + (i % 5) * 0.5f);
+            modules.add(module);
+        }
+        database.moduleDao().insertAll(modules);
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.m335.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the database maintenance pass, run by hand on a database file.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleMaintenanceTest {
+    private static final String DATABASE_NAME = "maintenance_test.db";
+    private static final int MODULE_COUNT = 20_000;
+
+    private Context context;
+    private ModuleDatabase database;
+    private ModuleDao moduleDao;
+    private final ModuleGenerator generator = new ModuleGenerator("W", 25);
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        database = Room.databaseBuilder(context, ModuleDatabase.class, DATABASE_NAME)
+                .addMigrations(ModuleMigrations.ALL)
+                .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                .allowMainThreadQueries()
+                .build();
+        moduleDao = database.moduleDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * Test case 1: The first pass analyzes, switches the file to incremental vacuum and
+     * shrinks it; the full-text index still finds the modules afterwards
+     */
+    @Test
+    public void testFirstPassShrinksFile() {
+        moduleDao.insertAll(generator.modules(0, MODULE_COUNT));
+        deleteModules(0, MODULE_COUNT / 2);
+
+        ModuleMaintenance.Report report = new ModuleMaintenance(database).run();
+
+        assertFalse(report.toString(), report.isStopped());
+        assertTrue(report.isFullAnalyze());
+        assertTrue(report.isConvertedToIncremental());
+        assertTrue(report.isFtsRebuilt());
+        assertTrue(report.getBefore().getFreePages() > 0);
+        assertEquals(0, report.getAfter().getFreePages());
+        assertEquals(ModuleMaintenance.AUTO_VACUUM_INCREMENTAL, report.getAfter().getAutoVacuum());
+        assertTrue(report.toString(), report.getAfter().getFileBytes() < report.getBefore().getFileBytes());
+        assertFalse(report.isCheckpointBusy());
+        assertTrue(report.getAfter().getWalBytes() <= report.getBefore().getWalBytes());
+        assertTrue(countRows("SELECT COUNT(*) FROM sqlite_stat1") > 0);
+
+        // The rebuilt full-text index matches the remaining modules
+        Module kept = moduleDao.getModuleByNumberNow(generator.moduleNumber(MODULE_COUNT - 1));
+        assertNotNull(kept);
+        assertEquals(MODULE_COUNT / 2, moduleDao.getModuleCount());
+        assertEquals(1, moduleDao.countSearchResults(
+                ModuleSearchQuery.toMatchExpression(kept.getModuleNumber())));
+        assertEquals(0, moduleDao.countSearchResults(
+                ModuleSearchQuery.toMatchExpression(generator.moduleNumber(0))));
+    }
+
+    /**
+     * Test case 2: Later passes release free pages in steps without another full VACUUM
+     */
+    @Test
+    public void testLaterPassesVacuumIncrementally() {
+        moduleDao.insertAll(generator.modules(0, MODULE_COUNT));
+        new ModuleMaintenance(database).run();
+
+        deleteModules(0, MODULE_COUNT * 3 / 4);
+        ModuleMaintenance.Report report = new ModuleMaintenance(database).run();
+
+        assertFalse(report.isFullAnalyze());
+        assertFalse(report.isConvertedToIncremental());
+        assertFalse(report.isFtsRebuilt());
+        long freedBefore = report.getBefore().getFreePages();
+        assertTrue(report.toString(), freedBefore > ModuleMaintenance.VACUUM_STEP_PAGES);
+        assertEquals(freedBefore, report.getPagesFreed());
+        assertEquals(0, report.getAfter().getFreePages());
+        // Released pages are cut from the end of the file, pointer map pages may go with them
+        assertTrue(report.getAfter().getPageCount() <= report.getBefore().getPageCount() - freedBefore);
+
+        // A stopped pass leaves the rest for the next one
+        deleteModules(MODULE_COUNT * 3 / 4, MODULE_COUNT / 4);
+        ModuleMaintenance stopped = new ModuleMaintenance(database);
+        stopped.stop();
+        ModuleMaintenance.Report stoppedReport = stopped.run();
+        assertTrue(stoppedReport.isStopped());
+        assertEquals(0, stoppedReport.getPagesFreed());
+        assertTrue(stoppedReport.getAfter().getFreePages() > 0);
+    }
+
+    /**
+     * Test case 3: A conversion killed between the VACUUM and the rebuild of the full-text index
+     * is finished by the next pass
+     */
+    @Test
+    public void testInterruptedConversionRebuildsIndex() {
+        moduleDao.insertAll(generator.modules(0, MODULE_COUNT));
+        deleteModules(0, MODULE_COUNT / 2);
+
+        // The steps of convertToIncrementalVacuum up to the rebuild
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        ModuleMaintenance.markFtsRebuildPending(db);
+        db.execSQL("PRAGMA auto_vacuum = " + ModuleMaintenance.AUTO_VACUUM_INCREMENTAL);
+        db.execSQL("VACUUM");
+
+        ModuleMaintenance.Report report = new ModuleMaintenance(database).run();
+        assertFalse(report.isConvertedToIncremental());
+        assertTrue(report.toString(), report.isFtsRebuilt());
+        assertEquals(0, countRows("SELECT COUNT(*) FROM maintenance_state"));
+
+        Module kept = moduleDao.getModuleByNumberNow(generator.moduleNumber(MODULE_COUNT - 1));
+        assertNotNull(kept);
+        assertEquals(1, moduleDao.countSearchResults(
+                ModuleSearchQuery.toMatchExpression(kept.getModuleNumber())));
+        assertEquals(0, moduleDao.countSearchResults(
+                ModuleSearchQuery.toMatchExpression(generator.moduleNumber(0))));
+
+        // The flag was cleared together with the rebuild
+        assertFalse(new ModuleMaintenance(database).run().isFtsRebuilt());
+    }
+
+    /**
+     * Test case 4: A file created through the app's open helper factory starts in incremental
+     * vacuum mode, its first pass only releases the free pages
+     */
+    @Test
+    public void testNewFileStartsIncremental() {
+        database.close();
+        database = Room.databaseBuilder(context, ModuleDatabase.class, DATABASE_NAME)
+                .addMigrations(ModuleMigrations.ALL)
+                .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                .openHelperFactory(new ModuleOpenHelperFactory())
+                .allowMainThreadQueries()
+                .build();
+        moduleDao = database.moduleDao();
+
+        assertEquals(ModuleMaintenance.AUTO_VACUUM_INCREMENTAL, countRows("PRAGMA auto_vacuum"));
+        moduleDao.insertAll(generator.modules(0, MODULE_COUNT));
+        deleteModules(0, MODULE_COUNT / 2);
+
+        ModuleMaintenance.Report report = new ModuleMaintenance(database).run();
+        assertFalse(report.isConvertedToIncremental());
+        assertFalse(report.isFtsRebuilt());
+        assertTrue(report.toString(), report.getPagesFreed() > 0);
+        assertEquals(0, report.getAfter().getFreePages());
+    }
+
+    /**
+     * Deletes consecutive generated modules through the write queue
+     *
+     * @param from The first index
+     * @param count The number of modules
+     */
+    private void deleteModules(int from, int count) {
+        List<String> numbers = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            numbers.add(generator.moduleNumber(i));
+        }
+        database.getWriteQueue().deleteByNumbers(numbers).join();
+    }
+
+    private long countRows(String sql) {
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery(sql))) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.m335.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.os.Looper;
+
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.m335.model.Assessment;
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleSummary;
+import com.example.m335.model.ModuleSyncState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests for the schema migrations of the module database.
+ * Every step is validated against the schema Room exported for its target version.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleMigrationTest {
+    private static final String DATABASE_NAME = "migration_test.db";
+    private static final int LARGE_TABLE_ROWS = 500_000;
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), ModuleDatabase.class);
+
+    private Context context;
+    private ModuleDatabase database;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * Test case 1: Version 2 indexes the existing modules for full-text search
+     */
+    @Test
+    public void testMigrate1To2() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DATABASE_NAME, 1);
+        db.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 4.7, 5.3)");
+        db.execSQL("INSERT INTO `modules` VALUES ('M106', 'Datenbanken abfragen', NULL, NULL)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DATABASE_NAME, 2, true, ModuleMigrations.MIGRATION_1_2);
+
+        assertEquals(1, countMatches(db, "mobile"));
+        assertEquals(1, countMatches(db, "M106"));
+    }
+
+    /**
+     * Test case 2: Version 3 computes the natural sort key of the existing modules
+     */
+    @Test
+    public void testMigrate2To3() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DATABASE_NAME, 2);
+        db.execSQL("INSERT INTO `modules` VALUES ('M1000', 'Ohne Noten', NULL, NULL)");
+        db.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 4.7, 5.3)");
+        db.execSQL("INSERT INTO `modules` VALUES ('M99', 'Nur ZP', 3.25, NULL)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DATABASE_NAME, 3, true, ModuleMigrations.MIGRATION_2_3);
+
+        assertEquals(Arrays.asList("M99", "M335", "M1000"),
+                queryStrings(db, "SELECT `moduleNumber` FROM `modules` ORDER BY `sortKey`, `moduleNumber`"));
+        assertEquals(Module.computeSortKey("M335"),
+                queryLong(db, "SELECT `sortKey` FROM `modules` WHERE `moduleNumber` = 'M335'"));
+        // The full-text update triggers are back after the sort keys were filled
+        db.execSQL("UPDATE `modules` SET `moduleTitle` = 'Apps mit Datenbanken' WHERE `moduleNumber` = 'M99'");
+        assertEquals(1, countMatches(db, "datenbanken"));
+    }
+
+    /**
+     * Test case 3: Version 4 converts REAL grades to hundredths and keeps the row ids of the index
+     */
+    @Test
+    public void testMigrate3To4() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DATABASE_NAME, 3);
+        db.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 4.7, 5.3, ?)",
+                new Object[]{Module.computeSortKey("M335")});
+        db.execSQL("INSERT INTO `modules` VALUES ('M99', 'Nur ZP', 3.25, NULL, ?)",
+                new Object[]{Module.computeSortKey("M99")});
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DATABASE_NAME, 4, true, ModuleMigrations.MIGRATION_3_4);
+
+        assertEquals(470, queryLong(db, "SELECT `zpHundredths` FROM `modules` WHERE `moduleNumber` = 'M335'"));
+        assertEquals(530, queryLong(db, "SELECT `lbHundredths` FROM `modules` WHERE `moduleNumber` = 'M335'"));
+        assertEquals(325, queryLong(db, "SELECT `zpHundredths` FROM `modules` WHERE `moduleNumber` = 'M99'"));
+        assertEquals(Module.NO_GRADE,
+                queryLong(db, "SELECT `lbHundredths` FROM `modules` WHERE `moduleNumber` = 'M99'"));
+        assertEquals(Arrays.asList("M335"), queryStrings(db, "SELECT `modules`.`moduleNumber` FROM `modules` "
+                + "JOIN `modules_fts` ON `modules`.`rowid` = `modules_fts`.`docid` "
+                + "WHERE `modules_fts` MATCH 'mobile*'"));
+    }
+
+    /**
+     * Test case 4: Version 5 starts every existing module at row version 0
+     */
+    @Test
+    public void testMigrate4To5() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DATABASE_NAME, 4);
+        db.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 470, 530, 0)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DATABASE_NAME, 5, true, ModuleMigrations.MIGRATION_4_5);
+
+        assertEquals(0, queryLong(db, "SELECT `version` FROM `modules` WHERE `moduleNumber` = 'M335'"));
+    }
+
+    /**
+     * Test case 5: Version 6 adds the assessments table, unique per module and kind
+     * and with a weight of at least 1
+     */
+    @Test
+    public void testMigrate5To6() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DATABASE_NAME, 5);
+        db.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 470, 530, 0, 0)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DATABASE_NAME, 6, true, ModuleMigrations.MIGRATION_5_6);
+
+        db.execSQL("INSERT INTO `assessments` (`moduleNumber`, `kind`, `weight`) VALUES ('M335', 'Projekt', 2)");
+        assertEquals(Module.NO_GRADE, queryLong(db, "SELECT `gradeHundredths` FROM `assessments`"));
+        db.execSQL("INSERT OR IGNORE INTO `assessments` (`moduleNumber`, `kind`, `weight`) "
+                + "VALUES ('M335', 'Projekt', 1)");
+        assertEquals("A second assessment of the same kind is rejected",
+                1, queryLong(db, "SELECT COUNT(*) FROM `assessments`"));
+        try {
+            db.execSQL("INSERT INTO `assessments` (`moduleNumber`, `kind`, `weight`) VALUES ('M335', 'Test', 0)");
+            fail("A weight of 0 must be rejected");
+        } catch (SQLiteConstraintException expected) {
+            // The weight triggers are part of the migration
+        }
+    }
+
+    /**
+     * Test case 6: Version 7 fills the grade sum and keeps it correct with triggers
+     */
+    @Test
+    public void testMigrate6To7() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DATABASE_NAME, 6);
+        db.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 470, 530, 0, 0)");
+        db.execSQL("INSERT INTO `modules` VALUES ('M99', 'Nur ZP', 325, -1, 0, 0)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DATABASE_NAME, 7, true, ModuleMigrations.MIGRATION_6_7);
+
+        assertEquals(1000, queryLong(db, "SELECT `gradeSumHundredths` FROM `modules` WHERE `moduleNumber` = 'M335'"));
+        assertEquals(Module.NO_GRADE,
+                queryLong(db, "SELECT `gradeSumHundredths` FROM `modules` WHERE `moduleNumber` = 'M99'"));
+        db.execSQL("UPDATE `modules` SET `lbHundredths` = 500 WHERE `moduleNumber` = 'M99'");
+        assertEquals(825, queryLong(db, "SELECT `gradeSumHundredths` FROM `modules` WHERE `moduleNumber` = 'M99'"));
+        assertEquals(1, countMatches(db, "mobile"));
+    }
+
+    /**
+     * Test case 7: Version 8 records every existing module as pending change of the first sync
+     */
+    @Test
+    public void testMigrate7To8() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DATABASE_NAME, 7);
+        db.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 470, 530, 1000, 0, 0)");
+        db.execSQL("INSERT INTO `modules` VALUES ('M99', 'Nur ZP', 325, -1, -1, 0, 0)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DATABASE_NAME, 8, true, ModuleMigrations.MIGRATION_7_8);
+
+        assertEquals(2, queryLong(db, "SELECT COUNT(*) FROM `module_changes` WHERE `pending` = 1"));
+        assertEquals(queryLong(db, "SELECT MAX(`rowid`) FROM `modules`"), queryLong(db,
+                "SELECT `lastChangeSeq` FROM `sync_state` WHERE `id` = " + ModuleSyncState.ROW_ID));
+        // The change triggers keep a tombstone of a deleted module
+        db.execSQL("DELETE FROM `modules` WHERE `moduleNumber` = 'M99'");
+        assertEquals(1, queryLong(db, "SELECT `deleted` FROM `module_changes` WHERE `moduleNumber` = 'M99'"));
+    }
+
+    /**
+     * Test case 8: A version 1 database with REAL grades keeps its modules and grades
+     * when Room opens it with all migrations
+     */
+    @Test
+    public void testMigrateFromVersion1() throws Exception {
+        SupportSQLiteDatabase v1 = helper.createDatabase(DATABASE_NAME, 1);
+        v1.execSQL("INSERT INTO `modules` VALUES ('M335', 'Mobile Apps erstellen', 4.7, 5.3)");
+        v1.execSQL("INSERT INTO `modules` VALUES ('M1000', 'Ohne Noten', NULL, NULL)");
+        v1.execSQL("INSERT INTO `modules` VALUES ('M99', 'Nur ZP', 3.25, NULL)");
+        v1.close();
+
+        database = buildDatabase();
+        ModuleDao moduleDao = database.moduleDao();
+
+        List<Module> modules = moduleDao.getAllModulesNow();
+        assertEquals(3, modules.size());
+        assertEquals("M99", modules.get(0).getModuleNumber());
+        assertEquals(325, modules.get(0).getZpHundredths());
+        assertEquals(Module.NO_GRADE, modules.get(0).getLbHundredths());
+
+        Module m335 = modules.get(1);
+        assertEquals(470, m335.getZpHundredths());
+        assertEquals(530, m335.getLbHundredths());
+        assertEquals(5.0f, m335.getAverageGradeValue(), 0.0001f);
+        assertEquals(1000, m335.getGradeSumHundredths());
+        assertEquals(Module.NO_GRADE, modules.get(0).getGradeSumHundredths());
+        assertEquals(0, m335.getVersion());
+        assertFalse(modules.get(2).hasAllGrades());
+
+        // Every migrated module is a pending change of the first sync
+        ModuleSyncDao syncDao = database.moduleSyncDao();
+        assertEquals(3, syncDao.countPendingChanges());
+
+        // The grade sum triggers exist in a migrated database
+        database.getOpenHelper().getWritableDatabase().execSQL(
+                "UPDATE modules SET lbHundredths = 500 WHERE moduleNumber = 'M99'");
+        assertEquals(825, moduleDao.getModuleByNumberNow("M99").getGradeSumHundredths());
+        assertEquals("M99", moduleDao.getWorstModules(1).get(0).getModuleNumber());
+        database.getOpenHelper().getWritableDatabase().execSQL(
+                "UPDATE modules SET lbHundredths = -1 WHERE moduleNumber = 'M99'");
+        assertEquals(Module.NO_GRADE, moduleDao.getModuleByNumberNow("M99").getGradeSumHundredths());
+
+        // The assessments table exists and follows its module
+        AssessmentDao assessmentDao = database.assessmentDao();
+        assessmentDao.insert(new Assessment("M335", "Projekt", 2));
+        assertEquals(1, assessmentDao.getAssessments("M335").size());
+
+        // Full-text index and its triggers work on the rebuilt table
+        assertEquals(1, moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression("mobile")));
+        moduleDao.deleteByNumbers(Arrays.asList("M335"));
+        assertEquals(0, moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression("mobile")));
+        assertTrue(assessmentDao.getAssessments("M335").isEmpty());
+        // The change triggers keep a tombstone of the deleted module
+        assertTrue(syncDao.getChanges(Arrays.asList("M335")).get(0).isDeleted());
+        assertEquals(3, syncDao.countPendingChanges());
+
+        ModuleSummary summary = moduleDao.getSummaryNow();
+        assertEquals(2, summary.getModuleCount());
+        assertEquals(0, summary.getGradedCount());
+    }
+
+    /**
+     * Test case 9: 500k modules are migrated from version 1 in chunks with progress reports,
+     * and the progress is cleared once the database is open
+     */
+    @Test
+    public void testMigrateLargeVersion1Database() throws Exception {
+        SupportSQLiteDatabase v1 = helper.createDatabase(DATABASE_NAME, 1);
+        long expectedZpSum = 0;
+        int expectedMissing = 0;
+        v1.beginTransaction();
+        try {
+            SupportSQLiteStatement insert = v1.compileStatement("INSERT INTO `modules` VALUES (?, ?, ?, ?)");
+            for (int i = 0; i < LARGE_TABLE_ROWS; i++) {
+                insert.bindString(1, "M" + i);
+                insert.bindString(2, (i % 10 == 0 ? "Sicherheit " : "Modul ") + i);
+                if (i % 7 == 0) {
+                    insert.bindNull(3);
+                    expectedMissing++;
+                } else {
+                    // Grades from 1.0 to 6.0 in quarter steps
+                    int hundredths = 100 + (i % 21) * 25;
+                    insert.bindDouble(3, hundredths / 100.0f);
+                    expectedZpSum += hundredths;
+                }
+                insert.bindDouble(4, 4.5);
+                insert.executeInsert();
+            }
+            v1.setTransactionSuccessful();
+        } finally {
+            v1.endTransaction();
+        }
+        v1.close();
+
+        final List<ModuleMigrationRunner.Progress> reports = new ArrayList<>();
+        ModuleMigrationRunner.setProgressListener(new ModuleMigrationRunner.ProgressListener() {
+            @Override
+            public void onProgress(ModuleMigrationRunner.Progress progress) {
+                reports.add(progress);
+            }
+        });
+        database = buildDatabase();
+        ModuleMigrationRunner.openInBackground(database, DIRECT_EXECUTOR);
+        ModuleMigrationRunner.setProgressListener(null);
+
+        assertTrue(reports.get(reports.size() - 1).isFinished());
+        int gradeChunks = 0;
+        for (ModuleMigrationRunner.Progress progress : reports) {
+            if ("grades".equals(progress.getStep())) {
+                assertEquals(LARGE_TABLE_ROWS, progress.getTotal());
+                gradeChunks++;
+            }
+        }
+        assertEquals("Grade chunks among " + reports.size() + " progress reports",
+                LARGE_TABLE_ROWS / ModuleMigrationRunner.CHUNK_SIZE + 1, gradeChunks);
+        // An activity observing after the run must not see the last report again
+        shadowOf(Looper.getMainLooper()).idle();
+        assertNull(ModuleMigrationRunner.getProgress().getValue());
+
+        // Every row, grade and index entry survived the migration
+        ModuleDao moduleDao = database.moduleDao();
+        assertEquals(LARGE_TABLE_ROWS, moduleDao.getModuleCount());
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery(
+                "SELECT SUM(CASE WHEN zpHundredths >= 0 THEN zpHundredths END), "
+                        + "SUM(zpHundredths = -1), SUM(lbHundredths = 450), "
+                        + "SUM(sortKey = 0), "
+                        + "SUM(gradeSumHundredths = CASE WHEN zpHundredths >= 0 "
+                        + "THEN zpHundredths + lbHundredths ELSE -1 END) FROM modules"))) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(expectedZpSum, cursor.getLong(0));
+            assertEquals(expectedMissing, cursor.getInt(1));
+            assertEquals(LARGE_TABLE_ROWS, cursor.getInt(2));
+            assertEquals(0, cursor.getInt(3));
+            assertEquals(LARGE_TABLE_ROWS, cursor.getInt(4));
+        }
+        assertEquals(LARGE_TABLE_ROWS, database.moduleSyncDao().countPendingChanges());
+        assertEquals(LARGE_TABLE_ROWS / 10,
+                moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression("sicherheit")));
+        List<Module> first = moduleDao.getFirstModules(3);
+        assertEquals("M0", first.get(0).getModuleNumber());
+        assertEquals("M1", first.get(1).getModuleNumber());
+        assertEquals("M2", first.get(2).getModuleNumber());
+    }
+
+    /**
+     * Builds the Room database with all migrations and without a destructive fallback
+     *
+     * @return The database, opened on first access
+     */
+    private ModuleDatabase buildDatabase() {
+        return Room.databaseBuilder(context, ModuleDatabase.class, DATABASE_NAME)
+                .addMigrations(ModuleMigrations.ALL)
+                .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    private static long countMatches(SupportSQLiteDatabase db, String text) {
+        return queryLong(db, "SELECT COUNT(*) FROM `modules_fts` WHERE `modules_fts` MATCH '"
+                + ModuleSearchQuery.toMatchExpression(text) + "'");
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            assertTrue(sql, cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private static List<String> queryStrings(SupportSQLiteDatabase db, String sql) {
+        List<String> values = new ArrayList<>();
+        try (Cursor cursor = db.query(sql)) {
+            while (cursor.moveToNext()) {
+                values.add(cursor.getString(0));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.m335.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the full-text module search and its query plan.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleSearchTest {
+    private static final String[] TITLE_WORDS = {
+            "Mobile", "Apps", "Datenbanken", "Netzwerk", "Sicherheit", "Web", "Applikationen",
+            "Testen", "Objektorientiert", "Schnittstellen", "Betreiben", "Entwickeln"
+    };
+    private static final int SEARCH_MODULES = 10_000;
+    private static final String LIKE_QUERY = "SELECT * FROM modules "
+            + "WHERE moduleNumber LIKE ? OR moduleTitle LIKE ? ORDER BY moduleNumber";
+    // A plan step that reads every row of the modules table, with or without an index
+    private static final Pattern TABLE_SCAN = Pattern.compile("SCAN (TABLE )?modules( |$)",
+            Pattern.MULTILINE);
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ModuleDatabase database;
+    private ModuleDao moduleDao;
+    private Thread testThread;
+    // Last statement read by the test, with its arguments
+    private String lastQuery;
+    private List<Object> lastArgs;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        testThread = Thread.currentThread();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .setQueryCallback(new RoomDatabase.QueryCallback() {
+                    @Override
+                    public void onQuery(@NonNull String sqlQuery, @NonNull List<Object> bindArgs) {
+                        if (Thread.currentThread() == testThread
+                                && sqlQuery.trim().toUpperCase().startsWith("SELECT")) {
+                            lastQuery = sqlQuery;
+                            lastArgs = new ArrayList<>(bindArgs);
+                        }
+                    }
+                }, DIRECT_EXECUTOR)
+                .build();
+        moduleDao = database.moduleDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: User input becomes AND-combined prefix terms without FTS operators
+     */
+    @Test
+    public void testMatchExpression() {
+        assertEquals("mob* app*", ModuleSearchQuery.toMatchExpression("mob app"));
+        assertEquals("M33*", ModuleSearchQuery.toMatchExpression("  M33 "));
+        assertEquals("a* b*", ModuleSearchQuery.toMatchExpression("\"a\" -b"));
+        assertNull(ModuleSearchQuery.toMatchExpression(" *\"- "));
+    }
+
+    /**
+     * Test case 2: Number matches rank first and the index follows updates and deletes
+     */
+    @Test
+    public void testRankedSearchFollowsWrites() {
+        moduleDao.insertAll(Arrays.asList(
+                new Module("M335", "Mobile Apps erstellen"),
+                new Module("M133", "Web-Applikation mit Session-Handling"),
+                new Module("M106", "Datenbanken abfragen")));
+
+        List<Module> results = search("M33");
+        assertEquals(1, results.size());
+        assertEquals("M335", results.get(0).getModuleNumber());
+
+        results = search("app");
+        assertEquals(2, results.size());
+
+        Module renamed = new Module("M106", "Apps mit Datenbanken");
+        moduleDao.update(renamed);
+        assertEquals(3, search("app").size());
+
+        moduleDao.deleteByNumbers(Arrays.asList("M133"));
+        assertEquals(2, search("app").size());
+        assertEquals(2, moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression("app")));
+    }
+
+    /**
+     * Test case 3: The search reads its candidates from the full-text index and looks the
+     * modules up by rowid, where LIKE '%q%' has to scan the whole table
+     */
+    @Test
+    public void testSearchPlanAvoidsTableScan() {
+        List<Module> modules = new ArrayList<>(SEARCH_MODULES);
+        for (int i = 0; i < SEARCH_MODULES; i++) {
+            String title = TITLE_WORDS[i % TITLE_WORDS.length] + " "
+                    + TITLE_WORDS[(i / TITLE_WORDS.length) % TITLE_WORDS.length] + " " + i;
+            modules.add(new Module("M" + (100_000 + i), title));
+        }
+        moduleDao.insertAll(modules);
+
+        for (String query : new String[]{"Sicher", "Netz", "Objekt", "M1009"}) {
+            int ftsCount = moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression(query));
+            assertFalse(search(query).isEmpty());
+            String searchPlan = explain(lastQuery, lastArgs.toArray());
+            assertTrue("Prefix matches of " + query + " are a subset of substring matches",
+                    ftsCount <= likeSearch(query));
+
+            assertTrue(searchPlan, searchPlan.contains("VIRTUAL TABLE INDEX"));
+            assertFalse(searchPlan, TABLE_SCAN.matcher(searchPlan).find());
+        }
+
+        String likePlan = explain(LIKE_QUERY, new Object[]{"%Netz%", "%Netz%"});
+        assertTrue(likePlan, TABLE_SCAN.matcher(likePlan).find());
+    }
+
+    /**
+     * Test case 4: Wildcard characters in the search text are compared literally
+     * when module numbers are ranked as prefix matches
+     */
+    @Test
+    public void testPrefixRankIgnoresWildcards() {
+        moduleDao.insertAll(Arrays.asList(
+                new Module("M11", "Modul 1 Grundlagen"),
+                new Module("M_15", "Modul 15 Sonderfall")));
+
+        // M11 sorts first and would match the LIKE pattern M_1%
+        List<Module> results = search("M_1");
+        assertEquals(2, results.size());
+        assertEquals("M_15", results.get(0).getModuleNumber());
+        assertEquals("M11", results.get(1).getModuleNumber());
+    }
+
+    private List<Module> search(String text) {
+        return moduleDao.search(ModuleSearchQuery.toMatchExpression(text), text, 50, 0);
+    }
+
+    /**
+     * Runs the naive substring search and reads all matching rows
+     *
+     * @param text The search text
+     * @return The number of matches
+     */
+    private int likeSearch(String text) {
+        String pattern = "%" + text + "%";
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery(
+                LIKE_QUERY, new Object[]{pattern, pattern}))) {
+            int count = 0;
+            while (cursor.moveToNext()) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Gets the query plan of a statement
+     *
+     * @param sql The statement
+     * @param args Its arguments
+     * @return One plan step per line
+     */
+    private String explain(String sql, Object[] args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery("EXPLAIN QUERY PLAN " + sql, args))) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.m335.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleGrades;
+import com.example.m335.model.ModuleStatistics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the running statistics against a full recompute after random write sequences.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleStatisticsEngineTest {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private static final int MODULE_NUMBERS = 200;
+
+    private ModuleDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: Deltas of random batches match a recompute over a simulated table
+     */
+    @Test
+    public void testRandomBatchesMatchRecompute() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Random random = new Random(seed);
+            Map<String, Module> table = new HashMap<>();
+            ModuleStatisticsEngine engine = new ModuleStatisticsEngine();
+
+            for (int step = 0; step < 500; step++) {
+                List<Module> inserts = new ArrayList<>();
+                List<Module> updates = new ArrayList<>();
+                List<String> deletes = new ArrayList<>();
+                // The write queue keeps one operation per module number and batch
+                Set<String> numbers = new LinkedHashSet<>();
+                int size = 1 + random.nextInt(20);
+                while (numbers.size() < size) {
+                    numbers.add("M" + (100 + random.nextInt(MODULE_NUMBERS)));
+                }
+
+                List<ModuleGrades> previous = new ArrayList<>();
+                for (String number : numbers) {
+                    Module old = table.get(number);
+                    if (old != null) {
+                        previous.add(new ModuleGrades(number, old.getZpHundredths(), old.getLbHundredths()));
+                    }
+                    int operation = random.nextInt(3);
+                    if (operation == 0) {
+                        inserts.add(randomModule(random, number));
+                    } else if (operation == 1) {
+                        updates.add(randomModule(random, number));
+                    } else {
+                        deletes.add(number);
+                    }
+                }
+
+                for (Module module : inserts) {
+                    table.put(module.getModuleNumber(), module);
+                }
+                for (Module module : updates) {
+                    if (table.containsKey(module.getModuleNumber())) {
+                        table.put(module.getModuleNumber(), module);
+                    }
+                }
+                for (String number : deletes) {
+                    table.remove(number);
+                }
+                engine.onBatchApplied(previous, inserts, updates, deletes);
+
+                assertMatches("seed " + seed + ", step " + step, table.values(), engine.snapshot());
+            }
+        }
+    }
+
+    /**
+     * Test case 2: Statistics fed by the write queue equal a resync from SQL
+     */
+    @Test
+    public void testWriteQueueDeltasMatchResync() {
+        ModuleDao moduleDao = database.moduleDao();
+        List<Module> initial = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50; i++) {
+            initial.add(randomModule(random, "M" + (100 + i)));
+        }
+        moduleDao.insertAll(initial);
+
+        // Resync picks up rows written before the engine existed
+        ModuleStatisticsEngine engine = new ModuleStatisticsEngine();
+        engine.resync(moduleDao);
+        assertMatches("after resync", moduleDao.getAllModulesNow(), engine.snapshot());
+
+        ModuleWriteQueue writeQueue = new ModuleWriteQueue(moduleDao, DIRECT_EXECUTOR);
+        writeQueue.addChangeListener(engine);
+        for (int step = 0; step < 300; step++) {
+            String number = "M" + (100 + random.nextInt(MODULE_NUMBERS));
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                writeQueue.insert(randomModule(random, number));
+            } else if (operation == 1) {
+                writeQueue.update(randomModule(random, number));
+            } else if (operation == 2) {
+                writeQueue.deleteByNumbers(Collections.singletonList(number));
+            } else {
+                List<Module> batch = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    batch.add(randomModule(random, "M" + (100 + random.nextInt(MODULE_NUMBERS))));
+                }
+                writeQueue.insertAll(batch);
+            }
+        }
+
+        List<Module> stored = moduleDao.getAllModulesNow();
+        assertMatches("after queue writes", stored, engine.snapshot());
+        ModuleStatisticsEngine fresh = new ModuleStatisticsEngine();
+        fresh.resync(moduleDao);
+        assertMatches("fresh resync", stored, fresh.snapshot());
+    }
+
+    /**
+     * Creates a module with random grades, a third of them incomplete
+     *
+     * @param random The random source
+     * @param moduleNumber The module number
+     * @return The module
+     */
+    private static Module randomModule(Random random, String moduleNumber) {
+        Module module = new Module(moduleNumber, "Modul " + moduleNumber);
+        module.setZpHundredths(random.nextInt(3) == 0 ? Module.NO_GRADE : 100 + random.nextInt(21) * 25);
+        module.setLbHundredths(100 + random.nextInt(501));
+        return module;
+    }
+
+    /**
+     * Recomputes the statistics from scratch and compares them with a snapshot
+     *
+     * @param message Context for failures
+     * @param modules All modules
+     * @param statistics The snapshot of the engine
+     */
+    private static void assertMatches(String message, Collection<Module> modules,
+                                      ModuleStatistics statistics) {
+        int graded = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        float best = Float.NEGATIVE_INFINITY;
+        float worst = Float.POSITIVE_INFINITY;
+        int[] histogram = new int[ModuleStatisticsEngine.BUCKET_COUNT];
+        for (Module module : modules) {
+            if (!module.hasAllGrades()) {
+                continue;
+            }
+            float average = module.getAverageGradeValue();
+            graded++;
+            sum += average;
+            sumOfSquares += (double) average * average;
+            best = Math.max(best, average);
+            worst = Math.min(worst, average);
+            histogram[Math.min(histogram.length - 1, (int) ((average - 1.0f) / ModuleStatistics.BUCKET_WIDTH))]++;
+        }
+
+        assertEquals(message, modules.size(), statistics.getModuleCount());
+        assertEquals(message, graded, statistics.getGradedCount());
+        assertEquals(message, modules.size() - graded, statistics.getIncompleteCount());
+        if (graded == 0) {
+            assertNull(message, statistics.getAverageGrade());
+            return;
+        }
+        double mean = sum / graded;
+        double deviation = Math.sqrt(Math.max(0, sumOfSquares / graded - mean * mean));
+        assertEquals(message, mean, statistics.getAverageGrade(), 0.0001);
+        assertEquals(message, deviation, statistics.getStandardDeviation(), 0.001);
+        assertEquals(message, best, statistics.getBestGrade(), 0.0001f);
+        assertEquals(message, worst, statistics.getWorstGrade(), 0.0001f);
+        for (int i = 0; i < histogram.length; i++) {
+            assertEquals(message + ", bucket " + i, histogram[i], statistics.getHistogramCount(i));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.m335.data;
+
+import android.app.Application;
+import android.content.Context;
+
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleRow;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the shared module store, its reference-counted query subscription and pending edits.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleStoreTest {
+
+    /**
+     * Test case 1: Repositories of different screens share the same queries
+     */
+    @Test
+    public void repositoriesShareQueries() {
+        Application application = ApplicationProvider.getApplicationContext();
+        ModuleRepository first = new ModuleRepository(application);
+        ModuleRepository second = new ModuleRepository(application);
+
+        assertSame(first.getAllModules(), second.getAllModules());
+        assertSame(first.getSummary(), second.getSummary());
+        assertSame(first.getFamilyStats(), second.getFamilyStats());
+        assertSame(ModuleStore.getInstance(application), ModuleStore.getInstance(application));
+    }
+
+    /**
+     * Test case 2: The query is subscribed once for all observers and dropped after the last one
+     */
+    @Test
+    public void subscriptionFollowsObservers() {
+        MutableLiveData<String> query = new MutableLiveData<>();
+        SharedQueryLiveData<String> shared = new SharedQueryLiveData<>(query);
+        final List<String> received = new ArrayList<>();
+        Observer<String> first = new Observer<String>() {
+            @Override
+            public void onChanged(String value) {
+                received.add(value);
+            }
+        };
+        Observer<String> second = new Observer<String>() {
+            @Override
+            public void onChanged(String value) {
+                received.add(value);
+            }
+        };
+
+        assertFalse(shared.isSubscribed());
+        shared.observeForever(first);
+        shared.observeForever(second);
+        assertTrue(shared.isSubscribed());
+        assertTrue(query.hasObservers());
+        assertEquals(1, shared.getSubscriptionCount());
+
+        query.setValue("M335");
+        assertEquals(2, received.size());
+
+        shared.removeObserver(first);
+        assertTrue(shared.isSubscribed());
+        shared.removeObserver(second);
+        assertFalse(shared.isSubscribed());
+        assertFalse(query.hasObservers());
+
+        // The last result stays available as snapshot without a subscription
+        assertEquals("M335", shared.getValue());
+    }
+
+    /**
+     * Test case 3: An edit is shown until a list has its written row, a failed edit is rolled back
+     */
+    @Test
+    public void optimisticEditsAreReconciledOrRolledBack() {
+        Context context = ApplicationProvider.getApplicationContext();
+        ModuleDatabase database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        ModuleStore store = new ModuleStore(database.moduleDao());
+
+        Module saved = new Module("M335", "Mobile Apps");
+        store.applyEdit(saved);
+        assertSame(saved, store.getPendingEdits().getValue().get("M335"));
+        assertSame(saved, store.getPendingEdit("M335"));
+
+        // Lists loaded before the write still show the row in its old version
+        store.reconcileEdits(Collections.singletonList(createRow("M335", 3)));
+        assertSame(saved, store.getPendingEdit("M335"));
+        store.commitEdit(saved, 4);
+        store.reconcileEdits(Arrays.asList(null, createRow("M100", 9), createRow("M335", 3)));
+        assertSame("A list without the written row keeps the edit", saved, store.getPendingEdit("M335"));
+        store.reconcileEdits(Arrays.asList(createRow("M100", 9), createRow("M335", 4)));
+        assertTrue(store.getPendingEdits().getValue().isEmpty());
+
+        // A failed write restores the stored row and reports the module
+        Module failed = new Module("M335", "Mobile Apps erstellen");
+        Module newer = new Module("M335", "Mobile Apps entwickeln");
+        store.applyEdit(failed);
+        store.applyEdit(newer);
+        store.rollbackEdit(failed);
+        assertSame("A newer edit outlives the failure of an older one", newer, store.getPendingEdit("M335"));
+        assertEquals("M335", store.getFailedEdit().getValue().peek());
+        store.rollbackEdit(newer);
+        assertNull(store.getPendingEdit("M335"));
+
+        // A failure is reported once, an observer added later does not see it again
+        SingleEvent<String> failure = store.getFailedEdit().getValue();
+        assertEquals("M335", failure.take());
+        assertNull(failure.take());
+
+        database.close();
+    }
+
+    /**
+     * Creates a list row for a stored module
+     *
+     * @param moduleNumber The module number
+     * @param version The row version
+     * @return The row
+     */
+    private static ModuleRow createRow(String moduleNumber, long version) {
+        Module module = new Module(moduleNumber, "Modul " + moduleNumber);
+        module.setVersion(version);
+        return new ModuleRow(module);
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.m335.data;
+
+import android.app.Application;
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load and concurrency tests for the data layer with many threads at once.
+ * The row and thread counts come from the system properties m335.stress.rows
+ * and m335.stress.threads, 10k rows on 8 threads by default. The databases are built
+ * without allowMainThreadQueries, so any database access on the main thread fails.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleStressTest {
+    private static final int ROWS = Integer.getInteger("m335.stress.rows", 10_000);
+    private static final int THREADS = Integer.getInteger("m335.stress.threads", 8);
+    // Two operations per row, three of ten are writes
+    private static final int OPERATIONS = 2 * ROWS;
+    private static final int WRITE_PERCENT = 30;
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private Context context;
+    private ModuleDatabase database;
+    private ExecutorService workers;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase("stress_test.db");
+        database = Room.databaseBuilder(context, ModuleDatabase.class, "stress_test.db").build();
+        workers = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+        database.close();
+    }
+
+    /**
+     * Test case 1: Threads asking for the database at the same time get one instance,
+     * with one write queue, one cache and one store
+     */
+    @Test
+    public void testSingleInitialisation() throws Exception {
+        final Application application = ApplicationProvider.getApplicationContext();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object[]>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(workers.submit(new Callable<Object[]>() {
+                @Override
+                public Object[] call() throws Exception {
+                    start.await();
+                    ModuleDatabase shared = ModuleDatabase.getDatabase(application);
+                    return new Object[]{shared, shared.getWriteQueue(), shared.getModuleCache(),
+                            ModuleStore.getInstance(application)};
+                }
+            }));
+        }
+        start.countDown();
+
+        List<Set<Object>> distinct = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            distinct.add(Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+        }
+        for (Future<Object[]> result : results) {
+            Object[] instances = result.get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < instances.length; i++) {
+                distinct.get(i).add(instances[i]);
+            }
+        }
+        for (Set<Object> instances : distinct) {
+            assertEquals(1, instances.size());
+        }
+    }
+
+    /**
+     * Test case 2: Database access on the main thread is rejected
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testMainThreadAccessIsRejected() {
+        database.moduleDao().getModuleCount();
+    }
+
+    /**
+     * Test case 3: Mixed reads and writes on the DAO from many threads lose no write.
+     * Every thread owns the modules whose index modulo the thread count is its number,
+     * so the last revision of every module is known.
+     */
+    @Test
+    public void testConcurrentDaoWorkload() throws Exception {
+        final ModuleDao dao = database.moduleDao();
+        final ModuleGenerator generator = new ModuleGenerator("D", 17);
+        seed(dao, generator);
+
+        final int[] revisions = new int[ROWS];
+        final LatencyRecorder reads = new LatencyRecorder(OPERATIONS);
+        final LatencyRecorder writes = new LatencyRecorder(OPERATIONS * WRITE_PERCENT / 100);
+        long nanos = runOnAllThreads(new ThreadWorkload() {
+            @Override
+            public void run(int thread, Random random) {
+                for (int op = thread; op < OPERATIONS; op += THREADS) {
+                    long start = System.nanoTime();
+                    if (random.nextInt(100) < WRITE_PERCENT) {
+                        int index = ownedIndex(thread, random);
+                        dao.update(generator.module(index, ++revisions[index]));
+                        writes.record(System.nanoTime() - start);
+                    } else {
+                        int index = random.nextInt(ROWS);
+                        assertNotNull(dao.getModuleByNumberNow(generator.moduleNumber(index)));
+                        reads.record(System.nanoTime() - start);
+                    }
+                }
+            }
+        });
+
+        System.out.println(reads.report("DAO reads, " + THREADS + " threads, " + ROWS + " rows", nanos));
+        System.out.println(writes.report("DAO writes, " + THREADS + " threads, " + ROWS + " rows", nanos));
+        assertNoLostWrites(dao, generator, revisions);
+    }
+
+    /**
+     * Test case 4: Writes through the repository and cached reads from many threads lose no write
+     */
+    @Test
+    public void testConcurrentRepositoryWorkload() throws Exception {
+        Application application = ApplicationProvider.getApplicationContext();
+        final ModuleRepository repository = new ModuleRepository(application);
+        final ModuleDao dao = ModuleDatabase.getDatabase(application).moduleDao();
+        final ModuleCache cache = repository.getModuleCache();
+        final ModuleGenerator generator = new ModuleGenerator("R", 23);
+        for (int from = 0; from < ROWS; from += SEED_BATCH_SIZE) {
+            repository.insertAll(generator.modules(from, Math.min(SEED_BATCH_SIZE, ROWS - from)))
+                    .get(2, TimeUnit.MINUTES);
+        }
+
+        final int[] revisions = new int[ROWS];
+        final LatencyRecorder reads = new LatencyRecorder(OPERATIONS);
+        final LatencyRecorder writes = new LatencyRecorder(OPERATIONS * WRITE_PERCENT / 100);
+        long nanos = runOnAllThreads(new ThreadWorkload() {
+            @Override
+            public void run(int thread, Random random) throws Exception {
+                List<CompletableFuture<Void>> pending = new ArrayList<>();
+                for (int op = thread; op < OPERATIONS; op += THREADS) {
+                    long start = System.nanoTime();
+                    if (random.nextInt(100) < WRITE_PERCENT) {
+                        int index = ownedIndex(thread, random);
+                        pending.add(repository.update(generator.module(index, ++revisions[index])));
+                        writes.record(System.nanoTime() - start);
+                    } else {
+                        String moduleNumber = generator.moduleNumber(random.nextInt(ROWS));
+                        if (cache.get(moduleNumber) == null) {
+                            assertNotNull(cache.load(moduleNumber, dao));
+                        }
+                        reads.record(System.nanoTime() - start);
+                    }
+                }
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                        .get(2, TimeUnit.MINUTES);
+            }
+        });
+
+        System.out.println(reads.report("Repository reads (" + cache.getHitCount() + " cache hits)", nanos));
+        System.out.println(writes.report("Repository writes, submit only", nanos));
+        assertNoLostWrites(dao, generator, revisions);
+
+        // The cache must not hold an outdated revision after the writes
+        for (int index = 0; index < ROWS; index++) {
+            Module cached = cache.get(generator.moduleNumber(index));
+            assertTrue(cached == null || generator.matches(cached, index, revisions[index]));
+        }
+    }
+
+    /**
+     * Inserts the first revision of all modules on a worker thread
+     *
+     * @param dao The DAO to write with
+     * @param generator The module generator
+     */
+    private void seed(final ModuleDao dao, final ModuleGenerator generator) throws Exception {
+        workers.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int from = 0; from < ROWS; from += SEED_BATCH_SIZE) {
+                    dao.insertAll(generator.modules(from, Math.min(SEED_BATCH_SIZE, ROWS - from)));
+                }
+                return null;
+            }
+        }).get(5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Picks a random module owned by a thread
+     *
+     * @param thread The thread number
+     * @param random The random source of the thread
+     * @return A module index with index % THREADS == thread
+     */
+    private static int ownedIndex(int thread, Random random) {
+        int owned = (ROWS - thread + THREADS - 1) / THREADS;
+        return thread + random.nextInt(owned) * THREADS;
+    }
+
+    /**
+     * Runs a workload on all worker threads at the same time
+     *
+     * @param workload The workload, called once per thread
+     * @return Wall clock time until the last thread finished in nanoseconds
+     */
+    private long runOnAllThreads(final ThreadWorkload workload) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> threads = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            threads.add(workers.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    workload.run(thread, new Random(thread));
+                    return null;
+                }
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Void> thread : threads) {
+            thread.get(10, TimeUnit.MINUTES);
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Checks that every module has the last revision its owner wrote
+     *
+     * @param dao The DAO to read with
+     * @param generator The module generator
+     * @param revisions The last revision per module index
+     */
+    private void assertNoLostWrites(final ModuleDao dao, final ModuleGenerator generator,
+                                    final int[] revisions) throws Exception {
+        int lost = workers.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                assertEquals(ROWS, countModules(dao, generator));
+                int lost = 0;
+                for (int index = 0; index < ROWS; index++) {
+                    Module stored = dao.getModuleByNumberNow(generator.moduleNumber(index));
+                    if (!generator.matches(stored, index, revisions[index])) {
+                        lost++;
+                    }
+                }
+                return lost;
+            }
+        }).get(5, TimeUnit.MINUTES);
+        assertEquals("Lost writes", 0, lost);
+    }
+
+    /**
+     * Counts the modules of a generator, other rows of the shared app database are ignored
+     *
+     * @param dao The DAO to read with
+     * @param generator The module generator
+     * @return The number of stored modules of the generator
+     */
+    private static int countModules(ModuleDao dao, ModuleGenerator generator) {
+        int count = 0;
+        for (int index = 0; index < ROWS; index++) {
+            if (dao.getModuleByNumberNow(generator.moduleNumber(index)) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Work of one thread, each thread gets its own random source
+     */
+    private interface ThreadWorkload {
+        void run(int thread, Random random) throws Exception;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.m335.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleFamilyStats;
+import com.example.m335.model.ModuleSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the aggregate statistics queries of the module DAO.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleSummaryQueryTest {
+    private ModuleDatabase database;
+    private ModuleDao moduleDao;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        moduleDao = database.moduleDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Test case 1: An empty table has zero counts and no averages
+     */
+    @Test
+    public void testEmptySummary() {
+        ModuleSummary summary = moduleDao.getSummaryNow();
+        assertEquals(0, summary.getModuleCount());
+        assertEquals(0, summary.getPassedCount());
+        assertNull(summary.getAverageGrade());
+        assertTrue(moduleDao.getFamilyStatsNow().isEmpty());
+    }
+
+    /**
+     * Test case 2: Counts, averages and pass/fail only consider modules with both grades
+     */
+    @Test
+    public void testSummaryMatchesJavaComputation() {
+        moduleDao.insertAll(Arrays.asList(
+                graded("M106", 5.0f, 5.5f),     // 5.25
+                graded("M117", 3.0f, 4.0f),     // 3.5, failed
+                graded("M335", 6.0f, 5.0f),     // 5.5
+                graded("M223", 4.0f, null),     // missing LB grade
+                new Module("M319", "Ohne Noten")));
+
+        ModuleSummary summary = moduleDao.getSummaryNow();
+        assertEquals(5, summary.getModuleCount());
+        assertEquals(3, summary.getGradedCount());
+        assertEquals(2, summary.getMissingGradeCount());
+        assertEquals(2, summary.getPassedCount());
+        assertEquals(1, summary.getFailedCount());
+        assertEquals((5.25f + 3.5f + 5.5f) / 3, summary.getAverageGrade(), 0.0001f);
+        assertEquals(5.5f, summary.getBestGrade(), 0.0001f);
+        assertEquals(3.5f, summary.getWorstGrade(), 0.0001f);
+    }
+
+    /**
+     * Test case 3: Statistics are grouped by the first two characters of the module number
+     */
+    @Test
+    public void testFamilyStats() {
+        moduleDao.insertAll(Arrays.asList(
+                graded("M106", 5.0f, 5.0f),
+                graded("M117", 4.0f, 4.0f),
+                graded("M223", 4.5f, 5.5f),
+                graded("M335", 6.0f, 5.0f),
+                new Module("M319", "Ohne Noten")));
+
+        List<ModuleFamilyStats> families = moduleDao.getFamilyStatsNow();
+        assertEquals(3, families.size());
+
+        assertEquals("M1xx", families.get(0).getLabel());
+        assertEquals(2, families.get(0).getModuleCount());
+        assertEquals(4.5f, families.get(0).getAverageGrade(), 0.0001f);
+
+        assertEquals("M3xx", families.get(2).getLabel());
+        assertEquals(2, families.get(2).getModuleCount());
+        assertEquals(1, families.get(2).getGradedCount());
+        assertEquals(5.5f, families.get(2).getAverageGrade(), 0.0001f);
+    }
+
+    private static Module graded(String moduleNumber, Float zpNote, Float lbNote) {
+        Module module = new Module(moduleNumber, "Modul " + moduleNumber);
+        module.setZpNote(zpNote);
+        module.setLbNote(lbNote);
+        return module;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.m335.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the delta sync of two devices against a local mock server.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleSyncTest {
+    private static final int MODULE_COUNT = 10_000;
+    // 1% of the modules change between two syncs
+    private static final int CHURN_UPDATES = 80;
+    private static final int CHURN_DELETES = 10;
+    private static final int CHURN_INSERTS = 10;
+    private static final int SERVER_PAGE_SIZE = 1000;
+
+    private MockWebServer server;
+    private FakeSyncServer fakeServer;
+    private ModuleDatabase deviceA;
+    private ModuleDatabase deviceB;
+    private ModuleSyncEngine syncA;
+    private ModuleSyncEngine syncB;
+
+    @Before
+    public void setUp() throws IOException {
+        fakeServer = new FakeSyncServer(SERVER_PAGE_SIZE);
+        server = new MockWebServer();
+        server.setDispatcher(fakeServer);
+        server.start();
+        URL endpoint = server.url("/sync").url();
+
+        deviceA = buildDatabase();
+        deviceB = buildDatabase();
+        syncA = new ModuleSyncEngine(deviceA, endpoint);
+        syncB = new ModuleSyncEngine(deviceB, endpoint);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deviceA.close();
+        deviceB.close();
+        server.shutdown();
+    }
+
+    /**
+     * Test case 1: After a full sync of 10k modules, a 1% change sends and receives
+     * only the changed modules, a small fraction of the bytes of the full table
+     */
+    @Test
+    public void testDeltaSyncOfTenThousandModules() throws IOException {
+        ModuleGenerator generator = new ModuleGenerator("S", 24);
+        deviceA.moduleDao().insertAll(generator.modules(0, MODULE_COUNT));
+        assertEquals(MODULE_COUNT, deviceA.moduleSyncDao().countPendingChanges());
+
+        ModuleSyncEngine.Result fullPush = syncA.sync();
+        ModuleSyncEngine.Result fullPull = syncB.sync();
+        assertEquals(MODULE_COUNT, fullPush.getPushedCount());
+        assertEquals(MODULE_COUNT, fullPull.getPulledCount());
+        assertEquals(0, deviceA.moduleSyncDao().countPendingChanges());
+        assertEquals(0, deviceB.moduleSyncDao().countPendingChanges());
+        assertSameModules();
+
+        // Updates, deletes and inserts of 1% of the modules
+        List<Module> updates = new ArrayList<>();
+        for (int i = 0; i < CHURN_UPDATES; i++) {
+            updates.add(generator.module(i * 97, 1));
+        }
+        deviceA.moduleDao().updateAll(updates);
+        List<String> deletes = new ArrayList<>();
+        for (int i = 0; i < CHURN_DELETES; i++) {
+            deletes.add(generator.moduleNumber(i * 97 + 1));
+        }
+        deviceA.moduleDao().deleteByNumbers(deletes);
+        deviceA.moduleDao().insertAll(generator.modules(MODULE_COUNT, CHURN_INSERTS));
+        int churn = CHURN_UPDATES + CHURN_DELETES + CHURN_INSERTS;
+        assertEquals(churn, deviceA.moduleSyncDao().countPendingChanges());
+
+        ModuleSyncEngine.Result deltaPush = syncA.sync();
+        ModuleSyncEngine.Result deltaPull = syncB.sync();
+        assertEquals(churn, deltaPush.getPushedCount());
+        assertEquals(0, deltaPush.getPulledCount());
+        assertEquals(churn, deltaPull.getPulledCount());
+        assertEquals(1, deltaPull.getRounds());
+        assertEquals(0, deltaPull.getConflictCount());
+        assertSameModules();
+        assertTrue(fakeServer.getRecord(deletes.get(0)).deleted);
+
+        // Sending the whole table again, compressed just the same
+        ModuleSyncProtocol.Request snapshot = new ModuleSyncProtocol.Request();
+        for (Module module : deviceA.moduleDao().getAllModulesNow()) {
+            snapshot.changes.add(ModuleSyncProtocol.Record.of(module, 0));
+        }
+        long snapshotBytes = ModuleSyncProtocol.encodeRequest(snapshot).length;
+
+        assertTrue("Delta push sent " + deltaPush.getBytesSent() + " bytes, snapshot " + snapshotBytes + " bytes",
+                deltaPush.getBytesSent() * 20 < snapshotBytes);
+        assertTrue("Delta pull received " + deltaPull.getBytesReceived() + " bytes, snapshot "
+                        + snapshotBytes + " bytes",
+                deltaPull.getBytesReceived() * 20 < snapshotBytes);
+        assertEquals(fakeServer.getBytesReceived(), fullPush.getBytesSent() + fullPull.getBytesSent()
+                + deltaPush.getBytesSent() + deltaPull.getBytesSent());
+
+        // Nothing changed, nothing is sent
+        int requests = fakeServer.getRequestCount();
+        ModuleSyncEngine.Result idle = syncA.sync();
+        assertEquals(0, idle.getPushedCount());
+        assertEquals(0, idle.getPulledCount());
+        assertEquals(requests + 1, fakeServer.getRequestCount());
+    }
+
+    /**
+     * Test case 2: Edits of different fields of the same module on both devices are merged
+     */
+    @Test
+    public void testConcurrentEditsAreMerged() throws IOException {
+        deviceA.moduleDao().insert(createModule("M335", "Mobile Apps", 450, 500));
+        syncA.sync();
+        syncB.sync();
+
+        Module titleEdit = deviceA.moduleDao().getModuleByNumberNow("M335");
+        titleEdit.setModuleTitle("Mobile Apps erstellen");
+        deviceA.moduleDao().update(titleEdit);
+        Module gradeEdit = deviceB.moduleDao().getModuleByNumberNow("M335");
+        gradeEdit.setZpHundredths(525);
+        deviceB.moduleDao().update(gradeEdit);
+
+        assertEquals(0, syncA.sync().getConflictCount());
+        ModuleSyncEngine.Result merge = syncB.sync();
+        assertEquals(1, merge.getConflictCount());
+        // The merged module is sent again in a second round
+        assertEquals(2, merge.getRounds());
+        syncA.sync();
+
+        for (ModuleDatabase device : Arrays.asList(deviceA, deviceB)) {
+            Module merged = device.moduleDao().getModuleByNumberNow("M335");
+            assertEquals("Mobile Apps erstellen", merged.getModuleTitle());
+            assertEquals(525, merged.getZpHundredths());
+            assertEquals(500, merged.getLbHundredths());
+            assertEquals(0, device.moduleSyncDao().countPendingChanges());
+        }
+
+        // The same field on both devices: the device that syncs last wins
+        Module lbA = deviceA.moduleDao().getModuleByNumberNow("M335");
+        lbA.setLbHundredths(400);
+        deviceA.moduleDao().update(lbA);
+        Module lbB = deviceB.moduleDao().getModuleByNumberNow("M335");
+        lbB.setLbHundredths(600);
+        deviceB.moduleDao().update(lbB);
+        syncA.sync();
+        syncB.sync();
+        syncA.sync();
+        assertEquals(600, deviceA.moduleDao().getModuleByNumberNow("M335").getLbHundredths());
+        assertSameModules();
+    }
+
+    /**
+     * Test case 3: Deletes reach the other device; a delete conflicting with an edit
+     * keeps the edited module
+     */
+    @Test
+    public void testDeletesAndEditConflicts() throws IOException {
+        deviceA.moduleDao().insertAll(Arrays.asList(
+                createModule("M106", "Datenbanken abfragen", 400, 450),
+                createModule("M223", "Multi-User-Applikationen", 500, 550),
+                createModule("M335", "Mobile Apps", 450, Module.NO_GRADE)));
+        syncA.sync();
+        syncB.sync();
+
+        // A plain delete on one device
+        deviceB.moduleDao().deleteByNumbers(Arrays.asList("M106"));
+        syncB.sync();
+        assertEquals(1, syncA.sync().getPulledCount());
+        assertNull(deviceA.moduleDao().getModuleByNumberNow("M106"));
+
+        // Deleted on A, edited on B: the edit wins
+        deviceA.moduleDao().deleteByNumbers(Arrays.asList("M335"));
+        Module edited = deviceB.moduleDao().getModuleByNumberNow("M335");
+        edited.setLbHundredths(500);
+        deviceB.moduleDao().update(edited);
+        syncA.sync();
+        assertEquals(1, syncB.sync().getConflictCount());
+        syncA.sync();
+        assertEquals(500, deviceA.moduleDao().getModuleByNumberNow("M335").getLbHundredths());
+
+        // Edited on A, deleted on B: the edit wins as well
+        Module renamed = deviceA.moduleDao().getModuleByNumberNow("M223");
+        renamed.setModuleTitle("Multi-User-Applikationen objektorientiert realisieren");
+        deviceA.moduleDao().update(renamed);
+        deviceB.moduleDao().deleteByNumbers(Arrays.asList("M223"));
+        syncA.sync();
+        assertEquals(1, syncB.sync().getConflictCount());
+        assertEquals(renamed.getModuleTitle(),
+                deviceB.moduleDao().getModuleByNumberNow("M223").getModuleTitle());
+
+        assertSameModules();
+        assertEquals(0, deviceA.moduleSyncDao().countPendingChanges());
+        assertEquals(0, deviceB.moduleSyncDao().countPendingChanges());
+        assertFalse(fakeServer.getRecord("M335").deleted);
+        assertTrue(fakeServer.getRecord("M106").deleted);
+    }
+
+    /**
+     * Checks that both devices store the same modules
+     */
+    private void assertSameModules() {
+        List<Module> modulesA = deviceA.moduleDao().getAllModulesNow();
+        List<Module> modulesB = deviceB.moduleDao().getAllModulesNow();
+        assertEquals(modulesA.size(), modulesB.size());
+        for (int i = 0; i < modulesA.size(); i++) {
+            Module a = modulesA.get(i);
+            Module b = modulesB.get(i);
+            assertEquals(a.getModuleNumber(), b.getModuleNumber());
+            assertEquals(a.getModuleTitle(), b.getModuleTitle());
+            assertEquals(a.getZpHundredths(), b.getZpHundredths());
+            assertEquals(a.getLbHundredths(), b.getLbHundredths());
+        }
+    }
+
+    /**
+     * Builds an in-memory device database with the change triggers
+     *
+     * @return The database
+     */
+    private ModuleDatabase buildDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        return Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .addCallback(ModuleMigrations.CREATE_TRIGGERS)
+                .build();
+    }
+
+    private static Module createModule(String moduleNumber, String moduleTitle,
+                                       int zpHundredths, int lbHundredths) {
+        Module module = new Module(moduleNumber, moduleTitle);
+        module.setZpHundredths(zpHundredths);
+        module.setLbHundredths(lbHundredths);
+        return module;
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.m335.data;
+
+import android.app.Application;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleMerge;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for row versions, conditional updates and the upsert, with a contention benchmark
+ * against the former INSERT OR REPLACE path.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleVersionTest {
+    private static final int THREADS = 8;
+    private static final int HOT_ROWS = 4;
+    private static final int INCREMENTS_PER_THREAD = 500;
+
+    private ModuleDatabase database;
+    private ModuleDao moduleDao;
+    private ExecutorService writeExecutor;
+    private ModuleWriteQueue writeQueue;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase("version_test.db");
+        database = Room.databaseBuilder(context, ModuleDatabase.class, "version_test.db")
+                .allowMainThreadQueries()
+                .build();
+        moduleDao = database.moduleDao();
+        writeExecutor = Executors.newSingleThreadExecutor();
+        writeQueue = new ModuleWriteQueue(moduleDao, writeExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        writeExecutor.shutdownNow();
+        database.close();
+    }
+
+    /**
+     * Test case 1: A conditional update based on an outdated read changes nothing
+     */
+    @Test
+    public void testCompareAndSet() {
+        moduleDao.insert(new Module("M335", "Mobile Apps"));
+        Module first = moduleDao.getModuleByNumberNow("M335");
+        Module second = moduleDao.getModuleByNumberNow("M335");
+        assertEquals(0, first.getVersion());
+
+        first.setModuleTitle("Mobile Apps erstellen");
+        assertTrue(moduleDao.compareAndSet(first));
+        second.setZpHundredths(500);
+        assertFalse(moduleDao.compareAndSet(second));
+
+        Module stored = moduleDao.getModuleByNumberNow("M335");
+        assertEquals("Mobile Apps erstellen", stored.getModuleTitle());
+        assertEquals(Module.NO_GRADE, stored.getZpHundredths());
+        assertEquals(1, stored.getVersion());
+
+        // Plain updates raise the version too
+        moduleDao.update(stored);
+        assertEquals(Long.valueOf(2), moduleDao.getVersion("M335"));
+        assertFalse(moduleDao.compareAndSet(stored));
+        assertFalse(moduleDao.compareAndSet(new Module("M999", "Gibt es nicht")));
+    }
+
+    /**
+     * Test case 2: Inserting an existing module number updates the row in place
+     */
+    @Test
+    public void testInsertKeepsRowAndSearchEntry() {
+        moduleDao.insert(new Module("M335", "Mobile Apps"));
+        long rowId = getRowId("M335");
+
+        Module again = new Module("M335", "Mobile Apps erstellen");
+        again.setLbHundredths(550);
+        moduleDao.insertAll(Arrays.asList(again, new Module("M106", "Datenbanken")));
+
+        assertEquals(rowId, getRowId("M335"));
+        Module stored = moduleDao.getModuleByNumberNow("M335");
+        assertEquals("Mobile Apps erstellen", stored.getModuleTitle());
+        assertEquals(550, stored.getLbHundredths());
+        assertEquals(1, stored.getVersion());
+        assertEquals(2, moduleDao.getModuleCount());
+        assertEquals(1, moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression("erstellen")));
+        assertEquals(1, moduleDao.countSearchResults(ModuleSearchQuery.toMatchExpression("datenbanken")));
+    }
+
+    /**
+     * Test case 3: Conflicts of queued conditional updates are reported to their caller only,
+     * and a write meeting a pending conditional update waits for the next batch
+     */
+    @Test
+    public void testWriteQueueReportsConflicts() throws Exception {
+        writeQueue.insert(new Module("M335", "Mobile Apps")).get(5, TimeUnit.SECONDS);
+        Module read = moduleDao.getModuleByNumberNow("M335");
+
+        Module conditional = new Module("M335", "Bedingt");
+        conditional.setVersion(read.getVersion());
+        Module stale = new Module("M335", "Veraltet");
+        stale.setVersion(read.getVersion());
+        Module plain = new Module("M335", "Zuletzt");
+
+        CompletableFuture<Void> first = writeQueue.compareAndSet(conditional);
+        CompletableFuture<Void> second = writeQueue.compareAndSet(stale);
+        CompletableFuture<Void> third = writeQueue.update(plain);
+
+        first.get(5, TimeUnit.SECONDS);
+        try {
+            second.get(5, TimeUnit.SECONDS);
+            fail("The second conditional update is based on the same version");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ModuleConflictException);
+            assertEquals("M335", ((ModuleConflictException) e.getCause()).getModuleNumber());
+        }
+        third.get(5, TimeUnit.SECONDS);
+
+        Module stored = moduleDao.getModuleByNumberNow("M335");
+        assertEquals("Zuletzt", stored.getModuleTitle());
+        assertEquals(2, stored.getVersion());
+    }
+
+    /**
+     * Test case 4: A merge keeps the fields the other side changed
+     */
+    @Test
+    public void testMerge() {
+        Module base = new Module("M335", "Mobile Apps");
+        base.setZpHundredths(450);
+        base.setVersion(3);
+        Module edit = new Module("M335", "Mobile Apps");
+        edit.setZpHundredths(500);
+        Module current = new Module("M335", "Mobile Apps erstellen");
+        current.setZpHundredths(450);
+        current.setLbHundredths(600);
+        current.setVersion(4);
+
+        Module merged = ModuleMerge.merge(base, edit, current);
+        assertEquals("Mobile Apps erstellen", merged.getModuleTitle());
+        assertEquals(500, merged.getZpHundredths());
+        assertEquals(600, merged.getLbHundredths());
+        assertEquals(4, merged.getVersion());
+    }
+
+    /**
+     * Test case 5: Concurrent read-modify-write through the repository never loses an update;
+     * changes that ran out of attempts are reported as conflicts
+     */
+    @Test
+    public void testRepositoryRetryLosesNoUpdate() throws Exception {
+        Application application = ApplicationProvider.getApplicationContext();
+        final ModuleRepository repository = new ModuleRepository(application);
+        Module counter = new Module("V100", "Zähler");
+        counter.setZpHundredths(0);
+        repository.insert(counter).get(5, TimeUnit.SECONDS);
+
+        List<CompletableFuture<Module>> changes = new ArrayList<>();
+        for (int i = 0; i < THREADS * 4; i++) {
+            changes.add(repository.updateWithRetry("V100", new Consumer<Module>() {
+                @Override
+                public void accept(Module module) {
+                    module.setZpHundredths(module.getZpHundredths() + 1);
+                }
+            }));
+        }
+        int written = 0;
+        int conflicts = 0;
+        for (CompletableFuture<Module> change : changes) {
+            try {
+                assertNotNull(change.get(30, TimeUnit.SECONDS));
+                written++;
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ModuleConflictException);
+                conflicts++;
+            }
+        }
+
+        final ModuleDao dao = ModuleDatabase.getDatabase(application).moduleDao();
+        Module stored = CompletableFuture.supplyAsync(new Supplier<Module>() {
+            @Override
+            public Module get() {
+                return dao.getModuleByNumberNow("V100");
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(written + " written, " + conflicts + " conflicts",
+                written, stored.getZpHundredths());
+        assertTrue("No change was written, " + conflicts + " conflicts", written > 0);
+    }
+
+    /**
+     * Benchmark: threads increment a counter in a few hot rows, once with read and
+     * INSERT OR REPLACE (the former insert) and once with read and conditional update
+     * until it succeeds. Only the conditional update must not lose any increment.
+     */
+    @Test
+    public void benchmarkContentionAgainstReplace() throws Exception {
+        final SupportSQLiteDatabase sqlite = database.getOpenHelper().getWritableDatabase();
+        for (int row = 0; row < HOT_ROWS; row++) {
+            Module module = new Module("H" + row, "Heisse Zeile " + row);
+            module.setZpHundredths(0);
+            moduleDao.insert(module);
+        }
+
+        runIncrements(new Increment() {
+            @Override
+            public int run(String moduleNumber) {
+                Module module = moduleDao.getModuleByNumberNow(moduleNumber);
+                sqlite.execSQL("INSERT OR REPLACE INTO modules (moduleNumber, moduleTitle, "
+                                + "zpHundredths, lbHundredths, sortKey, version) VALUES (?, ?, ?, ?, ?, ?)",
+                        new Object[]{moduleNumber, module.getModuleTitle(), module.getZpHundredths() + 1,
+                                module.getLbHundredths(), module.getSortKey(), module.getVersion()});
+                return 0;
+            }
+        });
+        int replaceLost = THREADS * INCREMENTS_PER_THREAD - sumCounters();
+        resetCounters();
+
+        final AtomicInteger retries = new AtomicInteger();
+        runIncrements(new Increment() {
+            @Override
+            public int run(String moduleNumber) {
+                int attempts = 0;
+                while (true) {
+                    Module module = moduleDao.getModuleByNumberNow(moduleNumber);
+                    module.setZpHundredths(module.getZpHundredths() + 1);
+                    if (moduleDao.compareAndSet(module)) {
+                        return attempts;
+                    }
+                    attempts++;
+                }
+            }
+        }, retries);
+        int conditionalLost = THREADS * INCREMENTS_PER_THREAD - sumCounters();
+
+        assertEquals("Conditional update after " + retries.get() + " retries, INSERT OR REPLACE lost "
+                + replaceLost + " of " + THREADS * INCREMENTS_PER_THREAD, 0, conditionalLost);
+    }
+
+    /**
+     * Runs the increments of all threads on the hot rows
+     *
+     * @param increment The increment under test
+     */
+    private void runIncrements(Increment increment) throws Exception {
+        runIncrements(increment, new AtomicInteger());
+    }
+
+    /**
+     * Runs the increments of all threads on the hot rows
+     *
+     * @param increment The increment under test
+     * @param retries Receives the number of retries reported by the increment
+     */
+    private void runIncrements(final Increment increment, final AtomicInteger retries)
+            throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(threads.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                        retries.addAndGet(increment.run("H" + ((thread + i) % HOT_ROWS)));
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Void> result : results) {
+            result.get(5, TimeUnit.MINUTES);
+        }
+        threads.shutdown();
+    }
+
+    /**
+     * Sums the counters of the hot rows
+     *
+     * @return The sum of all counters
+     */
+    private int sumCounters() {
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery(
+                "SELECT SUM(zpHundredths) FROM modules WHERE moduleNumber LIKE 'H%'"))) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        }
+    }
+
+    /**
+     * Sets the counters of the hot rows back to zero
+     */
+    private void resetCounters() {
+        database.getOpenHelper().getWritableDatabase()
+                .execSQL("UPDATE modules SET zpHundredths = 0 WHERE moduleNumber LIKE 'H%'");
+    }
+
+    /**
+     * Gets the rowid of a module, which REPLACE would change
+     *
+     * @param moduleNumber The module number
+     * @return The rowid
+     */
+    private long getRowId(String moduleNumber) {
+        try (Cursor cursor = database.query(new SimpleSQLiteQuery(
+                "SELECT rowid FROM modules WHERE moduleNumber = ?", new Object[]{moduleNumber}))) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    /**
+     * One read-modify-write increment of a counter
+     */
+    private interface Increment {
+        /**
+         * Increments the counter of a module
+         *
+         * @param moduleNumber The module number
+         * @return The number of retries needed
+         */
+        int run(String moduleNumber);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.m335.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.model.Module;
+import com.example.m335.model.ModuleGrades;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the coalescing module write queue.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleWriteQueueTest {
+    private static final int BURST_WRITES = 2000;
+
+    private ModuleDatabase database;
+    private ExecutorService writeExecutor;
+    private ModuleWriteQueue writeQueue;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase("write_queue_test.db");
+        // A file database so that every commit pays for its journal write
+        database = Room.databaseBuilder(context, ModuleDatabase.class, "write_queue_test.db")
+                .allowMainThreadQueries()
+                .build();
+        writeExecutor = Executors.newSingleThreadExecutor();
+        writeQueue = new ModuleWriteQueue(database.moduleDao(), writeExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        writeExecutor.shutdownNow();
+        database.close();
+    }
+
+    /**
+     * Test case 1: Insert followed by update is written as one insert with the latest values
+     */
+    @Test
+    public void testInsertThenUpdateCollapsesToInsert() throws Exception {
+        Module module = new Module("M335", "Mobile Apps");
+        Module updated = new Module("M335", "Mobile Apps erstellen");
+        updated.setZpNote(5.0f);
+
+        CompletableFuture<Void> first = writeQueue.insert(module);
+        CompletableFuture<Void> second = writeQueue.update(updated);
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        List<Module> stored = database.moduleDao().getAllModulesNow();
+        assertEquals(1, stored.size());
+        assertEquals("Mobile Apps erstellen", stored.get(0).getModuleTitle());
+        assertEquals(Float.valueOf(5.0f), stored.get(0).getZpNote());
+    }
+
+    /**
+     * Test case 2: A delete after an insert leaves no row, an update after a delete stays deleted
+     */
+    @Test
+    public void testDeleteWinsOverEarlierAndLaterWrites() throws Exception {
+        Module module = new Module("M106", "Datenbanken abfragen");
+
+        CompletableFuture.allOf(
+                writeQueue.insert(module),
+                writeQueue.delete(module),
+                writeQueue.update(module)).get(5, TimeUnit.SECONDS);
+
+        assertTrue(database.moduleDao().getAllModulesNow().isEmpty());
+    }
+
+    /**
+     * Test case 3: Collapsing rules on the pending state itself
+     */
+    @Test
+    public void testCollapseRules() {
+        Module a = new Module("M223", "Multi-User-Applikationen");
+        Module b = new Module("M223", "Multi-User-Applikationen objektorientiert");
+
+        ModuleWriteQueue.PendingWrite write = new ModuleWriteQueue.PendingWrite(
+                ModuleWriteQueue.Operation.UPDATE, "M223", a, new CompletableFuture<Void>());
+        write.collapse(ModuleWriteQueue.Operation.UPDATE, b, new CompletableFuture<Void>());
+        assertEquals(ModuleWriteQueue.Operation.UPDATE, write.getOperation());
+        assertSame(b, write.getModule());
+
+        write.collapse(ModuleWriteQueue.Operation.DELETE, a, new CompletableFuture<Void>());
+        write.collapse(ModuleWriteQueue.Operation.INSERT, b, new CompletableFuture<Void>());
+        assertEquals(ModuleWriteQueue.Operation.INSERT, write.getOperation());
+        assertSame(b, write.getModule());
+    }
+
+    /**
+     * Test case 4: Bulk insert and bulk delete beyond the SQLite bind variable limit
+     */
+    @Test
+    public void testBulkInsertAndDeleteByNumbers() throws Exception {
+        List<Module> modules = new ArrayList<>();
+        List<String> moduleNumbers = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            modules.add(new Module("M" + (1000 + i), "Bulk Modul " + i));
+            moduleNumbers.add("M" + (1000 + i));
+        }
+
+        writeQueue.insertAll(modules).get(10, TimeUnit.SECONDS);
+        assertEquals(1200, database.moduleDao().getAllModulesNow().size());
+
+        writeQueue.deleteByNumbers(moduleNumbers.subList(0, 1100)).get(10, TimeUnit.SECONDS);
+        assertEquals(100, database.moduleDao().getAllModulesNow().size());
+    }
+
+    /**
+     * Test case 5: Writes queued while the writer is busy are committed as one batch,
+     * instead of one transaction per write as on the former AsyncTask path
+     */
+    @Test
+    public void testWritesQueuedDuringCommitShareOneTransaction() throws Exception {
+        final AtomicInteger batches = new AtomicInteger();
+        writeQueue.addChangeListener(new ModuleWriteQueue.ChangeListener() {
+            @Override
+            public void onBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                                       List<Module> updates, List<String> deleteNumbers) {
+                batches.incrementAndGet();
+            }
+        });
+
+        // Holds the writer thread like a running commit while the burst is queued
+        final CountDownLatch commitRunning = new CountDownLatch(1);
+        writeQueue.runOnWriter(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    commitRunning.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        List<CompletableFuture<Void>> completions = new ArrayList<>(BURST_WRITES);
+        for (int i = 0; i < BURST_WRITES; i++) {
+            Module module = new Module("B" + i, "Burst Modul " + i);
+            module.setZpNote(4.0f + (i % 4) * 0.5f);
+            completions.add(writeQueue.insert(module));
+        }
+        commitRunning.countDown();
+        CompletableFuture.allOf(completions.toArray(new CompletableFuture[0]))
+                .get(1, TimeUnit.MINUTES);
+
+        assertEquals(BURST_WRITES, database.moduleDao().getAllModulesNow().size());
+        assertEquals("Transactions for " + BURST_WRITES + " writes", 1, batches.get());
+    }
+
+    /**
+     * Test case 6: A throwing listener neither keeps the writes from completing
+     * nor the listeners after it from seeing the batch
+     */
+    @Test
+    public void testThrowingListenerDoesNotBlockWrites() throws Exception {
+        final AtomicInteger batches = new AtomicInteger();
+        writeQueue.addChangeListener(new ModuleWriteQueue.ChangeListener() {
+            @Override
+            public void onBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                                       List<Module> updates, List<String> deleteNumbers) {
+                throw new IllegalStateException("Listener failure");
+            }
+        });
+        writeQueue.addChangeListener(new ModuleWriteQueue.ChangeListener() {
+            @Override
+            public void onBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                                       List<Module> updates, List<String> deleteNumbers) {
+                batches.incrementAndGet();
+            }
+        });
+
+        writeQueue.insert(new Module("M335", "Mobile Apps")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, batches.get());
+        assertNotNull(database.moduleDao().getModuleByNumberNow("M335"));
+    }
+
+    /**
+     * Test case 7: A bulk write meeting a pending conditional update on one of its modules
+     * completes only once that module's deferred write is committed in the next batch
+     */
+    @Test
+    public void testBulkWriteWaitsForDeferredModule() throws Exception {
+        writeQueue.insertAll(Arrays.asList(new Module("M335", "Mobile Apps"),
+                new Module("M100", "Daten charakterisieren"))).get(5, TimeUnit.SECONDS);
+        Module read = database.moduleDao().getModuleByNumberNow("M335");
+        Module conditional = new Module("M335", "Bedingt");
+        conditional.setVersion(read.getVersion());
+
+        final AtomicReference<CompletableFuture<Void>> bulk = new AtomicReference<>();
+        final List<Boolean> bulkDoneWhenWritten = new ArrayList<>();
+        writeQueue.addChangeListener(new ModuleWriteQueue.ChangeListener() {
+            @Override
+            public void onBatchApplied(List<ModuleGrades> previous, List<Module> inserts,
+                                       List<Module> updates, List<String> deleteNumbers) {
+                for (Module module : updates) {
+                    if (module.getModuleNumber().equals("M335") && module.getModuleTitle().equals("Sammel")) {
+                        bulkDoneWhenWritten.add(bulk.get().isDone());
+                    }
+                }
+            }
+        });
+
+        // Both are queued before the writer drains, so the bulk update of M335 is deferred
+        final CountDownLatch queued = new CountDownLatch(1);
+        writeQueue.runOnWriter(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queued.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        CompletableFuture<Void> conditionalDone = writeQueue.compareAndSet(conditional);
+        bulk.set(writeQueue.updateAll(Arrays.asList(new Module("M335", "Sammel"),
+                new Module("M100", "Sammel"))));
+        queued.countDown();
+
+        conditionalDone.get(5, TimeUnit.SECONDS);
+        bulk.get().get(5, TimeUnit.SECONDS);
+
+        assertEquals("Batches writing the deferred module", 1, bulkDoneWhenWritten.size());
+        assertFalse("Bulk write completed before its deferred module was written", bulkDoneWhenWritten.get(0));
+        assertEquals("Sammel", database.moduleDao().getModuleByNumberNow("M335").getModuleTitle());
+        assertEquals("Sammel", database.moduleDao().getModuleByNumberNow("M100").getModuleTitle());
+    }
+}
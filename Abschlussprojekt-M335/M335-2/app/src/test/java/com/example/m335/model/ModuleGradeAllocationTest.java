@@ -0,0 +1,132 @@
+package com.example.m335.model;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Allocation comparison between boxed Float grades and the hundredths storage of Module.
+ */
+public class ModuleGradeAllocationTest {
+    private static final int ROWS = 100_000;
+    private static final String TITLE = "Modul";
+
+    private final String[] moduleNumbers = new String[ROWS];
+
+    /**
+     * Module row as it was before: two boxed grade columns and a boxed average
+     */
+    private static class BoxedModule {
+        final String moduleNumber;
+        final String moduleTitle;
+        final Float zpNote;
+        final Float lbNote;
+
+        BoxedModule(String moduleNumber, String moduleTitle, Float zpNote, Float lbNote) {
+            this.moduleNumber = moduleNumber;
+            this.moduleTitle = moduleTitle;
+            this.zpNote = zpNote;
+            this.lbNote = lbNote;
+        }
+
+        Float getAverageGrade() {
+            if (zpNote != null && lbNote != null) {
+                return (zpNote + lbNote) / 2.0f;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Loading and binding 100k rows allocates less with hundredths than with boxed grades
+     */
+    @Test
+    public void compareAllocationsOver100kRows() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // Module numbers are shared by both variants and not part of the comparison
+        for (int i = 0; i < ROWS; i++) {
+            moduleNumbers[i] = "M" + i;
+        }
+
+        // Warm up both paths so that class loading is not counted
+        loadBoxed(1000);
+        loadHundredths(1000);
+
+        long start = threads.getThreadAllocatedBytes(threadId);
+        List<BoxedModule> boxed = loadBoxed(ROWS);
+        long boxedLoadBytes = threads.getThreadAllocatedBytes(threadId) - start;
+
+        start = threads.getThreadAllocatedBytes(threadId);
+        List<Module> modules = loadHundredths(ROWS);
+        long moduleLoadBytes = threads.getThreadAllocatedBytes(threadId) - start;
+
+        // Binding pass: one average per row, like onBindViewHolder
+        start = threads.getThreadAllocatedBytes(threadId);
+        double boxedSum = 0;
+        for (BoxedModule row : boxed) {
+            Float average = row.getAverageGrade();
+            boxedSum += average != null ? average : 0;
+        }
+        long boxedBindBytes = threads.getThreadAllocatedBytes(threadId) - start;
+
+        start = threads.getThreadAllocatedBytes(threadId);
+        double moduleSum = 0;
+        for (Module module : modules) {
+            if (module.hasAllGrades()) {
+                moduleSum += module.getAverageGradeValue();
+            }
+        }
+        long moduleBindBytes = threads.getThreadAllocatedBytes(threadId) - start;
+
+        assertEquals(boxedSum, moduleSum, 0.5);
+        // The boxed rows carry two Float objects each on top of the row itself
+        assertTrue("Hundredths should save at least 16 bytes per row over " + ROWS
+                        + " rows, boxed " + boxedLoadBytes + " bytes, hundredths " + moduleLoadBytes,
+                boxedLoadBytes - moduleLoadBytes >= ROWS * 16L);
+        // The primitive average allocates nothing per row
+        assertTrue("Primitive average should not allocate, was " + moduleBindBytes
+                        + " bytes against " + boxedBindBytes + " boxed",
+                moduleBindBytes < ROWS);
+    }
+
+    /**
+     * Builds rows with boxed grades, the way Room used to read them
+     *
+     * @param count The number of rows
+     * @return The rows
+     */
+    private List<BoxedModule> loadBoxed(int count) {
+        List<BoxedModule> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new BoxedModule(moduleNumbers[i], TITLE, gradeOf(i), gradeOf(i + 3) + 0.25f));
+        }
+        return rows;
+    }
+
+    /**
+     * Builds modules with grades in hundredths, the way Room reads them now
+     *
+     * @param count The number of rows
+     * @return The modules
+     */
+    private List<Module> loadHundredths(int count) {
+        List<Module> modules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Module module = new Module(moduleNumbers[i], TITLE);
+            module.setZpHundredths(Math.round(gradeOf(i) * 100));
+            module.setLbHundredths(Math.round((gradeOf(i + 3) + 0.25f) * 100));
+            modules.add(module);
+        }
+        return modules;
+    }
+
+    private static float gradeOf(int i) {
+        return 1.0f + (i % 11) * 0.5f;
+    }
+}
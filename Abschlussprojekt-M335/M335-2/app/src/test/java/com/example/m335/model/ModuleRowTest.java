@@ -0,0 +1,202 @@
+package com.example.m335.model;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.m335.R;
+import com.example.m335.adapter.CountingModuleAdapter;
+import com.example.m335.data.ModuleDatabase;
+import com.example.m335.data.ModuleKeysetDataSource;
+import com.example.m335.viewmodel.ModuleViewModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests for the precomputed list rows and their reuse across list reloads.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ModuleRowTest {
+    private static final int ROWS = 10_000;
+    private static final int SCREEN_HEIGHT = 1920;
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Test case 1: Grade text and visibility are computed when the row is built
+     */
+    @Test
+    public void testPrecomputedFields() {
+        ModuleRow complete = new ModuleRow(createModule("M335", 400, 400));
+        assertEquals(String.format("%.1f", 4.0f), complete.getGradeText());
+        assertTrue(complete.isGradeVisible());
+
+        ModuleRow incomplete = new ModuleRow(createModule("M337", 550, Module.NO_GRADE));
+        assertNull(incomplete.getGradeText());
+        assertFalse(incomplete.isGradeVisible());
+    }
+
+    /**
+     * Test case 2: An unchanged module gets its previous row back, a changed one a new row
+     */
+    @Test
+    public void testMapperReusesUnchangedRows() {
+        ModuleRowMapper mapper = new ModuleRowMapper(10);
+        ModuleRow first = mapper.apply(createModule("M335", 450, 500));
+
+        assertSame(first, mapper.apply(createModule("M335", 450, 500)));
+
+        Module updated = createModule("M335", 450, 500);
+        updated.setVersion(1);
+        ModuleRow second = mapper.apply(updated);
+        assertNotSame(first, second);
+        assertFalse(first.gradesDiffer(second));
+
+        Module regraded = createModule("M335", 450, 550);
+        regraded.setVersion(2);
+        assertTrue(second.gradesDiffer(mapper.apply(regraded)));
+        assertEquals(1, mapper.getReusedCount());
+        assertEquals(3, mapper.getBuiltCount());
+    }
+
+    /**
+     * Test case 3: Scrolling through 10k rows of the adapter down and back up binds the rows
+     * built on the paging thread without building any row twice, and a reload of the
+     * unchanged list reuses every row
+     */
+    @Test
+    public void testScrollingBindsPrebuiltRows() {
+        Context context = ApplicationProvider.getApplicationContext();
+        ModuleDatabase database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        List<Module> modules = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            modules.add(createModule(String.format("M%05d", i), 100 + (i % 11) * 50, 100 + (i % 7) * 75));
+        }
+        database.moduleDao().insertAll(modules);
+        ModuleRowMapper mapper = new ModuleRowMapper(ROWS);
+
+        CountingModuleAdapter adapter = new CountingModuleAdapter(DIRECT_EXECUTOR);
+        RecyclerView recyclerView = new RecyclerView(context);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+        adapter.submitList(buildPagedList(database, mapper));
+        layoutFrame(recyclerView);
+
+        // Pages dropped on the way down are read again on the way up
+        int steps = 0;
+        while (layoutManager.findLastVisibleItemPosition() < ROWS - 1) {
+            recyclerView.scrollBy(0, SCREEN_HEIGHT);
+            layoutFrame(recyclerView);
+            assertTrue("The end of the list was not reached", ++steps < ROWS);
+        }
+        while (layoutManager.findFirstVisibleItemPosition() > 0) {
+            recyclerView.scrollBy(0, -SCREEN_HEIGHT);
+            layoutFrame(recyclerView);
+            assertTrue("The start of the list was not reached", ++steps < 2 * ROWS);
+        }
+
+        assertTrue("Every row must be bound, " + adapter.getFullBindCount() + " binds",
+                adapter.getFullBindCount() >= ROWS);
+        assertEquals("Rows built for " + adapter.getFullBindCount() + " binds",
+                ROWS, mapper.getBuiltCount());
+        assertShowsRows(recyclerView, adapter);
+
+        // The list is reloaded after a write elsewhere, no module on it changed
+        long reused = mapper.getReusedCount();
+        adapter.submitList(buildPagedList(database, mapper));
+        layoutFrame(recyclerView);
+
+        assertEquals(ROWS, mapper.getBuiltCount());
+        assertTrue("The reload must reuse the rows", mapper.getReusedCount() > reused);
+        assertShowsRows(recyclerView, adapter);
+
+        database.close();
+    }
+
+    /**
+     * Checks that every visible row shows the grade text of its row
+     *
+     * @param recyclerView The laid out list
+     * @param adapter The adapter of the list
+     */
+    private static void assertShowsRows(RecyclerView recyclerView, CountingModuleAdapter adapter) {
+        assertTrue("No row is shown", recyclerView.getChildCount() > 0);
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            View child = recyclerView.getChildAt(i);
+            ModuleRow row = adapter.getCurrentList().get(recyclerView.getChildAdapterPosition(child));
+            TextView grade = child.findViewById(R.id.text_view_average_grade);
+            assertNotNull("Row " + i + " is not loaded", row);
+            assertEquals(row.isGradeVisible() ? View.VISIBLE : View.GONE, grade.getVisibility());
+            if (row.isGradeVisible()) {
+                assertEquals(row.getGradeText(), grade.getText().toString());
+            }
+        }
+    }
+
+    /**
+     * Runs pending main thread work and one measure and layout pass
+     *
+     * @param recyclerView The RecyclerView to lay out
+     */
+    private static void layoutFrame(RecyclerView recyclerView) {
+        shadowOf(Looper.getMainLooper()).idle();
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 1080, SCREEN_HEIGHT);
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /**
+     * Builds the paged rows of the app; pages are read on the calling thread and
+     * handed to the list on the main thread, never while it is laid out
+     *
+     * @param database The database to read from
+     * @param mapper The mapper building the rows
+     * @return The paged row list
+     */
+    private static PagedList<ModuleRow> buildPagedList(ModuleDatabase database, ModuleRowMapper mapper) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        return new PagedList.Builder<>(new ModuleKeysetDataSource(database).map(mapper),
+                ModuleViewModel.createPagedListConfig())
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .setNotifyExecutor(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        mainHandler.post(command);
+                    }
+                })
+                .build();
+    }
+
+    private static Module createModule(String moduleNumber, int zpHundredths, int lbHundredths) {
+        Module module = new Module(moduleNumber, "Modul");
+        module.setZpHundredths(zpHundredths);
+        module.setLbHundredths(lbHundredths);
+        return module;
+    }
+}
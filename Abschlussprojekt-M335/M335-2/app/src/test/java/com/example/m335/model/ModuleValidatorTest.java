@@ -0,0 +1,142 @@
+package com.example.m335.model;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the grade parser and the validation codes, including the garbage of batch validation.
+ */
+public class ModuleValidatorTest {
+    private static final int BATCH_ROWS = 10_000;
+
+    /**
+     * Test case 1: Decimal point and comma, whitespace and input that is not a number
+     */
+    @Test
+    public void testGradeParsing() {
+        assertEquals(525, GradeParser.parseHundredths("5.25", GradeRounding.NONE));
+        assertEquals(450, GradeParser.parseHundredths(" 4,5 ", GradeRounding.NONE));
+        assertEquals(600, GradeParser.parseHundredths("6", GradeRounding.NONE));
+        assertEquals(50, GradeParser.parseHundredths(".5", GradeRounding.NONE));
+        assertEquals(400, GradeParser.parseHundredths("4.", GradeRounding.NONE));
+        assertEquals(433, GradeParser.parseHundredths("4.3333", GradeRounding.NONE));
+        assertEquals(0, GradeParser.parseHundredths("-2", GradeRounding.NONE));
+        assertEquals(Module.NO_GRADE, GradeParser.parseHundredths("  ", GradeRounding.NONE));
+        assertEquals(Module.NO_GRADE, GradeParser.parseHundredths(null, GradeRounding.NONE));
+        assertEquals(GradeParser.INVALID, GradeParser.parseHundredths("abc", GradeRounding.NONE));
+        assertEquals(GradeParser.INVALID, GradeParser.parseHundredths("4.5.1", GradeRounding.NONE));
+        assertEquals(GradeParser.INVALID, GradeParser.parseHundredths(".", GradeRounding.NONE));
+        assertEquals(GradeParser.INVALID, GradeParser.parseHundredths("5e0", GradeRounding.NONE));
+    }
+
+    /**
+     * Test case 2: Quarter and half grade rounding, halves are rounded up and the range
+     * is checked before rounding
+     */
+    @Test
+    public void testGradeRounding() {
+        assertEquals(425, GradeParser.parseHundredths("4.37", GradeRounding.QUARTER));
+        assertEquals(450, GradeParser.parseHundredths("4.375", GradeRounding.QUARTER));
+        assertEquals(500, GradeParser.parseHundredths("4.75", GradeRounding.HALF));
+        assertEquals(450, GradeParser.parseHundredths("4,7", GradeRounding.HALF));
+
+        ModuleValidator validator = new ModuleValidator(GradeRounding.HALF);
+        ModuleValidator.Result result = new ModuleValidator.Result();
+        assertFalse(validator.validate("M335", "Mobile Apps", "6.1", "0.9", result));
+        assertEquals(ModuleValidator.Code.OUT_OF_RANGE, result.getCode(ModuleValidator.Field.ZP_NOTE));
+        assertEquals(ModuleValidator.Code.OUT_OF_RANGE, result.getCode(ModuleValidator.Field.LB_NOTE));
+        assertEquals(ModuleValidator.Code.OUT_OF_RANGE, validator.validateGrade("6.1"));
+
+        assertTrue(validator.validate("M335", "Mobile Apps", "5.8", "1", result));
+        assertEquals(600, result.getZpHundredths());
+        assertEquals(100, result.getLbHundredths());
+        assertEquals(450, validator.parseGrade("4,7"));
+    }
+
+    /**
+     * Test case 3: Every field gets its own code, the first error follows the form order
+     */
+    @Test
+    public void testFieldCodes() {
+        ModuleValidator validator = new ModuleValidator();
+        ModuleValidator.Result result = new ModuleValidator.Result();
+
+        assertTrue(validator.validate("M335", "Mobile Apps", "5,5", "", result));
+        assertEquals(550, result.getZpHundredths());
+        assertEquals(Module.NO_GRADE, result.getLbHundredths());
+
+        assertFalse(validator.validate(" M1 ", "Mobile Apps", "7", "x", result));
+        assertEquals(ModuleValidator.Field.MODULE_NUMBER, result.getFirstError());
+        assertEquals(ModuleValidator.Code.TOO_SHORT, result.getCode(ModuleValidator.Field.MODULE_NUMBER));
+        assertEquals(ModuleValidator.Code.VALID, result.getCode(ModuleValidator.Field.MODULE_TITLE));
+        assertEquals(ModuleValidator.Code.OUT_OF_RANGE, result.getCode(ModuleValidator.Field.ZP_NOTE));
+        assertEquals(ModuleValidator.Code.NOT_A_NUMBER, result.getCode(ModuleValidator.Field.LB_NOTE));
+
+        // The reused result is overwritten completely
+        assertTrue(validator.validate("M335", "Mobile Apps", "", "", result));
+        assertNull(result.getFirstError());
+    }
+
+    /**
+     * Test case 4: Batch validation of 10k rows creates next to no garbage
+     */
+    @Test
+    public void testBatchValidationAllocations() {
+        final String[] numbers = new String[BATCH_ROWS];
+        final String[] grades = {"4.5", "5,25", "abc", "7", "", "6"};
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            numbers[i] = i % 100 == 0 ? "M1" : "M" + (1000 + i);
+        }
+        ModuleValidator.Candidates candidates = new ModuleValidator.Candidates() {
+            @Override
+            public int size() {
+                return BATCH_ROWS;
+            }
+
+            @Override
+            public CharSequence getModuleNumber(int row) {
+                return numbers[row];
+            }
+
+            @Override
+            public CharSequence getModuleTitle(int row) {
+                return "Modul";
+            }
+
+            @Override
+            public CharSequence getZpNote(int row) {
+                return grades[row % grades.length];
+            }
+
+            @Override
+            public CharSequence getLbNote(int row) {
+                return grades[(row + 1) % grades.length];
+            }
+        };
+        ModuleValidator validator = new ModuleValidator(GradeRounding.QUARTER);
+        int[] outcomes = new int[BATCH_ROWS];
+        // Warm up so that class loading is not counted
+        validator.validateAll(candidates, outcomes);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        int invalid = validator.validateAll(candidates, outcomes);
+        long bytes = threads.getThreadAllocatedBytes(threadId) - start;
+
+        assertEquals(ModuleValidator.Code.TOO_SHORT,
+                ModuleValidator.getCode(outcomes[0], ModuleValidator.Field.MODULE_NUMBER));
+        assertEquals(ModuleValidator.Code.NOT_A_NUMBER,
+                ModuleValidator.getCode(outcomes[2], ModuleValidator.Field.ZP_NOTE));
+        assertEquals(ModuleValidator.Code.OUT_OF_RANGE,
+                ModuleValidator.getCode(outcomes[2], ModuleValidator.Field.LB_NOTE));
+        assertEquals(0, outcomes[4]);
+        // Three of six grade pairs contain "abc" or "7", plus the short numbers of the other rows
+        assertEquals("Invalid rows of " + BATCH_ROWS, 5068, invalid);
+        assertTrue("Batch validation should not allocate per row, was " + bytes, bytes < BATCH_ROWS);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.m335.ui
+
+import android.content.Context
+import android.os.Looper
+import android.view.View
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.setValue
+import androidx.compose.ui.test.junit4.createComposeRule
+import androidx.compose.ui.test.onNodeWithTag
+import androidx.compose.ui.test.onNodeWithText
+import androidx.compose.ui.test.performScrollToIndex
+import androidx.paging.PagedList
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.m335.adapter.CountingModuleAdapter
+import com.example.m335.adapter.ModuleAdapter
+import com.example.m335.data.ModuleDatabase
+import com.example.m335.data.ModuleKeysetDataSource
+import com.example.m335.model.Module
+import com.example.m335.model.ModuleFamilyStats
+import com.example.m335.model.ModuleRow
+import com.example.m335.model.ModuleRowMapper
+import com.example.m335.model.ModuleSummary
+import com.example.m335.viewmodel.ModuleViewModel
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import java.util.concurrent.Executor
+
+/**
+ * Recomposition counts of the Compose module list, compared with the binds of the RecyclerView.
+ */
+@RunWith(RobolectricTestRunner::class)
+class ModuleListComposeTest {
+    @get:Rule
+    val composeRule = createComposeRule()
+
+    private lateinit var context: Context
+    private lateinit var database: ModuleDatabase
+    private val rowMapper = ModuleRowMapper(ModuleViewModel.MAX_LOADED_MODULES)
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        database = Room.inMemoryDatabaseBuilder(context, ModuleDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+        database.moduleDao().insertAll(createModules(200))
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    /**
+     * Test case 1: A grade change recomposes only the changed row, just like the
+     * RecyclerView rebinds only that row
+     */
+    @Test
+    fun testGradeChangeRecomposesOneRow() {
+        val controller = ModuleListController()
+        var rows by mutableStateOf(buildPagedList())
+        composeRule.setContent {
+            ModuleList(rows, emptyMap(), null, emptyList(), controller)
+        }
+        composeRule.waitForIdle()
+        assertTrue("Visible rows must be composed", controller.rowCompositionCount > 0)
+
+        // Same reload for the RecyclerView, before the grade changes
+        val adapter = CountingModuleAdapter()
+        val recyclerView = createRecyclerView(adapter)
+        submitAndLayout(adapter, recyclerView, buildPagedList())
+
+        changeFirstGrade()
+        controller.resetCompositionCounts()
+        adapter.resetBindCounts()
+
+        rows = buildPagedList()
+        composeRule.waitForIdle()
+        submitAndLayout(adapter, recyclerView, buildPagedList())
+
+        val binds = adapter.fullBindCount + adapter.gradeBindCount
+        assertEquals("Compose rows after a grade change", 1, controller.rowCompositionCount)
+        assertEquals("Compose rows against RecyclerView binds", binds, controller.rowCompositionCount)
+        assertEquals("Header after a grade change", 0, controller.headerCompositionCount)
+    }
+
+    /**
+     * Test case 2: Scrolling recomposes the summary header only when the first row scrolls out
+     */
+    @Test
+    fun testScrollingRecomposesHeaderOnce() {
+        val controller = ModuleListController()
+        val rows = buildPagedList()
+        val summary = ModuleSummary(200, 200, 200, 0, 4.5f, 5.0f, 4.0f)
+        val familyStats = listOf(ModuleFamilyStats("M0", 200, 200, 4.5f))
+        composeRule.setContent {
+            ModuleList(rows, emptyMap(), summary, familyStats, controller)
+        }
+        composeRule.waitForIdle()
+        composeRule.onNodeWithText("M0xx", substring = true).assertExists()
+        controller.resetCompositionCounts()
+
+        composeRule.onNodeWithTag(MODULE_LIST_TAG).performScrollToIndex(50)
+        composeRule.waitForIdle()
+        composeRule.onNodeWithTag(MODULE_LIST_TAG).performScrollToIndex(60)
+        composeRule.waitForIdle()
+
+        assertEquals("Header while scrolling, rows composed " + controller.rowCompositionCount,
+            1, controller.headerCompositionCount)
+        composeRule.onNodeWithText("M0xx", substring = true).assertDoesNotExist()
+    }
+
+    /**
+     * Test case 3: A pending edit recomposes its row once; an equal edit published again does not
+     */
+    @Test
+    fun testEqualPendingEditIsSkipped() {
+        val controller = ModuleListController()
+        val rows = buildPagedList()
+        var pendingEdits by mutableStateOf(emptyMap<String, Module>())
+        composeRule.setContent {
+            ModuleList(rows, pendingEdits, null, emptyList(), controller)
+        }
+        composeRule.waitForIdle()
+        controller.resetCompositionCounts()
+
+        pendingEdits = mapOf("M0000" to createEdit())
+        composeRule.waitForIdle()
+        composeRule.onNodeWithText("Bearbeiteter Titel").assertExists()
+        assertEquals(1, controller.rowCompositionCount)
+
+        // A new edit object with the same content gives an equal row
+        pendingEdits = mapOf("M0000" to createEdit())
+        composeRule.waitForIdle()
+        assertEquals(1, controller.rowCompositionCount)
+    }
+
+    private fun buildPagedList(): PagedList<ModuleRow> {
+        return PagedList.Builder(ModuleKeysetDataSource(database).map(rowMapper),
+                ModuleViewModel.createPagedListConfig())
+            .setFetchExecutor(DIRECT_EXECUTOR)
+            .setNotifyExecutor(DIRECT_EXECUTOR)
+            .build()
+    }
+
+    private fun changeFirstGrade() {
+        val changed = database.moduleDao().getFirstModules(1)[0]
+        changed.zpNote = 6.0f
+        database.moduleDao().update(changed)
+    }
+
+    private fun createRecyclerView(adapter: ModuleAdapter): RecyclerView {
+        val recyclerView = RecyclerView(context)
+        recyclerView.layoutManager = LinearLayoutManager(context)
+        recyclerView.adapter = adapter
+        return recyclerView
+    }
+
+    /**
+     * Submits a list, waits for the diff on the background thread and lays out one frame
+     */
+    private fun submitAndLayout(adapter: ModuleAdapter, recyclerView: RecyclerView, rows: PagedList<ModuleRow>) {
+        var committed = false
+        adapter.submitList(rows) { committed = true }
+        val deadline = System.currentTimeMillis() + 10_000
+        while (!committed && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle()
+            Thread.sleep(5)
+        }
+        assertTrue("The list must be committed", committed)
+        recyclerView.measure(
+            View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY))
+        recyclerView.layout(0, 0, 1080, 1920)
+        shadowOf(Looper.getMainLooper()).idle()
+    }
+
+    private fun createEdit(): Module {
+        val module = Module("M0000", "Bearbeiteter Titel")
+        module.zpNote = 4.0f
+        module.lbNote = 5.0f
+        return module
+    }
+
+    private fun createModules(count: Int): List<Module> {
+        val modules = ArrayList<Module>(count)
+        for (i in 0 until count) {
+            val module = Module(String.format("M%04d", i), "Modul $i")
+            module.zpNote = 4.0f
+            module.lbNote = 5.0f
+            modules.add(module)
+        }
+        return modules
+    }
+
+    private companion object {
+        val DIRECT_EXECUTOR = Executor { command -> command.run() }
+    }
+}
@@ -0,0 +1,39 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// Reines JVM-Modul: misst die Modellklassen der App ohne Android-Laufzeit
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            // Die Modellklassen werden direkt aus der App kompiliert, ohne Android-Ressourcen
+            setSrcDirs(listOf("../app/src/main/java"))
+            include("com/example/m335/model/**")
+            exclude("**/ResourceValidationMessages.java")
+            // Der Mapper implementiert ein Interface aus androidx.arch.core
+            exclude("**/ModuleRowMapper.java")
+        }
+    }
+}
+
+dependencies {
+    // Annotationen der Modellklassen, zur Laufzeit ohne Wirkung
+    implementation(libs.androidx.room.common)
+    implementation(libs.androidx.annotation)
+}
+
+// Alle Benchmarks laufen mit ./gradlew :benchmark:jmh, der GC-Profiler misst die Allokationen
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
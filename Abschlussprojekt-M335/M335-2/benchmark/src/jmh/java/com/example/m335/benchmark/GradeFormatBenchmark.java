@@ -0,0 +1,43 @@
+package com.example.m335.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of the average grade shown in every list row.
+ * ModuleRow formats with String.format("%.1f", ...) once when the row is built.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GradeFormatBenchmark {
+    private float average = 4.875f;
+    private int averageHundredths = 488;
+
+    /**
+     * The formatting of the adapter
+     *
+     * @return The formatted grade
+     */
+    @Benchmark
+    public String stringFormat() {
+        return String.format("%.1f", average);
+    }
+
+    /**
+     * Formatting from hundredths with integer arithmetic, for comparison
+     *
+     * @return The formatted grade
+     */
+    @Benchmark
+    public String integerFormat() {
+        int tenths = (averageHundredths + 5) / 10;
+        return new StringBuilder(3).append(tenths / 10).append('.').append(tenths % 10).toString();
+    }
+}
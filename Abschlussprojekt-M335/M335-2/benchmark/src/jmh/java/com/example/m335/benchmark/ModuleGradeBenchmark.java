@@ -0,0 +1,80 @@
+package com.example.m335.benchmark;
+
+import com.example.m335.model.Module;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grade accessors of Module as used when binding list rows and building statistics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModuleGradeBenchmark {
+    private static final int ROWS = 1000;
+
+    private Module[] modules;
+
+    /**
+     * Creates rows with and without grades, every fourth row lacks the LB grade
+     */
+    @Setup
+    public void setUp() {
+        modules = new Module[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            Module module = new Module("M" + (100 + i), "Modul " + i);
+            module.setZpHundredths(100 + (i * 25) % 500);
+            if (i % 4 != 0) {
+                module.setLbHundredths(100 + (i * 50) % 500);
+            }
+            modules[i] = module;
+        }
+    }
+
+    /**
+     * Boxed average, allocates a Float per graded row
+     *
+     * @param blackhole Consumes the results
+     */
+    @Benchmark
+    public void averageGrade(Blackhole blackhole) {
+        for (Module module : modules) {
+            blackhole.consume(module.getAverageGrade());
+        }
+    }
+
+    /**
+     * Primitive average behind a hasAllGrades check, the way the adapter binds rows
+     *
+     * @param blackhole Consumes the results
+     */
+    @Benchmark
+    public void averageGradeValue(Blackhole blackhole) {
+        for (Module module : modules) {
+            if (module.hasAllGrades()) {
+                blackhole.consume(module.getAverageGradeValue());
+            }
+        }
+    }
+
+    /**
+     * Completeness check alone
+     *
+     * @param blackhole Consumes the results
+     */
+    @Benchmark
+    public void hasAllGrades(Blackhole blackhole) {
+        for (Module module : modules) {
+            blackhole.consume(module.hasAllGrades());
+        }
+    }
+}
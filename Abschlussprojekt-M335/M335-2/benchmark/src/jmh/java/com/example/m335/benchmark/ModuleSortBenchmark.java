@@ -0,0 +1,108 @@
+package com.example.m335.benchmark;
+
+import com.example.m335.model.Module;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting a module list by module number, by text and in natural order with the sort key
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModuleSortBenchmark {
+
+    /**
+     * Order of the list tables, the same as ORDER BY sortKey, moduleNumber
+     */
+    private static final Comparator<Module> NATURAL_ORDER = new Comparator<Module>() {
+        @Override
+        public int compare(Module a, Module b) {
+            int bySortKey = Long.compare(a.getSortKey(), b.getSortKey());
+            return bySortKey != 0 ? bySortKey : a.getModuleNumber().compareTo(b.getModuleNumber());
+        }
+    };
+
+    /**
+     * Plain text order, M1000 comes before M200
+     */
+    private static final Comparator<Module> TEXT_ORDER = new Comparator<Module>() {
+        @Override
+        public int compare(Module a, Module b) {
+            return a.getModuleNumber().compareTo(b.getModuleNumber());
+        }
+    };
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private List<Module> shuffled;
+
+    /**
+     * Creates the modules in random order
+     */
+    @Setup
+    public void setUp() {
+        shuffled = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            shuffled.add(new Module("M" + (100 + i), "Modul " + i));
+        }
+        Collections.shuffle(shuffled, new Random(42));
+    }
+
+    /**
+     * Natural order with the precomputed sort key
+     *
+     * @return The sorted copy
+     */
+    @Benchmark
+    public List<Module> sortNatural() {
+        List<Module> modules = new ArrayList<>(shuffled);
+        Collections.sort(modules, NATURAL_ORDER);
+        return modules;
+    }
+
+    /**
+     * Text order of the module numbers
+     *
+     * @return The sorted copy
+     */
+    @Benchmark
+    public List<Module> sortByText() {
+        List<Module> modules = new ArrayList<>(shuffled);
+        Collections.sort(modules, TEXT_ORDER);
+        return modules;
+    }
+
+    /**
+     * Natural order computing the sort key on every comparison, as without the stored column
+     *
+     * @return The sorted copy
+     */
+    @Benchmark
+    public List<Module> sortComputingKeys() {
+        List<Module> modules = new ArrayList<>(shuffled);
+        Collections.sort(modules, new Comparator<Module>() {
+            @Override
+            public int compare(Module a, Module b) {
+                return Long.compare(Module.computeSortKey(a.getModuleNumber()),
+                        Module.computeSortKey(b.getModuleNumber()));
+            }
+        });
+        return modules;
+    }
+}
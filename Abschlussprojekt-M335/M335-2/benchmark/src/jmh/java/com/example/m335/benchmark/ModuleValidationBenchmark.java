@@ -0,0 +1,62 @@
+package com.example.m335.benchmark;
+
+import com.example.m335.model.ModuleValidator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of one module on valid and invalid input.
+ * ModuleViewModel.validateModule delegates to the same validator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModuleValidationBenchmark {
+    private final ModuleValidator validator = new ModuleValidator();
+    private final ModuleValidator.Result result = new ModuleValidator.Result();
+
+    // Fields instead of constants, so that the JIT cannot fold the input
+    private String moduleNumber = "M335";
+    private String moduleTitle = "Mobile Apps für Android";
+    private String validGrade = "5,25";
+    private String invalidGrade = "fünf";
+    private String outOfRangeGrade = "6.5";
+    private String shortNumber = "M1";
+
+    /**
+     * All fields valid
+     *
+     * @return Whether the module is valid
+     */
+    @Benchmark
+    public boolean validInput() {
+        return validator.validate(moduleNumber, moduleTitle, validGrade, validGrade, result);
+    }
+
+    /**
+     * Short module number and a grade that is not a number
+     *
+     * @return Whether the module is valid
+     */
+    @Benchmark
+    public boolean invalidInput() {
+        return validator.validate(shortNumber, moduleTitle, invalidGrade, validGrade, result);
+    }
+
+    /**
+     * Grade outside 1.0 to 6.0
+     *
+     * @return Whether the module is valid
+     */
+    @Benchmark
+    public boolean outOfRangeInput() {
+        return validator.validate(moduleNumber, moduleTitle, validGrade, outOfRangeGrade, result);
+    }
+}